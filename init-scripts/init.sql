@@ -48,12 +48,16 @@ CREATE INDEX ON document_chunk USING gin (metadata);
 CREATE TABLE IF NOT EXISTS session_archives (
     id VARCHAR(36) PRIMARY KEY,
     conversation_id VARCHAR(255) NOT NULL,
+    user_id VARCHAR(64),
     type VARCHAR(50) NOT NULL,
     payload JSONB NOT NULL,
     timestamp TIMESTAMP WITH TIME ZONE NOT NULL,
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 已有部署补齐 user_id 列 (批量归档 INSERT 显式写入该列)
+ALTER TABLE session_archives ADD COLUMN IF NOT EXISTS user_id VARCHAR(64);
+
 CREATE INDEX IF NOT EXISTS idx_session_archives_conversation_id ON session_archives(conversation_id);
 CREATE INDEX IF NOT EXISTS idx_session_archives_timestamp ON session_archives(timestamp);
 
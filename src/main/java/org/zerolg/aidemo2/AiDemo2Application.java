@@ -2,12 +2,16 @@ package org.zerolg.aidemo2;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.zerolg.aidemo2.support.thread.VirtualThreadSchedulerInitializer;
 
 @SpringBootApplication
 public class AiDemo2Application {
 
     public static void main(String[] args) {
-        SpringApplication.run(AiDemo2Application.class, args);
+        SpringApplication application = new SpringApplication(AiDemo2Application.class);
+        // 虚拟线程模式 (spring.threads.virtual.enabled=true) 需要在任何 Bean 使用 Reactor 调度器之前完成替换
+        application.addListeners(new VirtualThreadSchedulerInitializer());
+        application.run(args);
     }
 
 }
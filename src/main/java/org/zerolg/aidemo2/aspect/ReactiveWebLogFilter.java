@@ -0,0 +1,68 @@
+package org.zerolg.aidemo2.aspect;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.net.InetSocketAddress;
+import java.util.UUID;
+
+/**
+ * 统一日志过滤器 (WebFlux 模式)
+ * 替代依赖 Servlet 请求上下文的 WebLogAspect：记录请求日志、耗时和 TraceId
+ *
+ * 与切面的区别：
+ * - 请求不绑定线程，TraceId 保存在 exchange 属性和 Reactor Context 中，只在打印日志时临时放入 MDC
+ * - 耗时在响应结束时记录，对 SSE 流式接口即为整条流的持续时间
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebLogFilter implements WebFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveWebLogFilter.class);
+    public static final String TRACE_ID = "traceId";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long startTime = System.currentTimeMillis();
+        String traceId = UUID.randomUUID().toString().replace("-", "");
+        exchange.getAttributes().put(TRACE_ID, traceId);
+
+        ServerHttpRequest request = exchange.getRequest();
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        String ip = remoteAddress != null && remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress() : "unknown";
+
+        try (MDC.MDCCloseable ignored = MDC.putCloseable(TRACE_ID, traceId)) {
+            logger.info("========================================== Start ==========================================");
+            logger.info("URL          : {}", request.getURI());
+            logger.info("HTTP Method  : {}", request.getMethod());
+            logger.info("IP           : {}", ip);
+            if (!request.getQueryParams().isEmpty()) {
+                logger.info("Request Args : {}", request.getQueryParams());
+            }
+        }
+
+        return chain.filter(exchange)
+                .contextWrite(Context.of(TRACE_ID, traceId))
+                .doFinally(signal -> {
+                    try (MDC.MDCCloseable ignored = MDC.putCloseable(TRACE_ID, traceId)) {
+                        long costTime = System.currentTimeMillis() - startTime;
+                        logger.info("Status       : {} ({})", exchange.getResponse().getStatusCode(), signal);
+                        logger.info("Time Cost    : {} ms", costTime);
+                        logger.info("=========================================== End ===========================================");
+                    }
+                });
+    }
+}
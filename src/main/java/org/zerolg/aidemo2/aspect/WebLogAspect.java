@@ -9,6 +9,7 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
@@ -20,9 +21,11 @@ import jakarta.servlet.http.HttpServletResponse;
 /**
  * 统一日志切面
  * 负责记录请求日志、耗时和 TraceId 管理
+ * 依赖 Servlet 请求上下文 (RequestContextHolder)，仅在 Servlet 模式下生效；WebFlux 模式见 ReactiveWebLogFilter
  */
 @Aspect
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class WebLogAspect {
 
     private static final Logger logger = LoggerFactory.getLogger(WebLogAspect.class);
@@ -13,7 +13,8 @@ public enum ResultCode {
     // 业务错误码 (10000 - 19999)
     AI_SERVICE_ERROR(10001, "AI 服务调用失败"),
     RAG_SEARCH_ERROR(10002, "RAG 检索失败"),
-    TOOL_EXECUTION_ERROR(10003, "工具执行异常");
+    TOOL_EXECUTION_ERROR(10003, "工具执行异常"),
+    CHAT_OVERLOADED(10004, "当前对话请求过多，请稍后重试");
 
     private final long code;
     private final String message;
@@ -3,7 +3,6 @@
 package org.zerolg.aidemo2.config;
 
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
@@ -15,11 +14,14 @@ import java.util.List;
 @Configuration
 public class AiConfig {
 
+    /**
+     * 会话历史由 SessionMemoryService 按会话管理并显式传入 Prompt，
+     * 这里不再挂载 MessageChatMemoryAdvisor：它使用全局默认会话 ID，
+     * 会把其他会话的消息插到系统提示词之后，破坏 Prompt 前缀的稳定性
+     */
     @Bean
     public ChatClient chatClient(ChatClient.Builder chatClientBuilder, List<String> availableToolNames) {
-        return chatClientBuilder
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory()).build())
-                .build();
+        return chatClientBuilder.build();
     }
 
     @Bean
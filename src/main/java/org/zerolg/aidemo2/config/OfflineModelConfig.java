@@ -0,0 +1,46 @@
+package org.zerolg.aidemo2.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.zerolg.aidemo2.properties.OfflineProperties;
+import org.zerolg.aidemo2.support.offline.OfflineChatModel;
+import org.zerolg.aidemo2.support.offline.OfflineEmbeddingModel;
+
+/**
+ * 离线模型配置
+ *
+ * 使用方式：--spring.profiles.active=offline
+ * 用确定性的离线替身替换真实的 ChatModel / EmbeddingModel，无需 API Key 即可跑通整条链路（检索、重排序、
+ * 工具调用、幻觉验证），延迟与错误率按 ai.offline.* 模拟，用于可复现的压测；
+ * 同时可通过 aidemo.llm.prompt.tokens{cached} 观察 Prompt 布局对前缀缓存命中的影响。
+ */
+@Configuration
+@Profile("offline")
+public class OfflineModelConfig {
+
+    @Bean
+    @Primary
+    public ChatModel offlineChatModel(OfflineProperties properties,
+                                      ObjectProvider<ToolCallingManager> toolCallingManager,
+                                      MeterRegistry meterRegistry) {
+        return new OfflineChatModel(properties, toolCallingManager.getIfAvailable(), meterRegistry);
+    }
+
+    /**
+     * 向量维度与 PGVector 表结构保持一致，离线环境下也能写入 / 检索真实的向量库
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel offlineEmbeddingModel(OfflineProperties properties,
+                                                @Value("${spring.ai.vectorstore.pgvector.dimension:1536}") int dimensions) {
+        return new OfflineEmbeddingModel(dimensions, properties);
+    }
+}
@@ -0,0 +1,41 @@
+package org.zerolg.aidemo2.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * WebFlux 模式 Web 配置，跨域规则与 Servlet 模式的 WebConfig 保持一致
+ *
+ * 会话历史、监控等接口仍是阻塞式实现（同步 Redis / JDBC），返回值不是 Mono / Flux 的控制器方法
+ * 统一切换到应用任务线程池执行，不占用 Netty 事件循环线程。
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    private final AsyncTaskExecutor blockingExecutor;
+
+    public ReactiveWebConfig(@Qualifier("applicationTaskExecutor") AsyncTaskExecutor blockingExecutor) {
+        this.blockingExecutor = blockingExecutor;
+    }
+
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        // 默认判定：返回值不是响应式类型的方法视为阻塞方法
+        configurer.setExecutor(blockingExecutor);
+    }
+
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/**")
+                .allowedOriginPatterns("*")
+                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                .allowedHeaders("*")
+                .allowCredentials(true);
+    }
+}
@@ -1,5 +1,6 @@
 package org.zerolg.aidemo2.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -8,13 +9,16 @@ import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.data.redis.stream.StreamMessageListenerContainer;
 import org.springframework.data.redis.stream.Subscription;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.zerolg.aidemo2.service.stream.IngestionConsumer;
-import org.zerolg.aidemo2.service.stream.SessionEventConsumer;
+import org.zerolg.aidemo2.properties.StreamConsumerProperties;
+import org.zerolg.aidemo2.service.stream.StreamConsumerIdentity;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.zerolg.aidemo2.constant.RedisKeys;
 
@@ -25,36 +29,15 @@ import org.zerolg.aidemo2.constant.RedisKeys;
  * 1. 将 StreamMessageListenerContainer 定义为独立的 Bean。
  * 2. 设置 autoStartup = false，禁止容器在 Spring 初始化时自动启动。
  * 3. 容器的启动将由各自的消费者在成功初始化 Stream 和 Group 后手动触发。
+ * 4. 虚拟线程模式 (spring.threads.virtual.enabled=true) 下，轮询与消息处理运行在虚拟线程上。
+ * 5. 每个节点按 stream.consumer.* 配置注册多个消费者，名称由 StreamConsumerIdentity 生成，按节点唯一。
+ * 6. 会话事件流需要按批写库、按批确认，不使用监听容器，由 SessionEventConsumer 自行 XREADGROUP 拉取。
  */
 @Configuration
 public class RedisStreamConfig {
 
-    // --- Session Event Stream 配置 ---
-
-    @Bean(name = "sessionEventContainer")
-    public StreamMessageListenerContainer<String, MapRecord<String, String, String>> sessionEventContainer(
-            RedisConnectionFactory connectionFactory) {
-
-        StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
-                StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
-                        .pollTimeout(Duration.ofMillis(100))
-                        .serializer(new StringRedisSerializer())
-                        .build();
-
-        StreamMessageListenerContainer<String, MapRecord<String, String, String>> container =
-                StreamMessageListenerContainer.create(connectionFactory, options);
-
-        return container;
-    }
-
-    @Bean
-    public Subscription sessionEventSubscription(StreamMessageListenerContainer<String, MapRecord<String, String, String>> sessionEventContainer,
-                                                 SessionEventConsumer consumer) {
-        return sessionEventContainer.receive(
-                Consumer.from("session-archiver-group", "consumer-1"),
-                StreamOffset.create("session:event:stream", ReadOffset.lastConsumed()),
-                consumer);
-    }
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
 
     // --- Ingestion Stream 配置 ---
 
@@ -65,6 +48,7 @@ public class RedisStreamConfig {
         StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
                 StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
                         .pollTimeout(Duration.ofMillis(100))
+                        .executor(streamExecutor("ingestion-"))
                         .build();
 
         StreamMessageListenerContainer<String, MapRecord<String, String, String>> container =
@@ -74,21 +58,37 @@ public class RedisStreamConfig {
     }
 
     @Bean
-    public Subscription ingestionSubscription(
+    public List<Subscription> ingestionSubscriptions(
             @org.springframework.beans.factory.annotation.Qualifier("ingestionContainer") StreamMessageListenerContainer<String, MapRecord<String, String, String>> ingestionContainer,
             IngestionConsumer consumer,
-            StringRedisTemplate redisTemplate) {
+            StringRedisTemplate redisTemplate,
+            StreamConsumerIdentity identity,
+            StreamConsumerProperties consumerProperties) {
 
         // 确保消费者组存在 (如果不存在则创建)
         try {
-            redisTemplate.opsForStream().createGroup(RedisKeys.STREAM_DOCUMENT_INGESTION, "ingestion-worker-group");
+            redisTemplate.opsForStream().createGroup(RedisKeys.STREAM_DOCUMENT_INGESTION, IngestionConsumer.GROUP_NAME);
         } catch (Exception e) {
             // 忽略 "BUSYGROUP Consumer Group name already exists" 异常
         }
 
-        return ingestionContainer.receive(
-                Consumer.from("ingestion-worker-group", "worker-1"), // 组名必须与 createGroup 一致
-                StreamOffset.create(RedisKeys.STREAM_DOCUMENT_INGESTION, ReadOffset.lastConsumed()),
-                consumer);
+        // 组名必须与 createGroup 一致；消费者名称按节点唯一，多实例不会共用同一个消费者身份
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < consumerProperties.getIngestionConsumers(); i++) {
+            subscriptions.add(ingestionContainer.receive(
+                    Consumer.from(IngestionConsumer.GROUP_NAME, identity.consumerName(i)),
+                    StreamOffset.create(RedisKeys.STREAM_DOCUMENT_INGESTION, ReadOffset.lastConsumed()),
+                    consumer));
+        }
+        return subscriptions;
+    }
+
+    /**
+     * 监听容器的轮询执行器：每个订阅占用一个长期阻塞在 XREADGROUP 上的线程
+     */
+    private SimpleAsyncTaskExecutor streamExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(virtualThreads);
+        return executor;
     }
 }
@@ -90,6 +90,36 @@ public class ToolRegistry {
         }
     }
 
+    /**
+     * 获取工具的 @Description 描述
+     * 用于动态工具选择时计算工具语义向量；未标注时退化为工具名称
+     */
+    public String getToolDescription(String beanName) {
+        try {
+            if (applicationContext instanceof ConfigurableApplicationContext) {
+                ConfigurableListableBeanFactory factory = ((ConfigurableApplicationContext) applicationContext).getBeanFactory();
+                BeanDefinition bd = factory.getBeanDefinition(beanName);
+                if (bd instanceof AnnotatedBeanDefinition) {
+                    MethodMetadata metadata = ((AnnotatedBeanDefinition) bd).getFactoryMethodMetadata();
+                    if (metadata != null) {
+                        Map<String, Object> attributes = metadata.getAnnotationAttributes(Description.class.getName());
+                        if (attributes != null) {
+                            return (String) attributes.get("value");
+                        }
+                    }
+                }
+            }
+
+            Class<?> beanClass = applicationContext.getType(beanName);
+            if (beanClass != null && beanClass.isAnnotationPresent(Description.class)) {
+                return beanClass.getAnnotation(Description.class).value();
+            }
+        } catch (Exception e) {
+            logger.warn("读取工具描述失败: {}", beanName, e);
+        }
+        return beanName;
+    }
+
     /**
      * 🏷️ 工具分类管理器
      *
@@ -112,6 +142,8 @@ public class ToolRegistry {
                 categories.addTool("user", toolName);
             } else if (lowerName.contains("order")) {
                 categories.addTool("order", toolName);
+            } else if (lowerName.contains("stock")) {
+                categories.addTool("inventory", toolName);
             } else {
                 categories.addTool("general", toolName);
             }
@@ -2,11 +2,16 @@
 
 package org.zerolg.aidemo2.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+/**
+ * Servlet 模式 Web 配置 (WebFlux 模式见 ReactiveWebConfig)
+ */
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class WebConfig implements WebMvcConfigurer {
 
     @Override
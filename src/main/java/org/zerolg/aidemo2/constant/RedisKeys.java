@@ -1,5 +1,7 @@
 package org.zerolg.aidemo2.constant;
 
+import java.util.List;
+
 /**
  * Redis Key 定义常量
  */
@@ -11,14 +13,66 @@ public class RedisKeys {
     // Stream for session events (e.g., chat messages)
     public static final String STREAM_SESSION_EVENT = "session:event:stream";
 
+    // Stream: 毒消息死信流 (Key={stream}:dlq)，投递次数超过上限的条目连同原字段转入，字段 sourceId/group/deliveries 记录来源
+    public static String streamDeadLetterKey(String stream) {
+        return stream + ":dlq";
+    }
+
+    // 由消费者组消费、可能产生死信流的 Stream（DLQ 监控与指标按此列表检查 {stream}:dlq）
+    public static final List<String> CONSUMER_GROUP_STREAMS = List.of(STREAM_SESSION_EVENT, STREAM_DOCUMENT_INGESTION);
+
+    // List: 会话归档死信队列
+    public static final String SESSION_DLQ = "aidemo:session:dlq";
+
     // --- Session Memory Keys ---
 
     // ZSET: 会话心跳索引 (Score=Timestamp, Member=ConversationId)
     public static final String SESSION_HEARTBEAT = "aidemo:session:heartbeat";
 
-    // List: 会话消息列表 (Key=aidemo:session:msg:{conversationId})
-    public static final String SESSION_MSG_PREFIX = "aidemo:session:msg:";
+    // 会话级 Key 统一使用 {conversationId} 哈希标签：同一会话的所有 Key 落在同一个 Cluster 槽位，
+    // 可以在一个多 Key 脚本中同时操作
+    public static final String SESSION_PREFIX = "aidemo:session:";
+
+    // List: 会话消息列表 (Key=aidemo:session:{conversationId}:msg)
+    public static String sessionMessagesKey(String conversationId) {
+        return sessionKey(conversationId, ":msg");
+    }
+
+    // Hash: 会话元数据 (Key=aidemo:session:{conversationId}:meta, Field=userId/createdAt/lastActiveAt/messageCount/totalTokens/status)
+    public static String sessionMetaKey(String conversationId) {
+        return sessionKey(conversationId, ":meta");
+    }
+
+    // List: 会话 Token 前缀和索引 (Key=aidemo:session:{conversationId}:tok)，比消息列表多一个起点元素，用于按 Token 预算选取历史
+    public static String sessionTokenIndexKey(String conversationId) {
+        return sessionKey(conversationId, ":tok");
+    }
+
+    // Pub/Sub: 会话近端缓存失效通知 (消息体=nodeId|conversationId)
+    public static final String SESSION_INVALIDATION_CHANNEL = "aidemo:session:invalidate";
+
+    private static String sessionKey(String conversationId, String suffix) {
+        return SESSION_PREFIX + "{" + conversationId + "}" + suffix;
+    }
+
+    // --- Chat Generation Keys ---
+
+    // Stream: 生成中的 SSE 事件缓冲区，用于 Last-Event-ID 续传 (Key=aidemo:chat:generation:{generationId})
+    public static final String CHAT_GENERATION_PREFIX = "aidemo:chat:generation:";
+
+    // String: 续传读者心跳 (Key=aidemo:chat:generation:{generationId}:reader)，存在即表示有客户端在续传
+    public static final String CHAT_GENERATION_READER_SUFFIX = ":reader";
+
+    // --- Verification Keys ---
+
+    // String: 验证结果缓存 (Key=aidemo:verify:cache:{sha256(query + docIds + response)})
+    public static final String VERIFY_CACHE_PREFIX = "aidemo:verify:cache:";
+
+    // String: 异步验证结果 (Key=aidemo:verify:result:{verificationId})，客户端轮询读取
+    public static final String VERIFY_RESULT_PREFIX = "aidemo:verify:result:";
+
+    // --- Batch QA Keys ---
 
-    // Hash: 会话元数据 (Key=aidemo:session:meta:{conversationId}, Field=userId/startTime...)
-    public static final String SESSION_META_PREFIX = "aidemo:session:meta:";
-}
\ No newline at end of file
+    // Hash: 批量问答任务状态 (Key=aidemo:batch:job:{jobId})，字段 status/total/completed/failed/output
+    public static final String BATCH_JOB_PREFIX = "aidemo:batch:job:";
+}
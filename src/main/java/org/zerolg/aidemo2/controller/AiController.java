@@ -1,21 +1,34 @@
 package org.zerolg.aidemo2.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.zerolg.aidemo2.common.BusinessException;
+import org.zerolg.aidemo2.common.ResultCode;
 import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.properties.SessionProperties;
 import org.zerolg.aidemo2.service.AiService;
+import org.zerolg.aidemo2.service.admission.ChatAdmissionService;
 import org.zerolg.aidemo2.service.memory.SessionArchiveService;
+import org.zerolg.aidemo2.service.stream.ResumableStreamService;
+import org.zerolg.aidemo2.support.sse.SseFrameCoalescer;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api")
@@ -24,62 +37,126 @@ public class AiController {
 
     private static final Logger logger = LoggerFactory.getLogger(AiController.class);
     private final AiService aiService;
-    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate redisTemplate; // 响应式访问，Servlet / WebFlux 两种部署模式下都不阻塞请求线程
     private final SessionArchiveService sessionArchiveService; // 注入归档服务
+    private final ChatAdmissionService chatAdmissionService; // 准入控制 (限流 + 公平排队)
+    private final ResumableStreamService resumableStreamService; // 断线续传 (Last-Event-ID)
+    private final SseFrameCoalescer sseFrameCoalescer; // SSE 帧合并
+    private final ObjectMapper objectMapper;
+    private final SessionProperties sessionProperties;
 
     /**
      * 最终优化的混合路由流式接口 (Tool Override + 动态工具注册 + 多轮对话)
      * 增加 userId 参数以支持会话归档归属
+     * 整条链路在准入控制下执行：过载时快速返回 rejected 事件，而不是让所有请求一起超时
+     * 断线重连时浏览器会自动携带 Last-Event-ID，此时从缓冲区续传，不会重新生成
+     * coalesceMs / coalesceChars 可按客户端覆盖 SSE 帧合并窗口（均为 0 时逐 token 推送）
+     * 会话心跳等 Redis 操作走响应式客户端，对话主流程（含阻塞的会话存储、检索）在弹性线程上订阅，
+     * WebFlux 模式下不会阻塞 Netty 事件循环
      */
     @GetMapping(value = "/three-stage/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<String>> chat(
             @RequestParam String chatId,
             @RequestParam String msg,
-            @RequestParam(required = false, defaultValue = "anonymous") String userId) {
+            @RequestParam(required = false, defaultValue = "anonymous") String userId,
+            @RequestParam(required = false) Integer coalesceMs,
+            @RequestParam(required = false) Integer coalesceChars,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
 
-        // 1. 检查并恢复会话 (如果 Redis 没数据但 DB 有，则回捞)
-        checkAndReactivateSession(chatId);
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            return resumableStreamService.resume(lastEventId);
+        }
 
-        // 2. 维护会话心跳与元数据
-        updateHeartbeat(chatId, userId);
+        String generationId = UUID.randomUUID().toString();
+        return chatAdmissionService.admit(userId, admission ->
+                        // 1. 检查并恢复会话 (如果 Redis 没数据但 DB 有，则回捞)
+                        checkAndReactivateSession(chatId)
+                                // 2. 维护会话心跳与元数据
+                                .then(updateHeartbeat(chatId, userId))
+                                .thenMany(Flux.defer(() -> {
+                                    // 3. 执行核心对话逻辑 (合并 token 帧后写入续传缓冲区)
+                                    Flux<ServerSentEvent<String>> query = Flux.defer(() -> aiService.processQuery(chatId, msg, userId))
+                                            .subscribeOn(Schedulers.boundedElastic());
+                                    Flux<ServerSentEvent<String>> events = sseFrameCoalescer.coalesce(query, coalesceMs, coalesceChars);
+                                    // 生成在续传宽限期内会脱离客户端连接继续运行，准入许可跟随生成流释放
+                                    return resumableStreamService.record(generationId, admission.track(events));
+                                })))
+                .onErrorResume(this::isOverloaded, e -> Flux.just(rejectedEvent(e.getMessage())));
+    }
 
-        // 3. 执行核心对话逻辑
-        return aiService.processQuery(chatId, msg);
+    private boolean isOverloaded(Throwable e) {
+        return e instanceof BusinessException be && be.getResultCode() == ResultCode.CHAT_OVERLOADED;
+    }
+
+    /**
+     * 构建拒绝事件，前端收到后直接提示并关闭连接
+     */
+    private ServerSentEvent<String> rejectedEvent(String reason) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(Map.of(
+                    "code", ResultCode.CHAT_OVERLOADED.getCode(),
+                    "reason", reason));
+        } catch (JsonProcessingException e) {
+            data = reason;
+        }
+        logger.warn("对话请求被准入控制拒绝: {}", reason);
+        return ServerSentEvent.builder(data)
+                .event("rejected")
+                .build();
     }
 
     /**
      * 维护会话状态 (Heartbeat + Metadata)
      * 确保归档任务能扫描到活跃会话，并关联正确的用户ID
      */
-    private void updateHeartbeat(String conversationId, String userId) {
+    private Mono<Void> updateHeartbeat(String conversationId, String userId) {
+        if (isEmbeddedStore()) {
+            // 嵌入式存储不使用 Redis 心跳与元数据，心跳扫描归档在该模式下不生效
+            return Mono.empty();
+        }
         long now = System.currentTimeMillis();
 
         // 1. 更新 ZSET 心跳 (用于过期扫描)
-        redisTemplate.opsForZSet().add(RedisKeys.SESSION_HEARTBEAT, conversationId, now);
+        Mono<Boolean> heartbeat = redisTemplate.opsForZSet().add(RedisKeys.SESSION_HEARTBEAT, conversationId, now);
 
         // 2. 确保元数据存在 (用于归档时获取 userId)
-        String metaKey = RedisKeys.SESSION_META_PREFIX + conversationId;
+        String metaKey = RedisKeys.sessionMetaKey(conversationId);
 
-        if (userId != null && !userId.isBlank()) {
-            redisTemplate.opsForHash().put(metaKey, "userId", userId);
-        }
+        Mono<Boolean> owner = (userId != null && !userId.isBlank())
+                ? redisTemplate.opsForHash().put(metaKey, "userId", userId)
+                : Mono.empty();
 
         // 3. 刷新元数据 TTL (30天)，防止 ZSET 漏删导致垃圾数据堆积
-        redisTemplate.expire(metaKey, 30, TimeUnit.DAYS);
+        return Mono.when(heartbeat, owner)
+                .then(redisTemplate.expire(metaKey, Duration.ofDays(30)))
+                .then();
     }
 
     /**
      * 检查会话是否需要从冷存储中激活
+     * 嵌入式存储下跳过：回捞写入的是 Redis 键空间，嵌入式存储不会读取，每轮的 EXISTS + 查库都是浪费
      */
-    private void checkAndReactivateSession(String conversationId) {
-        String listKey = RedisKeys.SESSION_MSG_PREFIX + conversationId;
-        // 如果 Redis 中没有该会话的消息记录
-        if (Boolean.FALSE.equals(redisTemplate.hasKey(listKey))) {
-            // 尝试从 DB 回捞
-            boolean reactivated = sessionArchiveService.reactivateSession(conversationId);
-            if (reactivated) {
-                logger.info("会话 [{}] 已从冷存储回捞至 Redis", conversationId);
-            }
+    private Mono<Void> checkAndReactivateSession(String conversationId) {
+        if (isEmbeddedStore()) {
+            return Mono.empty();
         }
+        String listKey = RedisKeys.sessionMessagesKey(conversationId);
+        return redisTemplate.hasKey(listKey)
+                // 如果 Redis 中没有该会话的消息记录
+                .filter(exists -> !exists)
+                // 尝试从 DB 回捞 (JDBC 阻塞调用，放到弹性线程)
+                .flatMap(missing -> Mono.fromCallable(() -> sessionArchiveService.reactivateSession(conversationId))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .doOnNext(reactivated -> {
+                    if (reactivated) {
+                        logger.info("会话 [{}] 已从冷存储回捞至 Redis", conversationId);
+                    }
+                })
+                .then();
+    }
+
+    private boolean isEmbeddedStore() {
+        return sessionProperties.getStore() == SessionProperties.Store.EMBEDDED;
     }
-}
\ No newline at end of file
+}
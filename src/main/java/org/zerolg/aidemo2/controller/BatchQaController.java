@@ -0,0 +1,96 @@
+package org.zerolg.aidemo2.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.zerolg.aidemo2.model.BatchQuestion;
+import org.zerolg.aidemo2.service.batch.BatchQaService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量问答接口
+ * 提交一批问题后台执行，结果以 JSONL 文件形式下载（每行一个问题的回答、文档 ID、验证结果与各阶段耗时）
+ */
+@RestController
+@RequestMapping("/api/batch/qa")
+public class BatchQaController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchQaController.class);
+
+    private final BatchQaService batchQaService;
+
+    public BatchQaController(BatchQaService batchQaService) {
+        this.batchQaService = batchQaService;
+    }
+
+    /**
+     * 提交批量任务
+     * POST /api/batch/qa
+     * Body: {"questions": [{"question": "...", "sessionId": "可选"}], "parallelism": 8}
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submit(@RequestBody BatchQaRequest request) {
+        if (request.questions() == null || request.questions().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", "问题列表不能为空"));
+        }
+        try {
+            String jobId = batchQaService.submit(request.questions(), request.parallelism());
+            return ResponseEntity.ok(Map.of(
+                    "status", "success",
+                    "jobId", jobId,
+                    "total", request.questions().size()
+            ));
+        } catch (IOException e) {
+            logger.error("提交批量问答任务失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("status", "error", "message", "任务文件写入失败"));
+        }
+    }
+
+    /**
+     * 查询任务进度
+     * GET /api/batch/qa/{jobId}
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<Object, Object>> getStatus(@PathVariable String jobId) {
+        return batchQaService.getStatus(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 下载结果文件（任务运行中也可下载已完成部分）
+     * GET /api/batch/qa/{jobId}/results
+     */
+    @GetMapping("/{jobId}/results")
+    public ResponseEntity<Resource> download(@PathVariable String jobId) {
+        return batchQaService.getOutput(jobId)
+                .<ResponseEntity<Resource>>map(path -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + jobId + ".jsonl\"")
+                        .body(new FileSystemResource(path)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 取消任务
+     * POST /api/batch/qa/{jobId}/cancel
+     */
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable String jobId) {
+        if (!batchQaService.cancel(jobId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("status", "success", "message", "任务将在当前问题完成后停止"));
+    }
+
+    public record BatchQaRequest(List<BatchQuestion> questions, Integer parallelism) {
+    }
+}
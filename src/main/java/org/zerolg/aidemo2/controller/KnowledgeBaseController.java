@@ -6,13 +6,12 @@ import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.zerolg.aidemo2.service.KnowledgeIngestionService;
 import org.zerolg.aidemo2.service.KnowledgeBaseService;
+import reactor.core.publisher.Flux;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -71,27 +70,7 @@ public class KnowledgeBaseController {
 
     // --- 3. 从 IngestionController 迁移过来的方法 ---
 
-    /**
-     * 文件上传接口
-     *
-     * @param file 上传的文件
-     * @return 包含任务ID的响应
-     */
-    @PostMapping("/upload")
-    public ResponseEntity<Map<String, Object>> upload(@RequestParam("file") MultipartFile file) {
-        try {
-            String ingestionId = ingestionService.submitTask(file);
-            Map<String, Object> response = Map.of(
-                    "status", "success",
-                    "ingestionId", ingestionId,
-                    "message", "文件已提交后台处理"
-            );
-            return ResponseEntity.ok(response);
-        } catch (IOException e) {
-            logger.error("文件上传处理失败: {}", e.getMessage(), e);
-            return ResponseEntity.internalServerError().body(Map.of("status", "error", "message", "文件保存失败"));
-        }
-    }
+    // 文件上传接口与部署模式相关 (MultipartFile / FilePart)，见 KnowledgeUploadController / ReactiveKnowledgeUploadController
 
     /**
      * 查询任务状态接口
@@ -111,7 +90,7 @@ public class KnowledgeBaseController {
      * SSE 实时进度流接口
      */
     @GetMapping(value = "/status/stream/{ingestionId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamStatus(@PathVariable String ingestionId) {
+    public Flux<ServerSentEvent<Map<?, ?>>> streamStatus(@PathVariable String ingestionId) {
         return ingestionService.subscribeStatus(ingestionId);
     }
 }
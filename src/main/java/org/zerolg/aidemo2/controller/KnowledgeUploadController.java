@@ -0,0 +1,55 @@
+package org.zerolg.aidemo2.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.zerolg.aidemo2.service.KnowledgeIngestionService;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 知识库文件上传接口 (Servlet 模式)
+ * WebFlux 模式下由 ReactiveKnowledgeUploadController 提供同路径接口
+ */
+@RestController
+@RequestMapping("/api/ai/knowledge")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class KnowledgeUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeUploadController.class);
+
+    private final KnowledgeIngestionService ingestionService;
+
+    public KnowledgeUploadController(KnowledgeIngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    /**
+     * 文件上传接口
+     *
+     * @param file 上传的文件
+     * @return 包含任务ID的响应
+     */
+    @PostMapping("/upload")
+    public ResponseEntity<Map<String, Object>> upload(@RequestParam("file") MultipartFile file) {
+        try {
+            String ingestionId = ingestionService.submitTask(file);
+            Map<String, Object> response = Map.of(
+                    "status", "success",
+                    "ingestionId", ingestionId,
+                    "message", "文件已提交后台处理"
+            );
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            logger.error("文件上传处理失败: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("status", "error", "message", "文件保存失败"));
+        }
+    }
+}
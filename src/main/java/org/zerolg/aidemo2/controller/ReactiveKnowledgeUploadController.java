@@ -0,0 +1,54 @@
+package org.zerolg.aidemo2.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.RestController;
+import org.zerolg.aidemo2.service.KnowledgeIngestionService;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * 知识库文件上传接口 (WebFlux 模式)
+ * 文件内容以非阻塞方式写盘，与 Servlet 模式的 KnowledgeUploadController 路径和响应格式一致
+ */
+@RestController
+@RequestMapping("/api/ai/knowledge")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveKnowledgeUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveKnowledgeUploadController.class);
+
+    private final KnowledgeIngestionService ingestionService;
+
+    public ReactiveKnowledgeUploadController(KnowledgeIngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    /**
+     * 文件上传接口
+     *
+     * @param file 上传的文件
+     * @return 包含任务ID的响应
+     */
+    @PostMapping("/upload")
+    public Mono<ResponseEntity<Map<String, Object>>> upload(@RequestPart("file") FilePart file) {
+        return ingestionService.submitTask(file)
+                .map(ingestionId -> ResponseEntity.ok(Map.<String, Object>of(
+                        "status", "success",
+                        "ingestionId", ingestionId,
+                        "message", "文件已提交后台处理"
+                )))
+                .onErrorResume(e -> {
+                    logger.error("文件上传处理失败: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.internalServerError()
+                            .body(Map.of("status", "error", "message", "文件保存失败")));
+                });
+    }
+}
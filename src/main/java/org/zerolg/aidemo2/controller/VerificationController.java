@@ -0,0 +1,34 @@
+package org.zerolg.aidemo2.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.zerolg.aidemo2.model.VerificationTicket;
+import org.zerolg.aidemo2.service.VerifierService;
+
+/**
+ * 异步验证结果查询接口
+ * 对话流以 verification-pending 事件结束后，客户端凭 verificationId 轮询
+ */
+@RestController
+@RequestMapping("/api/verification")
+@RequiredArgsConstructor
+public class VerificationController {
+
+    private final VerifierService verifierService;
+
+    /**
+     * 查询验证结果
+     * GET /api/verification/{verificationId}
+     * 200=已完成, 202=验证中, 404=不存在或已过期
+     */
+    @GetMapping("/{verificationId}")
+    public ResponseEntity<VerificationTicket> getResult(@PathVariable String verificationId) {
+        return verifierService.getResult(verificationId)
+                .map(ticket -> VerificationTicket.PENDING.equals(ticket.status())
+                        ? ResponseEntity.status(HttpStatus.ACCEPTED).body(ticket)
+                        : ResponseEntity.ok(ticket))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
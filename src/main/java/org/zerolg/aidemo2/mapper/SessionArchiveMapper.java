@@ -1,9 +1,31 @@
 package org.zerolg.aidemo2.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.zerolg.aidemo2.entity.SessionArchive;
 
+import java.util.List;
+
 @Mapper
 public interface SessionArchiveMapper extends BaseMapper<SessionArchive> {
-}
\ No newline at end of file
+
+    /**
+     * 批量插入会话事件（一条多行 INSERT）
+     * 以事件 ID 作为主键，已存在的行跳过，重复投递 / 重放的事件不会重复入库
+     *
+     * @param archives 待插入的归档记录，id 为事件 ID
+     * @return 实际插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO session_archives (id, user_id, conversation_id, type, payload, timestamp, created_at) VALUES " +
+            "<foreach item='archive' collection='archives' separator=','>" +
+            "(#{archive.id}, #{archive.userId}, #{archive.conversationId}, #{archive.type}, " +
+            "#{archive.payload, typeHandler=org.zerolg.aidemo2.handler.MapJsonTypeHandler}, " +
+            "#{archive.timestamp}, #{archive.createdAt})" +
+            "</foreach>" +
+            " ON CONFLICT (id) DO NOTHING" +
+            "</script>")
+    int insertBatchIgnoreExisting(@Param("archives") List<SessionArchive> archives);
+}
@@ -0,0 +1,21 @@
+package org.zerolg.aidemo2.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量问答的单条结果（结果文件中的一行 JSON）
+ */
+public record BatchQaResult(
+        int index,
+        String question,
+        String sessionId,
+        String route,                   // 意图路由 (chitchat / tool / rag)
+        String answer,
+        List<String> documentIds,       // 重排序后实际进入 Prompt 的文档 ID
+        VerificationResult verification, // 未命中验证抽样时为 null
+        Map<String, Long> timings,      // 各阶段耗时 (毫秒)
+        int attempts,
+        String error                    // 成功时为 null
+) {
+}
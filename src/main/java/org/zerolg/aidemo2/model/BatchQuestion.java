@@ -0,0 +1,11 @@
+package org.zerolg.aidemo2.model;
+
+/**
+ * 批量问答的单个问题
+ */
+public record BatchQuestion(
+        int index,          // 在任务中的序号（提交时按顺序分配）
+        String question,
+        String sessionId    // (可选) 会话 ID，多个问题使用同一会话时按序号顺序组成多轮对话
+) {
+}
@@ -0,0 +1,104 @@
+package org.zerolg.aidemo2.model;
+
+import org.springframework.ai.document.Document;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次查询的链路追踪
+ *
+ * AiService.processQuery 在各阶段回调，记录路由、检索到的文档 ID、各阶段完成时间与验证结果，
+ * 供批量问答等需要结构化结果（而不是 SSE 事件）的调用方使用。
+ * 各阶段耗时均从查询开始计时，-1 表示该阶段未执行。
+ */
+public class QueryTrace {
+
+    private final boolean synchronousVerification;
+    private final long startNanos = System.nanoTime();
+
+    private volatile String route;
+    private volatile List<String> documentIds = List.of();
+    private volatile long retrievedAt = -1;
+    private volatile long firstTokenAt = -1;
+    private volatile long generatedAt = -1;
+    private volatile long verifiedAt = -1;
+    private volatile VerificationResult verification;
+
+    /**
+     * @param synchronousVerification 是否强制同步验证（忽略 ai.verification.async），验证结果写入本追踪
+     */
+    public QueryTrace(boolean synchronousVerification) {
+        this.synchronousVerification = synchronousVerification;
+    }
+
+    /**
+     * 不需要追踪结果的调用方（SSE 接口）
+     */
+    public static QueryTrace none() {
+        return new QueryTrace(false);
+    }
+
+    public boolean isSynchronousVerification() {
+        return synchronousVerification;
+    }
+
+    public void onRouted(String route) {
+        this.route = route;
+    }
+
+    public void onRetrieved(List<Document> documents) {
+        this.documentIds = documents.stream().map(Document::getId).toList();
+        this.retrievedAt = elapsed();
+    }
+
+    public void onToken() {
+        if (firstTokenAt < 0) {
+            firstTokenAt = elapsed();
+        }
+    }
+
+    public void onGenerated() {
+        this.generatedAt = elapsed();
+    }
+
+    public void onVerified(VerificationResult result) {
+        this.verification = result;
+        this.verifiedAt = elapsed();
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public List<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    public VerificationResult getVerification() {
+        return verification;
+    }
+
+    /**
+     * 各阶段耗时（毫秒）：retrieval / ttft / generation / verification / total
+     */
+    public Map<String, Long> timingsMillis() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        timings.put("retrieval", millis(retrievedAt));
+        timings.put("ttft", millis(firstTokenAt));
+        timings.put("generation", generatedAt < 0 || retrievedAt < 0 ? -1 : millis(generatedAt - retrievedAt));
+        timings.put("verification", verifiedAt < 0 || generatedAt < 0 ? -1 : millis(verifiedAt - generatedAt));
+        timings.put("total", millis(elapsed()));
+        return timings;
+    }
+
+    private long elapsed() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private static long millis(long nanos) {
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -12,7 +12,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * 3. 与消息历史分离存储，便于快速查询和更新
  * 
  * 存储结构（Redis Hash）：
- * Key: session:meta:{conversationId}
+ * Key: aidemo:session:{conversationId}:meta
  * Fields:
  *   - userId: "user-123"
  *   - createdAt: 1701518400000
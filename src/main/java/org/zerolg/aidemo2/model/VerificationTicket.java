@@ -0,0 +1,23 @@
+package org.zerolg.aidemo2.model;
+
+/**
+ * 异步验证凭证
+ * 对话流结束时下发 verificationId，客户端凭此轮询验证结果
+ */
+public record VerificationTicket(
+        String verificationId,   // 验证任务 ID
+        String status,           // pending=验证中, done=已完成
+        VerificationResult result // 验证结果 (pending 时为 null)
+) {
+
+    public static final String PENDING = "pending";
+    public static final String DONE = "done";
+
+    public static VerificationTicket pending(String verificationId) {
+        return new VerificationTicket(verificationId, PENDING, null);
+    }
+
+    public static VerificationTicket done(String verificationId, VerificationResult result) {
+        return new VerificationTicket(verificationId, DONE, result);
+    }
+}
@@ -6,18 +6,18 @@ import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.constant.RedisKeys;
 
 /**
  * Redis DLQ (死信队列) 监控指标
  * 暴露 DLQ 的堆积数量到 Actuator，以便在 Grafana 中展示趋势
+ *
+ * 同一指标按 queue 标签区分：会话归档死信列表 (LLEN)，以及 PendingEntryReclaimer 写入的各 {stream}:dlq 死信流 (XLEN)
  */
 @Component
 @RequiredArgsConstructor
 public class RedisDlqMetrics implements MeterBinder {
 
-    // DLQ Key (需与 DlqMonitorTask 中保持一致，建议提取到 RedisKeys 常量类)
-    // 这里暂时硬编码，实际建议使用 RedisKeys.SESSION_DLQ
-    private static final String DLQ_KEY = "aidemo:session:dlq";
     private final StringRedisTemplate redisTemplate;
 
     @Override
@@ -25,8 +25,16 @@ public class RedisDlqMetrics implements MeterBinder {
         // 定义一个 Gauge，动态获取 List 长度
         Gauge.builder("aidemo.redis.dlq.size", this, RedisDlqMetrics::getDlqSize)
                 .description("Redis 死信队列(DLQ) 当前积压数量")
-                .tag("queue", DLQ_KEY)
+                .tag("queue", RedisKeys.SESSION_DLQ)
                 .register(registry);
+
+        for (String stream : RedisKeys.CONSUMER_GROUP_STREAMS) {
+            String dlqKey = RedisKeys.streamDeadLetterKey(stream);
+            Gauge.builder("aidemo.redis.dlq.size", this, metrics -> metrics.getStreamDlqSize(dlqKey))
+                    .description("Redis 死信队列(DLQ) 当前积压数量")
+                    .tag("queue", dlqKey)
+                    .register(registry);
+        }
     }
 
     /**
@@ -35,7 +43,20 @@ public class RedisDlqMetrics implements MeterBinder {
      */
     private long getDlqSize() {
         try {
-            Long size = redisTemplate.opsForList().size(DLQ_KEY);
+            Long size = redisTemplate.opsForList().size(RedisKeys.SESSION_DLQ);
+            return size != null ? size : 0L;
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 获取死信流长度
+     * XLEN 同样是 O(1) 的；死信流尚未创建时返回 0
+     */
+    private long getStreamDlqSize(String dlqKey) {
+        try {
+            Long size = redisTemplate.opsForStream().size(dlqKey);
             return size != null ? size : 0L;
         } catch (Exception e) {
             return 0L;
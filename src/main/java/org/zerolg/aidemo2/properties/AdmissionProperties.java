@@ -0,0 +1,179 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 对话准入控制配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.admission" 对应配置文件中的 ai.admission.* 配置项
+ * 2. 控制同时打到 LLM 的对话请求数量（全局并发上限 + 按用户公平排队）
+ * 3. 并发上限根据模型延迟和限流（429）自适应调整（AIMD）
+ *
+ * 配置项说明：
+ * - enabled: 是否启用准入控制
+ * - initialLimit / minLimit / maxLimit: 自适应并发上限的初始值与上下界
+ * - maxQueueSize: 全局最大排队数，超过后直接拒绝
+ * - perUserMaxQueued: 单个用户最大排队数，防止单用户占满队列
+ * - queueTimeout: 排队最长等待时间，超时后快速拒绝
+ * - latencyTarget: 首包延迟目标，超过视为过载信号
+ * - backoffRatio: 过载时并发上限的乘性收缩比例
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.admission")
+public class AdmissionProperties {
+
+    /**
+     * 是否启用准入控制
+     * 默认值：true
+     */
+    private boolean enabled = true;
+
+    /**
+     * 初始并发上限
+     * 默认值：16
+     */
+    private int initialLimit = 16;
+
+    /**
+     * 最小并发上限
+     * 默认值：2
+     *
+     * 作用：即使模型持续限流，也保留少量并发用于探测恢复
+     */
+    private int minLimit = 2;
+
+    /**
+     * 最大并发上限
+     * 默认值：64
+     */
+    private int maxLimit = 64;
+
+    /**
+     * 全局最大排队数
+     * 默认值：200
+     */
+    private int maxQueueSize = 200;
+
+    /**
+     * 单用户最大排队数
+     * 默认值：3
+     */
+    private int perUserMaxQueued = 3;
+
+    /**
+     * 排队超时时间
+     * 默认值：10 秒
+     *
+     * 作用：超过此时间仍未获得执行许可的请求，直接返回拒绝事件，而不是无限等待
+     */
+    private Duration queueTimeout = Duration.ofSeconds(10);
+
+    /**
+     * 首包延迟目标
+     * 默认值：8 秒
+     *
+     * 作用：获得许可到首个 SSE 事件的耗时超过此值时，认为模型已过载，收缩并发上限
+     */
+    private Duration latencyTarget = Duration.ofSeconds(8);
+
+    /**
+     * 乘性收缩比例
+     * 默认值：0.7
+     */
+    private double backoffRatio = 0.7;
+
+    // ==================== Getters and Setters ====================
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getPerUserMaxQueued() {
+        return perUserMaxQueued;
+    }
+
+    public void setPerUserMaxQueued(int perUserMaxQueued) {
+        this.perUserMaxQueued = perUserMaxQueued;
+    }
+
+    public Duration getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(Duration queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    public Duration getLatencyTarget() {
+        return latencyTarget;
+    }
+
+    public void setLatencyTarget(Duration latencyTarget) {
+        this.latencyTarget = latencyTarget;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionProperties{" +
+                "enabled=" + enabled +
+                ", initialLimit=" + initialLimit +
+                ", minLimit=" + minLimit +
+                ", maxLimit=" + maxLimit +
+                ", maxQueueSize=" + maxQueueSize +
+                ", perUserMaxQueued=" + perUserMaxQueued +
+                ", queueTimeout=" + queueTimeout +
+                ", latencyTarget=" + latencyTarget +
+                ", backoffRatio=" + backoffRatio +
+                '}';
+    }
+}
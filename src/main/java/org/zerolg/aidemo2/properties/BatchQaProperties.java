@@ -0,0 +1,161 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 批量问答配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.batch" 对应配置文件中的 ai.batch.* 配置项
+ * 2. 批量任务直接调用 AiService 的完整链路（路由、检索、生成、验证），不经过 SSE 与准入控制
+ * 3. 并发度由自适应限流 (AIMD) 控制：上限为 parallelism，遇到模型限流时收缩并退避重试
+ *
+ * 配置项说明：
+ * - parallelism: 单个任务的默认最大并发
+ * - maxParallelism: 单个任务允许的最大并发（请求中指定的 parallelism 超过时截断）
+ * - outputDir: 输入 / 结果文件目录（结果文件同时作为断点续跑的检查点）
+ * - questionTimeout: 单个问题的超时时间
+ * - maxRetries: 遇到限流时的最大重试次数
+ * - retryBackoff: 首次重试等待时间，之后指数增长
+ * - latencyTarget: 首 token 延迟目标，超过时收缩并发
+ * - userId: 批量任务使用的用户 ID（验证抽样按此用户计算）
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.batch")
+public class BatchQaProperties {
+
+    /**
+     * 单个任务默认最大并发
+     * 默认值：8
+     */
+    private int parallelism = 8;
+
+    /**
+     * 单个任务允许的最大并发
+     * 默认值：32
+     *
+     * 作用：每个并发对应一个工作线程，防止客户端提交过大的 parallelism 耗尽线程与模型配额
+     */
+    private int maxParallelism = 32;
+
+    /**
+     * 输入 / 结果文件目录
+     * 默认值：./batch-results
+     */
+    private String outputDir = "./batch-results";
+
+    /**
+     * 单个问题超时时间
+     * 默认值：3 分钟
+     */
+    private Duration questionTimeout = Duration.ofMinutes(3);
+
+    /**
+     * 限流最大重试次数
+     * 默认值：3
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 首次重试等待时间
+     * 默认值：2 秒
+     */
+    private Duration retryBackoff = Duration.ofSeconds(2);
+
+    /**
+     * 首 token 延迟目标
+     * 默认值：10 秒
+     */
+    private Duration latencyTarget = Duration.ofSeconds(10);
+
+    /**
+     * 批量任务用户 ID
+     * 默认值：batch
+     */
+    private String userId = "batch";
+
+    // ==================== Getters and Setters ====================
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    public void setMaxParallelism(int maxParallelism) {
+        this.maxParallelism = maxParallelism;
+    }
+
+    public String getOutputDir() {
+        return outputDir;
+    }
+
+    public void setOutputDir(String outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    public Duration getQuestionTimeout() {
+        return questionTimeout;
+    }
+
+    public void setQuestionTimeout(Duration questionTimeout) {
+        this.questionTimeout = questionTimeout;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public Duration getLatencyTarget() {
+        return latencyTarget;
+    }
+
+    public void setLatencyTarget(Duration latencyTarget) {
+        this.latencyTarget = latencyTarget;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchQaProperties{" +
+                "parallelism=" + parallelism +
+                ", maxParallelism=" + maxParallelism +
+                ", outputDir='" + outputDir + '\'' +
+                ", questionTimeout=" + questionTimeout +
+                ", maxRetries=" + maxRetries +
+                ", retryBackoff=" + retryBackoff +
+                ", latencyTarget=" + latencyTarget +
+                ", userId='" + userId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,137 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 嵌入式会话存储配置属性
+ *
+ * 原理说明：
+ * 1. 仅在 session.memory.store=embedded 时生效，对应 EmbeddedSessionMemoryServiceImpl
+ * 2. 会话按 conversationId 哈希到若干分片，每个分片是一组内存映射的追加日志段文件
+ * 3. 会话 TTL、最大消息数等通用配置仍读取 session.memory.*
+ *
+ * 配置项说明：
+ * - dataDir: 日志文件目录
+ * - shards: 分片数量（每个分片一把读写锁，决定写入并发度）
+ * - segmentSize: 单个日志段文件大小（字节），写满后滚动到下一个段
+ * - syncWrites: 每次追加后是否 force 刷盘
+ * - compactionInterval: 后台压缩检查间隔
+ * - compactionGarbageRatio: 已失效数据占比超过该值时压缩分片
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "session.memory.embedded")
+public class EmbeddedStoreProperties {
+
+    /**
+     * 日志文件目录
+     * 默认值：./data/session-store
+     */
+    private String dataDir = "./data/session-store";
+
+    /**
+     * 分片数量
+     * 默认值：8
+     *
+     * 作用：不同分片的读写互不阻塞；修改后已有数据按新的分片数无法定位，需清空目录
+     */
+    private int shards = 8;
+
+    /**
+     * 日志段大小（字节）
+     * 默认值：64MB
+     *
+     * 作用：段文件创建时即按该大小映射，单条记录不能超过该值
+     */
+    private int segmentSize = 64 * 1024 * 1024;
+
+    /**
+     * 追加后同步刷盘
+     * 默认值：false
+     *
+     * 作用：关闭时数据先写入页缓存，进程崩溃不丢数据，但操作系统崩溃或断电可能丢失最近的写入；
+     * 开启后每次写入都 msync，写延迟明显上升
+     */
+    private boolean syncWrites = false;
+
+    /**
+     * 压缩检查间隔
+     * 默认值：10 分钟
+     */
+    private Duration compactionInterval = Duration.ofMinutes(10);
+
+    /**
+     * 触发压缩的失效数据占比
+     * 默认值：0.5
+     *
+     * 作用：被裁剪的旧消息、已删除或过期的会话在日志中仍占空间，占比超过该值时重写分片；
+     * 存在过期会话的分片无论占比都会压缩
+     */
+    private double compactionGarbageRatio = 0.5;
+
+    // ==================== Getters and Setters ====================
+
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    public void setDataDir(String dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    public Duration getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(Duration compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public double getCompactionGarbageRatio() {
+        return compactionGarbageRatio;
+    }
+
+    public void setCompactionGarbageRatio(double compactionGarbageRatio) {
+        this.compactionGarbageRatio = compactionGarbageRatio;
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddedStoreProperties{" +
+                "dataDir='" + dataDir + '\'' +
+                ", shards=" + shards +
+                ", segmentSize=" + segmentSize +
+                ", syncWrites=" + syncWrites +
+                ", compactionInterval=" + compactionInterval +
+                ", compactionGarbageRatio=" + compactionGarbageRatio +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 意图路由配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.intent" 对应配置文件中的 ai.intent.* 配置项
+ * 2. 每轮对话先经过进程内意图分类，只有知识类问题才走完整的 RAG 链路（双路召回 + LLM 重排序）
+ * 3. 分类顺序：关键词规则 -> 向量最近质心 -> 默认 RAG（宁可多检索，不可漏检索）
+ *
+ * 配置项说明：
+ * - enabled: 是否启用意图路由，关闭后所有请求走 RAG
+ * - embeddingEnabled: 规则未命中时是否使用向量最近质心分类
+ * - centroidMinSimilarity: 质心分类的最低相似度，低于此值走 RAG
+ * - shadowRate: 非 RAG 路由的影子检索比例，用于统计误路由
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.intent")
+public class IntentProperties {
+
+    /**
+     * 是否启用意图路由
+     * 默认值：true
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否启用向量最近质心分类
+     * 默认值：true
+     */
+    private boolean embeddingEnabled = true;
+
+    /**
+     * 质心分类最低相似度（余弦）
+     * 默认值：0.8
+     */
+    private double centroidMinSimilarity = 0.8;
+
+    /**
+     * 影子检索比例（0.0 - 1.0）
+     * 默认值：0.05
+     *
+     * 作用：对跳过检索的请求按比例在后台执行一次检索，重排序后仍有相关文档则记为误路由
+     */
+    private double shadowRate = 0.05;
+
+    // ==================== Getters and Setters ====================
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEmbeddingEnabled() {
+        return embeddingEnabled;
+    }
+
+    public void setEmbeddingEnabled(boolean embeddingEnabled) {
+        this.embeddingEnabled = embeddingEnabled;
+    }
+
+    public double getCentroidMinSimilarity() {
+        return centroidMinSimilarity;
+    }
+
+    public void setCentroidMinSimilarity(double centroidMinSimilarity) {
+        this.centroidMinSimilarity = centroidMinSimilarity;
+    }
+
+    public double getShadowRate() {
+        return shadowRate;
+    }
+
+    public void setShadowRate(double shadowRate) {
+        this.shadowRate = shadowRate;
+    }
+
+    @Override
+    public String toString() {
+        return "IntentProperties{" +
+                "enabled=" + enabled +
+                ", embeddingEnabled=" + embeddingEnabled +
+                ", centroidMinSimilarity=" + centroidMinSimilarity +
+                ", shadowRate=" + shadowRate +
+                '}';
+    }
+}
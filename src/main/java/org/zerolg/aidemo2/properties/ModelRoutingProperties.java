@@ -0,0 +1,187 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型路由配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.routing" 对应配置文件中的 ai.routing.* 配置项
+ * 2. 按用途 (generation / rerank / verification) 配置有序的模型列表：第一个为首选，其余为备用
+ * 3. 每个模型一个熔断器（跨用途共享），首选模型熔断或调用失败时按顺序降级到备用模型
+ *
+ * 配置项说明：
+ * - enabled: 是否启用路由，关闭后所有调用使用默认模型 (spring.ai.dashscope.chat.options.model)
+ * - routes: 用途 -> 模型列表
+ * - slowCallThresholds: 用途 -> 慢调用阈值（流式调用按首 token 延迟计算），慢调用计入熔断失败率
+ * - timeouts: 用途 -> 调用超时（流式调用为首 token 超时），超时计为失败并降级到下一个模型
+ * - breakerWindowSize / breakerMinimumCalls / breakerFailureRateThreshold: 熔断判定窗口
+ * - breakerOpenDuration: 熔断持续时间，之后进入半开状态试探
+ * - breakerHalfOpenCalls: 半开状态下的试探调用次数
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.routing")
+public class ModelRoutingProperties {
+
+    /**
+     * 是否启用模型路由
+     * 默认值：true
+     */
+    private boolean enabled = true;
+
+    /**
+     * 用途 -> 有序模型列表
+     * 默认值：生成使用 qwen-max，重排序 / 验证使用 qwen-turbo，均以 qwen-plus 作为备用
+     */
+    private Map<String, List<String>> routes = new HashMap<>(Map.of(
+            "generation", List.of("qwen-max", "qwen-plus"),
+            "rerank", List.of("qwen-turbo", "qwen-plus"),
+            "verification", List.of("qwen-turbo", "qwen-plus")));
+
+    /**
+     * 用途 -> 慢调用阈值
+     * 默认值：生成（首 token）5 秒，重排序 3 秒，验证 5 秒
+     */
+    private Map<String, Duration> slowCallThresholds = new HashMap<>(Map.of(
+            "generation", Duration.ofSeconds(5),
+            "rerank", Duration.ofSeconds(3),
+            "verification", Duration.ofSeconds(5)));
+
+    /**
+     * 用途 -> 调用超时（流式调用为首 token 超时）
+     * 默认值：生成 30 秒，重排序 10 秒，验证 20 秒
+     *
+     * 作用：挂起的模型调用不会返回失败，没有超时就永远不会计入熔断，也不会降级
+     */
+    private Map<String, Duration> timeouts = new HashMap<>(Map.of(
+            "generation", Duration.ofSeconds(30),
+            "rerank", Duration.ofSeconds(10),
+            "verification", Duration.ofSeconds(20)));
+
+    /**
+     * 熔断统计窗口（最近调用次数）
+     * 默认值：20
+     */
+    private int breakerWindowSize = 20;
+
+    /**
+     * 触发熔断判定的最少调用次数
+     * 默认值：10
+     */
+    private int breakerMinimumCalls = 10;
+
+    /**
+     * 熔断失败率阈值（0.0 - 1.0，含慢调用）
+     * 默认值：0.5
+     */
+    private double breakerFailureRateThreshold = 0.5;
+
+    /**
+     * 熔断持续时间
+     * 默认值：30 秒
+     */
+    private Duration breakerOpenDuration = Duration.ofSeconds(30);
+
+    /**
+     * 半开状态试探调用次数
+     * 默认值：3
+     */
+    private int breakerHalfOpenCalls = 3;
+
+    // ==================== Getters and Setters ====================
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, List<String>> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, List<String>> routes) {
+        this.routes = routes;
+    }
+
+    public Map<String, Duration> getSlowCallThresholds() {
+        return slowCallThresholds;
+    }
+
+    public void setSlowCallThresholds(Map<String, Duration> slowCallThresholds) {
+        this.slowCallThresholds = slowCallThresholds;
+    }
+
+    public Map<String, Duration> getTimeouts() {
+        return timeouts;
+    }
+
+    public void setTimeouts(Map<String, Duration> timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    public int getBreakerWindowSize() {
+        return breakerWindowSize;
+    }
+
+    public void setBreakerWindowSize(int breakerWindowSize) {
+        this.breakerWindowSize = breakerWindowSize;
+    }
+
+    public int getBreakerMinimumCalls() {
+        return breakerMinimumCalls;
+    }
+
+    public void setBreakerMinimumCalls(int breakerMinimumCalls) {
+        this.breakerMinimumCalls = breakerMinimumCalls;
+    }
+
+    public double getBreakerFailureRateThreshold() {
+        return breakerFailureRateThreshold;
+    }
+
+    public void setBreakerFailureRateThreshold(double breakerFailureRateThreshold) {
+        this.breakerFailureRateThreshold = breakerFailureRateThreshold;
+    }
+
+    public Duration getBreakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+
+    public void setBreakerOpenDuration(Duration breakerOpenDuration) {
+        this.breakerOpenDuration = breakerOpenDuration;
+    }
+
+    public int getBreakerHalfOpenCalls() {
+        return breakerHalfOpenCalls;
+    }
+
+    public void setBreakerHalfOpenCalls(int breakerHalfOpenCalls) {
+        this.breakerHalfOpenCalls = breakerHalfOpenCalls;
+    }
+
+    @Override
+    public String toString() {
+        return "ModelRoutingProperties{" +
+                "enabled=" + enabled +
+                ", routes=" + routes +
+                ", slowCallThresholds=" + slowCallThresholds +
+                ", timeouts=" + timeouts +
+                ", breakerWindowSize=" + breakerWindowSize +
+                ", breakerMinimumCalls=" + breakerMinimumCalls +
+                ", breakerFailureRateThreshold=" + breakerFailureRateThreshold +
+                ", breakerOpenDuration=" + breakerOpenDuration +
+                ", breakerHalfOpenCalls=" + breakerHalfOpenCalls +
+                '}';
+    }
+}
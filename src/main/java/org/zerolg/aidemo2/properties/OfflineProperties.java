@@ -0,0 +1,143 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 离线替身模型配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.offline" 对应配置文件中的 ai.offline.* 配置项，仅在 offline profile 下生效
+ * 2. 离线 ChatModel / EmbeddingModel 的输出是确定性的（同样的输入得到同样的输出），
+ *    延迟按配置的分布模拟，用于可复现的压测和性能回归
+ *
+ * 配置项说明：
+ * - ttft: 首 token 延迟 (Time To First Token)
+ * - tokensPerSecond: 流式输出速度
+ * - jitter: 延迟抖动比例，实际延迟在 [1 - jitter, 1 + jitter] 倍之间均匀分布
+ * - errorRate: 模拟模型错误（限流 429）的概率
+ * - replyTokens: 普通回复的长度
+ * - embeddingLatency: 单次向量化延迟
+ * - seed: 随机种子，相同种子 + 相同输入得到相同的延迟序列
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.offline")
+public class OfflineProperties {
+
+    /**
+     * 首 token 延迟
+     * 默认值：300 毫秒
+     */
+    private Duration ttft = Duration.ofMillis(300);
+
+    /**
+     * 流式输出速度（token/秒）
+     * 默认值：40
+     */
+    private double tokensPerSecond = 40;
+
+    /**
+     * 延迟抖动比例（0.0 - 1.0）
+     * 默认值：0.2
+     */
+    private double jitter = 0.2;
+
+    /**
+     * 模拟错误率（0.0 - 1.0）
+     * 默认值：0
+     */
+    private double errorRate = 0.0;
+
+    /**
+     * 普通回复长度（token）
+     * 默认值：120
+     */
+    private int replyTokens = 120;
+
+    /**
+     * 单次向量化延迟
+     * 默认值：20 毫秒
+     */
+    private Duration embeddingLatency = Duration.ofMillis(20);
+
+    /**
+     * 随机种子
+     * 默认值：42
+     */
+    private long seed = 42L;
+
+    // ==================== Getters and Setters ====================
+
+    public Duration getTtft() {
+        return ttft;
+    }
+
+    public void setTtft(Duration ttft) {
+        this.ttft = ttft;
+    }
+
+    public double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    public void setTokensPerSecond(double tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(double jitter) {
+        this.jitter = jitter;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public int getReplyTokens() {
+        return replyTokens;
+    }
+
+    public void setReplyTokens(int replyTokens) {
+        this.replyTokens = replyTokens;
+    }
+
+    public Duration getEmbeddingLatency() {
+        return embeddingLatency;
+    }
+
+    public void setEmbeddingLatency(Duration embeddingLatency) {
+        this.embeddingLatency = embeddingLatency;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public String toString() {
+        return "OfflineProperties{" +
+                "ttft=" + ttft +
+                ", tokensPerSecond=" + tokensPerSecond +
+                ", jitter=" + jitter +
+                ", errorRate=" + errorRate +
+                ", replyTokens=" + replyTokens +
+                ", embeddingLatency=" + embeddingLatency +
+                ", seed=" + seed +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话事件发布配置属性
+ *
+ * 原理说明：
+ * 1. 写消息时只把事件放入有界内存队列，由后台线程按批次管道写入 Redis Stream 与心跳 ZSet
+ * 2. Redis 不可用时，批次写入本地磁盘日志，恢复后按顺序重放
+ * 3. 队列写满时，生产者最多阻塞 offerTimeout，仍写不进则直接写入磁盘日志
+ * 4. 归档消费者按批 XREADGROUP COUNT archiveBatchSize 读取，每批一条多行 INSERT 写入 session_archives，提交后一次 XACK
+ *
+ * 配置项说明：
+ * - queueCapacity: 内存队列容量
+ * - batchSize: 每次管道写入的最大事件数
+ * - offerTimeout: 队列满时生产者的最长等待时间
+ * - streamMaxLength: XADD 时按 MAXLEN ~ 近似裁剪的上限
+ * - journalDir: 磁盘日志目录，留空则不落盘（Redis 不可用时后台线程重试，队列满后丢弃并计数）
+ * - retryBackoff: 发布失败后的重试 / 重放间隔
+ * - replayEveryBatches: Redis 正常时每发布 N 个实时批次穿插重放一批磁盘日志
+ * - archiveBatchSize: 归档消费者每次读取并写库的最大事件数
+ * - archiveBlockTimeout: 归档消费者 XREADGROUP BLOCK 的等待时间
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "session.events")
+public class SessionEventProperties {
+
+    /**
+     * 内存队列容量
+     * 默认值：10000
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 批大小
+     * 默认值：256
+     *
+     * 作用：一次管道往返写入的事件数上限，流量低时有多少写多少，不等待凑批
+     */
+    private int batchSize = 256;
+
+    /**
+     * 队列满时的最长等待时间
+     * 默认值：50 毫秒
+     */
+    private Duration offerTimeout = Duration.ofMillis(50);
+
+    /**
+     * Stream 近似长度上限
+     * 默认值：1000000
+     *
+     * 作用：XADD MAXLEN ~ 兜底，避免消费者长时间停止时 Stream 无限增长
+     */
+    private long streamMaxLength = 1_000_000L;
+
+    /**
+     * 磁盘日志目录
+     * 默认值：./data/session-events
+     */
+    private String journalDir = "./data/session-events";
+
+    /**
+     * 失败重试间隔
+     * 默认值：1 秒
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    /**
+     * 磁盘日志穿插重放间隔（实时批次数）
+     * 默认值：8
+     *
+     * 作用：持续有流量时队列从不空闲，只在空闲时重放会让日志一直积压；
+     * 每发布 N 个实时批次重放一批日志，重放占用的管道带宽约为 1/(N+1)
+     */
+    private int replayEveryBatches = 8;
+
+    /**
+     * 归档批大小
+     * 默认值：500
+     *
+     * 作用：每批一次 XREADGROUP、一条多行 INSERT、一次 XACK；每行 7 个绑定参数，需低于 PostgreSQL 单语句 65535 个参数的上限
+     */
+    private int archiveBatchSize = 500;
+
+    /**
+     * 归档读取阻塞时间
+     * 默认值：2 秒
+     */
+    private Duration archiveBlockTimeout = Duration.ofSeconds(2);
+
+    // ==================== Getters and Setters ====================
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getOfferTimeout() {
+        return offerTimeout;
+    }
+
+    public void setOfferTimeout(Duration offerTimeout) {
+        this.offerTimeout = offerTimeout;
+    }
+
+    public long getStreamMaxLength() {
+        return streamMaxLength;
+    }
+
+    public void setStreamMaxLength(long streamMaxLength) {
+        this.streamMaxLength = streamMaxLength;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public int getReplayEveryBatches() {
+        return replayEveryBatches;
+    }
+
+    public void setReplayEveryBatches(int replayEveryBatches) {
+        this.replayEveryBatches = replayEveryBatches;
+    }
+
+    public int getArchiveBatchSize() {
+        return archiveBatchSize;
+    }
+
+    public void setArchiveBatchSize(int archiveBatchSize) {
+        this.archiveBatchSize = archiveBatchSize;
+    }
+
+    public Duration getArchiveBlockTimeout() {
+        return archiveBlockTimeout;
+    }
+
+    public void setArchiveBlockTimeout(Duration archiveBlockTimeout) {
+        this.archiveBlockTimeout = archiveBlockTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionEventProperties{" +
+                "queueCapacity=" + queueCapacity +
+                ", batchSize=" + batchSize +
+                ", offerTimeout=" + offerTimeout +
+                ", streamMaxLength=" + streamMaxLength +
+                ", journalDir='" + journalDir + '\'' +
+                ", retryBackoff=" + retryBackoff +
+                ", replayEveryBatches=" + replayEveryBatches +
+                ", archiveBatchSize=" + archiveBatchSize +
+                ", archiveBlockTimeout=" + archiveBlockTimeout +
+                '}';
+    }
+}
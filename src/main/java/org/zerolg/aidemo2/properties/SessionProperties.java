@@ -3,6 +3,8 @@ package org.zerolg.aidemo2.properties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 /**
  * 会话记忆配置属性
  * 
@@ -16,6 +18,12 @@ import org.springframework.stereotype.Component;
  * - maxMessages: 单个会话最大消息数量，超过后自动清理最旧的消息
  * - maxPromptTokens: 提示词最大 token 数，用于滑动窗口策略
  * - defaultRecentCount: 默认返回的最近消息数量
+ * - migrateLegacyKeys: 启动时是否在后台迁移旧前缀的会话 Key
+ * - migrationBatchSize: 迁移时每批 SCAN 的 Key 数量
+ * - codec: 消息写入格式（binary / json），读取时两种格式都支持
+ * - compressionThreshold: 二进制格式下正文超过该字节数时尝试压缩
+ * - nearCacheEnabled / nearCacheMaxBytes / nearCacheMaxAge: 会话近端缓存开关、容量（字节）与条目最大存活时间
+ * - store: 会话存储实现（redis / embedded），embedded 的细项见 EmbeddedStoreProperties
  * 
  * @author zerolg
  */
@@ -62,6 +70,71 @@ public class SessionProperties {
      */
     private int defaultRecentCount = 10;
 
+    /**
+     * 启动时迁移旧 Key
+     * 默认值：true
+     * 
+     * 作用：将 session:messages:* / aidemo:session:msg:* 等旧前缀的数据在线迁移到
+     * aidemo:session:{conversationId}:* 统一键空间，迁移完成后该开关可关闭
+     */
+    private boolean migrateLegacyKeys = true;
+
+    /**
+     * 迁移批大小
+     * 默认值：500
+     * 
+     * 作用：SCAN 的 COUNT 参数以及每批处理的 Key 数量，避免一次性 KEYS 阻塞 Redis
+     */
+    private int migrationBatchSize = 500;
+
+    /**
+     * 消息写入格式
+     * 默认值：BINARY
+     * 
+     * 作用：BINARY 为带版本号的紧凑二进制格式，JSON 便于用 redis-cli 直接查看；
+     * 切换后新消息按新格式写入，已有消息仍可读取
+     */
+    private Codec codec = Codec.BINARY;
+
+    /**
+     * 压缩阈值（字节）
+     * 默认值：1024
+     * 
+     * 作用：长回复压缩后通常能节省一半以上内存，短消息压缩收益不抵 CPU 开销
+     */
+    private int compressionThreshold = 1024;
+
+    /**
+     * 启用会话近端缓存
+     * 默认值：true
+     * 
+     * 作用：活跃会话的消息窗口与元数据缓存在 JVM 内，多节点之间通过 Pub/Sub 失效通知保持一致
+     */
+    private boolean nearCacheEnabled = true;
+
+    /**
+     * 近端缓存容量（字节，按消息内容估算）
+     * 默认值：64MB
+     */
+    private long nearCacheMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 近端缓存条目最大存活时间
+     * 默认值：30 秒
+     * 
+     * 作用：Pub/Sub 失效消息在断线期间可能丢失，超过该时间的条目强制从 Redis 重新加载
+     */
+    private Duration nearCacheMaxAge = Duration.ofSeconds(30);
+
+    /**
+     * 会话存储实现
+     * 默认值：REDIS
+     * 
+     * 作用：EMBEDDED 为单机部署使用的本地内存映射日志存储，会话读写不经过 Redis；
+     * 事件流归档、心跳、跨节点近端缓存失效等仍只在 REDIS 模式下生效
+     */
+    private Store store = Store.REDIS;
+
     // ==================== Getters and Setters ====================
 
     public long getTtl() {
@@ -96,6 +169,70 @@ public class SessionProperties {
         this.defaultRecentCount = defaultRecentCount;
     }
 
+    public boolean isMigrateLegacyKeys() {
+        return migrateLegacyKeys;
+    }
+
+    public void setMigrateLegacyKeys(boolean migrateLegacyKeys) {
+        this.migrateLegacyKeys = migrateLegacyKeys;
+    }
+
+    public int getMigrationBatchSize() {
+        return migrationBatchSize;
+    }
+
+    public void setMigrationBatchSize(int migrationBatchSize) {
+        this.migrationBatchSize = migrationBatchSize;
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public boolean isNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public void setNearCacheEnabled(boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+    }
+
+    public long getNearCacheMaxBytes() {
+        return nearCacheMaxBytes;
+    }
+
+    public void setNearCacheMaxBytes(long nearCacheMaxBytes) {
+        this.nearCacheMaxBytes = nearCacheMaxBytes;
+    }
+
+    public Duration getNearCacheMaxAge() {
+        return nearCacheMaxAge;
+    }
+
+    public void setNearCacheMaxAge(Duration nearCacheMaxAge) {
+        this.nearCacheMaxAge = nearCacheMaxAge;
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    public void setStore(Store store) {
+        this.store = store;
+    }
+
     @Override
     public String toString() {
         return "SessionProperties{" +
@@ -103,6 +240,30 @@ public class SessionProperties {
                 ", maxMessages=" + maxMessages +
                 ", maxPromptTokens=" + maxPromptTokens +
                 ", defaultRecentCount=" + defaultRecentCount +
+                ", migrateLegacyKeys=" + migrateLegacyKeys +
+                ", migrationBatchSize=" + migrationBatchSize +
+                ", codec=" + codec +
+                ", compressionThreshold=" + compressionThreshold +
+                ", nearCacheEnabled=" + nearCacheEnabled +
+                ", nearCacheMaxBytes=" + nearCacheMaxBytes +
+                ", nearCacheMaxAge=" + nearCacheMaxAge +
+                ", store=" + store +
                 '}';
     }
+
+    /**
+     * 会话消息存储格式
+     */
+    public enum Codec {
+        BINARY,
+        JSON
+    }
+
+    /**
+     * 会话存储实现
+     */
+    public enum Store {
+        REDIS,
+        EMBEDDED
+    }
 }
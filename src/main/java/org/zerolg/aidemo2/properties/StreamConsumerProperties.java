@@ -0,0 +1,177 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Redis Stream 消费者配置属性
+ *
+ * 原理说明：
+ * 1. 每个节点使用唯一的消费者名称 {nodeId}-{序号}，多个实例加入同一消费者组时各自领取不同的消息
+ * 2. 崩溃实例留在 PEL 中的消息，由存活节点在空闲超过 claimMinIdle 后认领并重新处理
+ * 3. 投递次数达到 maxDeliveries 的消息视为毒消息，转入 {stream}:dlq 并确认，不再重试
+ *
+ * 配置项说明：
+ * - nodeId: 节点标识，留空时使用 主机名-进程号
+ * - sessionEventConsumers / ingestionConsumers: 每个节点的消费者数量
+ * - claimInterval / claimMinIdle / claimBatchSize: 认领检查间隔、空闲阈值、每次检查的 PEL 条目数
+ * - maxDeliveries: 最大投递次数
+ * - reclaimWorkers: 处理认领消息的工作线程数（认领检查线程只负责 XPENDING / XCLAIM，不执行业务处理）
+ * - consumerExpiry: 没有待处理消息且空闲超过该时间的其他节点消费者会被移出消费者组
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "stream.consumer")
+public class StreamConsumerProperties {
+
+    /**
+     * 节点标识
+     * 默认值：空（使用 主机名-进程号）
+     */
+    private String nodeId;
+
+    /**
+     * 每个节点的会话事件消费者数量
+     * 默认值：1
+     */
+    private int sessionEventConsumers = 1;
+
+    /**
+     * 每个节点的文档入库消费者数量
+     * 默认值：2
+     */
+    private int ingestionConsumers = 2;
+
+    /**
+     * 认领检查间隔
+     * 默认值：30 秒
+     */
+    private Duration claimInterval = Duration.ofSeconds(30);
+
+    /**
+     * 认领空闲阈值
+     * 默认值：5 分钟
+     *
+     * 作用：需大于单条消息的最长处理时间（文档入库可能耗时数分钟），否则会抢走仍在处理中的消息
+     */
+    private Duration claimMinIdle = Duration.ofMinutes(5);
+
+    /**
+     * 每次检查的 PEL 条目数
+     * 默认值：100
+     */
+    private int claimBatchSize = 100;
+
+    /**
+     * 最大投递次数
+     * 默认值：5
+     */
+    private int maxDeliveries = 5;
+
+    /**
+     * 认领消息处理线程数
+     * 默认值：2
+     *
+     * 作用：认领到的消息（可能是耗时数分钟的文档入库）交给独立线程池处理，
+     * 不阻塞下一轮认领检查、死信转移和其他 Stream 的认领
+     */
+    private int reclaimWorkers = 2;
+
+    /**
+     * 失效消费者清理阈值
+     * 默认值：1 小时
+     */
+    private Duration consumerExpiry = Duration.ofHours(1);
+
+    // ==================== Getters and Setters ====================
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public int getSessionEventConsumers() {
+        return sessionEventConsumers;
+    }
+
+    public void setSessionEventConsumers(int sessionEventConsumers) {
+        this.sessionEventConsumers = sessionEventConsumers;
+    }
+
+    public int getIngestionConsumers() {
+        return ingestionConsumers;
+    }
+
+    public void setIngestionConsumers(int ingestionConsumers) {
+        this.ingestionConsumers = ingestionConsumers;
+    }
+
+    public Duration getClaimInterval() {
+        return claimInterval;
+    }
+
+    public void setClaimInterval(Duration claimInterval) {
+        this.claimInterval = claimInterval;
+    }
+
+    public Duration getClaimMinIdle() {
+        return claimMinIdle;
+    }
+
+    public void setClaimMinIdle(Duration claimMinIdle) {
+        this.claimMinIdle = claimMinIdle;
+    }
+
+    public int getClaimBatchSize() {
+        return claimBatchSize;
+    }
+
+    public void setClaimBatchSize(int claimBatchSize) {
+        this.claimBatchSize = claimBatchSize;
+    }
+
+    public int getMaxDeliveries() {
+        return maxDeliveries;
+    }
+
+    public void setMaxDeliveries(int maxDeliveries) {
+        this.maxDeliveries = maxDeliveries;
+    }
+
+    public int getReclaimWorkers() {
+        return reclaimWorkers;
+    }
+
+    public void setReclaimWorkers(int reclaimWorkers) {
+        this.reclaimWorkers = reclaimWorkers;
+    }
+
+    public Duration getConsumerExpiry() {
+        return consumerExpiry;
+    }
+
+    public void setConsumerExpiry(Duration consumerExpiry) {
+        this.consumerExpiry = consumerExpiry;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamConsumerProperties{" +
+                "nodeId='" + nodeId + '\'' +
+                ", sessionEventConsumers=" + sessionEventConsumers +
+                ", ingestionConsumers=" + ingestionConsumers +
+                ", claimInterval=" + claimInterval +
+                ", claimMinIdle=" + claimMinIdle +
+                ", claimBatchSize=" + claimBatchSize +
+                ", maxDeliveries=" + maxDeliveries +
+                ", reclaimWorkers=" + reclaimWorkers +
+                ", consumerExpiry=" + consumerExpiry +
+                '}';
+    }
+}
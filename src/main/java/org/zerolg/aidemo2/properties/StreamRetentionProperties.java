@@ -0,0 +1,115 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.constant.RedisKeys;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis Stream 保留策略配置属性
+ *
+ * 原理说明：
+ * 1. 定期读取每个 Stream 各消费者组的 PEL 与 last-delivered-id，找出仍被任一消费者组需要的最旧条目
+ * 2. 使用 XTRIM MINID 删除比它更旧的条目，Stream 内存与消费积压成正比，而不是与历史总量成正比
+ * 3. 硬上限兜底：消费者长时间停止时按 MAXLEN 裁剪（会丢弃尚未消费的条目）
+ *
+ * 配置项说明：
+ * - enabled: 是否启用
+ * - interval: 检查间隔
+ * - streams: 需要管理的 Stream Key
+ * - maxLength: 单个 Stream 的硬上限（条目数）
+ * - approximate: 是否使用 ~ 近似裁剪（按宏节点整块删除，开销更低）
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "stream.retention")
+public class StreamRetentionProperties {
+
+    /**
+     * 启用保留策略
+     * 默认值：true
+     */
+    private boolean enabled = true;
+
+    /**
+     * 检查间隔
+     * 默认值：1 分钟
+     */
+    private Duration interval = Duration.ofMinutes(1);
+
+    /**
+     * 管理的 Stream
+     * 默认值：会话事件流、文档入库流
+     */
+    private List<String> streams = new ArrayList<>(List.of(
+            RedisKeys.STREAM_SESSION_EVENT, RedisKeys.STREAM_DOCUMENT_INGESTION));
+
+    /**
+     * 单个 Stream 的硬上限（条目数）
+     * 默认值：1000000
+     */
+    private long maxLength = 1_000_000L;
+
+    /**
+     * 近似裁剪
+     * 默认值：true
+     */
+    private boolean approximate = true;
+
+    // ==================== Getters and Setters ====================
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public List<String> getStreams() {
+        return streams;
+    }
+
+    public void setStreams(List<String> streams) {
+        this.streams = streams;
+    }
+
+    public long getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(long maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamRetentionProperties{" +
+                "enabled=" + enabled +
+                ", interval=" + interval +
+                ", streams=" + streams +
+                ", maxLength=" + maxLength +
+                ", approximate=" + approximate +
+                '}';
+    }
+}
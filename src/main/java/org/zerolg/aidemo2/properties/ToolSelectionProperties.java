@@ -0,0 +1,116 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 动态工具选择配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.tools.selection" 对应配置文件中的 ai.tools.selection.* 配置项
+ * 2. 每个工具的 JSON Schema 都会占用 Prompt token，工具越多，每轮对话的固定开销越大
+ * 3. 启动时预计算工具描述 (@Description) 的向量，每轮只挂载与问题最相关的 Top-N 个工具
+ *
+ * 配置项说明：
+ * - enabled: 是否启用动态工具选择，关闭后挂载全部工具
+ * - topN: 每轮最多挂载的工具数（不含常驻工具）
+ * - alwaysOn: 常驻工具，无论相似度如何都会挂载
+ * - pinPerSession: 按会话固定工具集（只增不减），保持 Prompt 前缀稳定
+ * - maxPinnedTools: 会话工具集上限，超过后以本轮选择重新开始
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.tools.selection")
+public class ToolSelectionProperties {
+
+    /**
+     * 是否启用动态工具选择
+     * 默认值：true
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每轮最多挂载的工具数
+     * 默认值：5
+     *
+     * 作用：候选工具数不超过此值时直接全部挂载，不产生额外的向量调用
+     */
+    private int topN = 5;
+
+    /**
+     * 常驻工具名称列表
+     */
+    private List<String> alwaysOn = new ArrayList<>();
+
+    /**
+     * 是否按会话固定工具集
+     * 默认值：true
+     *
+     * 作用：每轮重新选择会改变 Prompt 前缀中的工具 Schema，导致模型端前缀缓存失效；
+     * 固定后本轮选中的工具并入会话工具集，工具集只在用到新工具时变化
+     */
+    private boolean pinPerSession = true;
+
+    /**
+     * 会话工具集最多包含的工具数
+     * 默认值：10
+     */
+    private int maxPinnedTools = 10;
+
+    // ==================== Getters and Setters ====================
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTopN() {
+        return topN;
+    }
+
+    public void setTopN(int topN) {
+        this.topN = topN;
+    }
+
+    public List<String> getAlwaysOn() {
+        return alwaysOn;
+    }
+
+    public void setAlwaysOn(List<String> alwaysOn) {
+        this.alwaysOn = alwaysOn;
+    }
+
+    public boolean isPinPerSession() {
+        return pinPerSession;
+    }
+
+    public void setPinPerSession(boolean pinPerSession) {
+        this.pinPerSession = pinPerSession;
+    }
+
+    public int getMaxPinnedTools() {
+        return maxPinnedTools;
+    }
+
+    public void setMaxPinnedTools(int maxPinnedTools) {
+        this.maxPinnedTools = maxPinnedTools;
+    }
+
+    @Override
+    public String toString() {
+        return "ToolSelectionProperties{" +
+                "enabled=" + enabled +
+                ", topN=" + topN +
+                ", alwaysOn=" + alwaysOn +
+                ", pinPerSession=" + pinPerSession +
+                ", maxPinnedTools=" + maxPinnedTools +
+                '}';
+    }
+}
@@ -0,0 +1,181 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 幻觉验证配置属性
+ *
+ * 原理说明：
+ * 1. 前缀 "ai.verification" 对应配置文件中的 ai.verification.* 配置项
+ * 2. 每次验证都是一次携带完整上下文的 LLM 调用，全量验证会让模型开销接近翻倍
+ * 3. 通过模式选择、抽样、本地词汇预检和结果缓存，把裁判调用控制在必要范围内
+ *
+ * 配置项说明：
+ * - mode: 验证模式（off / sampled / cheap-first / always）
+ * - sampleRate: sampled 模式下的默认抽样比例
+ * - userSampleRates: 按用户覆盖的抽样比例
+ * - routeSampleRates: 按对话路由 (chitchat / tool / rag) 覆盖的抽样比例，优先级低于按用户覆盖
+ * - lexicalThreshold: cheap-first 模式下词汇重合度阈值，低于此值才升级到 LLM 裁判
+ * - async: 是否异步投递验证结果（对话流立即结束，客户端轮询结果）
+ * - cacheTtl: 验证结果缓存时长（按 query + 文档 ID + 回复 哈希）
+ * - resultTtl: 异步验证结果的保留时长
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.verification")
+public class VerificationProperties {
+
+    /**
+     * 验证模式
+     */
+    public enum Mode {
+        /** 不验证 */
+        OFF,
+        /** 按比例抽样验证 */
+        SAMPLED,
+        /** 先做本地词汇重合度检查，重合度低时才调用 LLM 裁判 */
+        CHEAP_FIRST,
+        /** 每次都调用 LLM 裁判 */
+        ALWAYS
+    }
+
+    /**
+     * 验证模式
+     * 默认值：cheap-first
+     */
+    private Mode mode = Mode.CHEAP_FIRST;
+
+    /**
+     * 默认抽样比例（0.0 - 1.0）
+     * 默认值：0.2
+     */
+    private double sampleRate = 0.2;
+
+    /**
+     * 按用户覆盖的抽样比例 (userId -> 比例)
+     *
+     * 作用：对重点用户或灰度用户提高验证比例
+     */
+    private Map<String, Double> userSampleRates = new HashMap<>();
+
+    /**
+     * 按对话路由覆盖的抽样比例 (路由标签 -> 比例)
+     *
+     * 作用：寒暄类回复没有检索文档可供核对，可降为 0；知识问答可提高验证比例
+     */
+    private Map<String, Double> routeSampleRates = new HashMap<>();
+
+    /**
+     * 词汇重合度阈值（0.0 - 1.0）
+     * 默认值：0.6
+     *
+     * 作用：回复中的词项有多少比例能在检索文档中找到，高于此值视为有据可依，不再调用 LLM 裁判
+     */
+    private double lexicalThreshold = 0.6;
+
+    /**
+     * 是否异步投递验证结果
+     * 默认值：true
+     *
+     * 作用：对话流在回复生成完毕后立即结束，验证在后台执行，客户端通过 /api/verification/{id} 轮询结果
+     */
+    private boolean async = true;
+
+    /**
+     * 验证结果缓存时长
+     * 默认值：1 小时
+     */
+    private Duration cacheTtl = Duration.ofHours(1);
+
+    /**
+     * 异步验证结果保留时长
+     * 默认值：10 分钟
+     */
+    private Duration resultTtl = Duration.ofMinutes(10);
+
+    // ==================== Getters and Setters ====================
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public Map<String, Double> getUserSampleRates() {
+        return userSampleRates;
+    }
+
+    public void setUserSampleRates(Map<String, Double> userSampleRates) {
+        this.userSampleRates = userSampleRates;
+    }
+
+    public Map<String, Double> getRouteSampleRates() {
+        return routeSampleRates;
+    }
+
+    public void setRouteSampleRates(Map<String, Double> routeSampleRates) {
+        this.routeSampleRates = routeSampleRates;
+    }
+
+    public double getLexicalThreshold() {
+        return lexicalThreshold;
+    }
+
+    public void setLexicalThreshold(double lexicalThreshold) {
+        this.lexicalThreshold = lexicalThreshold;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public Duration getResultTtl() {
+        return resultTtl;
+    }
+
+    public void setResultTtl(Duration resultTtl) {
+        this.resultTtl = resultTtl;
+    }
+
+    @Override
+    public String toString() {
+        return "VerificationProperties{" +
+                "mode=" + mode +
+                ", sampleRate=" + sampleRate +
+                ", userSampleRates=" + userSampleRates +
+                ", routeSampleRates=" + routeSampleRates +
+                ", lexicalThreshold=" + lexicalThreshold +
+                ", async=" + async +
+                ", cacheTtl=" + cacheTtl +
+                ", resultTtl=" + resultTtl +
+                '}';
+    }
+}
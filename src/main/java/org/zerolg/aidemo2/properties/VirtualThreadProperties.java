@@ -0,0 +1,82 @@
+package org.zerolg.aidemo2.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 虚拟线程模式配置属性
+ *
+ * 原理说明：
+ * 1. 总开关使用 Spring Boot 自带的 spring.threads.virtual.enabled（Tomcat 请求线程、应用任务线程池、定时任务随之切换）
+ * 2. 前缀 "ai.virtual-threads" 对应本项目额外覆盖的部分：
+ *    - Reactor boundedElastic 调度器（检索、重排序、验证等阻塞调用都卸载到这里）
+ *    - Redis Stream 监听容器的轮询线程
+ * 3. boundedElastic 默认上限为 10 × CPU 核数，大量对话同时等待慢 JDBC / LLM 调用时会在这里排队；
+ *    虚拟线程阻塞时不占用载体线程，上限可以放大到数千
+ *
+ * 配置项说明：
+ * - schedulerCap: 虚拟线程模式下 boundedElastic 的并发上限
+ * - pinningMonitor: 是否通过 JFR 监听虚拟线程钉住 (pinning) 事件
+ * - pinningThreshold: 钉住时长超过此值才记录
+ *
+ * @author zerolg
+ */
+@Component
+@ConfigurationProperties(prefix = "ai.virtual-threads")
+public class VirtualThreadProperties {
+
+    /**
+     * boundedElastic 并发上限（仅虚拟线程模式）
+     * 默认值：10000
+     */
+    private int schedulerCap = 10_000;
+
+    /**
+     * 是否启用 JFR 钉住监控
+     * 默认值：true
+     */
+    private boolean pinningMonitor = true;
+
+    /**
+     * 钉住事件记录阈值
+     * 默认值：20 毫秒
+     */
+    private Duration pinningThreshold = Duration.ofMillis(20);
+
+    // ==================== Getters and Setters ====================
+
+    public int getSchedulerCap() {
+        return schedulerCap;
+    }
+
+    public void setSchedulerCap(int schedulerCap) {
+        this.schedulerCap = schedulerCap;
+    }
+
+    public boolean isPinningMonitor() {
+        return pinningMonitor;
+    }
+
+    public void setPinningMonitor(boolean pinningMonitor) {
+        this.pinningMonitor = pinningMonitor;
+    }
+
+    public Duration getPinningThreshold() {
+        return pinningThreshold;
+    }
+
+    public void setPinningThreshold(Duration pinningThreshold) {
+        this.pinningThreshold = pinningThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadProperties{" +
+                "schedulerCap=" + schedulerCap +
+                ", pinningMonitor=" + pinningMonitor +
+                ", pinningThreshold=" + pinningThreshold +
+                '}';
+    }
+}
@@ -1,29 +1,38 @@
 package org.zerolg.aidemo2.service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.config.ToolRegistry.ToolCategories;
+import org.zerolg.aidemo2.model.QueryTrace;
 import org.zerolg.aidemo2.model.SessionMessage;
 import org.zerolg.aidemo2.properties.SessionProperties;
+import org.zerolg.aidemo2.service.intent.ChatRoute;
+import org.zerolg.aidemo2.service.intent.IntentRouter;
+import org.zerolg.aidemo2.service.routing.ModelPurpose;
+import org.zerolg.aidemo2.service.routing.ModelRouter;
+import org.zerolg.aidemo2.service.tool.ToolSelector;
+import org.zerolg.aidemo2.support.prompt.PrefixStabilityTracker;
+import org.zerolg.aidemo2.support.prompt.PromptAssembler;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * AI 服务
@@ -46,15 +55,19 @@ public class AiService {
 
     private static final Logger logger = LoggerFactory.getLogger(AiService.class);
 
-    private final ChatClient chatClient;
+    private final ModelRouter modelRouter; // 模型路由：按用途选模型 + 熔断降级
     private final RagService ragService;
     private final SessionMemoryService sessionMemoryService;
     private final SessionProperties sessionProperties;
     private final VerifierService verifierService; // 新增：幻觉验证服务
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final IntentRouter intentRouter; // 意图路由：寒暄 / 工具 / RAG
+    private final ToolSelector toolSelector; // 动态工具选择：按语义只挂载 Top-N 工具
     private final String[] availableTools;
-    @Value("classpath:/static/rag-enhanced-prompt.st")
-    private Resource ragEnhancedPromptResource;
+    private final String[] inventoryTools;
+    private final PromptAssembler promptAssembler; // 预编译 Prompt 模板
+    private final PrefixStabilityTracker prefixStabilityTracker; // Prompt 前缀稳定性统计
 
 
 
@@ -71,24 +84,36 @@ public class AiService {
      * 7. 保存 AI 回复到 Redis
      */
     public AiService(
-            ChatClient chatClient, // 使用 Builder 以支持默认工具
+            ModelRouter modelRouter,
             RagService ragService,
             SessionMemoryService sessionMemoryService,
             VerifierService verifierService,
             SessionProperties sessionProperties,
             ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            IntentRouter intentRouter,
+            ToolSelector toolSelector,
+            ToolCategories toolCategories,
+            PromptAssembler promptAssembler,
+            PrefixStabilityTracker prefixStabilityTracker,
             List<String> availableToolNames) {
 
         this.availableTools = availableToolNames.toArray(new String[0]);
+        this.inventoryTools = toolCategories.getToolsArrayByCategories("inventory");
         // 自动挂载工具
-        this.chatClient = chatClient;
+        this.modelRouter = modelRouter;
         this.ragService = ragService;
         this.sessionMemoryService = sessionMemoryService;
         this.sessionProperties = sessionProperties;
         this.verifierService = verifierService;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.intentRouter = intentRouter;
+        this.toolSelector = toolSelector;
+        this.promptAssembler = promptAssembler;
+        this.prefixStabilityTracker = prefixStabilityTracker;
 
-        logger.info("AiService 初始化完成, 加载工具: {}", availableToolNames);
+        logger.info("AiService 初始化完成, 加载工具: {}, 库存工具: {}", availableToolNames, Arrays.toString(inventoryTools));
     }
 
     /**
@@ -96,10 +121,22 @@ public class AiService {
      * * 保留了原有的会话管理逻辑：
      * 1. Check Session -> 2. Save User Msg -> 3. Get History
      * 新增了：
-     * 4. Hybrid RAG -> 5. Stream -> 6. Verify
+     * 4. Intent Route -> 5. Hybrid RAG (仅知识类问题) -> 6. Stream -> 7. Verify
+     * 客户端断开 (SSE 订阅被取消) 时：
+     * - 取消信号沿 Reactor 链向上传播，模型流式连接随之关闭，未开始的检索/重排/验证阶段不再执行
+     * - 已生成的部分回复以 interrupted=true 标记保存，保证会话历史完整
+     * 验证按 ai.verification 配置执行：跳过时发送 verification-skipped，异步时发送 verification-pending (含 verificationId)
+     * * @param userId 用户 ID，用于验证抽样
      * * @return Flux<ServerSentEvent<String>> 为了支持验证结果事件，升级了返回类型
      */
-    public Flux<ServerSentEvent<String>> processQuery(String chatId, String msg) {
+    public Flux<ServerSentEvent<String>> processQuery(String chatId, String msg, String userId) {
+        return processQuery(chatId, msg, userId, QueryTrace.none());
+    }
+
+    /**
+     * 处理用户查询，并将路由、检索文档、阶段耗时、验证结果记录到 trace（批量问答等场景使用）
+     */
+    public Flux<ServerSentEvent<String>> processQuery(String chatId, String msg, String userId, QueryTrace trace) {
         logger.info("开始处理查询: chatId={}, msg={}", chatId, msg);
 
         // ==================== 1. 会话管理 (保留原有逻辑) ====================
@@ -125,88 +162,214 @@ public class AiService {
                 maxHistoryTokens
         );
 
-        // ==================== 4. 混合检索 (升级为 Hybrid RAG) ====================
-        // 使用 retrieveAndRerank 替代旧的 retrieve
-        return ragService.retrieveAndRerank(msg)
-                .flatMapMany(finalDocuments -> {
+        // 当前所处阶段，用于统计客户端在哪个阶段放弃了请求
+        AtomicReference<String> stage = new AtomicReference<>("retrieval");
 
-                    // ==================== 5. 构建 Prompt (逻辑不变) ====================
-          /*          String ragContext = finalDocuments.stream()
-                            .map(Document::getFormattedContent)
-                            .collect(Collectors.joining("\n\n"));*/
+        // ==================== 4. 意图路由 + 工具选择 ====================
+        // 寒暄 / 库存操作不需要检索，直接进入生成
+        // 向量分类与工具选择共用一次向量模型调用，远程调用在 boundedElastic 上执行，不占用请求线程
+        return Mono.fromCallable(() -> routeAndSelectTools(chatId, msg, historyMessages, trace))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(routing -> generate(chatId, msg, userId, trace, userMessage, historyMessages,
+                        routing.route(), routing.tools(), stage))
+                .doOnCancel(() -> {
+                    logger.info("客户端已断开，取消对话处理: chatId={}, stage={}", chatId, stage.get());
+                    meterRegistry.counter("aidemo.chat.cancelled", "stage", stage.get()).increment();
+                });
+    }
+
+    /**
+     * 路由结果与本轮挂载的工具
+     */
+    private record Routing(ChatRoute route, String[] tools) {
+    }
 
-                    StringBuilder contextBuilder = new StringBuilder();
-                    for (int i = 0; i < finalDocuments.size(); i++) {
-                        Document doc = finalDocuments.get(i);
-                        // 获取元数据中的文件名，如果不存在则显示"未知来源"
-                        String sourceName = (String) doc.getMetadata().getOrDefault("file_name", "未知来源");
+    private Routing routeAndSelectTools(String chatId, String msg, List<SessionMessage> historyMessages,
+                                        QueryTrace trace) {
+        IntentRouter.Decision decision = intentRouter.route(msg, historyMessages);
+        ChatRoute route = decision.route();
+        trace.onRouted(route.tag());
+        if (intentRouter.shouldShadow(route)) {
+            shadowRetrieve(route, msg);
+        }
+        // 工具 Schema 属于 Prompt 前缀：ToolSelector 按会话固定工具集并排序，相同工具集产生相同前缀
+        // 工具集按 (会话, 路由) 固定，库存轮次只挂载库存工具；寒暄沿用上一轮工具路由的工具集，避免前缀变化
+        String[] routeTools = switch (route) {
+            case CHITCHAT -> toolSelector.pinned(chatId);
+            case TOOL -> toolSelector.select(chatId, route, msg, decision.queryVector(), historyMessages,
+                    inventoryTools);
+            case RAG -> toolSelector.select(chatId, route, msg, decision.queryVector(), historyMessages,
+                    availableTools);
+        };
+        return new Routing(route, routeTools);
+    }
 
-                        // 格式：[文档 1] (来源: policy.pdf)
-                        // 内容...
-                        contextBuilder.append(String.format("【文档 %d】(来源: %s)\n%s\n\n",
-                                i + 1,
-                                sourceName,
-                                doc.getFormattedContent().trim()));
-                    }
-                    String ragContext = contextBuilder.toString().trim();
+    private Flux<ServerSentEvent<String>> generate(String chatId, String msg, String userId, QueryTrace trace,
+                                                   SessionMessage userMessage, List<SessionMessage> historyMessages,
+                                                   ChatRoute route, String[] finalTools,
+                                                   AtomicReference<String> stage) {
+        // ==================== 5. 混合检索 (升级为 Hybrid RAG) ====================
+        // 使用 retrieveAndRerank 替代旧的 retrieve
+        Mono<List<Document>> retrieval = route == ChatRoute.RAG
+                ? ragService.retrieveAndRerank(msg)
+                : Mono.just(List.of());
 
+        return retrieval
+                .flatMapMany(finalDocuments -> {
+                    stage.set("generation");
+                    trace.onRetrieved(finalDocuments);
 
-                    PromptTemplate systemPromptTemplate = new PromptTemplate(ragEnhancedPromptResource);
-                    String systemText = systemPromptTemplate.render(Map.of(
-                            "context", ragContext.isEmpty() ? "暂无相关背景知识。" : ragContext
-                    ));
+                    // ==================== 6. 构建 Prompt (稳定前缀布局) ====================
+                    // 顺序：系统提示词 + 工具 (稳定) -> 历史消息 (只追加) -> 背景知识 + 当前问题 (每轮变化)
+                    // 易变内容全部放在末尾，模型端的前缀缓存才能在多轮对话中持续命中
+                    String systemText = promptAssembler.render(PromptAssembler.SYSTEM);
 
+                    // 当前问题已在步骤 2 写入历史，这里排除，由最后一条用户消息携带
                     List<Message> messages = historyMessages.stream()
+                            .filter(m -> !userMessage.id().equals(m.id()))
                             .map(this::convertToSpringAiMessage)
                             .collect(Collectors.toList());
-                    messages.add(new UserMessage(msg));
+                    prefixStabilityTracker.record(chatId, systemText, finalTools, messages);
+
+                    // 模板预编译，背景知识直接写入最终缓冲区，不产生逐文档的中间字符串
+                    messages.add(new UserMessage(finalDocuments.isEmpty()
+                            ? msg
+                            : promptAssembler.render(PromptAssembler.RAG_CONTEXT, Map.of(
+                                    "context", promptAssembler.documentContext(finalDocuments),
+                                    "question", msg))));
 
-                    // ==================== 6. 调用 LLM & 流式响应 ====================
-                    StringBuilder fullResponse = new StringBuilder();
+                    // ==================== 7. 调用 LLM & 流式响应 ====================
+                    // 取消回调与流式回调可能在不同线程执行，使用线程安全的 StringBuffer
+                    StringBuffer fullResponse = new StringBuffer();
 
-                    return chatClient.prompt()
-                            .system(systemText)
-                            .messages(messages)
-                            .toolNames(availableTools) // 已在构造函数中配置默认工具
-                            .stream()
-                            .content()
+                    // 生成使用旗舰模型；首 token 之前失败或熔断时降级到备用模型
+                    return modelRouter.stream(ModelPurpose.GENERATION, spec -> spec
+                                    .system(systemText)
+                                    .messages(messages)
+                                    .toolNames(finalTools) // 按路由挂载工具
+                                    .stream()
+                                    .content())
                             .map(chunk -> {
                                 fullResponse.append(chunk);
+                                trace.onToken();
                                 // 包装为 SSE 消息事件
                                 return ServerSentEvent.builder(chunk)
                                         .event("message")
                                         .build();
                             })
-                            // ==================== 7. 保存 AI 回复 (保留原有逻辑) ====================
-                            .doOnComplete(() -> {
-                                String response = fullResponse.toString();
-                                int assistantTokens = estimateTokens(response);
-                                SessionMessage assistantMessage = SessionMessage.createAssistantMessage(
-                                        response,
-                                        assistantTokens
-                                );
-                                sessionMemoryService.saveMessage(chatId, assistantMessage);
-                                logger.info("AI 回复已保存: tokens={}", assistantTokens);
-                            })
-                            // ==================== 8. 幻觉验证 (新增功能) ====================
+                            .doOnComplete(trace::onGenerated)
+                            // 客户端中途断开：模型流已被取消，保存已生成的部分回复
+                            // 取消回调运行在模型客户端的 I/O 线程上，阻塞的会话写入交给弹性线程
+                            .doOnCancel(() -> Schedulers.boundedElastic().schedule(
+                                    () -> saveInterruptedMessage(chatId, fullResponse.toString())))
+                            // ==================== 8. 保存 AI 回复 (保留原有逻辑) ====================
+                            // 在弹性线程上写入会话，写入完成后才结束对话流，客户端的下一轮一定能读到本轮回复
+                            .concatWith(saveOffloaded(() -> saveAssistantMessage(chatId, fullResponse.toString()))
+                                    .then(Mono.<ServerSentEvent<String>>empty()))
+                            // ==================== 9. 幻觉验证 (新增功能) ====================
+                            // concatWith 只有在生成正常完成后才会订阅，断开的请求不会再发起验证调用
                             .concatWith(Mono.defer(() -> {
-                                // 流结束后，触发验证
-                                return verifierService.verify(msg, finalDocuments, fullResponse.toString())
-                                        .map(result -> {
-                                            try {
-                                                String json = objectMapper.writeValueAsString(result);
-                                                // 发送验证结果事件
-                                                return ServerSentEvent.builder(json)
-                                                        .event("verification")
-                                                        .build();
-                                            } catch (JsonProcessingException e) {
-                                                return ServerSentEvent.<String>builder().build();
-                                            }
-                                        });
+                                stage.set("verification");
+                                return verificationEvent(userId, route, msg, finalDocuments, fullResponse.toString(), trace);
                             }));
                 });
     }
 
+    /**
+     * 影子检索：在后台对跳过检索的请求执行一次检索，用于统计误路由
+     * 重排序后仍保留了文档，说明知识库中有相关内容，本应走 RAG
+     */
+    private void shadowRetrieve(ChatRoute route, String msg) {
+        ragService.retrieveAndRerank(msg)
+                .subscribe(
+                        docs -> intentRouter.recordShadowResult(route, !docs.isEmpty()),
+                        e -> logger.warn("影子检索失败: {}", e.getMessage()));
+    }
+
+    /**
+     * 生成结束后的验证事件
+     *
+     * - 未命中抽样 / 验证关闭：verification-skipped，客户端直接结束
+     * - 异步模式：后台验证，立即发送 verification-pending，对话流随即结束，客户端凭 verificationId 轮询
+     * - 同步模式：等待验证完成后发送 verification 事件
+     */
+    private Mono<ServerSentEvent<String>> verificationEvent(String userId, ChatRoute route, String msg,
+                                                            List<Document> documents, String response,
+                                                            QueryTrace trace) {
+        if (!verifierService.shouldVerify(userId, route.tag())) {
+            return Mono.just(ServerSentEvent.builder("{}").event("verification-skipped").build());
+        }
+        if (verifierService.isAsync() && !trace.isSynchronousVerification()) {
+            return Mono.fromCallable(() -> verifierService.submit(msg, documents, response))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .map(verificationId -> ServerSentEvent.builder(toJson(Map.of("verificationId", verificationId)))
+                            .event("verification-pending")
+                            .build());
+        }
+        return verifierService.verify(msg, documents, response)
+                .doOnNext(trace::onVerified)
+                .map(result -> ServerSentEvent.builder(toJson(result))
+                        .event("verification")
+                        .build());
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return "{}";
+        }
+    }
+
+    /**
+     * 在弹性线程上执行阻塞的会话写入
+     * 写入一旦开始就不随订阅取消而中断（中断会让 Redis 同步调用抛出异常，丢失本轮回复）
+     */
+    private Mono<Void> saveOffloaded(Runnable save) {
+        return Mono.create(sink -> Schedulers.boundedElastic().schedule(() -> {
+            save.run();
+            sink.success();
+        }));
+    }
+
+    /**
+     * 保存完整的助手回复
+     */
+    private void saveAssistantMessage(String chatId, String response) {
+        try {
+            int assistantTokens = estimateTokens(response);
+            SessionMessage assistantMessage = SessionMessage.createAssistantMessage(response, assistantTokens);
+            sessionMemoryService.saveMessage(chatId, assistantMessage);
+            logger.info("AI 回复已保存: tokens={}", assistantTokens);
+        } catch (Exception e) {
+            logger.error("保存 AI 回复失败: chatId={}", chatId, e);
+        }
+    }
+
+    /**
+     * 保存被中断的助手回复
+     *
+     * 为什么要保存部分回复：
+     * - 用户已经看到了这部分内容，下一轮对话需要它作为上下文
+     * - 通过 interrupted 元数据标记，便于前端展示和后续统计
+     */
+    private void saveInterruptedMessage(String chatId, String partialResponse) {
+        if (partialResponse.isEmpty()) {
+            return;
+        }
+        try {
+            int partialTokens = estimateTokens(partialResponse);
+            SessionMessage assistantMessage = SessionMessage.createAssistantMessage(partialResponse, partialTokens)
+                    .withMetadata("interrupted", true);
+            sessionMemoryService.saveMessage(chatId, assistantMessage);
+            // 被放弃的生成量（已付费但用户未读完的 token）
+            meterRegistry.counter("aidemo.chat.cancelled.tokens").increment(partialTokens);
+            logger.info("AI 回复被中断，已保存部分内容: chatId={}, tokens={}", chatId, partialTokens);
+        } catch (Exception e) {
+            logger.error("保存中断回复失败: chatId={}", chatId, e);
+        }
+    }
+
     /**
      * 将 SessionMessage 转换为 Spring AI 的 Message
      * 
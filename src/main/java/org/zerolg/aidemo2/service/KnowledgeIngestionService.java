@@ -8,12 +8,18 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.stream.StreamRecords;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.zerolg.aidemo2.model.IngestionStatus;
 import org.zerolg.aidemo2.constant.RedisKeys;
 import org.zerolg.aidemo2.model.IngestionTask;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -35,9 +41,11 @@ public class KnowledgeIngestionService {
     private static final Logger logger = LoggerFactory.getLogger(KnowledgeIngestionService.class);
     private static final String STATUS_KEY_PREFIX = "ingestion:status:";
 
-    // 内存中保存 SSE 连接 (Key: ingestionId)
+    private static final Duration STATUS_STREAM_TIMEOUT = Duration.ofMinutes(10);
+
+    // 内存中保存 SSE 进度广播 (Key: ingestionId)
     // 注意：如果是多实例部署，这里需要改为 Redis Pub/Sub 机制
-    private final Map<String, SseEmitter> sseEmitters = new ConcurrentHashMap<>();
+    private final Map<String, Sinks.Many<ServerSentEvent<Map<?, ?>>>> statusSinks = new ConcurrentHashMap<>();
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final StringRedisTemplate stringRedisTemplate; // 用于操作 Hash 状态
@@ -55,24 +63,51 @@ public class KnowledgeIngestionService {
     }
 
     /**
-     * 提交摄入任务
+     * 提交摄入任务 (Servlet 模式：MultipartFile)
      */
     public String submitTask(MultipartFile file) throws IOException {
         String ingestionId = UUID.randomUUID().toString();
         String originalFilename = file.getOriginalFilename();
-        String mimeType = file.getContentType();
 
         // 1. 保存文件到本地
+        Path filePath = resolveUploadPath(ingestionId, originalFilename);
+        file.transferTo(filePath);
+        logger.info("文件已保存: {}", filePath);
+
+        return enqueue(ingestionId, filePath, originalFilename, file.getContentType());
+    }
+
+    /**
+     * 提交摄入任务 (WebFlux 模式：FilePart)
+     * 文件以非阻塞方式写盘，写 Redis 状态与 Stream 的阻塞操作放到弹性线程
+     */
+    public Mono<String> submitTask(FilePart file) {
+        String ingestionId = UUID.randomUUID().toString();
+        String originalFilename = file.filename();
+        MediaType contentType = file.headers().getContentType();
+
+        return Mono.fromCallable(() -> resolveUploadPath(ingestionId, originalFilename))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(filePath -> file.transferTo(filePath)
+                        .doOnSuccess(v -> logger.info("文件已保存: {}", filePath))
+                        .then(Mono.fromCallable(() -> enqueue(ingestionId, filePath, originalFilename,
+                                        contentType != null ? contentType.toString() : null))
+                                .subscribeOn(Schedulers.boundedElastic())));
+    }
+
+    private Path resolveUploadPath(String ingestionId, String originalFilename) throws IOException {
         Path uploadPath = Paths.get(uploadDir);
         // 确保上传目录存在
         if (Files.notExists(uploadPath)) {
             Files.createDirectories(uploadPath);
         }
+        return uploadPath.resolve(ingestionId + "_" + originalFilename);
+    }
 
-        Path filePath = uploadPath.resolve(ingestionId + "_" + originalFilename);
-        file.transferTo(filePath.toFile());
-        logger.info("文件已保存: {}", filePath);
-
+    /**
+     * 初始化任务状态并发送到 Stream
+     */
+    private String enqueue(String ingestionId, Path filePath, String originalFilename, String mimeType) throws IOException {
         // 2. 初始化 Redis 状态
         String statusKey = STATUS_KEY_PREFIX + ingestionId;
         Map<String, String> statusMap = new HashMap<>();
@@ -108,33 +143,32 @@ public class KnowledgeIngestionService {
     }
 
     /**
-     * 创建 SSE 连接用于实时接收进度
+     * 订阅任务进度 (SSE)
+     * 返回 Flux 而不是 SseEmitter，Servlet / WebFlux 两种部署模式下都可以直接作为响应体
      *
      * @param ingestionId 任务ID
-     * @return SseEmitter 实例
+     * @return 进度事件流，任务结束或超过 10 分钟后完成
      */
-    public SseEmitter subscribeStatus(String ingestionId) {
-        // 设置一个较长的超时时间，例如 10 分钟
-        SseEmitter emitter = new SseEmitter(10 * 60 * 1000L);
-
-        // 连接建立时，先发送一次当前状态
-        try {
-            emitter.send(SseEmitter.event().name("progress").data(getStatus(ingestionId)));
-        } catch (IOException e) {
-            logger.warn("SSE首次发送状态失败: {}", ingestionId, e);
-        }
-
-        // 注册 Emitter
-        sseEmitters.put(ingestionId, emitter);
-
-        // 定义连接结束后的清理逻辑
-        Runnable cleanup = () -> sseEmitters.remove(ingestionId);
-        emitter.onCompletion(cleanup);
-        emitter.onTimeout(cleanup);
-        emitter.onError((e) -> cleanup.run());
+    public Flux<ServerSentEvent<Map<?, ?>>> subscribeStatus(String ingestionId) {
+        // 同一任务的多个订阅者共享一个 Sink
+        Sinks.Many<ServerSentEvent<Map<?, ?>>> sink = statusSinks.computeIfAbsent(ingestionId,
+                id -> Sinks.many().multicast().directBestEffort());
 
         logger.info("SSE连接已建立: ingestionId={}", ingestionId);
-        return emitter;
+
+        // 连接建立时，先发送一次当前状态
+        Mono<ServerSentEvent<Map<?, ?>>> current = Mono.fromCallable(() -> progressEvent(getStatus(ingestionId)))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return Flux.concat(current, sink.asFlux())
+                // 设置一个较长的超时时间，例如 10 分钟
+                .take(STATUS_STREAM_TIMEOUT)
+                // 定义连接结束后的清理逻辑：最后一个订阅者离开时移除 Sink
+                .doFinally(signal -> {
+                    if (sink.currentSubscriberCount() == 0) {
+                        statusSinks.remove(ingestionId, sink);
+                    }
+                });
     }
 
     /**
@@ -149,20 +183,20 @@ public class KnowledgeIngestionService {
         stringRedisTemplate.opsForHash().put(statusKey, "message", message);
 
         // 2. 通过 SSE 推送实时状态
-        SseEmitter emitter = sseEmitters.get(ingestionId);
-        if (emitter != null) {
-            try {
-                Map<String, Object> eventData = Map.of("status", status.name(), "progress", progress, "message", message);
-                emitter.send(SseEmitter.event().name("progress").data(eventData));
-
-                // 如果任务结束（完成或失败），主动关闭连接
-                if (status == IngestionStatus.COMPLETED || status == IngestionStatus.FAILED) {
-                    emitter.complete();
-                }
-            } catch (IOException e) {
-                logger.warn("SSE推送失败，移除连接: {}", ingestionId);
-                sseEmitters.remove(ingestionId); // 推送失败时也清理掉
+        Sinks.Many<ServerSentEvent<Map<?, ?>>> sink = statusSinks.get(ingestionId);
+        if (sink != null) {
+            Map<String, Object> eventData = Map.of("status", status.name(), "progress", progress, "message", message);
+            sink.tryEmitNext(progressEvent(eventData));
+
+            // 如果任务结束（完成或失败），主动关闭连接
+            if (status == IngestionStatus.COMPLETED || status == IngestionStatus.FAILED) {
+                sink.tryEmitComplete();
+                statusSinks.remove(ingestionId, sink);
             }
         }
     }
+
+    private ServerSentEvent<Map<?, ?>> progressEvent(Map<?, ?> data) {
+        return ServerSentEvent.<Map<?, ?>>builder(data).event("progress").build();
+    }
 }
@@ -2,18 +2,18 @@ package org.zerolg.aidemo2.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.zerolg.aidemo2.entity.DocumentChunk;
 import org.zerolg.aidemo2.mapper.DocumentChunkMapper;
+import org.zerolg.aidemo2.service.routing.ModelPurpose;
+import org.zerolg.aidemo2.service.routing.ModelRouter;
+import org.zerolg.aidemo2.support.prompt.PromptAssembler;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
@@ -36,13 +36,17 @@ public class RagService {
 
     private static final Logger logger = LoggerFactory.getLogger(RagService.class);
 
-    private final ChatClient chatClient;
+    private final ModelRouter modelRouter;
     private final VectorStore vectorStore;
     // RRF 算法常数 k，工业界通常取 60
     private static final double RRF_K = 60.0;
 
-    @Value("classpath:/static/rerank-prompt.st")
-    private Resource rerankPromptResource;
+    private final PromptAssembler promptAssembler;
+
+    // 使用 BeanOutputConverter 处理 JSON 解析（无状态，全局复用）
+    private final BeanOutputConverter<List<Integer>> rerankConverter =
+            new BeanOutputConverter<>(new ParameterizedTypeReference<List<Integer>>() {
+            });
 
     // RAG 检索配置参数
     @Value("${ai.rag.topK:8}")
@@ -53,8 +57,10 @@ public class RagService {
     // 新增：注入 Mapper 用于全文检索
     private final DocumentChunkMapper documentChunkMapper;
 
-    public RagService(ChatClient chatClient, VectorStore vectorStore, DocumentChunkMapper documentChunkMapper) {
-        this.chatClient = chatClient;
+    public RagService(ModelRouter modelRouter, VectorStore vectorStore, DocumentChunkMapper documentChunkMapper,
+                      PromptAssembler promptAssembler) {
+        this.modelRouter = modelRouter;
+        this.promptAssembler = promptAssembler;
         this.vectorStore = vectorStore;
         this.documentChunkMapper = documentChunkMapper;
     }
@@ -170,34 +176,23 @@ public class RagService {
                     // 虽然 RRF 已经过滤了一次，这里做个兜底
                     List<Document> candidates = documents.size() > 10 ? documents.subList(0, 10) : documents;
 
-                    // 构建重排序 Prompt Context
-                    StringBuilder docsBuilder = new StringBuilder();
-                    for (int i = 0; i < candidates.size(); i++) {
-                        // 使用 formattedContent 包含元数据信息，有助于 LLM 判断
-                        docsBuilder.append("[").append(i).append("] ").append(candidates.get(i).getFormattedContent()).append("\n");
-                    }
-
-                    // 加载 Prompt 模板
-                    PromptTemplate promptTemplate = new PromptTemplate(rerankPromptResource);
-                    String rerankPrompt = promptTemplate.render(Map.of(
+                    // 使用预编译模板，候选文档直接写入 Prompt 缓冲区
+                    String rerankPrompt = promptAssembler.render(PromptAssembler.RERANK, Map.of(
                             "query", query,
-                            "documents", docsBuilder.toString(),
+                            "documents", promptAssembler.rerankCandidates(candidates),
                             "maxIndex", candidates.size() - 1
                     ));
 
-                    // 使用 BeanOutputConverter 处理 JSON 解析
-                    BeanOutputConverter<List<Integer>> converter = new BeanOutputConverter<>(new ParameterizedTypeReference<List<Integer>>() {
-                    });
-
                     // 调用 LLM 获取评审结果 (阻塞操作)
                     // 建议：对于 Rerank，temperature 设为 0 以获得最稳定的结果
-                    String response = chatClient.prompt()
+                    // 经模型路由：使用快速模型，失败 / 熔断时降级到备用模型
+                    String response = modelRouter.call(ModelPurpose.RERANK, spec -> spec
                             .user(rerankPrompt)
                             .call()
-                            .content();
+                            .content());
 
                     // 转换
-                    List<Integer> selectedIndices = converter.convert(response);
+                    List<Integer> selectedIndices = rerankConverter.convert(response);
 
                     if (selectedIndices == null) {
                         selectedIndices = new ArrayList<>();
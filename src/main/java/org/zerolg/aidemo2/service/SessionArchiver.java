@@ -2,6 +2,8 @@ package org.zerolg.aidemo2.service;
 
 import org.zerolg.aidemo2.model.SessionEvent;
 
+import java.util.List;
+
 /**
  * 会话归档服务接口
  * 
@@ -19,4 +21,13 @@ public interface SessionArchiver {
      * @param event 需要归档的会话事件
      */
     void archive(SessionEvent event);
+
+    /**
+     * 批量归档会话事件
+     * 整批在同一事务中写入；按事件 ID 幂等，已归档的事件会被跳过
+     *
+     * @param events 需要归档的会话事件
+     * @return 实际新写入的事件数
+     */
+    int archiveAll(List<SessionEvent> events);
 }
@@ -31,11 +31,13 @@ public interface SessionMemoryService {
      * 2. 更新会话元信息（消息数、token 数、最后活跃时间）
      * 3. 检查消息数量，超过限制则删除最旧的消息（LTRIM）
      * 4. 刷新会话 TTL（EXPIRE）
+     * 以上步骤在一次服务端脚本调用中原子完成，同时发布会话事件并更新心跳
      * 
      * @param conversationId 会话 ID
      * @param message        消息对象
+     * @return 写入并裁剪后的消息列表长度
      */
-    void saveMessage(String conversationId, SessionMessage message);
+    long saveMessage(String conversationId, SessionMessage message);
 
     /**
      * 获取最近 N 条消息
@@ -68,6 +70,9 @@ public interface SessionMemoryService {
      * - 超过限制会导致调用失败或被截断
      * - 合理控制可以降低成本
      * 
+     * 实现要求：
+     * - 不应固定拉取大量消息再截断，Redis 实现通过 Token 前缀和索引只读取放得进预算的消息
+     * 
      * 优化策略：
      * - 优先保留最近的消息（更相关）
      * - 可以保留系统消息（如果有）
@@ -109,8 +114,8 @@ public interface SessionMemoryService {
      * 删除会话
      * 
      * 操作：
-     * 1. 删除消息列表（DEL session:messages:{conversationId}）
-     * 2. 删除元信息（DEL session:meta:{conversationId}）
+     * 1. 删除消息列表（DEL aidemo:session:{conversationId}:msg）
+     * 2. 删除元信息（DEL aidemo:session:{conversationId}:meta）
      * 
      * 注意：
      * - 这是物理删除，数据无法恢复
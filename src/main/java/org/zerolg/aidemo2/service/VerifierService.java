@@ -1,40 +1,159 @@
 package org.zerolg.aidemo2.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.ai.document.Document;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.constant.RedisKeys;
 import org.zerolg.aidemo2.model.VerificationResult;
+import org.zerolg.aidemo2.model.VerificationTicket;
+import org.zerolg.aidemo2.properties.VerificationProperties;
+import org.zerolg.aidemo2.service.routing.ModelPurpose;
+import org.zerolg.aidemo2.service.routing.ModelRouter;
+import org.zerolg.aidemo2.support.prompt.PromptAssembler;
+import org.zerolg.aidemo2.utils.HashUtils;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
+/**
+ * 幻觉验证服务
+ *
+ * 验证模式 (ai.verification.mode)：
+ * - off: 不验证
+ * - sampled: 按比例（可按用户覆盖）抽样调用 LLM 裁判
+ * - cheap-first: 先做本地词汇重合度检查，重合度低于阈值时才升级到 LLM 裁判
+ * - always: 每次都调用 LLM 裁判
+ *
+ * 成本控制：
+ * - 结果按 hash(query + 文档 ID + 回复) 缓存，相同问答不会重复验证
+ * - 异步模式下验证结果写入 Redis，对话流立即结束，客户端通过 verificationId 轮询
+ */
 @Service
 public class VerifierService {
 
     private static final Logger logger = LoggerFactory.getLogger(VerifierService.class);
-    private final ChatClient chatClient;
-    private final ObjectMapper objectMapper;
 
-    @Value("classpath:/static/verifier-prompt.st")
-    private Resource verifierPromptResource;
+    // 异步验证进行中的占位值
+    private static final String PENDING_MARKER = "__pending__";
+
+    private final ModelRouter modelRouter;
+    private final ObjectMapper objectMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final VerificationProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final PromptAssembler promptAssembler;
+    private final BeanOutputConverter<VerificationResult> converter = new BeanOutputConverter<>(VerificationResult.class);
 
-    public VerifierService(ChatClient chatClient, ObjectMapper objectMapper) {
-        this.chatClient = chatClient;
+    public VerifierService(ModelRouter modelRouter, ObjectMapper objectMapper, StringRedisTemplate redisTemplate,
+                           VerificationProperties properties, MeterRegistry meterRegistry,
+                           PromptAssembler promptAssembler) {
+        this.modelRouter = modelRouter;
+        this.promptAssembler = promptAssembler;
         this.objectMapper = objectMapper;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        logger.info("VerifierService 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 本次回复是否需要验证
+     *
+     * @param userId 用户 ID（sampled 模式下用于查找按用户覆盖的抽样比例）
+     * @param route  对话路由标签（sampled 模式下用于查找按路由覆盖的抽样比例）
+     */
+    public boolean shouldVerify(String userId, String route) {
+        boolean verify = switch (properties.getMode()) {
+            case OFF -> false;
+            case SAMPLED -> ThreadLocalRandom.current().nextDouble() < sampleRate(userId, route);
+            case CHEAP_FIRST, ALWAYS -> true;
+        };
+        if (!verify) {
+            countOutcome("skipped");
+        }
+        return verify;
+    }
+
+    /**
+     * 抽样比例：按用户覆盖 > 按路由覆盖 > 默认比例
+     */
+    private double sampleRate(String userId, String route) {
+        Double userRate = properties.getUserSampleRates().get(userId);
+        if (userRate != null) {
+            return userRate;
+        }
+        return properties.getRouteSampleRates().getOrDefault(route, properties.getSampleRate());
+    }
+
+    /**
+     * 是否异步投递验证结果
+     */
+    public boolean isAsync() {
+        return properties.isAsync();
+    }
+
+    /**
+     * 提交异步验证
+     * 验证在后台执行，结果写入 Redis，客户端通过返回的 verificationId 轮询
+     *
+     * @return verificationId
+     */
+    public String submit(String query, List<Document> documents, String response) {
+        String verificationId = UUID.randomUUID().toString();
+        String resultKey = RedisKeys.VERIFY_RESULT_PREFIX + verificationId;
+        redisTemplate.opsForValue().set(resultKey, PENDING_MARKER, properties.getResultTtl());
+
+        // 与对话流解耦：客户端断开不影响后台验证
+        verify(query, documents, response)
+                .subscribe(result -> {
+                    try {
+                        redisTemplate.opsForValue().set(resultKey, objectMapper.writeValueAsString(result),
+                                properties.getResultTtl());
+                    } catch (Exception e) {
+                        logger.error("写入异步验证结果失败: verificationId={}", verificationId, e);
+                    }
+                });
+        return verificationId;
+    }
+
+    /**
+     * 查询异步验证结果
+     *
+     * @return 验证凭证；verificationId 不存在或已过期时返回 empty
+     */
+    public Optional<VerificationTicket> getResult(String verificationId) {
+        String value = redisTemplate.opsForValue().get(RedisKeys.VERIFY_RESULT_PREFIX + verificationId);
+        if (value == null) {
+            return Optional.empty();
+        }
+        if (PENDING_MARKER.equals(value)) {
+            return Optional.of(VerificationTicket.pending(verificationId));
+        }
+        try {
+            return Optional.of(VerificationTicket.done(verificationId,
+                    objectMapper.readValue(value, VerificationResult.class)));
+        } catch (Exception e) {
+            logger.error("解析异步验证结果失败: verificationId={}", verificationId, e);
+            return Optional.empty();
+        }
     }
 
     /**
      * 异步执行验证
+     * 顺序：缓存 -> 本地词汇预检 (cheap-first) -> LLM 裁判，结果写回缓存
      */
     public Mono<VerificationResult> verify(String query, List<Document> documents, String response) {
         return Mono.fromCallable(() -> {
@@ -48,23 +167,36 @@ public class VerifierService {
                         return new VerificationResult(true, 0.85, "无相关文档，基于通用知识回答", null);
                     }
 
-                    // 2. 构建 Prompt
-                    PromptTemplate promptTemplate = new PromptTemplate(verifierPromptResource);
-                    String prompt = promptTemplate.render(Map.of(
-                            "context", contextStr,
-                            "query", query,
-                            "response", response
-                    ));
-
-                    // 3. 调用裁判 (建议 temperature=0)
-                    BeanOutputConverter<VerificationResult> converter = new BeanOutputConverter<>(VerificationResult.class);
-                    String jsonResult = chatClient.prompt().user(prompt).call().content();
-                    VerificationResult result = converter.convert(jsonResult);
-                    if (result.passed() && result.confidence() <= 0.85) {
-                        return new VerificationResult(true, 0.85, "文档关联度低，基于通用知识回答", null);
+                    // 2. 查缓存
+                    String cacheKey = RedisKeys.VERIFY_CACHE_PREFIX + cacheHash(query, documents, response);
+                    String cached = redisTemplate.opsForValue().get(cacheKey);
+                    if (cached != null) {
+                        countOutcome("cache_hit");
+                        return objectMapper.readValue(cached, VerificationResult.class);
+                    }
+
+                    // 3. 本地词汇预检：回复中的词项大多能在文档中找到，视为有据可依
+                    VerificationResult result = null;
+                    if (properties.getMode() == VerificationProperties.Mode.CHEAP_FIRST) {
+                        double overlap = lexicalOverlap(contextStr, response);
+                        if (overlap >= properties.getLexicalThreshold()) {
+                            countOutcome("lexical_pass");
+                            result = new VerificationResult(true, overlap,
+                                    String.format("回复内容与文档词汇重合度 %.0f%%", overlap * 100), null);
+                        } else {
+                            logger.debug("词汇重合度 {} 低于阈值，升级到 LLM 裁判", overlap);
+                        }
+                    }
+
+                    // 4. 调用 LLM 裁判 (建议 temperature=0)
+                    if (result == null) {
+                        countOutcome("llm");
+                        result = judge(contextStr, query, response);
                     }
-                    // 4. 解析结果
-                    return converter.convert(jsonResult);
+
+                    redisTemplate.opsForValue().set(cacheKey, objectMapper.writeValueAsString(result),
+                            properties.getCacheTtl());
+                    return result;
 
                 }).subscribeOn(Schedulers.boundedElastic())
                 .onErrorResume(e -> {
@@ -72,4 +204,81 @@ public class VerifierService {
                     return Mono.just(new VerificationResult(true, 0.85, "知识库中未找到相关文档，基于大模型通用知识回答", null));
                 });
     }
-}
\ No newline at end of file
+
+    private VerificationResult judge(String contextStr, String query, String response) {
+        String prompt = promptAssembler.render(PromptAssembler.VERIFIER, Map.of(
+                "context", contextStr,
+                "query", query,
+                "response", response
+        ));
+
+        String jsonResult = modelRouter.call(ModelPurpose.VERIFICATION, spec -> spec.user(prompt).call().content());
+        VerificationResult result = converter.convert(jsonResult);
+        if (result.passed() && result.confidence() <= 0.85) {
+            return new VerificationResult(true, 0.85, "文档关联度低，基于通用知识回答", null);
+        }
+        return result;
+    }
+
+    /**
+     * 缓存键：query + 文档 ID（按检索顺序）+ 回复
+     */
+    private String cacheHash(String query, List<Document> documents, String response) {
+        String docIds = documents.stream()
+                .map(Document::getId)
+                .collect(Collectors.joining(","));
+        return HashUtils.getSha256(query + "\u0000" + docIds + "\u0000" + response);
+    }
+
+    /**
+     * 词汇重合度：回复中的词项出现在文档中的比例
+     *
+     * 词项切分（不依赖分词器）：
+     * - 中文：相邻汉字二元组 (bigram)
+     * - 英文 / 数字：连续字母数字串（小写），数字是库存、价格等事实的关键
+     */
+    private double lexicalOverlap(String context, String response) {
+        Set<String> responseTerms = terms(response);
+        if (responseTerms.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> contextTerms = terms(context);
+        long matched = responseTerms.stream().filter(contextTerms::contains).count();
+        return (double) matched / responseTerms.size();
+    }
+
+    private Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        StringBuilder word = new StringBuilder();
+        char prevCjk = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x4E00 && c <= 0x9FA5) {
+                if (prevCjk != 0) {
+                    terms.add(new String(new char[]{prevCjk, c}));
+                }
+                prevCjk = c;
+                flushWord(word, terms);
+            } else if (Character.isLetterOrDigit(c)) {
+                prevCjk = 0;
+                word.append(Character.toLowerCase(c));
+            } else {
+                prevCjk = 0;
+                flushWord(word, terms);
+            }
+        }
+        flushWord(word, terms);
+        return terms;
+    }
+
+    private void flushWord(StringBuilder word, Set<String> terms) {
+        if (word.length() > 1 || (word.length() == 1 && Character.isDigit(word.charAt(0)))) {
+            terms.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    private void countOutcome(String outcome) {
+        meterRegistry.counter("aidemo.verification", "outcome", outcome).increment();
+    }
+}
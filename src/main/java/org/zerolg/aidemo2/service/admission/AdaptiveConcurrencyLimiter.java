@@ -0,0 +1,62 @@
+package org.zerolg.aidemo2.service.admission;
+
+/**
+ * 自适应并发上限 (AIMD)
+ *
+ * 算法：
+ * - 加性增长 (Additive Increase): 请求成功且首包延迟低于目标时，limit += 1 / limit，
+ *   相当于每一"轮"满并发成功后上限 +1
+ * - 乘性收缩 (Multiplicative Decrease): 遇到限流 (429) 或首包延迟超过目标时，limit *= backoffRatio
+ *
+ * 与 TCP 拥塞控制同源：在模型端未过载时缓慢试探更高并发，一旦出现过载信号立即大幅退让，
+ * 避免所有在途请求一起被限流、一起变慢。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetMs;
+    private final double backoffRatio;
+
+    private double limit;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      long latencyTargetMs, double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTargetMs = latencyTargetMs;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 当前并发上限（向下取整）
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 记录一次成功请求的首包延迟
+     *
+     * @param latencyMs 获得许可到首个事件的耗时（毫秒）
+     */
+    public synchronized void onSample(long latencyMs) {
+        if (latencyMs > latencyTargetMs) {
+            decrease();
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * 记录一次过载信号（被模型限流）
+     */
+    public synchronized void onDropped() {
+        decrease();
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,348 @@
+package org.zerolg.aidemo2.service.admission;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
+import org.zerolg.aidemo2.common.BusinessException;
+import org.zerolg.aidemo2.common.ResultCode;
+import org.zerolg.aidemo2.properties.AdmissionProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 对话准入控制服务 (Admission Control)
+ *
+ * 核心职责：
+ * 1. 全局并发上限：同时进入 LLM 链路的对话数不超过自适应上限
+ * 2. 按用户公平排队：超出上限的请求按 userId 分队列，轮询 (Round-Robin) 出队，避免单用户刷屏饿死他人
+ * 3. 排队截止时间：等待超过 queueTimeout 的请求快速失败，由上层转换为 SSE 拒绝事件
+ * 4. 自适应：根据首包延迟和 429 限流信号，按 AIMD 调整并发上限
+ *
+ * 为什么需要：
+ * - 突发流量下所有请求一起打到模型，被限流后所有在途对话一起变慢（延迟雪崩）
+ * - 有损服务 (Load Shedding) 优于全部超时：少量请求快速拒绝，其余请求保持正常延迟
+ */
+@Service
+public class ChatAdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatAdmissionService.class);
+    private static final String ANONYMOUS = "anonymous";
+
+    private final AdmissionProperties properties;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueWaitTimer;
+
+    // 以下状态均由 this 锁保护
+    private final Map<String, ArrayDeque<Waiter>> waitingByUser = new HashMap<>();
+    private final ArrayDeque<String> userRotation = new ArrayDeque<>();
+    private int inFlight;
+    private int queued;
+
+    public ChatAdmissionService(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                properties.getInitialLimit(),
+                properties.getMinLimit(),
+                properties.getMaxLimit(),
+                properties.getLatencyTarget().toMillis(),
+                properties.getBackoffRatio());
+
+        Gauge.builder("aidemo.chat.admission.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("对话准入当前自适应并发上限")
+                .register(meterRegistry);
+        Gauge.builder("aidemo.chat.admission.inflight", this, ChatAdmissionService::getInFlight)
+                .description("对话准入当前在途请求数")
+                .register(meterRegistry);
+        Gauge.builder("aidemo.chat.admission.queued", this, ChatAdmissionService::getQueued)
+                .description("对话准入当前排队请求数")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("aidemo.chat.admission.queue.wait")
+                .description("对话请求排队等待时长")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        logger.info("ChatAdmissionService 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 在准入控制下执行对话流
+     *
+     * @param userId 用户 ID（公平排队的维度）
+     * @param work   获得许可后才会被调用的对话流工厂
+     * @return 对话流；被拒绝时以 BusinessException(CHAT_OVERLOADED) 结束
+     */
+    public <T> Flux<T> admit(String userId, Supplier<Flux<T>> work) {
+        return admit(userId, admission -> admission.track(Flux.defer(work)));
+    }
+
+    /**
+     * 在准入控制下执行对话流，许可跟随生成流而不是客户端连接
+     *
+     * 生成流与客户端连接解耦时（断线续传宽限期内生成继续运行），work 应通过 Admission.track 包装生成流：
+     * 许可在生成流终止时才释放，在途生成始终计入并发上限。
+     * 生成流开始前客户端断开或前置步骤失败时，许可随客户端流释放。
+     *
+     * @param userId 用户 ID（公平排队的维度）
+     * @param work   获得许可后才会被调用的对话流工厂
+     * @return 对话流；被拒绝时以 BusinessException(CHAT_OVERLOADED) 结束
+     */
+    public <T> Flux<T> admit(String userId, Function<Admission, Flux<T>> work) {
+        if (!properties.isEnabled()) {
+            return Flux.defer(() -> work.apply(new Admission(null)));
+        }
+
+        return acquire(normalize(userId)).flatMapMany(permit -> {
+            Admission admission = new Admission(permit);
+            return Flux.defer(() -> work.apply(admission))
+                    .doFinally(signal -> {
+                        if (!admission.tracking.get()) {
+                            admission.finish(signal);
+                        }
+                    });
+        });
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    // ==================== 许可获取与释放 ====================
+
+    private Mono<Permit> acquire(String userId) {
+        synchronized (this) {
+            // 快速路径：无人排队且未达上限，直接放行，不经过线程切换
+            if (queued == 0 && inFlight < limiter.getLimit()) {
+                inFlight++;
+                return Mono.just(new Permit());
+            }
+            if (queued >= properties.getMaxQueueSize()) {
+                return reject("queue_full", "系统繁忙，排队人数已满");
+            }
+            ArrayDeque<Waiter> userQueue = waitingByUser.get(userId);
+            if (userQueue != null && userQueue.size() >= properties.getPerUserMaxQueued()) {
+                return reject("user_queue_full", "您有过多请求正在排队，请等待上一条回复完成");
+            }
+        }
+
+        long enqueuedAt = System.nanoTime();
+        return Mono.<Permit>create(sink -> enqueue(userId, sink))
+                .timeout(properties.getQueueTimeout())
+                .onErrorMap(TimeoutException.class, e -> {
+                    countRejection("queue_timeout");
+                    return new BusinessException(ResultCode.CHAT_OVERLOADED, "排队超时，请稍后重试");
+                })
+                .doOnSuccess(p -> queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS))
+                // 出队发生在其他请求的释放线程上，切换到弹性线程执行后续的阻塞会话操作
+                .publishOn(Schedulers.boundedElastic());
+    }
+
+    private void enqueue(String userId, MonoSink<Permit> sink) {
+        Waiter waiter = new Waiter(userId, sink);
+        // 超时或客户端断开：移出队列；如果恰好已获得许可则归还
+        sink.onCancel(() -> cancel(waiter));
+
+        List<Waiter> granted;
+        synchronized (this) {
+            if (waiter.cancelled) {
+                return;
+            }
+            waitingByUser.computeIfAbsent(userId, k -> {
+                userRotation.addLast(k);
+                return new ArrayDeque<>();
+            }).addLast(waiter);
+            queued++;
+            granted = dispatchLocked();
+        }
+        deliver(granted);
+    }
+
+    private void cancel(Waiter waiter) {
+        Permit toRelease = null;
+        synchronized (this) {
+            if (waiter.permit != null) {
+                toRelease = waiter.permit;
+            } else if (!waiter.cancelled) {
+                waiter.cancelled = true;
+                ArrayDeque<Waiter> userQueue = waitingByUser.get(waiter.userId);
+                if (userQueue != null && userQueue.remove(waiter)) {
+                    queued--;
+                    if (userQueue.isEmpty()) {
+                        waitingByUser.remove(waiter.userId);
+                        userRotation.remove(waiter.userId);
+                    }
+                }
+            }
+        }
+        if (toRelease != null) {
+            toRelease.release();
+        }
+    }
+
+    private void onRelease() {
+        List<Waiter> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = dispatchLocked();
+        }
+        deliver(granted);
+    }
+
+    /**
+     * 按用户轮询出队，直到达到并发上限或队列为空
+     * 必须在持有 this 锁时调用；返回的许可在锁外投递
+     */
+    private List<Waiter> dispatchLocked() {
+        List<Waiter> granted = new ArrayList<>();
+        int limit = limiter.getLimit();
+        while (inFlight < limit && !userRotation.isEmpty()) {
+            String userId = userRotation.pollFirst();
+            ArrayDeque<Waiter> userQueue = waitingByUser.get(userId);
+            Waiter waiter = userQueue.pollFirst();
+            queued--;
+            if (userQueue.isEmpty()) {
+                waitingByUser.remove(userId);
+            } else {
+                userRotation.addLast(userId);
+            }
+            inFlight++;
+            waiter.permit = new Permit();
+            granted.add(waiter);
+        }
+        return granted;
+    }
+
+    private void deliver(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private <T> Mono<T> reject(String reason, String message) {
+        countRejection(reason);
+        return Mono.error(new BusinessException(ResultCode.CHAT_OVERLOADED, message));
+    }
+
+    private void countRejection(String reason) {
+        meterRegistry.counter("aidemo.chat.admission.rejected", "reason", reason).increment();
+    }
+
+    private String normalize(String userId) {
+        return (userId == null || userId.isBlank()) ? ANONYMOUS : userId;
+    }
+
+    /**
+     * 判断异常是否为模型端限流
+     * DashScope 限流返回 HTTP 429 / 错误码 Throttling，不同客户端包装的异常类型不一致，因此沿 cause 链匹配
+     */
+    public static boolean isRateLimited(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException re && re.getStatusCode().value() == 429) {
+                return true;
+            }
+            String message = t.getMessage();
+            if (message != null && (message.contains("429") || message.contains("Throttling"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一次准入：持有许可，并根据被跟踪的生成流的首包延迟与限流信号调整并发上限
+     */
+    public final class Admission {
+
+        // 准入控制关闭时为 null
+        private final Permit permit;
+        private final long grantedAt = System.nanoTime();
+        private final AtomicLong firstEventNanos = new AtomicLong(-1);
+        private final AtomicBoolean rateLimited = new AtomicBoolean(false);
+        private final AtomicBoolean tracking = new AtomicBoolean(false);
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private Admission(Permit permit) {
+            this.permit = permit;
+        }
+
+        /**
+         * 将许可绑定到生成流：生成流终止（完成、失败或被取消）时采样并释放许可
+         */
+        public <T> Flux<T> track(Flux<T> generation) {
+            return generation
+                    .doOnSubscribe(s -> tracking.set(true))
+                    .doOnNext(e -> firstEventNanos.compareAndSet(-1, System.nanoTime() - grantedAt))
+                    .doOnError(e -> {
+                        if (isRateLimited(e)) {
+                            rateLimited.set(true);
+                        }
+                    })
+                    .doFinally(this::finish);
+        }
+
+        private void finish(SignalType signal) {
+            if (permit == null || !finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (rateLimited.get()) {
+                limiter.onDropped();
+                logger.warn("检测到模型限流，收缩并发上限至 {}", limiter.getLimit());
+            } else if (signal == SignalType.ON_COMPLETE && firstEventNanos.get() >= 0) {
+                limiter.onSample(TimeUnit.NANOSECONDS.toMillis(firstEventNanos.get()));
+            }
+            permit.release();
+        }
+    }
+
+    /**
+     * 执行许可，release 幂等
+     */
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                onRelease();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final String userId;
+        private final MonoSink<Permit> sink;
+        // 以下字段由 ChatAdmissionService 锁保护
+        private Permit permit;
+        private boolean cancelled;
+
+        private Waiter(String userId, MonoSink<Permit> sink) {
+            this.userId = userId;
+            this.sink = sink;
+        }
+    }
+}
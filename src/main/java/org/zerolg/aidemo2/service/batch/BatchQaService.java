@@ -0,0 +1,431 @@
+package org.zerolg.aidemo2.service.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.model.BatchQaResult;
+import org.zerolg.aidemo2.model.BatchQuestion;
+import org.zerolg.aidemo2.model.QueryTrace;
+import org.zerolg.aidemo2.properties.BatchQaProperties;
+import org.zerolg.aidemo2.service.AiService;
+import org.zerolg.aidemo2.service.admission.AdaptiveConcurrencyLimiter;
+import org.zerolg.aidemo2.service.admission.ChatAdmissionService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量问答服务
+ *
+ * 用于知识库变更后的回归测试和缓存预热：一次提交成千上万个问题，走与 SSE 接口相同的 AiService 链路，
+ * 结果（回答、检索文档 ID、验证结果、各阶段耗时）逐行写入 JSONL 文件。
+ *
+ * 执行模型：
+ * - 相同 sessionId 的问题按序号顺序执行（多轮对话），不同会话之间并行
+ * - 并发上限为 parallelism，由 AIMD 自适应收缩：遇到模型限流时收缩并指数退避重试，首 token 过慢时同样收缩
+ *
+ * 断点续跑：
+ * - 输入写入 {jobId}.input.jsonl，结果追加到 {jobId}.jsonl，每完成一题立即 flush
+ * - 结果文件即检查点：服务重启后，状态仍为 RUNNING 的任务会跳过结果文件中已有的序号继续执行
+ * - 任务状态保存在 Redis Hash (aidemo:batch:job:{jobId})
+ */
+@Service
+public class BatchQaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchQaService.class);
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    private static final String INPUT_SUFFIX = ".input.jsonl";
+    private static final String OUTPUT_SUFFIX = ".jsonl";
+    // 等待并发许可的轮询间隔
+    private static final long SLOT_POLL_MS = 100;
+
+    private final AiService aiService;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final BatchQaProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public BatchQaService(AiService aiService, StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                          BatchQaProperties properties, MeterRegistry meterRegistry) {
+        this.aiService = aiService;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        logger.info("BatchQaService 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 提交批量任务
+     *
+     * @param questions   问题列表（index 按提交顺序重新分配）
+     * @param parallelism 最大并发，null 时使用默认配置，超过 maxParallelism 时截断
+     * @return jobId
+     */
+    public String submit(List<BatchQuestion> questions, Integer parallelism) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        int concurrency = clampParallelism(parallelism != null && parallelism > 0 ? parallelism : properties.getParallelism());
+
+        List<BatchQuestion> indexed = new ArrayList<>(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            BatchQuestion q = questions.get(i);
+            indexed.add(new BatchQuestion(i, q.question(), q.sessionId()));
+        }
+
+        Path dir = Files.createDirectories(Paths.get(properties.getOutputDir()));
+        try (BufferedWriter writer = Files.newBufferedWriter(dir.resolve(jobId + INPUT_SUFFIX), StandardCharsets.UTF_8)) {
+            for (BatchQuestion q : indexed) {
+                writer.write(objectMapper.writeValueAsString(q));
+                writer.newLine();
+            }
+        }
+
+        String statusKey = RedisKeys.BATCH_JOB_PREFIX + jobId;
+        Map<String, String> status = new LinkedHashMap<>();
+        status.put("status", STATUS_RUNNING);
+        status.put("total", String.valueOf(indexed.size()));
+        status.put("completed", "0");
+        status.put("failed", "0");
+        status.put("parallelism", String.valueOf(concurrency));
+        status.put("output", dir.resolve(jobId + OUTPUT_SUFFIX).toAbsolutePath().toString());
+        status.put("createdAt", String.valueOf(System.currentTimeMillis()));
+        redisTemplate.opsForHash().putAll(statusKey, status);
+
+        start(jobId, indexed, Set.of(), concurrency);
+        logger.info("批量问答任务已提交: jobId={}, questions={}, parallelism={}", jobId, indexed.size(), concurrency);
+        return jobId;
+    }
+
+    /**
+     * 查询任务状态
+     */
+    public Optional<Map<Object, Object>> getStatus(String jobId) {
+        Map<Object, Object> status = redisTemplate.opsForHash().entries(RedisKeys.BATCH_JOB_PREFIX + jobId);
+        if (status.isEmpty()) {
+            return Optional.empty();
+        }
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            status = new LinkedHashMap<>(status);
+            status.put("currentLimit", job.limiter.getLimit());
+        }
+        return Optional.of(status);
+    }
+
+    /**
+     * 结果文件路径（任务不存在时返回 empty）
+     */
+    public Optional<Path> getOutput(String jobId) {
+        Path output = Paths.get(properties.getOutputDir()).resolve(jobId + OUTPUT_SUFFIX);
+        return Files.exists(output) ? Optional.of(output) : Optional.empty();
+    }
+
+    /**
+     * 取消任务：正在执行的问题完成后停止，已完成的结果保留
+     */
+    public boolean cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancelled.set(true);
+        return true;
+    }
+
+    /**
+     * 服务重启后恢复未完成的任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        Path dir = Paths.get(properties.getOutputDir());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> inputs = Files.newDirectoryStream(dir, "*" + INPUT_SUFFIX)) {
+            for (Path input : inputs) {
+                String fileName = input.getFileName().toString();
+                String jobId = fileName.substring(0, fileName.length() - INPUT_SUFFIX.length());
+                Map<Object, Object> status = redisTemplate.opsForHash().entries(RedisKeys.BATCH_JOB_PREFIX + jobId);
+                if (!STATUS_RUNNING.equals(status.get("status")) || jobs.containsKey(jobId)) {
+                    continue;
+                }
+                List<BatchQuestion> questions = readLines(input, BatchQuestion.class);
+                Set<Integer> done = new HashSet<>();
+                Path output = dir.resolve(jobId + OUTPUT_SUFFIX);
+                if (Files.exists(output)) {
+                    readLines(output, BatchQaResult.class).forEach(r -> done.add(r.index()));
+                }
+                int parallelism = clampParallelism(Integer.parseInt(String.valueOf(
+                        status.getOrDefault("parallelism", String.valueOf(properties.getParallelism())))));
+                logger.info("恢复批量问答任务: jobId={}, 已完成 {}/{}", jobId, done.size(), questions.size());
+                start(jobId, questions, done, parallelism);
+            }
+        } catch (Exception e) {
+            logger.error("恢复批量问答任务失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 停机时不修改状态，重启后从检查点继续；被中断的问题不写入结果文件，重启后重新执行
+        jobs.values().forEach(job -> job.workers.shutdownNow());
+    }
+
+    private int clampParallelism(int parallelism) {
+        return Math.max(1, Math.min(parallelism, properties.getMaxParallelism()));
+    }
+
+    // ==================== 任务执行 ====================
+
+    private void start(String jobId, List<BatchQuestion> questions, Set<Integer> done, int parallelism) {
+        // 按会话分组：同一会话的问题按序号顺序执行，未指定会话的问题各自独立
+        Map<String, List<BatchQuestion>> groups = new LinkedHashMap<>();
+        for (BatchQuestion q : questions) {
+            if (done.contains(q.index())) {
+                continue;
+            }
+            String sessionId = q.sessionId() != null && !q.sessionId().isBlank()
+                    ? q.sessionId()
+                    : "batch-" + jobId + "-" + q.index();
+            groups.computeIfAbsent(sessionId, k -> new ArrayList<>())
+                    .add(new BatchQuestion(q.index(), q.question(), sessionId));
+        }
+
+        Job job = new Job(parallelism, new AdaptiveConcurrencyLimiter(parallelism, 1, parallelism,
+                properties.getLatencyTarget().toMillis(), 0.7));
+        job.pending.addAll(groups.values());
+        jobs.put(jobId, job);
+
+        BufferedWriter writer;
+        try {
+            writer = Files.newBufferedWriter(Paths.get(properties.getOutputDir()).resolve(jobId + OUTPUT_SUFFIX),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            jobs.remove(jobId);
+            throw new UncheckedIOException("打开结果文件失败: " + jobId, e);
+        }
+
+        AtomicInteger remainingWorkers = new AtomicInteger(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            job.workers.submit(() -> {
+                try {
+                    runWorker(jobId, job, writer);
+                } finally {
+                    if (remainingWorkers.decrementAndGet() == 0) {
+                        finish(jobId, job, writer);
+                    }
+                }
+            });
+        }
+        job.workers.shutdown();
+    }
+
+    private void runWorker(String jobId, Job job, BufferedWriter writer) {
+        List<BatchQuestion> group;
+        while (!job.cancelled.get() && !Thread.currentThread().isInterrupted() && (group = job.pending.poll()) != null) {
+            for (BatchQuestion question : group) {
+                if (job.cancelled.get() || !awaitSlot(job)) {
+                    return;
+                }
+                BatchQaResult result;
+                try {
+                    result = answer(question, job);
+                } finally {
+                    job.active.decrementAndGet();
+                }
+                if (result == null) {
+                    // 被中断（停机）：不写结果，结果文件是检查点，写入失败结果会让重启后跳过该题
+                    return;
+                }
+                write(jobId, writer, result);
+            }
+        }
+    }
+
+    /**
+     * 等待并发许可：在途问题数低于自适应上限时放行
+     */
+    private boolean awaitSlot(Job job) {
+        while (true) {
+            int active = job.active.get();
+            if (active < job.limiter.getLimit() && job.active.compareAndSet(active, active + 1)) {
+                return true;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(SLOT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 执行单个问题，限流时退避重试
+     * 注意：每次尝试都会在会话中写入一条用户消息（与 SSE 接口重试的行为一致）
+     *
+     * @return 结果；工作线程被中断（停机 shutdownNow）时返回 null，调用方不应写入结果
+     */
+    private BatchQaResult answer(BatchQuestion question, Job job) {
+        String error = null;
+        int attempt = 0;
+        while (attempt <= properties.getMaxRetries()) {
+            attempt++;
+            QueryTrace trace = new QueryTrace(true);
+            StringBuilder answer = new StringBuilder();
+            try {
+                aiService.processQuery(question.sessionId(), question.question(), properties.getUserId(), trace)
+                        .filter(event -> "message".equals(event.event()))
+                        .map(ServerSentEvent::data)
+                        .doOnNext(answer::append)
+                        .blockLast(properties.getQuestionTimeout());
+
+                Map<String, Long> timings = trace.timingsMillis();
+                if (timings.get("ttft") >= 0) {
+                    job.limiter.onSample(timings.get("ttft"));
+                }
+                meterRegistry.counter("aidemo.batch.questions", "outcome", "success").increment();
+                return new BatchQaResult(question.index(), question.question(), question.sessionId(), trace.getRoute(),
+                        answer.toString(), trace.getDocumentIds(), trace.getVerification(), timings, attempt, null);
+            } catch (Exception e) {
+                if (isInterrupted(e)) {
+                    // blockLast 被中断时抛出包装了 InterruptedException 的异常，并清除了中断标记
+                    Thread.currentThread().interrupt();
+                    logger.info("批量问答被中断，该题将在重启后重新执行: index={}", question.index());
+                    return null;
+                }
+                error = e.getMessage();
+                if (!ChatAdmissionService.isRateLimited(e) || attempt > properties.getMaxRetries()) {
+                    break;
+                }
+                job.limiter.onDropped();
+                long backoff = properties.getRetryBackoff().toMillis() << (attempt - 1);
+                logger.warn("批量问答遇到限流，{} ms 后重试 (并发上限收缩至 {}): index={}",
+                        backoff, job.limiter.getLimit(), question.index());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        meterRegistry.counter("aidemo.batch.questions", "outcome", "failure").increment();
+        return new BatchQaResult(question.index(), question.question(), question.sessionId(), null,
+                null, List.of(), null, Map.of(), attempt, error);
+    }
+
+    private boolean isInterrupted(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write(String jobId, BufferedWriter writer, BatchQaResult result) {
+        String statusKey = RedisKeys.BATCH_JOB_PREFIX + jobId;
+        try {
+            String line = objectMapper.writeValueAsString(result);
+            synchronized (writer) {
+                writer.write(line);
+                writer.newLine();
+                // 每题 flush，结果文件即检查点
+                writer.flush();
+            }
+        } catch (IOException e) {
+            logger.error("写入批量问答结果失败: jobId={}, index={}", jobId, result.index(), e);
+            return;
+        }
+        redisTemplate.opsForHash().increment(statusKey, result.error() == null ? "completed" : "failed", 1);
+    }
+
+    private void finish(String jobId, Job job, BufferedWriter writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.warn("关闭结果文件失败: jobId={}", jobId, e);
+        }
+        jobs.remove(jobId);
+        if (job.cancelled.get()) {
+            redisTemplate.opsForHash().put(RedisKeys.BATCH_JOB_PREFIX + jobId, "status", STATUS_CANCELLED);
+        } else if (job.pending.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            redisTemplate.opsForHash().put(RedisKeys.BATCH_JOB_PREFIX + jobId, "status", STATUS_COMPLETED);
+        }
+        logger.info("批量问答任务结束: jobId={}, cancelled={}", jobId, job.cancelled.get());
+    }
+
+    private <T> List<T> readLines(Path file, Class<T> type) throws IOException {
+        List<T> values = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                values.add(objectMapper.readValue(line, type));
+            } catch (IOException e) {
+                // 进程中断时最后一行可能不完整，忽略（该题会被重新执行）
+                logger.warn("跳过无法解析的行: file={}", file.getFileName());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 运行中的任务
+     */
+    private static final class Job {
+        private final ConcurrentLinkedQueue<List<BatchQuestion>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final ExecutorService workers;
+
+        private Job(int parallelism, AdaptiveConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(parallelism,
+                    r -> new Thread(r, "batch-qa-" + threadIndex.incrementAndGet()));
+        }
+    }
+}
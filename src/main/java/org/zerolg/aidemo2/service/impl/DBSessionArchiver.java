@@ -12,13 +12,18 @@ import org.zerolg.aidemo2.model.SessionEvent;
 import org.zerolg.aidemo2.service.SessionArchiver;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * 基于数据库的会话归档服务实现
  * 
  * 作用：
  * 替代之前的 LoggingSessionArchiver，将会话事件持久化到 PostgreSQL 数据库。
- * 使用 MyBatis Plus 的 Mapper 进行数据插入。
+ * 使用 MyBatis Plus 的 Mapper 进行数据插入，批量归档时整批一条多行 INSERT、一个事务。
  */
 @Service
 public class DBSessionArchiver implements SessionArchiver {
@@ -41,46 +46,75 @@ public class DBSessionArchiver implements SessionArchiver {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void archive(SessionEvent event) {
-        try {
-            logger.debug("开始归档事件: eventId={}", event.getEventId());
-
-            // 1. 将 SessionEvent 模型转换为 SessionArchive 实体
-            SessionArchive archive = new SessionArchive();
-
-            // 修复: 之前代码 setConversationId 调用了两次，逻辑冲突。
-            // 假设 conversationId 是主键，直接使用 event 中的会话ID
-            archive.setConversationId(event.getConversationId());
-
-            archive.setType(event.getType());
-
-            // 处理 Payload: String -> Object (为了让 MyBatis TypeHandler 正确处理 JSONB)
-            if (event.getPayload() != null) {
-                archive.setPayload(event.getPayload());
-            }
-
-            archive.setTimestamp(event.getTimestamp());
-            archive.setCreatedAt(Instant.now());
+        archiveAll(List.of(event));
+    }
 
-            // 2. 【关键】设置 UserId
-            // 优先从 Event 中获取 (假设 SessionEvent 有 getUserId 方法)
-            // String userId = event.getUserId(); 
-            // 如果 Event 中没有，尝试从 Payload JSON 中解析 (兜底策略)
-            String userId = "unknown";
-            if (event.getPayload() != null) {
-                userId = (String) event.getPayload().get("userId");
-                // 假设 payload 是数组且第一条包含 userId，或者 payload 本身有 userId 字段
+    /**
+     * 批量归档会话事件
+     * 
+     * 整批转换为 SessionArchive 后用一条多行 INSERT 写入，事件 ID 作为主键，
+     * ON CONFLICT DO NOTHING 跳过已归档的事件（Stream 重复投递、磁盘日志重放）。
+     * 
+     * @param events 需要归档的会话事件
+     * @return 实际新写入的事件数
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int archiveAll(List<SessionEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        try {
+            // 1. 将 SessionEvent 模型转换为 SessionArchive 实体，同一批内按事件 ID 去重
+            Map<String, SessionArchive> archives = new LinkedHashMap<>();
+            Instant now = Instant.now();
+            for (SessionEvent event : events) {
+                SessionArchive archive = toArchive(event, now);
+                archives.putIfAbsent(archive.getId(), archive);
             }
-            archive.setUserId(userId);
 
-            // 3. 插入数据库
-            sessionArchiveMapper.insert(archive);
+            // 2. 一条语句插入整批
+            int inserted = sessionArchiveMapper.insertBatchIgnoreExisting(new ArrayList<>(archives.values()));
 
-            logger.info("事件归档成功: id={}, type={}", archive.getConversationId(), archive.getType());
+            logger.debug("批量归档完成: events={}, inserted={}", events.size(), inserted);
+            return inserted;
 
         } catch (Exception e) {
-            logger.error("事件归档失败: eventId={}", event.getEventId(), e);
-            // 抛出异常以触发事务回滚 (如果有事务上下文) 或让上层调用者处理 (如 DLQ)
+            logger.error("批量归档失败: events={}", events.size(), e);
+            // 抛出异常以触发事务回滚，由上层调用者决定重试 (消息不确认，留在 PEL 中等待认领)
             throw new RuntimeException("归档失败", e);
         }
     }
+
+    private SessionArchive toArchive(SessionEvent event, Instant now) {
+        SessionArchive archive = new SessionArchive();
+        // 事件 ID 作为主键，保证幂等
+        archive.setId(event.getEventId() != null ? event.getEventId() : UUID.randomUUID().toString());
+        archive.setConversationId(event.getConversationId());
+        archive.setType(event.getType());
+        archive.setPayload(event.getPayload() != null ? event.getPayload() : Map.of());
+        archive.setTimestamp(event.getTimestamp() != null ? event.getTimestamp() : now);
+        archive.setCreatedAt(now);
+
+        // UserId：事件本身不携带，从 Payload 中解析
+        Object userId = userIdOf(event.getPayload());
+        archive.setUserId(userId != null ? userId.toString() : "unknown");
+        return archive;
+    }
+
+    /**
+     * MESSAGE_CREATED 事件的负载为 {"message": {..., "metadata": {"userId": ...}}}，
+     * 旧格式事件直接在负载顶层携带 userId
+     */
+    private static Object userIdOf(Map<String, Object> payload) {
+        if (payload == null) {
+            return null;
+        }
+        if (payload.get("message") instanceof Map<?, ?> message
+                && message.get("metadata") instanceof Map<?, ?> metadata
+                && metadata.get("userId") != null) {
+            return metadata.get("userId");
+        }
+        return payload.get("userId");
+    }
 }
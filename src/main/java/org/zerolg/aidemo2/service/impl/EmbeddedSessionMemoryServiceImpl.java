@@ -0,0 +1,560 @@
+package org.zerolg.aidemo2.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.model.SessionMetadata;
+import org.zerolg.aidemo2.properties.EmbeddedStoreProperties;
+import org.zerolg.aidemo2.properties.SessionProperties;
+import org.zerolg.aidemo2.service.SessionMemoryService;
+import org.zerolg.aidemo2.support.codec.SessionMessageCodec;
+import org.zerolg.aidemo2.support.store.MappedLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 会话记忆服务实现类（嵌入式，基于内存映射追加日志）
+ *
+ * 适用场景：单机部署（边缘节点、离线演示），会话读写不依赖 Redis。
+ * 通过 session.memory.store=embedded 启用，默认仍使用 RedisSessionMemoryServiceImpl。
+ *
+ * 存储结构：
+ * 1. 会话按 conversationId 哈希到 N 个分片，每个分片一个 MappedLog（见 EmbeddedStoreProperties）
+ * 2. 日志记录：MESSAGE（一条消息，负载尾部为 SessionMessageCodec 编码的消息）、META（元数据快照）、DELETE
+ * 3. 堆内索引：会话 -> 元数据 + 最近 maxMessages 条消息的日志位置与 Token 数，消息正文留在堆外映射区
+ *
+ * 读取：
+ * - getMessagesByTokenLimit 只在索引上按 Token 数回溯，然后仅解码选中的消息
+ * - 读取持分片读锁，写入、压缩持分片写锁
+ *
+ * 过期与压缩：
+ * - 会话在最后一次写入 / 刷新 TTL 后 session.memory.ttl 秒过期，过期后读取视为不存在
+ * - 后台定期检查各分片，存在过期会话或失效数据占比过高时，把存活数据重写为新一代日志
+ *   （先写消息、最后写元数据快照，重放结果与压缩前一致），提交后删除旧代
+ *
+ * 与 Redis 实现的差异：不发布会话事件流和心跳，基于事件流的异步归档、心跳扫描在该模式下不生效。
+ */
+@Service
+@ConditionalOnProperty(prefix = "session.memory", name = "store", havingValue = "embedded")
+public class EmbeddedSessionMemoryServiceImpl implements SessionMemoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedSessionMemoryServiceImpl.class);
+
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_META = 2;
+    private static final byte TYPE_DELETE = 3;
+
+    // 压缩统计时按每条记录的头部与会话 ID 等固定开销估算存活字节数
+    private static final int RECORD_OVERHEAD = 64;
+
+    private final SessionProperties sessionProperties;
+    private final EmbeddedStoreProperties storeProperties;
+    private final SessionMessageCodec messageCodec;
+    private final Shard[] shards;
+    private final ScheduledExecutorService compactor;
+
+    public EmbeddedSessionMemoryServiceImpl(SessionProperties sessionProperties,
+            EmbeddedStoreProperties storeProperties,
+            SessionMessageCodec messageCodec) throws IOException {
+        this.sessionProperties = sessionProperties;
+        this.storeProperties = storeProperties;
+        this.messageCodec = messageCodec;
+
+        long start = System.currentTimeMillis();
+        Path dir = Path.of(storeProperties.getDataDir());
+        this.shards = new Shard[storeProperties.getShards()];
+        int sessions = 0;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = openShard(dir, i);
+            sessions += shards[i].sessions.size();
+        }
+        logger.info("EmbeddedSessionMemoryServiceImpl 初始化完成: 恢复会话 {} 个, 耗时 {}ms, 配置: {}",
+                sessions, System.currentTimeMillis() - start, storeProperties);
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = storeProperties.getCompactionInterval().toMillis();
+        compactor.scheduleWithFixedDelay(this::compactAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 保存消息到会话
+     */
+    @Override
+    public long saveMessage(String conversationId, SessionMessage message) {
+        logger.debug("保存消息到会话: conversationId={}, messageId={}", conversationId, message.id());
+        String userId = (String) message.metadata().getOrDefault("userId", "unknown");
+        long now = System.currentTimeMillis();
+        byte[] encoded = messageCodec.encode(message);
+        byte[] payload = messagePayload(conversationId, now, message.tokens(), userId, encoded);
+
+        Shard shard = shardFor(conversationId);
+        shard.lock.writeLock().lock();
+        try {
+            MappedLog.Location location = shard.log.append(TYPE_MESSAGE, payload);
+            SessionState state = shard.sessions.computeIfAbsent(conversationId, id -> new SessionState());
+            if (isExpired(state, now)) {
+                state.reset();
+            }
+            applyMessage(state, now, userId,
+                    new MessageRef(location.skip(payload.length - encoded.length), message.tokens()));
+            logger.debug("消息已保存: conversationId={}, 列表长度={}", conversationId, state.messages.size());
+            return state.messages.size();
+        } catch (IOException e) {
+            logger.error("保存消息失败", e);
+            throw new UncheckedIOException("保存消息失败", e);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取最近的 N 条消息
+     */
+    @Override
+    public List<SessionMessage> getRecentMessages(String conversationId, int count) {
+        return decode(select(conversationId, count, Integer.MAX_VALUE));
+    }
+
+    /**
+     * 按 Token 限制获取消息（智能滑动窗口）
+     * 在堆内索引上从最新消息向前累加 Token 数，只解码放得进预算的消息
+     */
+    @Override
+    public List<SessionMessage> getMessagesByTokenLimit(String conversationId, int maxTokens) {
+        return decode(select(conversationId, Integer.MAX_VALUE, maxTokens));
+    }
+
+    /**
+     * 获取会话元数据
+     */
+    @Override
+    public SessionMetadata getMetadata(String conversationId) {
+        Shard shard = shardFor(conversationId);
+        shard.lock.readLock().lock();
+        try {
+            SessionState state = shard.sessions.get(conversationId);
+            if (state == null || !state.hasMetadata || isExpired(state, System.currentTimeMillis())) {
+                return null;
+            }
+            return new SessionMetadata(state.userId, state.createdAt, state.lastActiveAt,
+                    state.messageCount, state.totalTokens, state.status);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 创建新会话
+     */
+    @Override
+    public void createSession(String conversationId, String userId) {
+        SessionMetadata metadata = SessionMetadata.createNew(userId);
+        updateMetadata(conversationId, true, state -> {
+            state.hasMetadata = true;
+            state.userId = metadata.userId();
+            state.createdAt = metadata.createdAt();
+            state.lastActiveAt = metadata.lastActiveAt();
+            state.messageCount = metadata.messageCount();
+            state.totalTokens = metadata.totalTokens();
+            state.status = metadata.status();
+            state.touchedAt = metadata.createdAt();
+        });
+    }
+
+    /**
+     * 删除会话（物理删除）
+     * 追加删除记录并移除索引，日志中的旧数据在下次压缩时清理
+     */
+    @Override
+    public void deleteSession(String conversationId) {
+        Shard shard = shardFor(conversationId);
+        shard.lock.writeLock().lock();
+        try {
+            if (shard.sessions.remove(conversationId) != null) {
+                shard.log.append(TYPE_DELETE, header(conversationId, System.currentTimeMillis(), 0).array());
+            }
+        } catch (IOException e) {
+            logger.error("删除会话失败", e);
+            throw new UncheckedIOException("删除会话失败", e);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 归档会话
+     * 标记会话状态为 archived（与 Redis 实现一致，不刷新过期时间）
+     */
+    @Override
+    public void archiveSession(String conversationId) {
+        updateMetadata(conversationId, false, state -> state.status = "archived");
+    }
+
+    /**
+     * 检查会话是否存在
+     */
+    @Override
+    public boolean sessionExists(String conversationId) {
+        return getMetadata(conversationId) != null;
+    }
+
+    /**
+     * 刷新会话 TTL
+     */
+    @Override
+    public void refreshSessionTTL(String conversationId) {
+        long now = System.currentTimeMillis();
+        updateMetadata(conversationId, false, state -> state.touchedAt = now);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+        for (Shard shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                shard.log.close();
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // ==================== 读写 ====================
+
+    /**
+     * 在索引上从最新消息向前选取，最多 maxCount 条、Token 总数不超过 maxTokens，返回编码后的消息（按时间正序）
+     */
+    private List<byte[]> select(String conversationId, int maxCount, int maxTokens) {
+        Shard shard = shardFor(conversationId);
+        shard.lock.readLock().lock();
+        try {
+            SessionState state = shard.sessions.get(conversationId);
+            if (state == null || isExpired(state, System.currentTimeMillis())) {
+                return Collections.emptyList();
+            }
+            List<byte[]> selected = new ArrayList<>();
+            int tokens = 0;
+            Iterator<MessageRef> it = state.messages.descendingIterator();
+            while (it.hasNext() && selected.size() < maxCount) {
+                MessageRef ref = it.next();
+                // 如果加上这条消息会超过最大 Token 限制，则停止添加
+                if (tokens + ref.tokens() > maxTokens) {
+                    break;
+                }
+                tokens += ref.tokens();
+                selected.add(ref.location().read());
+            }
+            return selected.reversed();
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 解码在锁外进行，读锁只覆盖从映射区复制字节
+     */
+    private List<SessionMessage> decode(List<byte[]> values) {
+        List<SessionMessage> messages = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            try {
+                messages.add(messageCodec.decode(value));
+            } catch (Exception e) {
+                logger.warn("消息解码失败，已跳过: {}", e.getMessage());
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 修改元数据并追加快照；会话不存在（或已过期）且 create=false 时忽略
+     */
+    private void updateMetadata(String conversationId, boolean create, Consumer<SessionState> change) {
+        long now = System.currentTimeMillis();
+        Shard shard = shardFor(conversationId);
+        shard.lock.writeLock().lock();
+        try {
+            SessionState state = shard.sessions.get(conversationId);
+            if (state != null && isExpired(state, now)) {
+                state.reset();
+            }
+            if (state == null || !state.hasMetadata) {
+                if (!create) {
+                    return;
+                }
+                if (state == null) {
+                    state = new SessionState();
+                    shard.sessions.put(conversationId, state);
+                }
+            }
+            change.accept(state);
+            shard.log.append(TYPE_META, metaPayload(conversationId, now, state));
+        } catch (IOException e) {
+            logger.error("更新会话元数据失败", e);
+            throw new UncheckedIOException("更新会话元数据失败", e);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 与 save_message.lua 语义一致：会话首次写入时初始化元数据，计数累加，超出 maxMessages 时丢弃最旧的消息
+     */
+    private void applyMessage(SessionState state, long timestamp, String userId, MessageRef ref) {
+        if (!state.hasMetadata) {
+            state.hasMetadata = true;
+            state.userId = userId;
+            state.createdAt = timestamp;
+            state.messageCount = 0;
+            state.totalTokens = 0;
+            state.status = "active";
+        }
+        state.messageCount++;
+        state.totalTokens += ref.tokens();
+        state.lastActiveAt = timestamp;
+        state.touchedAt = timestamp;
+        state.messages.addLast(ref);
+        while (state.messages.size() > sessionProperties.getMaxMessages()) {
+            state.messages.removeFirst();
+        }
+    }
+
+    private boolean isExpired(SessionState state, long now) {
+        return now - state.touchedAt > sessionProperties.getTtl() * 1000;
+    }
+
+    private Shard shardFor(String conversationId) {
+        return shards[Math.floorMod(conversationId.hashCode(), shards.length)];
+    }
+
+    // ==================== 恢复与压缩 ====================
+
+    private Shard openShard(Path dir, int id) throws IOException {
+        Shard shard = new Shard(id);
+        shard.log = MappedLog.open(dir, "shard-" + id, storeProperties.getSegmentSize(),
+                storeProperties.isSyncWrites(), (type, location) -> replay(shard, type, location));
+        return shard;
+    }
+
+    private void replay(Shard shard, byte type, MappedLog.Location location) {
+        ByteBuffer buffer = location.view();
+        String conversationId = readString(buffer);
+        long timestamp = buffer.getLong();
+        switch (type) {
+            case TYPE_MESSAGE -> {
+                int tokens = buffer.getInt();
+                String userId = readString(buffer);
+                SessionState state = shard.sessions.computeIfAbsent(conversationId, id -> new SessionState());
+                if (isExpired(state, timestamp)) {
+                    state.reset();
+                }
+                applyMessage(state, timestamp, userId, new MessageRef(location.skip(buffer.position()), tokens));
+            }
+            case TYPE_META -> {
+                SessionState state = shard.sessions.computeIfAbsent(conversationId, id -> new SessionState());
+                // 过期后只有 createSession 会写入元数据快照，与运行时一样从空会话开始
+                if (isExpired(state, timestamp)) {
+                    state.reset();
+                }
+                state.hasMetadata = true;
+                state.userId = readString(buffer);
+                state.createdAt = buffer.getLong();
+                state.lastActiveAt = buffer.getLong();
+                state.messageCount = buffer.getInt();
+                state.totalTokens = buffer.getInt();
+                state.status = readString(buffer);
+                state.touchedAt = buffer.getLong();
+            }
+            case TYPE_DELETE -> shard.sessions.remove(conversationId);
+            default -> logger.warn("未知的日志记录类型，已跳过: shard={}, type={}", shard.id, type);
+        }
+    }
+
+    private void compactAll() {
+        for (Shard shard : shards) {
+            try {
+                compactIfNeeded(shard);
+            } catch (Exception e) {
+                logger.error("会话存储分片压缩失败: shard={}", shard.id, e);
+            }
+        }
+    }
+
+    /**
+     * 压缩期间持有分片写锁，只阻塞落在该分片上的会话
+     */
+    private void compactIfNeeded(Shard shard) throws IOException {
+        long now = System.currentTimeMillis();
+        shard.lock.writeLock().lock();
+        try {
+            boolean hasExpired = false;
+            long liveBytes = 0;
+            for (SessionState state : shard.sessions.values()) {
+                if (isExpired(state, now)) {
+                    hasExpired = true;
+                    continue;
+                }
+                liveBytes += RECORD_OVERHEAD;
+                for (MessageRef ref : state.messages) {
+                    liveBytes += ref.location().length() + RECORD_OVERHEAD;
+                }
+            }
+            long totalBytes = shard.log.size();
+            double garbageRatio = totalBytes == 0 ? 0 : 1 - (double) liveBytes / totalBytes;
+            if (!hasExpired && garbageRatio < storeProperties.getCompactionGarbageRatio()) {
+                return;
+            }
+            compact(shard, now, totalBytes);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    private void compact(Shard shard, long now, long totalBytes) throws IOException {
+        MappedLog next = shard.log.nextGeneration();
+        Map<SessionState, ArrayDeque<MessageRef>> moved = new HashMap<>();
+        List<String> expired = new ArrayList<>();
+        try {
+            for (Map.Entry<String, SessionState> entry : shard.sessions.entrySet()) {
+                String conversationId = entry.getKey();
+                SessionState state = entry.getValue();
+                if (isExpired(state, now)) {
+                    expired.add(conversationId);
+                    continue;
+                }
+                ArrayDeque<MessageRef> refs = new ArrayDeque<>(state.messages.size());
+                for (MessageRef ref : state.messages) {
+                    byte[] encoded = ref.location().read();
+                    // 时间戳取 TTL 起算时间，保证重放到元数据快照时会话不会被判定为过期
+                    byte[] payload = messagePayload(conversationId, state.touchedAt, ref.tokens(), state.userId, encoded);
+                    refs.addLast(new MessageRef(next.append(TYPE_MESSAGE, payload)
+                            .skip(payload.length - encoded.length), ref.tokens()));
+                }
+                // 元数据快照写在消息之后，重放时覆盖消息记录累加出的计数
+                if (state.hasMetadata) {
+                    next.append(TYPE_META, metaPayload(conversationId, now, state));
+                }
+                moved.put(state, refs);
+            }
+            next.commit();
+        } catch (IOException | RuntimeException e) {
+            next.delete();
+            throw e;
+        }
+
+        MappedLog previous = shard.log;
+        shard.log = next;
+        moved.forEach((state, refs) -> state.messages = refs);
+        expired.forEach(shard.sessions::remove);
+        previous.delete();
+        logger.info("会话存储分片压缩完成: shard={}, generation={}, 清理过期会话 {} 个, 字节 {} -> {}",
+                shard.id, next.generation(), expired.size(), totalBytes, next.size());
+    }
+
+    // ==================== 记录编码 ====================
+
+    /**
+     * MESSAGE 负载：[会话 ID][时间戳][Token 数][用户 ID][编码后的消息]
+     */
+    private static byte[] messagePayload(String conversationId, long timestamp, int tokens, String userId, byte[] encoded) {
+        byte[] user = userId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = header(conversationId, timestamp, 4 + 4 + user.length + encoded.length);
+        buffer.putInt(tokens);
+        buffer.putInt(user.length).put(user);
+        buffer.put(encoded);
+        return buffer.array();
+    }
+
+    /**
+     * META 负载：[会话 ID][时间戳][用户 ID][创建时间][最后活跃时间][消息数][Token 数][状态][TTL 起算时间]
+     */
+    private static byte[] metaPayload(String conversationId, long timestamp, SessionState state) {
+        byte[] user = state.userId.getBytes(StandardCharsets.UTF_8);
+        byte[] status = state.status.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = header(conversationId, timestamp, 4 + user.length + 8 + 8 + 4 + 4 + 4 + status.length + 8);
+        buffer.putInt(user.length).put(user);
+        buffer.putLong(state.createdAt);
+        buffer.putLong(state.lastActiveAt);
+        buffer.putInt(state.messageCount);
+        buffer.putInt(state.totalTokens);
+        buffer.putInt(status.length).put(status);
+        buffer.putLong(state.touchedAt);
+        return buffer.array();
+    }
+
+    /**
+     * 公共前缀：[会话 ID][时间戳]，返回已写入前缀、剩余 extra 字节待写的缓冲区
+     */
+    private static ByteBuffer header(String conversationId, long timestamp, int extra) {
+        byte[] id = conversationId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + id.length + 8 + extra);
+        buffer.putInt(id.length).put(id);
+        buffer.putLong(timestamp);
+        return buffer;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ==================== 内部类型 ====================
+
+    private static final class Shard {
+        private final int id;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, SessionState> sessions = new HashMap<>();
+        private MappedLog log;
+
+        private Shard(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 会话索引：元数据 + 最近消息的日志位置
+     */
+    private static final class SessionState {
+        private ArrayDeque<MessageRef> messages = new ArrayDeque<>();
+        private boolean hasMetadata;
+        private String userId;
+        private long createdAt;
+        private long lastActiveAt;
+        private int messageCount;
+        private int totalTokens;
+        private String status;
+        // TTL 起算时间：写入消息、创建会话、刷新 TTL 时更新
+        private long touchedAt;
+
+        /**
+         * 会话已过期但尚未被压缩清理时，新的写入从空会话开始（对应 Redis 中 Key 过期后重新创建）
+         */
+        private void reset() {
+            messages = new ArrayDeque<>();
+            hasMetadata = false;
+            messageCount = 0;
+            totalTokens = 0;
+        }
+    }
+
+    private record MessageRef(MappedLog.Location location, int tokens) {
+    }
+}
@@ -1,20 +1,24 @@
 package org.zerolg.aidemo2.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.connection.stream.StreamRecords;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
-import org.zerolg.aidemo2.model.SessionEvent;
+import org.zerolg.aidemo2.constant.RedisKeys;
 import org.zerolg.aidemo2.model.SessionMessage;
 import org.zerolg.aidemo2.model.SessionMetadata;
 import org.zerolg.aidemo2.properties.SessionProperties;
 import org.zerolg.aidemo2.service.SessionMemoryService;
+import org.zerolg.aidemo2.service.memory.SessionNearCache;
+import org.zerolg.aidemo2.service.stream.SessionEventPublisher;
+import org.zerolg.aidemo2.support.codec.SessionMessageCodec;
 
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -23,156 +27,128 @@ import java.util.concurrent.TimeUnit;
  * 
  * 核心功能：
  * 1. 提供基于 Redis List 的热数据存储，保证对话上下文的快速读写。
- * 2. 集成 Redis Stream，将所有会话事件（如消息创建）作为不可变日志发布，用于异步归档和审计。
+ * 2. 集成 Redis Stream，将所有会话事件（如消息创建）作为不可变日志发布，用于异步归档和审计
+ *    （由 SessionEventPublisher 在后台批量发布，不占用写消息的请求线程）。
  * 3. 维护会话元数据（Token 计数、最后活跃时间等）。
+ * 
+ * Key 布局：aidemo:session:{conversationId}:msg / :meta（见 RedisKeys），与归档、回捞、一致性校验等路径共用同一份数据。
+ * 消息由 SessionMessageCodec 编码（默认紧凑二进制格式），元数据字段为纯字符串 / 数字。
+ * 
+ * 近端缓存 (SessionNearCache) 启用时，消息窗口与元数据的读取优先命中 JVM 内缓存，
+ * 连续对话的 sessionExists / getMessagesByTokenLimit 不产生 Redis 往返。
+ * 
+ * 默认实现；session.memory.store=embedded 时由 EmbeddedSessionMemoryServiceImpl 替代。
  */
 @Service
+@ConditionalOnProperty(prefix = "session.memory", name = "store", havingValue = "redis", matchIfMissing = true)
 public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisSessionMemoryServiceImpl.class);
 
-    // Redis Key 前缀定义
-    private static final String MESSAGE_KEY_PREFIX = "session:messages:"; // 消息列表 Key 前缀
-    private static final String META_KEY_PREFIX = "session:meta:"; // 元数据 Hash Key 前缀
-    private static final String STREAM_KEY = "session:event:stream"; // 事件流 Key (全局唯一)
-
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final StringRedisTemplate stringRedisTemplate;
+    // 写入脚本：启动时加载一次，执行时使用 EVALSHA（服务端脚本缓存丢失时自动回退到 EVAL）
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SAVE_MESSAGE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/save_message.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LOAD_SESSION_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/load_session.lua"), List.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SELECT_BY_TOKENS_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/select_by_tokens.lua"), List.class);
+    private static final RedisScript<Long> REBUILD_TOKEN_INDEX_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/rebuild_token_index.lua"), Long.class);
+
+    // 脚本参数与返回的消息均为原始字节（消息编码后不一定是合法 UTF-8）
+    @SuppressWarnings("rawtypes")
+    private static final RedisSerializer BINARY = RedisSerializer.byteArray();
+
+    private final StringRedisTemplate redisTemplate;
     private final SessionProperties sessionProperties;
-    private final ObjectMapper objectMapper;
+    private final SessionMessageCodec messageCodec;
+    private final SessionNearCache nearCache;
+    private final SessionEventPublisher eventPublisher;
 
-    public RedisSessionMemoryServiceImpl(RedisTemplate<String, Object> redisTemplate,
-            StringRedisTemplate stringRedisTemplate,
+    public RedisSessionMemoryServiceImpl(StringRedisTemplate redisTemplate,
             SessionProperties sessionProperties,
-            ObjectMapper objectMapper) {
+            SessionMessageCodec messageCodec,
+            SessionNearCache nearCache,
+            SessionEventPublisher eventPublisher) {
         this.redisTemplate = redisTemplate;
-        this.stringRedisTemplate = stringRedisTemplate;
         this.sessionProperties = sessionProperties;
-        this.objectMapper = objectMapper;
+        this.messageCodec = messageCodec;
+        this.nearCache = nearCache;
+        this.eventPublisher = eventPublisher;
         logger.info("SessionMemoryService 初始化完成，配置: {}", sessionProperties);
     }
 
     /**
      * 保存消息到会话
      * 
-     * 采用混合写入策略：
-     * 1. 同步写入 Redis List：确保当前对话上下文立即可用（Read-Your-Writes）。
-     * 2. 同步发布到 Redis Stream：确保事件被可靠记录，供异步归档服务消费。
+     * 1. 一个 Lua 脚本 (lua/save_message.lua) 在服务端原子完成会话自身的写入：
+     *    RPUSH 消息、追加 Token 前缀和、初始化 / 更新元数据（消息数、Token 总数、lastActiveAt）、
+     *    LTRIM 滑动窗口裁剪、刷新 TTL。
+     *    脚本只操作同一哈希槽内的 Key，在 Redis Cluster 下同样可用。
+     * 2. 心跳 ZSET 与事件 Stream 是全局 Key，不在会话槽位内，事件交给 SessionEventPublisher 入队后立即返回，
+     *    由后台线程批量管道写入（ZADD 更新心跳，XADD 发布会话事件供异步归档服务消费）。
+     * 
+     * 原先的 RPUSH / XADD / EXISTS / HINCRBY / HSET / LTRIM / EXPIRE 约 8 次往返合并为请求线程上的 1 次。
+     * 3. 脚本返回写入后的 messageCount，用于原地更新本节点的近端缓存；
+     *    其他节点的失效通知由脚本在同一次往返内 PUBLISH，请求线程上不再有单独的 PUBLISH 往返。
+     *
+     * @return 写入并裁剪后的消息列表长度
      */
     @Override
-    public void saveMessage(String conversationId, SessionMessage message) {
+    @SuppressWarnings("unchecked")
+    public long saveMessage(String conversationId, SessionMessage message) {
         try {
             logger.debug("保存消息到会话: conversationId={}, messageId={}", conversationId, message.id());
 
-            String messageKey = MESSAGE_KEY_PREFIX + conversationId;
-            String metaKey = META_KEY_PREFIX + conversationId;
+            String userId = (String) message.metadata().getOrDefault("userId", "unknown");
+            long now = System.currentTimeMillis();
 
-            // 将消息对象序列化为 JSON 字符串
-            String messageJson = objectMapper.writeValueAsString(message);
+            List<Long> result = (List<Long>) redisTemplate.execute(SAVE_MESSAGE_SCRIPT, BINARY, BINARY,
+                    List.of(RedisKeys.sessionMessagesKey(conversationId),
+                            RedisKeys.sessionMetaKey(conversationId),
+                            RedisKeys.sessionTokenIndexKey(conversationId)),
+                    messageCodec.encode(message),
+                    utf8(String.valueOf(message.tokens())),
+                    utf8(String.valueOf(now)),
+                    utf8(String.valueOf(sessionProperties.getMaxMessages())),
+                    utf8(String.valueOf(sessionProperties.getTtl())),
+                    utf8(userId),
+                    utf8("active"),
+                    utf8(RedisKeys.SESSION_INVALIDATION_CHANNEL),
+                    utf8(nearCache.invalidationMessage(conversationId)));
 
-            // 1. 保存到 List (热数据)
-            // 使用 RPUSH 将新消息追加到列表末尾，保持时间顺序
-            Long listSize = redisTemplate.opsForList().rightPush(messageKey, messageJson);
+            long listSize = result.get(0);
+            nearCache.applyLocalWrite(conversationId, message, result.get(1), now, sessionProperties.getMaxMessages());
 
-            // 2. 发布到 Stream (可靠日志)
-            // 将消息封装为事件，发布到 Redis Stream，用于后续的异步归档和审计
-            publishToStream(conversationId, message);
-
-            // 3. 更新元数据
-            // 如果会话不存在，先创建会话元数据
-            if (!sessionExists(conversationId)) {
-                String userId = (String) message.metadata().getOrDefault("userId", "unknown");
-                createSession(conversationId, userId);
-            }
-
-            // 原子递增消息数量和 Token 总数
-            redisTemplate.opsForHash().increment(metaKey, "messageCount", 1);
-            redisTemplate.opsForHash().increment(metaKey, "totalTokens", message.tokens());
-            // 更新最后活跃时间戳
-            redisTemplate.opsForHash().put(metaKey, "lastActiveAt", System.currentTimeMillis());
-
-            // 4. 裁剪消息列表 (滑动窗口)
-            // 如果消息数量超过配置的最大限制，删除最旧的消息，只保留最近的 N 条
-            if (listSize != null && listSize > sessionProperties.getMaxMessages()) {
-                long start = listSize - sessionProperties.getMaxMessages();
-                // LTRIM: 保留指定范围内的元素，删除其他元素
-                redisTemplate.opsForList().trim(messageKey, start, -1);
-                logger.info("会话消息已裁剪: conversationId={}, 保留数量={}", conversationId, sessionProperties.getMaxMessages());
-            }
+            eventPublisher.publishMessageCreated(conversationId, message, now);
 
-            // 5. 刷新 TTL (生存时间)
-            // 每次活跃都重置过期时间，防止活跃会话被清除
-            refreshSessionTTL(conversationId);
+            logger.debug("消息已保存: conversationId={}, 列表长度={}", conversationId, listSize);
+            return listSize;
 
-        } catch (JsonProcessingException e) {
-            logger.error("消息序列化失败", e);
-            throw new RuntimeException("消息序列化失败", e);
         } catch (Exception e) {
             logger.error("保存消息失败", e);
             throw new RuntimeException("保存消息失败", e);
         }
     }
 
-    /**
-     * 将会话消息发布到 Redis Stream
-     */
-    private void publishToStream(String conversationId, SessionMessage message) {
-        try {
-            // 构建会话事件对象
-            SessionEvent event = new SessionEvent();
-            event.setEventId(UUID.randomUUID().toString()); // 生成唯一事件 ID
-            event.setConversationId(conversationId);
-            event.setType("MESSAGE_CREATED"); // 事件类型：消息创建
-            event.setTimestamp(Instant.now()); // 事件发生时间
-
-            // 将消息内容转换为 Map 作为事件负载
-            Map<String, Object> messageMap = objectMapper.convertValue(message, Map.class);
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("message", messageMap);
-            event.setPayload(payload);
-
-            // 序列化事件对象
-            String eventJson = objectMapper.writeValueAsString(event);
-
-            // 写入 Redis Stream
-            // StreamRecords.newRecord() 创建一条新记录
-            // .ofObject(eventJson) 设置记录内容
-            // .withStreamKey(STREAM_KEY) 指定 Stream 的 Key
-            stringRedisTemplate.opsForStream().add(
-                    StreamRecords.newRecord()
-                            .ofObject(eventJson)
-                            .withStreamKey(STREAM_KEY));
-        } catch (Exception e) {
-            // Stream 发布失败不应阻塞主流程，记录错误日志即可
-            // 在生产环境中，这里可以加入重试机制或降级策略
-            logger.error("发布会话事件到 Stream 失败 (非阻塞)", e);
-        }
-    }
-
     /**
      * 获取最近的 N 条消息
      */
     @Override
     public List<SessionMessage> getRecentMessages(String conversationId, int count) {
         try {
-            String messageKey = MESSAGE_KEY_PREFIX + conversationId;
-            // LRANGE: 获取列表指定范围的元素，-count 表示倒数第 count 个
-            List<Object> messageJsonList = redisTemplate.opsForList().range(messageKey, -count, -1);
-
-            if (messageJsonList == null || messageJsonList.isEmpty()) {
-                return Collections.emptyList();
+            if (nearCache.isEnabled()) {
+                List<SessionMessage> window = window(conversationId).messages();
+                return new ArrayList<>(window.subList(Math.max(0, window.size() - count), window.size()));
             }
-
-            List<SessionMessage> messages = new ArrayList<>();
-            for (Object json : messageJsonList) {
-                try {
-                    // 反序列化 JSON 为 SessionMessage 对象
-                    messages.add(objectMapper.readValue(json.toString(), SessionMessage.class));
-                } catch (Exception e) {
-                    logger.error("反序列化消息失败", e);
-                }
-            }
-            return messages;
+            byte[] messageKey = utf8(RedisKeys.sessionMessagesKey(conversationId));
+            // LRANGE: 获取列表指定范围的元素，-count 表示倒数第 count 个
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.listCommands().lRange(messageKey, -count, -1));
+            return decode(values);
         } catch (Exception e) {
             logger.error("获取最近消息失败", e);
             return Collections.emptyList();
@@ -181,30 +157,146 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
 
     /**
      * 按 Token 限制获取消息（智能滑动窗口）
-     * 从最新的消息开始回溯，直到累计 Token 数达到限制。
+     * 
+     * 借助 Token 前缀和列表 (aidemo:session:{conversationId}:tok)：
+     * 最近 k 条消息的 Token 总和 = total - tok[n - k]，在服务端脚本中二分查找起点，
+     * 再用一次 LRANGE 只取回放得进预算的消息，不再固定拉取并反序列化 100 条。
+     * 
+     * 索引缺失或错位（回捞、迁移写入的消息没有索引）时退回全量读取，并顺带重建索引。
+     * 
+     * 近端缓存启用时直接在本地窗口上选取（未命中时一次加载整个窗口，后续轮次均命中缓存）。
      */
     @Override
     public List<SessionMessage> getMessagesByTokenLimit(String conversationId, int maxTokens) {
-        // 1. 先获取最近的 100 条消息（假设足够覆盖上下文窗口）
-        List<SessionMessage> allMessages = getRecentMessages(conversationId, 100);
-        if (allMessages.isEmpty())
+        try {
+            if (nearCache.isEnabled()) {
+                return selectByTokenLimit(window(conversationId).messages(), maxTokens);
+            }
+            String messageKey = RedisKeys.sessionMessagesKey(conversationId);
+            String indexKey = RedisKeys.sessionTokenIndexKey(conversationId);
+
+            @SuppressWarnings("unchecked")
+            List<byte[]> selected = (List<byte[]>) redisTemplate.execute(SELECT_BY_TOKENS_SCRIPT, BINARY, BINARY,
+                    List.of(messageKey, indexKey), utf8(String.valueOf(maxTokens)));
+            if (selected != null) {
+                return decode(selected);
+            }
+
+            logger.debug("Token 索引缺失，重建: conversationId={}", conversationId);
+            List<SessionMessage> allMessages = getRecentMessages(conversationId, sessionProperties.getMaxMessages());
+            rebuildTokenIndex(messageKey, indexKey, allMessages);
+            return selectByTokenLimit(allMessages, maxTokens);
+        } catch (Exception e) {
+            logger.error("按 Token 限制获取消息失败", e);
             return Collections.emptyList();
+        }
+    }
 
-        List<SessionMessage> selected = new ArrayList<>();
+    /**
+     * 从最新的消息开始回溯，直到累计 Token 数达到限制
+     */
+    private List<SessionMessage> selectByTokenLimit(List<SessionMessage> allMessages, int maxTokens) {
         int currentTokens = 0;
-
-        // 2. 倒序遍历（从最新到最旧）
-        for (int i = allMessages.size() - 1; i >= 0; i--) {
-            SessionMessage msg = allMessages.get(i);
+        int start = allMessages.size();
+        // 倒序遍历（从最新到最旧）
+        while (start > 0) {
+            SessionMessage msg = allMessages.get(start - 1);
             // 如果加上这条消息会超过最大 Token 限制，则停止添加
             if (currentTokens + msg.tokens() > maxTokens)
                 break;
-
-            // 将消息插入到列表头部，保持时间正序
-            selected.add(0, msg);
             currentTokens += msg.tokens();
+            start--;
         }
-        return selected;
+        return new ArrayList<>(allMessages.subList(start, allMessages.size()));
+    }
+
+    /**
+     * 根据完整消息列表重建 Token 前缀和；消息列表在此期间被修改时放弃，下次读取再重建
+     */
+    private void rebuildTokenIndex(String messageKey, String indexKey, List<SessionMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Object[] args = new Object[messages.size() + 2];
+        args[0] = String.valueOf(messages.size());
+        long cumulative = 0;
+        args[1] = "0";
+        for (int i = 0; i < messages.size(); i++) {
+            cumulative += messages.get(i).tokens();
+            args[i + 2] = String.valueOf(cumulative);
+        }
+        redisTemplate.execute(REBUILD_TOKEN_INDEX_SCRIPT, List.of(messageKey, indexKey), args);
+    }
+
+    private List<SessionMessage> decode(List<byte[]> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<SessionMessage> messages = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            try {
+                // 兼容 JSON 与二进制格式
+                messages.add(messageCodec.decode(value));
+            } catch (Exception e) {
+                logger.error("反序列化消息失败", e);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 读取会话窗口：优先近端缓存，未命中时通过脚本原子读取元数据与全部消息并写入缓存
+     */
+    @SuppressWarnings("unchecked")
+    private Window window(String conversationId) {
+        SessionNearCache.Entry cached = nearCache.get(conversationId);
+        if (cached != null) {
+            return new Window(cached.messages(), cached.metadata());
+        }
+
+        long version = nearCache.version(conversationId);
+        List<List<byte[]>> result = (List<List<byte[]>>) redisTemplate.execute(LOAD_SESSION_SCRIPT, BINARY, BINARY,
+                List.of(RedisKeys.sessionMessagesKey(conversationId), RedisKeys.sessionMetaKey(conversationId)));
+
+        List<byte[]> flatMeta = result.get(0);
+        Map<String, String> meta = new HashMap<>();
+        for (int i = 0; i + 1 < flatMeta.size(); i += 2) {
+            meta.put(new String(flatMeta.get(i), StandardCharsets.UTF_8), new String(flatMeta.get(i + 1), StandardCharsets.UTF_8));
+        }
+        Window window = new Window(decode(result.get(1)), toMetadata(meta));
+        nearCache.put(conversationId, version, window.messages(), window.metadata());
+        return window;
+    }
+
+    /**
+     * 元数据 Hash -> SessionMetadata；缺失的字段使用默认值（接口层可能只写入了 userId）
+     */
+    private static SessionMetadata toMetadata(Map<?, ?> entries) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Object userId = entries.get("userId");
+        Object status = entries.get("status");
+        long createdAt = parseLong(entries.get("createdAt"));
+        Object lastActiveAt = entries.get("lastActiveAt");
+        return new SessionMetadata(
+                userId != null ? userId.toString() : "unknown",
+                createdAt,
+                lastActiveAt != null ? parseLong(lastActiveAt) : createdAt,
+                (int) parseLong(entries.get("messageCount")),
+                (int) parseLong(entries.get("totalTokens")),
+                status != null ? status.toString() : "active");
+    }
+
+    private static long parseLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0;
+    }
+
+    private record Window(List<SessionMessage> messages, SessionMetadata metadata) {
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -213,21 +305,15 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
     @Override
     public SessionMetadata getMetadata(String conversationId) {
         try {
-            String metaKey = META_KEY_PREFIX + conversationId;
+            if (nearCache.isEnabled()) {
+                return window(conversationId).metadata();
+            }
+            String metaKey = RedisKeys.sessionMetaKey(conversationId);
             // HGETALL: 获取 Hash 中的所有字段
             Map<Object, Object> entries = redisTemplate.opsForHash().entries(metaKey);
 
-            if (entries.isEmpty())
-                return null;
-
             // 构建并返回 SessionMetadata 对象
-            return new SessionMetadata(
-                    (String) entries.get("userId"),
-                    Long.parseLong(entries.get("createdAt").toString()),
-                    Long.parseLong(entries.get("lastActiveAt").toString()),
-                    Integer.parseInt(entries.get("messageCount").toString()),
-                    Integer.parseInt(entries.get("totalTokens").toString()),
-                    (String) entries.get("status"));
+            return toMetadata(entries);
         } catch (Exception e) {
             logger.error("获取元数据失败", e);
             return null;
@@ -240,22 +326,23 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
     @Override
     public void createSession(String conversationId, String userId) {
         try {
-            String metaKey = META_KEY_PREFIX + conversationId;
+            String metaKey = RedisKeys.sessionMetaKey(conversationId);
             SessionMetadata metadata = SessionMetadata.createNew(userId);
 
             // 准备元数据 Map
-            Map<String, Object> map = new HashMap<>();
+            Map<String, String> map = new HashMap<>();
             map.put("userId", metadata.userId());
-            map.put("createdAt", metadata.createdAt());
-            map.put("lastActiveAt", metadata.lastActiveAt());
-            map.put("messageCount", metadata.messageCount());
-            map.put("totalTokens", metadata.totalTokens());
+            map.put("createdAt", String.valueOf(metadata.createdAt()));
+            map.put("lastActiveAt", String.valueOf(metadata.lastActiveAt()));
+            map.put("messageCount", String.valueOf(metadata.messageCount()));
+            map.put("totalTokens", String.valueOf(metadata.totalTokens()));
             map.put("status", metadata.status());
 
             // HMSET: 批量设置 Hash 字段
             redisTemplate.opsForHash().putAll(metaKey, map);
             // 设置过期时间
             redisTemplate.expire(metaKey, sessionProperties.getTtl(), TimeUnit.SECONDS);
+            nearCache.invalidate(conversationId);
         } catch (Exception e) {
             logger.error("创建会话失败", e);
             throw new RuntimeException(e);
@@ -267,9 +354,11 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
      */
     @Override
     public void deleteSession(String conversationId) {
-        // 删除消息列表和元数据
-        redisTemplate.delete(MESSAGE_KEY_PREFIX + conversationId);
-        redisTemplate.delete(META_KEY_PREFIX + conversationId);
+        // 删除消息列表和元数据（同一哈希槽，一次 DEL）
+        redisTemplate.delete(List.of(RedisKeys.sessionMessagesKey(conversationId),
+                RedisKeys.sessionMetaKey(conversationId),
+                RedisKeys.sessionTokenIndexKey(conversationId)));
+        nearCache.invalidate(conversationId);
     }
 
     /**
@@ -278,7 +367,8 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
      */
     @Override
     public void archiveSession(String conversationId) {
-        redisTemplate.opsForHash().put(META_KEY_PREFIX + conversationId, "status", "archived");
+        redisTemplate.opsForHash().put(RedisKeys.sessionMetaKey(conversationId), "status", "archived");
+        nearCache.invalidate(conversationId);
     }
 
     /**
@@ -286,7 +376,10 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
      */
     @Override
     public boolean sessionExists(String conversationId) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(META_KEY_PREFIX + conversationId));
+        if (nearCache.isEnabled()) {
+            return window(conversationId).metadata() != null;
+        }
+        return Boolean.TRUE.equals(redisTemplate.hasKey(RedisKeys.sessionMetaKey(conversationId)));
     }
 
     /**
@@ -296,7 +389,8 @@ public class RedisSessionMemoryServiceImpl implements SessionMemoryService {
     public void refreshSessionTTL(String conversationId) {
         long ttl = sessionProperties.getTtl();
         // 同时刷新消息列表和元数据的过期时间
-        redisTemplate.expire(MESSAGE_KEY_PREFIX + conversationId, ttl, TimeUnit.SECONDS);
-        redisTemplate.expire(META_KEY_PREFIX + conversationId, ttl, TimeUnit.SECONDS);
+        redisTemplate.expire(RedisKeys.sessionMessagesKey(conversationId), ttl, TimeUnit.SECONDS);
+        redisTemplate.expire(RedisKeys.sessionTokenIndexKey(conversationId), ttl, TimeUnit.SECONDS);
+        redisTemplate.expire(RedisKeys.sessionMetaKey(conversationId), ttl, TimeUnit.SECONDS);
     }
 }
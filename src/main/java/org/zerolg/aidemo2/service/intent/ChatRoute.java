@@ -0,0 +1,20 @@
+package org.zerolg.aidemo2.service.intent;
+
+/**
+ * 对话路由
+ */
+public enum ChatRoute {
+
+    /** 寒暄 / 致谢 / 非操作性确认：不检索、不挂工具，直接生成 */
+    CHITCHAT,
+
+    /** 库存查询 / 调拨：不检索，只挂载库存工具 */
+    TOOL,
+
+    /** 知识问答：完整 RAG 链路（混合检索 + 重排序），挂载全部工具 */
+    RAG;
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,270 @@
+package org.zerolg.aidemo2.service.intent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.IntentProperties;
+import org.zerolg.aidemo2.service.tool.ToolSelector;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 意图路由器 (进程内快速分类)
+ *
+ * 分类顺序：
+ * 1. 关键词规则：寒暄 / 确认 / 库存操作，命中即返回，零开销
+ * 2. 向量最近质心：规则未命中时，用少量示例语句的向量质心做最近邻分类
+ * 3. 兜底：走 RAG（多一次检索的代价远小于漏掉知识库内容）
+ *
+ * 向量分类时在同一次批量调用中同时计算两个向量：分类用的问题向量（只含本轮问题，与质心示例语句同构），
+ * 以及工具选择用的"上一条助手回复 + 当前问题"向量；后者随 Decision 返回，ToolSelector 直接复用，
+ * 每轮对话最多调用一次向量模型。
+ * 向量模型是远程调用，route 需要在 boundedElastic 等允许阻塞的线程上执行，不要在请求线程上调用。
+ *
+ * 为什么需要：
+ * - 约一半的对话轮次（"你好"、"确认"、"查一下 iPhone 15 库存"）根本不需要检索
+ * - 检索链路包含向量检索 + 全文检索 + 一次 LLM 重排序，是首包延迟的主要来源
+ */
+@Service
+public class IntentRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntentRouter.class);
+
+    private static final Set<String> GREETINGS = Set.of(
+            "你好", "您好", "嗨", "哈喽", "在吗", "在不在", "早上好", "中午好", "下午好", "晚上好",
+            "谢谢", "多谢", "感谢", "谢谢你", "辛苦了", "再见", "拜拜", "好的", "嗯", "嗯嗯", "收到",
+            "hi", "hello", "hey", "thanks", "thankyou", "bye");
+
+    private static final Set<String> CONFIRMATIONS = Set.of(
+            "确认", "确定", "是的", "是", "对", "同意", "没问题", "可以", "好", "行", "ok", "okay", "yes",
+            "取消", "不用了", "算了", "不要了", "no");
+
+    private static final List<String> TOOL_KEYWORDS = List.of(
+            "库存", "调拨", "调货", "调库", "仓库", "补货", "有货", "缺货", "还剩", "剩多少", "多少台", "多少件", "stock");
+
+    // 同时出现时说明是制度 / 流程类问题，而不是实时数据查询
+    private static final List<String> KNOWLEDGE_KEYWORDS = List.of(
+            "制度", "政策", "规定", "规范", "流程", "条件", "标准", "为什么", "如何", "怎么", "是什么", "什么是");
+
+    // 质心示例语句，规则未覆盖的说法通过语义相似度归类
+    private static final Map<ChatRoute, List<String>> CENTROID_EXAMPLES = Map.of(
+            ChatRoute.CHITCHAT, List.of(
+                    "你好呀，今天过得怎么样", "谢谢你的帮助", "你是谁", "你能做什么", "早上好，很高兴见到你"),
+            ChatRoute.TOOL, List.of(
+                    "帮我查一下 iPhone 15 还有多少货", "北京仓的 MacBook 还有吗", "把 10 台手机从上海仓调到北京仓",
+                    "查询产品 P-001 的数量", "华为 Mate 60 在广州仓有多少"),
+            ChatRoute.RAG, List.of(
+                    "公司的退货政策是什么", "报销需要哪些材料", "年假怎么计算", "产品保修期是多久", "新员工入职流程是怎样的"));
+
+    private final IntentProperties properties;
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+
+    // 懒加载：首次需要时才计算质心，避免启动时依赖模型服务可用
+    private volatile Map<ChatRoute, float[]> centroids;
+    private volatile boolean centroidsUnavailable;
+
+    public IntentRouter(IntentProperties properties, EmbeddingModel embeddingModel, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.embeddingModel = embeddingModel;
+        this.meterRegistry = meterRegistry;
+        logger.info("IntentRouter 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 路由决策
+     *
+     * @param route       路由结果
+     * @param source      决策来源：rule / embedding / default / disabled
+     * @param queryVector 工具选择向量（上一条助手回复 + 当前问题，见 ToolSelector.contextualQuery），
+     *                    规则命中或未做向量分类时为 null
+     */
+    public record Decision(ChatRoute route, String source, float[] queryVector) {
+
+        public Decision(ChatRoute route, String source) {
+            this(route, source, null);
+        }
+    }
+
+    /**
+     * 对本轮消息分类
+     *
+     * @param msg     用户消息
+     * @param history 会话历史（用于判断"确认"是否是在回应敏感操作）
+     */
+    public Decision route(String msg, List<SessionMessage> history) {
+        Decision decision = classify(msg, history);
+        meterRegistry.counter("aidemo.intent.route",
+                "route", decision.route().tag(), "source", decision.source()).increment();
+        logger.debug("意图路由: route={}, source={}, msg={}", decision.route(), decision.source(), msg);
+        return decision;
+    }
+
+    /**
+     * 本次非 RAG 路由是否执行影子检索
+     */
+    public boolean shouldShadow(ChatRoute route) {
+        return route != ChatRoute.RAG && ThreadLocalRandom.current().nextDouble() < properties.getShadowRate();
+    }
+
+    /**
+     * 记录影子检索结果
+     *
+     * @param route    实际路由
+     * @param misroute 影子检索是否找到了相关文档（即本应走 RAG）
+     */
+    public void recordShadowResult(ChatRoute route, boolean misroute) {
+        if (misroute) {
+            logger.info("检测到误路由: route={} 的请求在知识库中存在相关文档", route);
+            meterRegistry.counter("aidemo.intent.misroute", "route", route.tag()).increment();
+        } else {
+            meterRegistry.counter("aidemo.intent.shadow.correct", "route", route.tag()).increment();
+        }
+    }
+
+    private Decision classify(String msg, List<SessionMessage> history) {
+        if (!properties.isEnabled()) {
+            return new Decision(ChatRoute.RAG, "disabled");
+        }
+        String normalized = normalize(msg);
+
+        // 1. 关键词规则
+        if (GREETINGS.contains(normalized)) {
+            return new Decision(ChatRoute.CHITCHAT, "rule");
+        }
+        if (CONFIRMATIONS.contains(normalized)) {
+            // 上一轮助手在等待敏感操作确认时，"确认"需要携带工具继续执行
+            return new Decision(awaitingConfirmation(history) ? ChatRoute.TOOL : ChatRoute.CHITCHAT, "rule");
+        }
+        if (containsAny(normalized, TOOL_KEYWORDS)) {
+            return new Decision(containsAny(normalized, KNOWLEDGE_KEYWORDS) ? ChatRoute.RAG : ChatRoute.TOOL, "rule");
+        }
+
+        // 2. 向量最近质心（分类只用本轮问题；工具选择向量带上一条助手回复，一次批量调用同时算出）
+        float[][] vectors = properties.isEmbeddingEnabled()
+                ? embed(msg, ToolSelector.contextualQuery(msg, history))
+                : null;
+        float[] toolVector = vectors != null ? vectors[1] : null;
+        if (vectors != null) {
+            ChatRoute nearest = nearestCentroid(vectors[0]);
+            if (nearest != null) {
+                return new Decision(nearest, "embedding", toolVector);
+            }
+        }
+
+        // 3. 兜底（工具选择向量仍然返回，供工具选择复用）
+        return new Decision(ChatRoute.RAG, "default", toolVector);
+    }
+
+    /**
+     * 计算 {分类向量, 工具选择向量}；两段文本相同时只计算一次。质心不可用或向量服务异常时返回 null
+     */
+    private float[][] embed(String msg, String toolQuery) {
+        if (loadCentroids() == null) {
+            return null;
+        }
+        try {
+            if (toolQuery.equals(msg)) {
+                float[] vector = embeddingModel.embed(msg);
+                return new float[][]{vector, vector};
+            }
+            List<float[]> vectors = embeddingModel.embed(List.of(msg, toolQuery));
+            return new float[][]{vectors.get(0), vectors.get(1)};
+        } catch (Exception e) {
+            logger.warn("意图向量分类失败，降级走 RAG: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private ChatRoute nearestCentroid(float[] vector) {
+        ChatRoute best = null;
+        double bestScore = -1;
+        for (Map.Entry<ChatRoute, float[]> entry : centroids.entrySet()) {
+            double score = cosine(vector, entry.getValue());
+            if (score > bestScore) {
+                bestScore = score;
+                best = entry.getKey();
+            }
+        }
+        return bestScore >= properties.getCentroidMinSimilarity() ? best : null;
+    }
+
+    private Map<ChatRoute, float[]> loadCentroids() {
+        if (centroids != null || centroidsUnavailable) {
+            return centroids;
+        }
+        synchronized (this) {
+            if (centroids != null || centroidsUnavailable) {
+                return centroids;
+            }
+            try {
+                Map<ChatRoute, float[]> computed = new EnumMap<>(ChatRoute.class);
+                for (Map.Entry<ChatRoute, List<String>> entry : CENTROID_EXAMPLES.entrySet()) {
+                    computed.put(entry.getKey(), mean(embeddingModel.embed(entry.getValue())));
+                }
+                centroids = computed;
+                logger.info("意图质心计算完成: {}", computed.keySet());
+            } catch (Exception e) {
+                // 只尝试一次，避免每个请求都去调用不可用的向量服务
+                centroidsUnavailable = true;
+                logger.warn("意图质心计算失败，仅使用关键词规则: {}", e.getMessage());
+            }
+            return centroids;
+        }
+    }
+
+    /**
+     * 上一条助手消息是否在请求用户确认
+     */
+    private boolean awaitingConfirmation(List<SessionMessage> history) {
+        for (int i = history.size() - 1; i >= 0; i--) {
+            SessionMessage message = history.get(i);
+            if ("assistant".equals(message.role())) {
+                return message.content() != null && message.content().contains("确认");
+            }
+        }
+        return false;
+    }
+
+    private String normalize(String msg) {
+        return msg == null ? "" : msg.trim()
+                .toLowerCase()
+                .replaceAll("[\\s\\p{Punct}，。！？、；：“”‘’（）…~～]+", "");
+    }
+
+    private boolean containsAny(String text, List<String> keywords) {
+        for (String keyword : keywords) {
+            if (text.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private float[] mean(List<float[]> vectors) {
+        float[] result = new float[vectors.get(0).length];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] += vector[i] / vectors.size();
+            }
+        }
+        return result;
+    }
+
+    private double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return (normA == 0 || normB == 0) ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
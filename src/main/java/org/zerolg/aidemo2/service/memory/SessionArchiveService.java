@@ -39,6 +39,7 @@ public class SessionArchiveService {
     private final ObjectMapper objectMapper;
     private final StringRedisTemplate redisTemplate;
     private final MeterRegistry meterRegistry;
+    private final SessionNearCache nearCache;
 
     // 定义监控指标：归档成功计数器
     private Counter archiveSuccessCounter;
@@ -179,7 +180,7 @@ public class SessionArchiveService {
             Map<String, Object> payload = archive.getPayload();
 
 
-            String listKey = RedisKeys.SESSION_MSG_PREFIX + conversationId;
+            String listKey = RedisKeys.sessionMessagesKey(conversationId);
             List<Map<String, Object>> messages = objectMapper.readValue(
                     objectMapper.writeValueAsString(payload),
                     new TypeReference<List<Map<String, Object>>>() {
@@ -192,7 +193,7 @@ public class SessionArchiveService {
             }
 
             // 4. 恢复元数据 (UserId)
-            String metaKey = RedisKeys.SESSION_META_PREFIX + conversationId;
+            String metaKey = RedisKeys.sessionMetaKey(conversationId);
             if (archive.getUserId() != null) {
                 redisTemplate.opsForHash().put(metaKey, "userId", archive.getUserId());
             }
@@ -202,6 +203,8 @@ public class SessionArchiveService {
             indexMapper.delete(new LambdaQueryWrapper<SessionArchiveIndex>()
                     .eq(SessionArchiveIndex::getConversationId, conversationId));
 
+            // 其他节点可能缓存了"会话不存在"的窗口
+            nearCache.invalidate(conversationId);
             logger.info("<<< 会话 [{}] 回捞成功，已转为热数据。", conversationId);
             return true;
 
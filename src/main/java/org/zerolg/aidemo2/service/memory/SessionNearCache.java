@@ -0,0 +1,278 @@
+package org.zerolg.aidemo2.service.memory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.model.SessionMetadata;
+import org.zerolg.aidemo2.properties.SessionProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 会话近端缓存 (Near Cache)
+ *
+ * 在 JVM 内缓存活跃会话的消息窗口与元数据，连续对话的下一轮读取无需访问 Redis。
+ *
+ * 一致性：
+ * - 本节点写入：保存脚本返回写入后的 messageCount，与缓存中的版本相差 1 时原地追加，否则丢弃缓存
+ * - 其他节点写入：写入方通过 Redis Pub/Sub 频道广播失效消息，各节点收到后丢弃对应缓存
+ *   （保存消息的广播由 save_message.lua 在脚本内 PUBLISH，不额外占用一次往返）
+ * - 加载与失效并发：加载前记录失效版本号，加载期间发生失效则不写入缓存
+ * - Pub/Sub 不保证送达（断线期间的消息会丢失），因此每个条目另有最大存活时间兜底
+ *
+ * 容量按字节估算（消息内容 + 固定开销）限制，超出时按 LRU 淘汰，而不是按条目数。
+ */
+@Component
+public class SessionNearCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionNearCache.class);
+
+    // 每个条目与每条消息的固定开销估算（对象头、字段、列表槽位等）
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+    // 失效版本号分段数
+    private static final int STRIPES = 256;
+
+    private final SessionProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // accessOrder=true：按访问顺序排列，头部为最久未使用
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLongArray invalidationVersions = new AtomicLongArray(STRIPES);
+    private long totalBytes;
+
+    public SessionNearCache(SessionProperties properties, StringRedisTemplate redisTemplate,
+                            RedisConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+
+        this.listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        if (properties.isNearCacheEnabled()) {
+            listenerContainer.addMessageListener(this::onInvalidation,
+                    new ChannelTopic(RedisKeys.SESSION_INVALIDATION_CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        }
+
+        Gauge.builder("aidemo.session.nearcache.bytes", this, SessionNearCache::getTotalBytes)
+                .register(meterRegistry);
+        Gauge.builder("aidemo.session.nearcache.entries", this, SessionNearCache::size)
+                .register(meterRegistry);
+        logger.info("SessionNearCache 初始化完成: enabled={}, maxBytes={}, maxAge={}",
+                properties.isNearCacheEnabled(), properties.getNearCacheMaxBytes(), properties.getNearCacheMaxAge());
+    }
+
+    public boolean isEnabled() {
+        return properties.isNearCacheEnabled();
+    }
+
+    /**
+     * 读取缓存条目，不存在或已超过最大存活时间时返回 null
+     */
+    public synchronized Entry get(String conversationId) {
+        Entry entry = entries.get(conversationId);
+        if (entry != null && System.nanoTime() - entry.loadedAt > properties.getNearCacheMaxAge().toNanos()) {
+            remove(conversationId);
+            entry = null;
+        }
+        meterRegistry.counter("aidemo.session.nearcache.requests", "result", entry != null ? "hit" : "miss").increment();
+        return entry;
+    }
+
+    /**
+     * 加载前调用，记录当前失效版本号
+     */
+    public long version(String conversationId) {
+        return invalidationVersions.get(stripe(conversationId));
+    }
+
+    /**
+     * 写入加载结果；加载期间该会话（所在分段）发生过失效时放弃写入
+     */
+    public synchronized void put(String conversationId, long version, List<SessionMessage> messages,
+                                 SessionMetadata metadata) {
+        if (invalidationVersions.get(stripe(conversationId)) != version) {
+            return;
+        }
+        store(conversationId, new Entry(Collections.unmodifiableList(messages), metadata, System.nanoTime()));
+    }
+
+    /**
+     * 本节点写入消息后更新缓存
+     * 缓存版本恰好落后一条时原地追加并裁剪，否则说明期间有其他写入，直接丢弃
+     *
+     * @param messageCount 写入后 Redis 中的 messageCount
+     */
+    public synchronized void applyLocalWrite(String conversationId, SessionMessage message, long messageCount,
+                                             long now, int maxMessages) {
+        Entry entry = entries.get(conversationId);
+        if (entry == null) {
+            return;
+        }
+        if (entry.messageCount() != messageCount - 1) {
+            remove(conversationId);
+            return;
+        }
+        List<SessionMessage> messages = new ArrayList<>(entry.messages.size() + 1);
+        messages.addAll(entry.messages);
+        messages.add(message);
+        if (messages.size() > maxMessages) {
+            messages = messages.subList(messages.size() - maxMessages, messages.size());
+        }
+
+        SessionMetadata previous = entry.metadata;
+        SessionMetadata metadata = new SessionMetadata(
+                previous != null ? previous.userId() : (String) message.metadata().getOrDefault("userId", "unknown"),
+                previous != null ? previous.createdAt() : now,
+                now,
+                (int) messageCount,
+                (previous != null ? previous.totalTokens() : 0) + message.tokens(),
+                previous != null ? previous.status() : "active");
+        // 保留原加载时间：最大存活时间兜底的是"未收到的失效消息"，不能被本地写入续期
+        store(conversationId, new Entry(Collections.unmodifiableList(messages), metadata, entry.loadedAt));
+    }
+
+    /**
+     * 失效本地缓存并通知其他节点
+     * 所有修改会话数据的路径（保存、删除、归档、回捞、迁移）都应调用
+     */
+    public void invalidate(String conversationId) {
+        evictLocal(conversationId);
+        notifyPeers(conversationId);
+    }
+
+    /**
+     * 通知其他节点（本节点缓存已通过 applyLocalWrite 保持最新）
+     */
+    public void notifyPeers(String conversationId) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(RedisKeys.SESSION_INVALIDATION_CHANNEL, invalidationMessage(conversationId));
+        } catch (Exception e) {
+            // 其他节点依靠最大存活时间兜底
+            logger.warn("广播会话缓存失效消息失败: conversationId={}", conversationId, e);
+        }
+    }
+
+    /**
+     * 失效消息内容（节点 ID|会话 ID），供写入脚本在服务端 PUBLISH；近端缓存未启用时返回空字符串，脚本不广播
+     */
+    public String invalidationMessage(String conversationId) {
+        return isEnabled() ? nodeId + "|" + conversationId : "";
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void onInvalidation(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        evictLocal(body.substring(separator + 1));
+    }
+
+    private synchronized void evictLocal(String conversationId) {
+        invalidationVersions.incrementAndGet(stripe(conversationId));
+        remove(conversationId);
+    }
+
+    private void store(String conversationId, Entry entry) {
+        remove(conversationId);
+        if (entry.weight > properties.getNearCacheMaxBytes()) {
+            return;
+        }
+        entries.put(conversationId, entry);
+        totalBytes += entry.weight;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > properties.getNearCacheMaxBytes() && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().weight;
+            eldest.remove();
+            meterRegistry.counter("aidemo.session.nearcache.evictions").increment();
+        }
+    }
+
+    private void remove(String conversationId) {
+        Entry removed = entries.remove(conversationId);
+        if (removed != null) {
+            totalBytes -= removed.weight;
+        }
+    }
+
+    private static int stripe(String conversationId) {
+        return Math.floorMod(conversationId.hashCode(), STRIPES);
+    }
+
+    /**
+     * 缓存条目：会话最近的消息窗口（时间正序，不可变）与元数据（会话不存在时为 null）
+     */
+    public static final class Entry {
+        private final List<SessionMessage> messages;
+        private final SessionMetadata metadata;
+        private final long loadedAt;
+        private final long weight;
+
+        private Entry(List<SessionMessage> messages, SessionMetadata metadata, long loadedAt) {
+            this.messages = messages;
+            this.metadata = metadata;
+            this.loadedAt = loadedAt;
+            long bytes = ENTRY_OVERHEAD_BYTES;
+            for (SessionMessage message : messages) {
+                // String 内部为 Latin-1 或 UTF-16，按 2 字节 / 字符保守估算
+                bytes += MESSAGE_OVERHEAD_BYTES + message.content().length() * 2L + message.id().length();
+            }
+            this.weight = bytes;
+        }
+
+        public List<SessionMessage> messages() {
+            return messages;
+        }
+
+        public SessionMetadata metadata() {
+            return metadata;
+        }
+
+        private long messageCount() {
+            return metadata != null ? metadata.messageCount() : 0;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.zerolg.aidemo2.service.routing;
+
+/**
+ * 熔断器（基于次数的滑动窗口）
+ *
+ * 状态机：
+ * - CLOSED: 正常放行，记录最近 windowSize 次调用结果；调用数达到 minimumCalls 且失败率（含慢调用）
+ *   超过阈值时转为 OPEN
+ * - OPEN: 拒绝调用，持续 openDuration 后转为 HALF_OPEN
+ * - HALF_OPEN: 放行 halfOpenCalls 次试探调用，全部成功则回到 CLOSED，任意一次失败重新 OPEN
+ *
+ * 慢调用视同失败：模型持续变慢时同样会触发熔断，流量转向备用模型。
+ * 每次 tryAcquire 成功后必须以 onSuccess / onFailure / release 之一结束。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED(0), HALF_OPEN(1), OPEN(2);
+
+        private final int level;
+
+        State(int level) {
+            this.level = level;
+        }
+
+        public int level() {
+            return level;
+        }
+    }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int cursor;
+    private int failures;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openDurationNanos, int halfOpenCalls) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDurationNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @return false 表示熔断中，调用方应直接使用备用模型
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * 记录调用成功
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                reset();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * 记录调用失败（异常或慢调用）
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 归还没有产生结果的调用许可（调用在得出成功 / 失败前被取消）
+     * 半开状态的试探名额是有限的，被取消的试探调用不归还名额，熔断器会一直停在 HALF_OPEN 拒绝所有调用
+     */
+    public synchronized void release() {
+        // 已发放但尚未得出结果的试探调用才能归还
+        if (state == State.HALF_OPEN && halfOpenCalls - halfOpenPermits > halfOpenSuccesses) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized State getState() {
+        // OPEN 到期后在下一次 tryAcquire 时才转为 HALF_OPEN，这里按到期时间展示
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == window.length) {
+            if (window[cursor]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[cursor] = failed;
+        if (failed) {
+            failures++;
+        }
+        cursor = (cursor + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        recorded = 0;
+        cursor = 0;
+        failures = 0;
+    }
+}
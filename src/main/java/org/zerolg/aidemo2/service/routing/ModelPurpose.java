@@ -0,0 +1,25 @@
+package org.zerolg.aidemo2.service.routing;
+
+/**
+ * 模型调用用途
+ * 不同用途对模型能力的要求不同：生成需要旗舰模型，重排序 / 幻觉验证只需输出简单 JSON，可以使用更快更便宜的模型
+ */
+public enum ModelPurpose {
+
+    GENERATION("generation"),
+    RERANK("rerank"),
+    VERIFICATION("verification");
+
+    private final String tag;
+
+    ModelPurpose(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * 配置键与指标标签
+     */
+    public String tag() {
+        return tag;
+    }
+}
@@ -0,0 +1,283 @@
+package org.zerolg.aidemo2.service.routing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.properties.ModelRoutingProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 模型路由
+ *
+ * 所有 ChatClient 调用的统一入口：
+ * 1. 按用途选择模型列表（生成用旗舰模型，重排序 / 验证用快速模型）
+ * 2. 依次尝试：跳过熔断中的模型；调用失败时降级到下一个模型
+ * 3. 记录结果到该模型的熔断器（慢调用计为失败），持续变慢或出错的模型会被熔断，流量自动转向备用模型
+ *
+ * 流式调用只能在首个 token 之前降级：已经向客户端输出内容后出错，直接向上抛出。
+ * 每个用途有独立的调用超时（流式调用为首 token 超时）：挂起的模型按失败计入熔断并降级，而不是一直占着请求。
+ * 得出结果前被取消的调用（客户端断开）不计成功或失败，只归还熔断器许可，避免半开状态的试探名额泄漏。
+ *
+ * 指标：
+ * - aidemo.model.calls{purpose, model, outcome=success|slow|failure|rejected|cancelled}
+ * - aidemo.model.latency{purpose, model}（流式调用为首 token 延迟）
+ * - aidemo.model.fallback{purpose, from}
+ * - aidemo.model.breaker.state{model}（0 关闭 / 1 半开 / 2 打开）
+ */
+@Service
+public class ModelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+    private static final Duration DEFAULT_SLOW_THRESHOLD = Duration.ofSeconds(10);
+
+    private final ChatClient chatClient;
+    private final ModelRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    // 同步调用的超时控制：调用在虚拟线程上执行，调用方按超时等待
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ModelRouter(ChatClient chatClient, ModelRoutingProperties properties, MeterRegistry meterRegistry) {
+        this.chatClient = chatClient;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        logger.info("ModelRouter 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 同步调用（重排序、验证等）
+     *
+     * @param purpose 用途
+     * @param call    基于已选定模型的请求构建并执行调用
+     * @return 第一个成功模型的结果
+     */
+    public <T> T call(ModelPurpose purpose, Function<ChatClient.ChatClientRequestSpec, T> call) {
+        List<String> models = models(purpose);
+        if (models.isEmpty()) {
+            return call.apply(chatClient.prompt());
+        }
+
+        RuntimeException lastError = null;
+        for (int i = 0; i < models.size(); i++) {
+            String model = models.get(i);
+            CircuitBreaker breaker = breaker(model);
+            if (!breaker.tryAcquire()) {
+                count(purpose, model, "rejected");
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                T result = callWithTimeout(purpose, model, call);
+                onSuccess(purpose, model, breaker, System.nanoTime() - start);
+                return result;
+            } catch (CancellationException e) {
+                breaker.release();
+                count(purpose, model, "cancelled");
+                throw e;
+            } catch (RuntimeException e) {
+                onFailure(purpose, model, breaker, e);
+                lastError = e;
+                if (i < models.size() - 1) {
+                    meterRegistry.counter("aidemo.model.fallback", "purpose", purpose.tag(), "from", model).increment();
+                }
+            }
+        }
+        throw lastError != null ? lastError : allUnavailable(purpose);
+    }
+
+    /**
+     * 流式调用（生成）
+     *
+     * @param purpose 用途
+     * @param call    基于已选定模型的请求构建流式调用
+     */
+    public Flux<String> stream(ModelPurpose purpose, Function<ChatClient.ChatClientRequestSpec, Flux<String>> call) {
+        List<String> models = models(purpose);
+        if (models.isEmpty()) {
+            return Flux.defer(() -> call.apply(chatClient.prompt()));
+        }
+        return attempt(purpose, models, 0, call);
+    }
+
+    private Flux<String> attempt(ModelPurpose purpose, List<String> models, int index,
+                                 Function<ChatClient.ChatClientRequestSpec, Flux<String>> call) {
+        if (index >= models.size()) {
+            return Flux.error(allUnavailable(purpose));
+        }
+        String model = models.get(index);
+        boolean hasNext = index < models.size() - 1;
+
+        return Flux.defer(() -> {
+            CircuitBreaker breaker = breaker(model);
+            if (!breaker.tryAcquire()) {
+                count(purpose, model, "rejected");
+                return attempt(purpose, models, index + 1, call);
+            }
+
+            long start = System.nanoTime();
+            // 本次调用是否已得出结果（成功 / 失败 / 取消），熔断器只记录一次
+            AtomicBoolean settled = new AtomicBoolean(false);
+            Flux<String> generation = call.apply(prompt(model))
+                    .doOnNext(chunk -> {
+                        // 首 token 到达即判定本次调用成功与否（慢调用按首 token 延迟计算）
+                        if (settled.compareAndSet(false, true)) {
+                            onSuccess(purpose, model, breaker, System.nanoTime() - start);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (settled.compareAndSet(false, true)) {
+                            onSuccess(purpose, model, breaker, System.nanoTime() - start);
+                        }
+                    });
+            Duration timeout = timeout(purpose);
+            if (timeout != null) {
+                // 只限制首 token：已开始输出的流不再受超时约束
+                generation = generation.timeout(Mono.delay(timeout), chunk -> Flux.never());
+            }
+            return generation
+                    // 首 token 前客户端断开：没有结果可记录，归还许可（半开状态的试探名额）
+                    .doOnCancel(() -> {
+                        if (settled.compareAndSet(false, true)) {
+                            breaker.release();
+                            count(purpose, model, "cancelled");
+                        }
+                    })
+                    .onErrorResume(e -> {
+                        if (!settled.compareAndSet(false, true)) {
+                            // 已输出内容，无法切换模型
+                            return Flux.error(e);
+                        }
+                        onFailure(purpose, model, breaker, e);
+                        if (!hasNext) {
+                            return Flux.error(e);
+                        }
+                        meterRegistry.counter("aidemo.model.fallback", "purpose", purpose.tag(), "from", model).increment();
+                        return attempt(purpose, models, index + 1, call);
+                    });
+        });
+    }
+
+    /**
+     * 当前各模型熔断器状态（用于监控）
+     */
+    public Map<String, CircuitBreaker.State> getBreakerStates() {
+        Map<String, CircuitBreaker.State> states = new ConcurrentHashMap<>();
+        breakers.forEach((model, breaker) -> states.put(model, breaker.getState()));
+        return states;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    // ==================== 内部方法 ====================
+
+    /**
+     * 按用途超时执行同步调用，超时后中断调用线程并抛出异常（计为失败）
+     */
+    private <T> T callWithTimeout(ModelPurpose purpose, String model,
+                                  Function<ChatClient.ChatClientRequestSpec, T> call) {
+        Duration timeout = timeout(purpose);
+        if (timeout == null) {
+            return call.apply(prompt(model));
+        }
+        Future<T> future = callExecutor.submit(() -> call.apply(prompt(model)));
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("模型调用超时 (" + timeout.toMillis() + "ms): model=" + model, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            // 调用方被中断（例如批量任务停止），不是模型的问题
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("模型调用被中断: model=" + model);
+        }
+    }
+
+    private Duration timeout(ModelPurpose purpose) {
+        return properties.getTimeouts().get(purpose.tag());
+    }
+
+    private List<String> models(ModelPurpose purpose) {
+        if (!properties.isEnabled()) {
+            return List.of();
+        }
+        return properties.getRoutes().getOrDefault(purpose.tag(), List.of());
+    }
+
+    private ChatClient.ChatClientRequestSpec prompt(String model) {
+        // 使用 ToolCallingChatOptions，保证 toolNames 仍能合并进请求
+        return chatClient.prompt().options(ToolCallingChatOptions.builder().model(model).build());
+    }
+
+    private CircuitBreaker breaker(String model) {
+        return breakers.computeIfAbsent(model, m -> {
+            CircuitBreaker breaker = new CircuitBreaker(
+                    properties.getBreakerWindowSize(),
+                    properties.getBreakerMinimumCalls(),
+                    properties.getBreakerFailureRateThreshold(),
+                    properties.getBreakerOpenDuration().toNanos(),
+                    properties.getBreakerHalfOpenCalls());
+            Gauge.builder("aidemo.model.breaker.state", breaker, b -> b.getState().level())
+                    .tag("model", m)
+                    .register(meterRegistry);
+            return breaker;
+        });
+    }
+
+    private void onSuccess(ModelPurpose purpose, String model, CircuitBreaker breaker, long latencyNanos) {
+        meterRegistry.timer("aidemo.model.latency", "purpose", purpose.tag(), "model", model)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        Duration threshold = properties.getSlowCallThresholds().getOrDefault(purpose.tag(), DEFAULT_SLOW_THRESHOLD);
+        if (latencyNanos > threshold.toNanos()) {
+            breaker.onFailure();
+            count(purpose, model, "slow");
+            logger.warn("模型慢调用: purpose={}, model={}, latency={}ms", purpose.tag(), model,
+                    TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        } else {
+            breaker.onSuccess();
+            count(purpose, model, "success");
+        }
+    }
+
+    private void onFailure(ModelPurpose purpose, String model, CircuitBreaker breaker, Throwable e) {
+        breaker.onFailure();
+        count(purpose, model, "failure");
+        logger.warn("模型调用失败: purpose={}, model={}, error={}", purpose.tag(), model, e.getMessage());
+    }
+
+    private void count(ModelPurpose purpose, String model, String outcome) {
+        meterRegistry.counter("aidemo.model.calls", "purpose", purpose.tag(), "model", model, "outcome", outcome)
+                .increment();
+    }
+
+    private IllegalStateException allUnavailable(ModelPurpose purpose) {
+        List<String> models = new ArrayList<>(models(purpose));
+        return new IllegalStateException("所有模型均不可用 (熔断中): purpose=" + purpose.tag() + ", models=" + models);
+    }
+}
@@ -30,7 +30,7 @@ public class IngestionConsumer implements StreamListener<String, MapRecord<Strin
     private final KnowledgeIngestionService ingestionService; // 注入 Service 用于更新状态
     private final KnowledgeBaseService knowledgeBaseService; // 注入核心业务 Service
 
-    private static final String GROUP_NAME = "ingestion-worker-group";
+    public static final String GROUP_NAME = "ingestion-worker-group";
 
     @Autowired
     public IngestionConsumer(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
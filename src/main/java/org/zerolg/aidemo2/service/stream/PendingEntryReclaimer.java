@@ -0,0 +1,241 @@
+package org.zerolg.aidemo2.service.stream;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.properties.StreamConsumerProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stream 待确认消息 (PEL) 认领器
+ *
+ * 消费者崩溃或处理失败时，消息留在 PEL 中不会被重新投递。每个检查周期对每个消费者组：
+ * 1. XPENDING 读取最旧的 claimBatchSize 条待确认消息（含空闲时间与投递次数）
+ * 2. 投递次数达到 maxDeliveries 的毒消息：原字段连同来源信息写入 {stream}:dlq，并 XACK，不再重试
+ * 3. 空闲超过 claimMinIdle 的消息：XCLAIM 到本节点的消费者名下（投递次数 +1），提交到认领处理线程池
+ *    (reclaimWorkers) 由对应的监听器重新处理，监听器处理成功后自行 XACK；再次失败则等待下一轮认领。
+ *    认领检查线程只执行 XPENDING / XCLAIM，一条耗时的文档入库不会拖住其他 Stream 的认领与死信转移
+ * 4. 其他节点已经没有待确认消息、且空闲超过 consumerExpiry 的消费者移出消费者组（节点下线或重启后的旧名称）
+ * 5. 检查 {stream}:dlq 积压（XLEN），有积压时告警并打印最新一条死信作为样本；
+ *    积压数不变时每 DLQ_ALERT_INTERVAL 重复告警一次。应用未启用 @EnableScheduling，告警随认领周期在本调度线程上执行
+ *
+ * 指标：aidemo.redis.stream.reclaim{stream, result=claimed|dead_letter|consumer_removed}
+ */
+@Component
+public class PendingEntryReclaimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingEntryReclaimer.class);
+
+    // 死信积压不变时的重复告警间隔
+    private static final Duration DLQ_ALERT_INTERVAL = Duration.ofMinutes(5);
+
+    private final StringRedisTemplate redisTemplate;
+    private final StreamConsumerProperties properties;
+    private final StreamConsumerIdentity identity;
+    private final MeterRegistry meterRegistry;
+    private final List<Target> targets;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    // 死信流 -> 上次告警时的积压数与时间，仅由调度线程访问
+    private final Map<String, long[]> dlqAlerts = new HashMap<>();
+
+    public PendingEntryReclaimer(StringRedisTemplate redisTemplate, StreamConsumerProperties properties,
+                                 StreamConsumerIdentity identity, MeterRegistry meterRegistry,
+                                 SessionEventConsumer sessionEventConsumer, IngestionConsumer ingestionConsumer) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.identity = identity;
+        this.meterRegistry = meterRegistry;
+        this.targets = List.of(
+                new Target(RedisKeys.STREAM_SESSION_EVENT, SessionEventConsumer.GROUP_NAME, sessionEventConsumer),
+                new Target(RedisKeys.STREAM_DOCUMENT_INGESTION, IngestionConsumer.GROUP_NAME, ingestionConsumer));
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stream-reclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger workerIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, properties.getReclaimWorkers()), r -> {
+            Thread thread = new Thread(r, "stream-reclaim-worker-" + workerIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getClaimInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::reclaimAll, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("PendingEntryReclaimer 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 检查所有消费者组
+     */
+    public void reclaimAll() {
+        for (Target target : targets) {
+            try {
+                reclaim(target);
+                removeExpiredConsumers(target);
+            } catch (Exception e) {
+                // Stream 或消费者组可能还未创建，或者 Redis 连接异常
+                logger.warn("认领待确认消息失败: stream={}, group={}, error={}",
+                        target.stream(), target.group(), e.getMessage());
+            }
+            try {
+                checkDeadLetters(target);
+            } catch (Exception e) {
+                logger.warn("检查死信流失败: stream={}, error={}", target.stream(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        // 未处理完的认领消息留在 PEL 中，下次认领时重新处理
+        workers.shutdownNow();
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void reclaim(Target target) {
+        PendingMessages pending = redisTemplate.opsForStream().pending(target.stream(), target.group(),
+                Range.unbounded(), properties.getClaimBatchSize());
+        List<RecordId> claimable = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(properties.getClaimMinIdle()) < 0) {
+                continue;
+            }
+            if (message.getTotalDeliveryCount() >= properties.getMaxDeliveries()) {
+                deadLetter(target, message);
+            } else {
+                claimable.add(message.getId());
+            }
+        }
+        if (claimable.isEmpty()) {
+            return;
+        }
+
+        // XCLAIM 带 min-idle-time：其他节点在此期间已认领或确认的消息不会被重复领取
+        List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream().claim(target.stream(),
+                target.group(), identity.consumerName(0), properties.getClaimMinIdle(),
+                claimable.toArray(new RecordId[0]));
+        count(target, "claimed", claimed.size());
+        logger.info("已认领空闲消息: stream={}, group={}, count={}", target.stream(), target.group(), claimed.size());
+        for (MapRecord<String, Object, Object> record : claimed) {
+            MapRecord<String, String, String> message = toStringRecord(record);
+            try {
+                workers.execute(() -> process(target, message));
+            } catch (RejectedExecutionException e) {
+                // 正在关闭，消息留在 PEL 中
+                return;
+            }
+        }
+    }
+
+    private void process(Target target, MapRecord<String, String, String> message) {
+        try {
+            target.listener().onMessage(message);
+        } catch (Exception e) {
+            // 不确认，留在 PEL 中等待下一轮认领，投递次数达到上限后转入死信流
+            logger.error("处理认领消息失败: stream={}, id={}", target.stream(), message.getId(), e);
+        }
+    }
+
+    private void deadLetter(Target target, PendingMessage message) {
+        String id = message.getIdAsString();
+        Map<String, String> fields = new LinkedHashMap<>();
+        List<MapRecord<String, Object, Object>> records =
+                redisTemplate.opsForStream().range(target.stream(), Range.closed(id, id));
+        if (records != null && !records.isEmpty()) {
+            records.get(0).getValue().forEach((key, value) -> fields.put(String.valueOf(key), String.valueOf(value)));
+        }
+        fields.put("sourceId", id);
+        fields.put("group", target.group());
+        fields.put("deliveries", String.valueOf(message.getTotalDeliveryCount()));
+
+        redisTemplate.opsForStream().add(RedisKeys.streamDeadLetterKey(target.stream()), fields);
+        redisTemplate.opsForStream().acknowledge(target.stream(), target.group(), message.getId());
+        count(target, "dead_letter", 1);
+        logger.error("消息投递 {} 次仍未处理成功，已转入死信流: stream={}, id={}",
+                message.getTotalDeliveryCount(), target.stream(), id);
+    }
+
+    private void checkDeadLetters(Target target) {
+        String dlqKey = RedisKeys.streamDeadLetterKey(target.stream());
+        Long size = redisTemplate.opsForStream().size(dlqKey);
+        if (size == null || size == 0) {
+            dlqAlerts.remove(dlqKey);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long[] last = dlqAlerts.get(dlqKey);
+        if (last != null && last[0] == size && now - last[1] < DLQ_ALERT_INTERVAL.toMillis()) {
+            return;
+        }
+        dlqAlerts.put(dlqKey, new long[]{size, now});
+
+        logger.error("🚨 [CRITICAL] 死信流告警! 当前堆积数量: {}. 请检查 Key: {}", size, dlqKey);
+        List<MapRecord<String, Object, Object>> latest = redisTemplate.opsForStream()
+                .reverseRange(dlqKey, Range.unbounded(), Limit.limit().count(1));
+        if (latest != null && !latest.isEmpty()) {
+            logger.error("   -> 最新死信样本: id={}, fields={}", latest.get(0).getId(), latest.get(0).getValue());
+        }
+    }
+
+    private void removeExpiredConsumers(Target target) {
+        StreamInfo.XInfoConsumers consumers = redisTemplate.opsForStream().consumers(target.stream(), target.group());
+        for (int i = 0; i < consumers.size(); i++) {
+            StreamInfo.XInfoConsumer consumer = consumers.get(i);
+            if (identity.isLocal(consumer.consumerName()) || consumer.pendingCount() > 0
+                    || consumer.idleTimeMs() < properties.getConsumerExpiry().toMillis()) {
+                continue;
+            }
+            redisTemplate.opsForStream().deleteConsumer(target.stream(),
+                    Consumer.from(target.group(), consumer.consumerName()));
+            count(target, "consumer_removed", 1);
+            logger.info("已移除失效消费者: stream={}, group={}, consumer={}",
+                    target.stream(), target.group(), consumer.consumerName());
+        }
+    }
+
+    private static MapRecord<String, String, String> toStringRecord(MapRecord<String, Object, Object> record) {
+        Map<String, String> value = new LinkedHashMap<>();
+        record.getValue().forEach((key, field) -> value.put(String.valueOf(key), String.valueOf(field)));
+        return StreamRecords.newRecord().in(record.getStream()).withId(record.getId()).ofMap(value);
+    }
+
+    private void count(Target target, String result, long amount) {
+        if (amount > 0) {
+            meterRegistry.counter("aidemo.redis.stream.reclaim", "stream", target.stream(), "result", result)
+                    .increment(amount);
+        }
+    }
+
+    private record Target(String stream, String group, StreamListener<String, MapRecord<String, String, String>> listener) {
+    }
+}
@@ -0,0 +1,286 @@
+package org.zerolg.aidemo2.service.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.constant.RedisKeys;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可续传的 SSE 对话流服务 (Last-Event-ID)
+ *
+ * 核心职责：
+ * 1. 录制：将每个生成中的 SSE 事件写入短生命周期的 Redis Stream (Key=aidemo:chat:generation:{generationId})，
+ *    并以 "{generationId}:{recordId}" 作为 SSE 事件 ID。recordId 由本地序号生成 (0-{seq})，
+ *    事件立即下发给客户端，缓冲区通过响应式客户端在后台按序写入，不阻塞生成线程；
+ *    缓冲区写入失败时删除缓冲区，后续事件不带 ID 继续下发（本次回答不再支持续传，但不会中断）
+ * 2. 续传：客户端携带 Last-Event-ID 重连时，先回放缓冲区中该 ID 之后的事件，再跟随实时事件直到结束标记
+ * 3. 宽限期：客户端断开后生成继续运行 gracePeriod，期间有续传读者（任意节点）则继续，否则取消生成
+ *
+ * 为什么使用 Redis Stream：
+ * - 重连可能落在其他节点，缓冲区必须是共享的
+ * - Stream 的递增 ID 天然就是事件序号，XREAD 从某个 ID 之后读取即为续传
+ */
+@Service
+public class ResumableStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableStreamService.class);
+
+    private static final String FIELD_EVENT = "event";
+    private static final String FIELD_DATA = "data";
+    // 结束标记事件名，仅存在于缓冲区中，不会下发给客户端
+    private static final String END_MARKER = "__end__";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    // 生成进行中的缓冲区 TTL（兜底：节点宕机时缓冲区也会自动清理）
+    @Value("${ai.stream.resume.active-ttl:10m}")
+    private Duration activeTtl;
+
+    // 生成完成后缓冲区保留时长，用于覆盖结束前后的短暂断线
+    @Value("${ai.stream.resume.completed-ttl:2m}")
+    private Duration completedTtl;
+
+    // 客户端断开后等待续传的宽限期
+    @Value("${ai.stream.resume.grace-period:15s}")
+    private Duration gracePeriod;
+
+    // 续传时跟随实时事件的轮询间隔（非阻塞 XREAD，避免长期占用连接池）
+    @Value("${ai.stream.resume.poll-interval:100ms}")
+    private Duration pollInterval;
+
+    public ResumableStreamService(StringRedisTemplate redisTemplate, ReactiveStringRedisTemplate reactiveRedisTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+    }
+
+    /**
+     * 录制生成流
+     *
+     * 生成订阅与客户端连接解耦：客户端断开时不会立即取消生成，而是进入宽限期等待续传。
+     *
+     * @param generationId 本次生成的唯一 ID
+     * @param source       原始 SSE 事件流
+     * @return 带事件 ID 的 SSE 事件流（交给当前客户端）
+     */
+    public Flux<ServerSentEvent<String>> record(String generationId, Flux<ServerSentEvent<String>> source) {
+        String key = RedisKeys.CHAT_GENERATION_PREFIX + generationId;
+        Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+        Sinks.Many<MapRecord<String, String, String>> pending = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicLong sequence = new AtomicLong();
+        AtomicBoolean bufferFailed = new AtomicBoolean(false);
+        writeBuffer(key, pending.asFlux(), sequence, bufferFailed);
+
+        Disposable generation = source
+                .map(event -> append(key, generationId, event, sequence, pending, bufferFailed))
+                .doFinally(signal -> pending.tryEmitComplete())
+                .subscribe(
+                        sink::tryEmitNext,
+                        sink::tryEmitError,
+                        sink::tryEmitComplete);
+
+        return sink.asFlux()
+                .doOnCancel(() -> awaitResumeOrCancel(generationId, generation));
+    }
+
+    /**
+     * 从 Last-Event-ID 续传
+     *
+     * @param lastEventId 客户端最后收到的事件 ID，格式 "{generationId}:{recordId}"
+     * @return 回放 + 实时跟随的事件流；缓冲区已过期时返回单个 expired 事件
+     */
+    public Flux<ServerSentEvent<String>> resume(String lastEventId) {
+        int separator = lastEventId.lastIndexOf(':');
+        if (separator <= 0) {
+            return Flux.just(expiredEvent());
+        }
+        String generationId = lastEventId.substring(0, separator);
+        String afterId = lastEventId.substring(separator + 1);
+        if (!isValidRecordId(afterId)) {
+            // 客户端传入的 ID 不是合法的 Stream ID (ms-seq)，无法定位续传位置，按过期处理
+            logger.info("Last-Event-ID 格式无效，按过期处理: {}", lastEventId);
+            return Flux.just(expiredEvent());
+        }
+        String key = RedisKeys.CHAT_GENERATION_PREFIX + generationId;
+
+        return Mono.fromCallable(() -> Boolean.TRUE.equals(redisTemplate.hasKey(key)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(exists -> {
+                    if (!exists) {
+                        logger.info("续传缓冲区已过期: generationId={}", generationId);
+                        return Flux.just(expiredEvent());
+                    }
+                    logger.info("从 Last-Event-ID 续传: generationId={}, after={}", generationId, afterId);
+                    return follow(key, generationId, afterId);
+                });
+    }
+
+    private static boolean isValidRecordId(String id) {
+        try {
+            return !RecordId.of(id).shouldBeAutoGenerated();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // ==================== 录制 ====================
+
+    /**
+     * 分配事件 ID 并交给后台写入，不等待 Redis 返回
+     */
+    private ServerSentEvent<String> append(String key, String generationId, ServerSentEvent<String> event,
+                                           AtomicLong sequence, Sinks.Many<MapRecord<String, String, String>> pending,
+                                           AtomicBoolean bufferFailed) {
+        String eventName = event.event() != null ? event.event() : "message";
+        String data = event.data() != null ? event.data() : "";
+        if (bufferFailed.get()) {
+            return ServerSentEvent.builder(data).event(eventName).build();
+        }
+
+        RecordId recordId = RecordId.of(0, sequence.incrementAndGet());
+        pending.tryEmitNext(StreamRecords.newRecord().in(key).withId(recordId)
+                .ofMap(Map.of(FIELD_EVENT, eventName, FIELD_DATA, data)));
+        return ServerSentEvent.builder(data)
+                .id(generationId + ":" + recordId.getValue())
+                .event(eventName)
+                .build();
+    }
+
+    /**
+     * 后台按序写入缓冲区：首条事件后设置兜底 TTL，生成结束后写入结束标记并缩短 TTL
+     * 写入失败时删除缓冲区（续传读者随即收到 expired），生成本身不受影响
+     */
+    private void writeBuffer(String key, Flux<MapRecord<String, String, String>> records,
+                             AtomicLong sequence, AtomicBoolean bufferFailed) {
+        AtomicBoolean ttlApplied = new AtomicBoolean(false);
+        records.concatMap(record -> reactiveRedisTemplate.opsForStream().add(record)
+                        .flatMap(id -> ttlApplied.compareAndSet(false, true)
+                                ? reactiveRedisTemplate.expire(key, activeTtl).thenReturn(id)
+                                : Mono.just(id)))
+                .then(Mono.defer(() -> reactiveRedisTemplate.opsForStream()
+                        .add(StreamRecords.newRecord().in(key).withId(RecordId.of(0, sequence.incrementAndGet()))
+                                .ofMap(Map.of(FIELD_EVENT, END_MARKER, FIELD_DATA, "")))
+                        .then(reactiveRedisTemplate.expire(key, completedTtl))))
+                .onErrorResume(e -> {
+                    bufferFailed.set(true);
+                    logger.warn("续传缓冲区写入失败，本次生成不再支持续传: key={}, error={}", key, e.getMessage());
+                    return reactiveRedisTemplate.delete(key).thenReturn(false);
+                })
+                .subscribe(done -> {
+                }, e -> logger.warn("删除续传缓冲区失败: key={}", key, e));
+    }
+
+    /**
+     * 客户端断开后的宽限期检查
+     * 宽限期结束时若没有任何节点上的续传读者，则取消生成（触发部分回复保存逻辑）
+     */
+    private void awaitResumeOrCancel(String generationId, Disposable generation) {
+        if (generation.isDisposed()) {
+            return;
+        }
+        logger.info("客户端断开，生成进入续传宽限期: generationId={}, grace={}", generationId, gracePeriod);
+        Mono.delay(gracePeriod)
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(tick -> {
+                    if (generation.isDisposed()) {
+                        return;
+                    }
+                    String readerKey = RedisKeys.CHAT_GENERATION_PREFIX + generationId + RedisKeys.CHAT_GENERATION_READER_SUFFIX;
+                    if (Boolean.TRUE.equals(redisTemplate.hasKey(readerKey))) {
+                        awaitResumeOrCancel(generationId, generation);
+                    } else {
+                        logger.info("宽限期内无续传读者，取消生成: generationId={}", generationId);
+                        generation.dispose();
+                    }
+                });
+    }
+
+    // ==================== 续传 ====================
+
+    /**
+     * 从 afterId 之后读取事件，直到结束标记
+     * 使用 repeat 循环轮询，而不是递归拼接，避免长时间续传时操作符链无限加深
+     */
+    private Flux<ServerSentEvent<String>> follow(String key, String generationId, String afterId) {
+        AtomicReference<String> cursor = new AtomicReference<>(afterId);
+        AtomicBoolean ended = new AtomicBoolean(false);
+
+        return Mono.fromCallable(() -> poll(key, generationId, cursor, ended))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(events -> {
+                    if (events.isEmpty() && !ended.get()) {
+                        return Mono.delay(pollInterval).thenMany(Flux.<ServerSentEvent<String>>empty());
+                    }
+                    return Flux.fromIterable(events);
+                })
+                .repeat(() -> !ended.get());
+    }
+
+    /**
+     * 读取一批 cursor 之后的事件，并推进 cursor
+     * 读到结束标记或缓冲区已被删除时，将 ended 置为 true
+     */
+    private List<ServerSentEvent<String>> poll(String key, String generationId,
+                                               AtomicReference<String> cursor, AtomicBoolean ended) {
+        // 续传读者心跳：让生成节点知道仍有客户端在读取
+        redisTemplate.opsForValue().set(
+                key + RedisKeys.CHAT_GENERATION_READER_SUFFIX, generationId, gracePeriod);
+
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                StreamReadOptions.empty().count(100),
+                StreamOffset.create(key, ReadOffset.from(cursor.get())));
+        if (records == null || records.isEmpty()) {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                ended.set(true);
+            }
+            return Collections.emptyList();
+        }
+
+        List<ServerSentEvent<String>> events = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> value = record.getValue();
+            String event = String.valueOf(value.getOrDefault(FIELD_EVENT, "message"));
+            if (END_MARKER.equals(event)) {
+                ended.set(true);
+                break;
+            }
+            cursor.set(record.getId().getValue());
+            events.add(ServerSentEvent.builder(String.valueOf(value.getOrDefault(FIELD_DATA, "")))
+                    .id(generationId + ":" + cursor.get())
+                    .event(event)
+                    .build());
+        }
+        return events;
+    }
+
+    private ServerSentEvent<String> expiredEvent() {
+        return ServerSentEvent.builder("{\"reason\":\"生成已结束或续传缓冲区已过期\"}")
+                .event("expired")
+                .build();
+    }
+}
@@ -1,44 +1,90 @@
 package org.zerolg.aidemo2.service.stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.stream.Consumer;
 import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.stream.StreamListener;
-import org.springframework.data.redis.stream.StreamMessageListenerContainer;
 import org.springframework.stereotype.Service;
 import org.zerolg.aidemo2.model.SessionEvent;
+import org.zerolg.aidemo2.properties.SessionEventProperties;
+import org.zerolg.aidemo2.properties.StreamConsumerProperties;
+import org.zerolg.aidemo2.service.SessionArchiver;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+/**
+ * 会话事件归档消费者
+ *
+ * 每个消费者线程循环执行：
+ * 1. XREADGROUP COUNT archiveBatchSize BLOCK archiveBlockTimeout 读取一批新事件
+ * 2. 整批交给 SessionArchiver.archiveAll：一个事务、一条多行 INSERT，按事件 ID 幂等
+ * 3. 事务提交后一次 XACK 确认整批
+ * 写库失败时整批不确认，留在 PEL 中，由 PendingEntryReclaimer 认领后逐条经 onMessage 重试，
+ * 反复失败的单条事件最终转入死信流，不会阻塞后续批次。
+ *
+ * 监听容器逐条回调，无法按批写库与确认，因此会话事件流不使用 StreamMessageListenerContainer。
+ */
 @Service
 public class SessionEventConsumer implements StreamListener<String, MapRecord<String, String, String>> {
 
     private static final Logger logger = LoggerFactory.getLogger(SessionEventConsumer.class);
     private final ObjectMapper objectMapper;
     private static final String STREAM_KEY = "session:event:stream";
-    private static final String GROUP_NAME = "session-archiver-group";
+    public static final String GROUP_NAME = "session-archiver-group";
     private final StringRedisTemplate redisTemplate;
-    private final StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+    private final SessionArchiver sessionArchiver;
+    private final SessionEventProperties eventProperties;
+    private final StreamConsumerProperties consumerProperties;
+    private final StreamConsumerIdentity identity;
+    private final MeterRegistry meterRegistry;
+    private final Timer archiveTimer;
+    private final List<Thread> workers = new ArrayList<>();
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private volatile boolean running;
 
     @Autowired
     public SessionEventConsumer(ObjectMapper objectMapper,
                                 StringRedisTemplate redisTemplate,
-                                @Qualifier("sessionEventContainer") StreamMessageListenerContainer<String, MapRecord<String, String, String>> container) {
+                                SessionArchiver sessionArchiver,
+                                SessionEventProperties eventProperties,
+                                StreamConsumerProperties consumerProperties,
+                                StreamConsumerIdentity identity,
+                                MeterRegistry meterRegistry) {
         this.objectMapper = objectMapper;
         this.redisTemplate = redisTemplate;
-        this.container = container;
+        this.sessionArchiver = sessionArchiver;
+        this.eventProperties = eventProperties;
+        this.consumerProperties = consumerProperties;
+        this.identity = identity;
+        this.meterRegistry = meterRegistry;
+        this.archiveTimer = Timer.builder("aidemo.session.archive.batch")
+                .description("会话事件批量归档耗时（一次多行 INSERT 事务）")
+                .register(meterRegistry);
     }
 
     @EventListener(ApplicationReadyEvent.class)
-    public void initializeAndStartContainer() {
+    public void initializeAndStart() {
         try {
             // 步骤 1: 检查并清理
             Boolean hasKey = redisTemplate.hasKey(STREAM_KEY);
@@ -66,14 +112,36 @@ public class SessionEventConsumer implements StreamListener<String, MapRecord<St
                 }
             }
 
-            // 步骤 4: 启动容器
-            if (!container.isRunning()) {
-                container.start();
-                logger.info("SessionEventContainer 已启动。");
+            // 步骤 4: 启动消费者线程
+            running = true;
+            for (int i = 0; i < consumerProperties.getSessionEventConsumers(); i++) {
+                Consumer consumer = Consumer.from(GROUP_NAME, identity.consumerName(i));
+                Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+                workers.add(builder.name("session-archiver-" + i).start(() -> pollLoop(consumer)));
             }
+            logger.info("会话事件归档消费者已启动: consumers={}, batchSize={}",
+                    workers.size(), eventProperties.getArchiveBatchSize());
 
         } catch (Exception e) {
-            logger.error("初始化并启动 SessionEventContainer 失败。", e);
+            logger.error("初始化并启动会话事件归档消费者失败。", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 单条处理入口：PendingEntryReclaimer 认领的消息逐条重试，隔离批次中导致写库失败的事件
+     */
+    @Override
+    public void onMessage(MapRecord<String, String, String> message) {
+        try {
+            archiveBatch(List.of(message));
+        } catch (Exception e) {
+            logger.error("处理会话事件失败: messageId={}", message.getId(), e);
         }
     }
 
@@ -83,32 +151,87 @@ public class SessionEventConsumer implements StreamListener<String, MapRecord<St
         return isBusyGroupException(e.getCause());
     }
 
-    @Override
-    public void onMessage(MapRecord<String, String, String> message) {
-        try {
-            Map<String, String> value = message.getValue();
+    // ==================== 内部实现 ====================
+
+    @SuppressWarnings("unchecked")
+    private void pollLoop(Consumer consumer) {
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(eventProperties.getArchiveBatchSize())
+                .block(eventProperties.getArchiveBlockTimeout());
+        StreamOffset<String> offset = StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed());
+        while (running) {
+            try {
+                List<MapRecord<String, Object, Object>> records =
+                        redisTemplate.opsForStream().read(consumer, options, offset);
+                if (records != null && !records.isEmpty()) {
+                    archiveBatch(records);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.error("会话事件批量归档失败，本批不确认，等待认领重试: consumer={}", consumer.getName(), e);
+                try {
+                    Thread.sleep(eventProperties.getRetryBackoff().toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析、写库、确认一批事件；写库失败时抛出异常，整批不确认
+     */
+    private void archiveBatch(List<? extends MapRecord<String, ?, ?>> records) {
+        List<SessionEvent> events = new ArrayList<>(records.size());
+        List<RecordId> ackIds = new ArrayList<>(records.size());
+        for (MapRecord<String, ?, ?> record : records) {
+            Map<?, ?> value = record.getValue();
             if (value.containsKey("init")) {
-                redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, message.getId());
-                return;
+                ackIds.add(record.getId());
+                continue;
             }
 
-            String eventJson = value.get("payload");
+            Object eventJson = value.get("payload");
             if (eventJson == null) {
-                logger.warn("收到空负载消息，跳过: {}", message.getId());
-                redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, message.getId());
-                return;
+                logger.warn("收到空负载消息，跳过: {}", record.getId());
+                ackIds.add(record.getId());
+                continue;
             }
 
-            SessionEvent event = objectMapper.readValue(eventJson, SessionEvent.class);
+            try {
+                SessionEvent event = objectMapper.readValue(eventJson.toString(), SessionEvent.class);
+                if (event.getEventId() == null) {
+                    // 旧格式事件没有事件 ID，使用 Stream 条目 ID 保证重复投递时仍然幂等
+                    event.setEventId(record.getId().getValue());
+                }
+                events.add(event);
+                ackIds.add(record.getId());
+            } catch (Exception e) {
+                // 无法解析的事件不确认，留在 PEL 中，超过最大投递次数后转入死信流
+                logger.error("会话事件解析失败: messageId={}", record.getId(), e);
+            }
+        }
 
-            // 冲突修复：删除实时归档逻辑！
-            // sessionArchiver.archive(event); 
-            // 现在数据只留在 Redis 中，等待 SessionArchiverTask 定时任务在 7 天后将其搬运到 DB。
+        if (!events.isEmpty()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            int inserted = sessionArchiver.archiveAll(events);
+            sample.stop(archiveTimer);
+            count("archived", inserted);
+            count("duplicate", events.size() - inserted);
+        }
 
-            redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, message.getId());
+        // 事务已提交，整批一次确认
+        if (!ackIds.isEmpty()) {
+            redisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP_NAME, ackIds.toArray(new RecordId[0]));
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("处理会话事件失败: messageId={}", message.getId(), e);
+    private void count(String result, long amount) {
+        if (amount > 0) {
+            meterRegistry.counter("aidemo.session.archive.events", "result", result).increment(amount);
         }
     }
 }
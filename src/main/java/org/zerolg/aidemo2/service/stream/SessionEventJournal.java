@@ -0,0 +1,136 @@
+package org.zerolg.aidemo2.service.stream;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话事件磁盘日志
+ *
+ * Redis 不可用或内存队列溢出时，事件 JSON 按行追加到 events.journal（事件 JSON 不含换行）。
+ * 重放时先把文件原子改名为 events.journal.replay，新的溢出事件继续写入新文件，互不影响。
+ * 重放按批推进（replayBatch 每次一批），调用方可以在实时发布之间穿插重放；
+ * 某批失败时记住已重放的行数，下次跳过这些行从失败的批次继续。
+ * 进程重启后 .replay 文件从头重放，可能产生重复事件，由消费端按 eventId 去重。
+ *
+ * 线程安全：append 可被任意线程调用；replayBatch 只能由单个线程调用。
+ */
+public class SessionEventJournal {
+
+    private final Path file;
+    private final Path replayFile;
+    private final Object lock = new Object();
+
+    // 重放进度，仅由重放线程访问
+    private BufferedReader replayReader;
+    private long replayedLines;
+
+    public SessionEventJournal(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.file = dir.resolve("events.journal");
+        this.replayFile = dir.resolve("events.journal.replay");
+    }
+
+    /**
+     * 追加一批事件
+     */
+    public void append(List<String> events) throws IOException {
+        synchronized (lock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String event : events) {
+                    writer.write(event);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否有待重放的事件
+     */
+    public boolean hasPending() {
+        return Files.exists(replayFile) || Files.exists(file);
+    }
+
+    /**
+     * 重放下一批（最多 batchSize 个事件），整个文件重放完成后删除
+     *
+     * @return 本批重放的事件数，没有待重放的事件时返回 0
+     * @throws Exception 处理失败，本批之后再次调用时重试
+     */
+    public int replayBatch(int batchSize, BatchHandler handler) throws Exception {
+        if (replayReader == null && !openReplay()) {
+            return 0;
+        }
+        List<String> batch = new ArrayList<>(batchSize);
+        long lines = 0;
+        String line;
+        while (batch.size() < batchSize && (line = replayReader.readLine()) != null) {
+            lines++;
+            if (!line.isEmpty()) {
+                batch.add(line);
+            }
+        }
+        if (!batch.isEmpty()) {
+            try {
+                handler.accept(batch);
+            } catch (Exception e) {
+                // 本批已从 reader 中读出，关闭后下次按已确认的行数重新定位
+                closeReplay();
+                throw e;
+            }
+        }
+        replayedLines += lines;
+        if (batch.size() < batchSize) {
+            // 已读到文件末尾
+            closeReplay();
+            replayedLines = 0;
+            Files.delete(replayFile);
+        }
+        return batch.size();
+    }
+
+    private boolean openReplay() throws IOException {
+        synchronized (lock) {
+            if (!Files.exists(replayFile)) {
+                if (!Files.exists(file)) {
+                    return false;
+                }
+                Files.move(file, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                replayedLines = 0;
+            }
+        }
+        replayReader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8);
+        for (long i = 0; i < replayedLines && replayReader.readLine() != null; i++) {
+            // 跳过此前已成功重放的行
+        }
+        return true;
+    }
+
+    private void closeReplay() {
+        if (replayReader != null) {
+            try {
+                replayReader.close();
+            } catch (IOException ignored) {
+                // 只读文件，关闭失败不影响数据
+            }
+            replayReader = null;
+        }
+    }
+
+    /**
+     * 重放批次处理
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+        void accept(List<String> events) throws Exception;
+    }
+}
@@ -0,0 +1,259 @@
+package org.zerolg.aidemo2.service.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.model.SessionEvent;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.SessionEventProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话事件异步发布器
+ *
+ * 写消息的请求线程只把事件放入有界队列（多生产者、单消费者），不再同步执行 XADD：
+ * 1. 后台线程一次取出最多 batchSize 个事件，序列化后在一次管道往返中写入心跳 ZSet 和事件 Stream
+ *    （XADD MAXLEN ~ 近似裁剪；同一批次内同一会话的心跳只写最新时间戳）
+ * 2. Redis 不可用时批次写入磁盘日志 (SessionEventJournal)，恢复后按顺序重放；未配置日志目录时原地重试。
+ *    重放不依赖队列空闲：持续有流量时每发布 replayEveryBatches 个实时批次穿插重放一批，空闲时连续重放
+ * 3. 队列满时生产者最多等待 offerTimeout，仍然写不进则直接写磁盘日志，事件不会被静默丢弃
+ *
+ * 指标：
+ * - aidemo.session.events.queue: 队列深度
+ * - aidemo.session.events.publish: 每批管道写入耗时
+ * - aidemo.session.events{result=published|journaled|replayed|dropped}: 事件数
+ */
+@Component
+public class SessionEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionEventPublisher.class);
+
+    private static final String EVENT_MESSAGE_CREATED = "MESSAGE_CREATED";
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final SessionEventProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ArrayBlockingQueue<PendingEvent> queue;
+    private final SessionEventJournal journal;
+    private final Timer publishTimer;
+    private final Thread drainer;
+
+    private volatile boolean running = true;
+    // 仅由后台线程读写
+    private long nextReplayAt;
+    private long liveBatches;
+
+    public SessionEventPublisher(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                 SessionEventProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.journal = StringUtils.hasText(properties.getJournalDir())
+                ? new SessionEventJournal(Path.of(properties.getJournalDir()))
+                : null;
+
+        Gauge.builder("aidemo.session.events.queue", queue, ArrayBlockingQueue::size)
+                .description("待发布的会话事件数")
+                .register(meterRegistry);
+        this.publishTimer = Timer.builder("aidemo.session.events.publish")
+                .description("会话事件批量管道写入耗时")
+                .register(meterRegistry);
+
+        this.drainer = Thread.ofPlatform().name("session-event-publisher").daemon(true).start(this::drainLoop);
+        logger.info("SessionEventPublisher 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 发布消息创建事件
+     *
+     * @param timestamp 消息写入时间（同时作为心跳分数）
+     */
+    public void publishMessageCreated(String conversationId, SessionMessage message, long timestamp) {
+        PendingEvent event = new PendingEvent(UUID.randomUUID().toString(), conversationId, message, timestamp);
+        try {
+            if (queue.offer(event)
+                    || queue.offer(event, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        overflow(event);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        drainer.join(properties.getRetryBackoff().toMillis() + 5000);
+        // 后台线程未能及时退出时，剩余事件写入磁盘日志
+        List<PendingEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            journalOrDrop(serialize(remaining));
+        }
+    }
+
+    // ==================== 后台发布 ====================
+
+    private void drainLoop() {
+        List<PendingEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replayJournal(true);
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                publish(batch);
+                if (++liveBatches % Math.max(1, properties.getReplayEveryBatches()) == 0) {
+                    replayJournal(false);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("会话事件发布线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(List<PendingEvent> batch) throws InterruptedException {
+        List<String> payloads = serialize(batch);
+        // 同一批次内同一会话只写最新的心跳
+        Map<String, Long> heartbeats = new LinkedHashMap<>();
+        for (PendingEvent event : batch) {
+            heartbeats.merge(event.conversationId(), event.timestamp(), Math::max);
+        }
+
+        while (true) {
+            try {
+                publishTimer.record(() -> pipeline(payloads, heartbeats));
+                count("published", payloads.size());
+                return;
+            } catch (Exception e) {
+                nextReplayAt = System.currentTimeMillis() + properties.getRetryBackoff().toMillis();
+                if (journal != null || !running) {
+                    logger.warn("发布会话事件失败，{} 个事件转入磁盘日志: {}", payloads.size(), e.getMessage());
+                    journalOrDrop(payloads);
+                    return;
+                }
+                logger.warn("发布会话事件失败，{} 后重试: {}", properties.getRetryBackoff(), e.getMessage());
+                Thread.sleep(properties.getRetryBackoff().toMillis());
+            }
+        }
+    }
+
+    private void pipeline(List<String> payloads, Map<String, Long> heartbeats) {
+        XAddOptions options = XAddOptions.maxlen(properties.getStreamMaxLength()).approximateTrimming(true);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            heartbeats.forEach((conversationId, timestamp) ->
+                    stringConnection.zAdd(RedisKeys.SESSION_HEARTBEAT, timestamp, conversationId));
+            for (String payload : payloads) {
+                stringConnection.xAdd(StreamRecords.string(Map.of("payload", payload))
+                        .withStreamKey(RedisKeys.STREAM_SESSION_EVENT), options);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Redis 恢复后重放磁盘日志（只补发事件，心跳已被后续写入刷新，不回写旧时间戳）
+     *
+     * @param untilBusy true：队列空闲时连续重放，直到日志重放完或有新的实时事件；false：只重放一批
+     */
+    private void replayJournal(boolean untilBusy) {
+        if (journal == null || System.currentTimeMillis() < nextReplayAt || !journal.hasPending()) {
+            return;
+        }
+        try {
+            int replayed;
+            do {
+                replayed = journal.replayBatch(properties.getBatchSize(), payloads -> pipeline(payloads, Map.of()));
+                count("replayed", replayed);
+            } while (untilBusy && replayed > 0 && running && queue.isEmpty());
+            if (!journal.hasPending()) {
+                logger.info("磁盘日志中的会话事件已全部重放");
+            }
+        } catch (Exception e) {
+            nextReplayAt = System.currentTimeMillis() + properties.getRetryBackoff().toMillis();
+            logger.warn("重放会话事件日志失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    // ==================== 内部实现 ====================
+
+    private void overflow(PendingEvent event) {
+        logger.warn("会话事件队列已满 (capacity={})，事件转入磁盘日志: conversationId={}",
+                properties.getQueueCapacity(), event.conversationId());
+        journalOrDrop(serialize(List.of(event)));
+    }
+
+    private void journalOrDrop(List<String> payloads) {
+        if (journal != null) {
+            try {
+                journal.append(payloads);
+                count("journaled", payloads.size());
+                return;
+            } catch (IOException e) {
+                logger.error("写入会话事件磁盘日志失败", e);
+            }
+        }
+        logger.error("会话事件已丢弃: {} 个", payloads.size());
+        count("dropped", payloads.size());
+    }
+
+    private List<String> serialize(List<PendingEvent> events) {
+        List<String> payloads = new ArrayList<>(events.size());
+        for (PendingEvent event : events) {
+            SessionEvent sessionEvent = new SessionEvent(event.eventId(), event.conversationId(),
+                    EVENT_MESSAGE_CREATED, Map.of("message", event.message()), Instant.ofEpochMilli(event.timestamp()));
+            try {
+                payloads.add(objectMapper.writeValueAsString(sessionEvent));
+            } catch (IOException e) {
+                throw new UncheckedIOException("会话事件序列化失败", e);
+            }
+        }
+        return payloads;
+    }
+
+    private void count(String result, long amount) {
+        if (amount > 0) {
+            meterRegistry.counter("aidemo.session.events", "result", result).increment(amount);
+        }
+    }
+
+    private record PendingEvent(String eventId, String conversationId, SessionMessage message, long timestamp) {
+    }
+}
@@ -0,0 +1,56 @@
+package org.zerolg.aidemo2.service.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.zerolg.aidemo2.properties.StreamConsumerProperties;
+
+import java.net.InetAddress;
+
+/**
+ * 本节点的 Stream 消费者身份
+ *
+ * 消费者名称为 {nodeId}-{序号}：同一节点重启后进程号变化，旧名称下未确认的消息由 PendingEntryReclaimer 认领，
+ * 旧消费者在 PEL 清空并空闲一段时间后被移出消费者组。
+ */
+@Component
+public class StreamConsumerIdentity {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamConsumerIdentity.class);
+
+    private final String nodeId;
+
+    public StreamConsumerIdentity(StreamConsumerProperties properties) {
+        this.nodeId = StringUtils.hasText(properties.getNodeId()) ? properties.getNodeId() : defaultNodeId();
+        logger.info("Stream 消费者节点标识: {}", nodeId);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 本节点第 index 个消费者的名称
+     */
+    public String consumerName(int index) {
+        return nodeId + "-" + index;
+    }
+
+    /**
+     * 是否为本节点的消费者
+     */
+    public boolean isLocal(String consumerName) {
+        return consumerName.startsWith(nodeId + "-");
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,185 @@
+package org.zerolg.aidemo2.service.stream;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.properties.StreamRetentionProperties;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis Stream 保留管理器
+ *
+ * 每个检查周期对 stream.retention.streams 中的每个 Stream：
+ * 1. XINFO GROUPS 读取各消费者组的 pending 数与 last-delivered-id
+ * 2. 有 pending 的组取 XPENDING 汇总中的最小 ID，否则取 last-delivered-id 的下一个 ID，
+ *    所有组中的最小值即仍被需要的最旧条目
+ * 3. XTRIM MINID 删除比它更旧的条目；没有消费者组的 Stream 无法判断消费进度，只执行硬上限
+ * 4. 长度仍超过 maxLength 时按 MAXLEN 裁剪并告警（此时会丢弃积压中的条目）
+ * 第 3、4 步及统计在 lua/trim_stream.lua 中原子完成
+ *
+ * 指标（按 stream 打标签，取值为最近一次检查的结果，抓取时不访问 Redis）：
+ * - aidemo.redis.stream.length: 条目数
+ * - aidemo.redis.stream.bytes: MEMORY USAGE 估算的内存占用
+ * - aidemo.redis.stream.trimmed{reason=minid|maxlen}: 累计裁剪条目数
+ */
+@Component
+public class StreamRetentionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamRetentionManager.class);
+
+    // XTRIM MINID 与 MEMORY USAGE 没有对应的模板 API，裁剪与统计放在一个脚本中一次往返完成
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TRIM_STREAM_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/trim_stream.lua"), List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final StreamRetentionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, StreamStats> stats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public StreamRetentionManager(StringRedisTemplate redisTemplate, StreamRetentionProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        for (String stream : properties.getStreams()) {
+            StreamStats streamStats = new StreamStats();
+            stats.put(stream, streamStats);
+            Gauge.builder("aidemo.redis.stream.length", streamStats.length, AtomicLong::get)
+                    .description("Redis Stream 条目数")
+                    .tag("stream", stream)
+                    .register(meterRegistry);
+            Gauge.builder("aidemo.redis.stream.bytes", streamStats.bytes, AtomicLong::get)
+                    .description("Redis Stream 内存占用（MEMORY USAGE 估算）")
+                    .tag("stream", stream)
+                    .register(meterRegistry);
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stream-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (properties.isEnabled()) {
+            long interval = properties.getInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::trimAll, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        logger.info("StreamRetentionManager 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 检查并裁剪所有 Stream
+     */
+    public void trimAll() {
+        for (String stream : properties.getStreams()) {
+            try {
+                trim(stream);
+            } catch (Exception e) {
+                // Stream 可能还未创建，或者 Redis 连接异常
+                logger.warn("Stream 保留检查失败: stream={}, error={}", stream, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // ==================== 内部实现 ====================
+
+    @SuppressWarnings("unchecked")
+    private void trim(String stream) {
+        Long length = redisTemplate.opsForStream().size(stream);
+        if (length == null || length == 0) {
+            StreamStats streamStats = stats.get(stream);
+            streamStats.length.set(0);
+            streamStats.bytes.set(0);
+            return;
+        }
+
+        String minId = oldestNeededId(stream);
+        List<Long> result = redisTemplate.execute(TRIM_STREAM_SCRIPT, List.of(stream),
+                minId != null ? minId : "",
+                String.valueOf(properties.getMaxLength()),
+                properties.isApproximate() ? "1" : "0");
+
+        long byMinId = result.get(0);
+        long byMaxLen = result.get(1);
+        count(stream, "minid", byMinId);
+        count(stream, "maxlen", byMaxLen);
+        logger.debug("Stream 已按消费进度裁剪: stream={}, minId={}, trimmed={}", stream, minId, byMinId);
+        if (byMaxLen > 0) {
+            logger.warn("Stream 超过硬上限，已丢弃 {} 个可能尚未消费的条目: stream={}, maxLength={}",
+                    byMaxLen, stream, properties.getMaxLength());
+        }
+
+        StreamStats streamStats = stats.get(stream);
+        streamStats.length.set(result.get(2));
+        streamStats.bytes.set(result.get(3));
+    }
+
+    /**
+     * 所有消费者组仍需要的最旧条目 ID；没有消费者组时返回 null
+     */
+    private String oldestNeededId(String stream) {
+        StreamInfo.XInfoGroups groups = redisTemplate.opsForStream().groups(stream);
+        if (groups == null || groups.isEmpty()) {
+            return null;
+        }
+        long[] oldest = null;
+        for (int i = 0; i < groups.size(); i++) {
+            StreamInfo.XInfoGroup group = groups.get(i);
+            long[] needed;
+            if (group.pendingCount() > 0) {
+                PendingMessagesSummary summary = redisTemplate.opsForStream().pending(stream, group.groupName());
+                needed = parseId(summary.minMessageId());
+            } else {
+                // last-delivered-id 及之前的条目都已确认
+                long[] delivered = parseId(group.lastDeliveredId());
+                needed = new long[]{delivered[0], delivered[1] + 1};
+            }
+            if (oldest == null || compare(needed, oldest) < 0) {
+                oldest = needed;
+            }
+        }
+        return oldest[0] + "-" + oldest[1];
+    }
+
+    private void count(String stream, String reason, long trimmed) {
+        if (trimmed > 0) {
+            meterRegistry.counter("aidemo.redis.stream.trimmed", "stream", stream, "reason", reason).increment(trimmed);
+        }
+    }
+
+    private static long[] parseId(String id) {
+        int dash = id.indexOf('-');
+        return new long[]{Long.parseLong(id.substring(0, dash)), Long.parseLong(id.substring(dash + 1))};
+    }
+
+    private static int compare(long[] a, long[] b) {
+        int result = Long.compare(a[0], b[0]);
+        return result != 0 ? result : Long.compare(a[1], b[1]);
+    }
+
+    private static final class StreamStats {
+        private final AtomicLong length = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+    }
+}
@@ -0,0 +1,266 @@
+package org.zerolg.aidemo2.service.tool;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.zerolg.aidemo2.config.ToolRegistry;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.ToolSelectionProperties;
+import org.zerolg.aidemo2.service.intent.ChatRoute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 动态工具选择器
+ *
+ * 核心逻辑：
+ * 1. 启动时预计算每个工具 @Description 的向量
+ * 2. 每轮对话用问题向量与工具向量比较，只挂载 Top-N 个最相关的工具
+ * 3. 常驻工具 (alwaysOn) 始终挂载
+ *
+ * 选择依据是"上一条助手回复 + 当前问题"(contextualQuery) 的向量：IntentRouter 向量分类时已在同一次批量调用中算好，
+ * 直接复用；规则命中的轮次没有现成向量，才在这里计算一次，保证每轮对话最多一次向量模型调用。
+ *
+ * 按会话固定工具集 (pinPerSession)：
+ * - 工具 Schema 位于 Prompt 稳定前缀中，每轮按相似度重新选择会让工具集随问题变化，前缀缓存随之失效
+ * - 因此每个会话、每个路由维护一个只增不减的工具集：本轮选中的工具并入该路由的工具集，挂载的是整个集合，
+ *   工具集只在首次用到新工具时变化一次，之后各轮前缀保持不变
+ * - 工具集按 (会话, 路由) 隔离，且只保留本轮候选中的工具：库存操作轮次只会挂载库存工具，
+ *   知识问答轮次也不会继承库存轮次固定下来的写操作工具
+ * - 会话工具集超过 maxPinnedTools 时以本轮选择重新开始（前缀失效一次），避免长会话退化为挂载全部工具
+ * - 寒暄轮次沿用上一个工具路由轮次实际挂载的工具集，不因路由切换而改变前缀，也不会得到多个路由的并集
+ * 会话工具集保存在本节点内存中，请求落到其他节点时重新累积，只影响缓存命中，不影响正确性。
+ *
+ * 为什么带上一条助手回复：
+ * - "确认"、"好的，调吧" 这类回复本身没有语义，真正决定要用哪个工具的是上一轮的上下文
+ *
+ * 为什么需要：
+ * - 工具的 JSON Schema 全部塞进 Prompt，工具数增长后仅 Schema 就要数千 token
+ * - 按需挂载后，Prompt 大小和模型延迟与注册的工具总数无关
+ */
+@Service
+public class ToolSelector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolSelector.class);
+
+    // 上一条助手回复参与选择时截取的最大长度
+    private static final int CONTEXT_CHARS = 200;
+
+    // 最多固定工具集的会话数，超过后淘汰最久未访问的会话
+    private static final int MAX_PINNED_SESSIONS = 10_000;
+
+    private final ToolSelectionProperties properties;
+    private final ToolRegistry toolRegistry;
+    private final EmbeddingModel embeddingModel;
+    private final List<String> availableToolNames;
+    private final DistributionSummary attachedTools;
+    private final MeterRegistry meterRegistry;
+
+    // 会话 ID -> 各路由固定的工具集
+    private final Map<String, SessionPins> pinnedTools = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SessionPins> eldest) {
+            return size() > MAX_PINNED_SESSIONS;
+        }
+    };
+
+    // 工具名 -> 描述向量，预计算失败时为 null（降级为挂载全部候选工具）
+    private volatile Map<String, float[]> toolVectors;
+
+    public ToolSelector(ToolSelectionProperties properties, ToolRegistry toolRegistry,
+                        EmbeddingModel embeddingModel, List<String> availableToolNames,
+                        MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.toolRegistry = toolRegistry;
+        this.embeddingModel = embeddingModel;
+        this.availableToolNames = availableToolNames;
+        this.meterRegistry = meterRegistry;
+        this.attachedTools = DistributionSummary.builder("aidemo.tools.attached")
+                .description("每轮对话挂载的工具数")
+                .register(meterRegistry);
+        logger.info("ToolSelector 初始化完成，配置: {}", properties);
+    }
+
+    /**
+     * 启动完成后预计算工具向量
+     * 工具数不超过 topN 时不会发生选择，也就无需计算
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precompute() {
+        if (!properties.isEnabled() || availableToolNames.size() <= properties.getTopN()) {
+            return;
+        }
+        try {
+            List<String> descriptions = availableToolNames.stream()
+                    .map(name -> name + ": " + toolRegistry.getToolDescription(name))
+                    .toList();
+            List<float[]> vectors = embeddingModel.embed(descriptions);
+            Map<String, float[]> computed = new HashMap<>();
+            for (int i = 0; i < availableToolNames.size(); i++) {
+                computed.put(availableToolNames.get(i), vectors.get(i));
+            }
+            toolVectors = computed;
+            logger.info(">>> 🧭 工具向量预计算完成: {} 个工具", computed.size());
+        } catch (Exception e) {
+            logger.warn("工具向量预计算失败，将挂载全部候选工具: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 为本轮对话选择工具
+     *
+     * @param chatId      会话 ID（按会话、路由固定工具集）
+     * @param route       本轮路由
+     * @param query       用户问题
+     * @param queryVector 意图路由已计算的 contextualQuery 向量，没有时传 null
+     * @param history     会话历史（无现成向量时取最近一条助手回复作为上下文）
+     * @param candidates  候选工具（由意图路由决定）
+     * @return 需要挂载的工具名称（已排序）
+     */
+    public String[] select(String chatId, ChatRoute route, String query, float[] queryVector,
+                           List<SessionMessage> history, String[] candidates) {
+        String[] selected = pin(chatId, route, doSelect(query, queryVector, history, candidates), candidates);
+        attachedTools.record(selected.length);
+        return selected;
+    }
+
+    /**
+     * 上一个工具路由轮次挂载的工具集（寒暄等不做工具选择的轮次使用，未固定时为空）
+     */
+    public String[] pinned(String chatId) {
+        if (!properties.isPinPerSession()) {
+            return new String[0];
+        }
+        synchronized (pinnedTools) {
+            SessionPins pins = pinnedTools.get(chatId);
+            if (pins == null || pins.lastRoute == null) {
+                return new String[0];
+            }
+            return pins.byRoute.get(pins.lastRoute).toArray(new String[0]);
+        }
+    }
+
+    /**
+     * 将本轮选择并入会话在该路由下的工具集，只保留本轮候选中的工具
+     */
+    private String[] pin(String chatId, ChatRoute route, String[] selected, String[] candidates) {
+        Set<String> merged = new TreeSet<>(Arrays.asList(selected));
+        if (!properties.isPinPerSession()) {
+            return merged.toArray(new String[0]);
+        }
+        synchronized (pinnedTools) {
+            SessionPins pins = pinnedTools.computeIfAbsent(chatId, id -> new SessionPins());
+            pins.lastRoute = route;
+            Set<String> pinned = pins.byRoute.get(route);
+            if (pinned != null) {
+                // 候选工具集变化（例如工具分类调整）时，不再挂载已不属于该路由的工具
+                pinned.retainAll(Arrays.asList(candidates));
+                if (pinned.containsAll(merged)) {
+                    return pinned.toArray(new String[0]);
+                }
+                merged.addAll(pinned);
+                if (merged.size() > properties.getMaxPinnedTools()) {
+                    // 超出上限：以本轮选择重新开始
+                    merged = new TreeSet<>(Arrays.asList(selected));
+                    meterRegistry.counter("aidemo.tools.pinned", "result", "reset").increment();
+                } else {
+                    meterRegistry.counter("aidemo.tools.pinned", "result", "grown").increment();
+                }
+            }
+            pins.byRoute.put(route, merged);
+            return merged.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * 会话的固定工具集：按路由隔离，并记录最近一个工具路由供寒暄轮次沿用
+     */
+    private static final class SessionPins {
+        private final Map<ChatRoute, Set<String>> byRoute = new EnumMap<>(ChatRoute.class);
+        private ChatRoute lastRoute;
+    }
+
+    private String[] doSelect(String query, float[] queryVector, List<SessionMessage> history, String[] candidates) {
+        Map<String, float[]> vectors = toolVectors;
+        if (!properties.isEnabled() || vectors == null || candidates.length <= properties.getTopN()) {
+            return candidates;
+        }
+
+        if (queryVector == null) {
+            try {
+                queryVector = embeddingModel.embed(contextualQuery(query, history));
+            } catch (Exception e) {
+                logger.warn("问题向量计算失败，挂载全部候选工具: {}", e.getMessage());
+                return candidates;
+            }
+        }
+
+        List<String> ranked = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (vectors.containsKey(candidate)) {
+                ranked.add(candidate);
+            }
+        }
+        Map<String, Double> scores = new HashMap<>();
+        for (String name : ranked) {
+            scores.put(name, cosine(queryVector, vectors.get(name)));
+        }
+        ranked.sort(Comparator.comparingDouble((String name) -> scores.get(name)).reversed());
+
+        Set<String> selected = new LinkedHashSet<>();
+        for (String alwaysOn : properties.getAlwaysOn()) {
+            for (String candidate : candidates) {
+                if (candidate.equals(alwaysOn)) {
+                    selected.add(candidate);
+                }
+            }
+        }
+        ranked.stream().limit(properties.getTopN()).forEach(selected::add);
+
+        logger.debug("动态工具选择: {}/{} -> {}", selected.size(), candidates.length, selected);
+        return selected.toArray(new String[0]);
+    }
+
+    /**
+     * 工具选择使用的文本：上一条助手回复（截取末尾 CONTEXT_CHARS 个字符）+ 当前问题，没有助手回复时即为问题本身
+     */
+    public static String contextualQuery(String query, List<SessionMessage> history) {
+        return lastAssistantContext(history) + query;
+    }
+
+    private static String lastAssistantContext(List<SessionMessage> history) {
+        for (int i = history.size() - 1; i >= 0; i--) {
+            SessionMessage message = history.get(i);
+            if ("assistant".equals(message.role()) && message.content() != null) {
+                String content = message.content();
+                return (content.length() > CONTEXT_CHARS ? content.substring(content.length() - CONTEXT_CHARS) : content) + "\n";
+            }
+        }
+        return "";
+    }
+
+    private double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return (normA == 0 || normB == 0) ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
@@ -0,0 +1,253 @@
+package org.zerolg.aidemo2.support.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.SessionProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑二进制会话消息编解码器
+ *
+ * 二进制格式 (版本 1)：
+ * <pre>
+ * [0] 版本号 0x01
+ * [1] 标志位：bit0=正文经 DEFLATE 压缩，bit1=content 使用 UTF-16BE，bit2=id 为 16 字节 UUID
+ * 正文：id | role | content | tokens (zigzag varint) | timestamp (zigzag varint) | metadata (JSON，空 Map 长度为 0)
+ *       字符串均为 varint 长度前缀 + 字节
+ * </pre>
+ *
+ * 体积优化：
+ * - 不再是"JSON 里套 JSON 字符串"，去掉字段名、引号与转义
+ * - 中文为主的内容按 UTF-16 存储（每字 2 字节，UTF-8 需 3 字节），按实际长度择优
+ * - 正文超过 compressionThreshold 时尝试 DEFLATE，压缩后更小才采用
+ *
+ * 兼容性：首字节为 '{' 按 JSON 读取，为 '"' 按旧版双重编码的 JSON 字符串读取，其他按版本号分派。
+ * 写入格式由 session.memory.codec 决定（binary / json），切换格式不影响已写入数据的读取。
+ */
+@Component
+public class CompactSessionMessageCodec implements SessionMessageCodec {
+
+    public static final byte VERSION_1 = 0x01;
+
+    private static final int FLAG_DEFLATE = 1;
+    private static final int FLAG_UTF16_CONTENT = 1 << 1;
+    private static final int FLAG_UUID_ID = 1 << 2;
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final SessionProperties properties;
+
+    public CompactSessionMessageCodec(ObjectMapper objectMapper, SessionProperties properties) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    @Override
+    public byte[] encode(SessionMessage message) {
+        try {
+            if (properties.getCodec() == SessionProperties.Codec.JSON) {
+                return objectMapper.writeValueAsBytes(message);
+            }
+            return encodeBinary(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException("会话消息编码失败", e);
+        }
+    }
+
+    @Override
+    public SessionMessage decode(byte[] data) {
+        try {
+            if (data.length == 0) {
+                throw new IllegalArgumentException("会话消息数据为空");
+            }
+            return switch (data[0]) {
+                case '{' -> objectMapper.readValue(data, SessionMessage.class);
+                case '"' -> objectMapper.readValue(objectMapper.readValue(data, String.class), SessionMessage.class);
+                case VERSION_1 -> decodeV1(data);
+                default -> throw new IllegalArgumentException("未知的会话消息格式版本: " + data[0]);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("会话消息解码失败", e);
+        }
+    }
+
+    // ==================== 版本 1 ====================
+
+    private byte[] encodeBinary(SessionMessage message) throws IOException {
+        int flags = 0;
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + message.content().length() * 2);
+
+        UUID uuid = parseUuid(message.id());
+        if (uuid != null) {
+            flags |= FLAG_UUID_ID;
+            writeLong(body, uuid.getMostSignificantBits());
+            writeLong(body, uuid.getLeastSignificantBits());
+        } else {
+            writeBytes(body, message.id().getBytes(StandardCharsets.UTF_8));
+        }
+        writeBytes(body, message.role().getBytes(StandardCharsets.UTF_8));
+
+        byte[] utf8 = message.content().getBytes(StandardCharsets.UTF_8);
+        if (message.content().length() * 2 < utf8.length) {
+            flags |= FLAG_UTF16_CONTENT;
+            writeBytes(body, message.content().getBytes(StandardCharsets.UTF_16BE));
+        } else {
+            writeBytes(body, utf8);
+        }
+
+        writeVarLong(body, zigzag(message.tokens()));
+        writeVarLong(body, zigzag(message.timestamp()));
+        writeBytes(body, message.metadata().isEmpty() ? new byte[0] : objectMapper.writeValueAsBytes(message.metadata()));
+
+        byte[] payload = body.toByteArray();
+        if (payload.length >= properties.getCompressionThreshold()) {
+            byte[] compressed = deflate(payload);
+            if (compressed.length < payload.length) {
+                flags |= FLAG_DEFLATE;
+                payload = compressed;
+            }
+        }
+
+        byte[] out = new byte[payload.length + 2];
+        out[0] = VERSION_1;
+        out[1] = (byte) flags;
+        System.arraycopy(payload, 0, out, 2, payload.length);
+        return out;
+    }
+
+    private SessionMessage decodeV1(byte[] data) throws IOException {
+        int flags = data[1];
+        ByteBuffer body = ByteBuffer.wrap(data, 2, data.length - 2).slice();
+        if ((flags & FLAG_DEFLATE) != 0) {
+            body = ByteBuffer.wrap(inflate(data, 2, data.length - 2));
+        }
+
+        String id = (flags & FLAG_UUID_ID) != 0
+                ? new UUID(body.getLong(), body.getLong()).toString()
+                : new String(readBytes(body), StandardCharsets.UTF_8);
+        String role = new String(readBytes(body), StandardCharsets.UTF_8);
+        String content = new String(readBytes(body),
+                (flags & FLAG_UTF16_CONTENT) != 0 ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_8);
+        int tokens = (int) unzigzag(readVarLong(body));
+        long timestamp = unzigzag(readVarLong(body));
+        byte[] metadataBytes = readBytes(body);
+        Map<String, Object> metadata = metadataBytes.length == 0
+                ? new HashMap<>()
+                : objectMapper.readValue(metadataBytes, METADATA_TYPE);
+        return new SessionMessage(id, role, content, tokens, timestamp, metadata);
+    }
+
+    // ==================== 基础编码 ====================
+
+    /**
+     * 仅接受标准小写形式的 UUID，保证解码后的字符串与原值完全一致
+     */
+    private static UUID parseUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint 格式错误");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset, int length) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("压缩数据不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("解压会话消息失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
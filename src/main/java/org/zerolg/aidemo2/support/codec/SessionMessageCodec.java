@@ -0,0 +1,18 @@
+package org.zerolg.aidemo2.support.codec;
+
+import org.zerolg.aidemo2.model.SessionMessage;
+
+/**
+ * 会话消息编解码器
+ * 决定 SessionMessage 在 Redis 消息列表中的存储格式。
+ *
+ * 约定：
+ * - encode 按当前配置的写入格式编码
+ * - decode 必须能读取所有历史格式（JSON、带版本号的二进制格式），保证格式切换时无需停机迁移
+ */
+public interface SessionMessageCodec {
+
+    byte[] encode(SessionMessage message);
+
+    SessionMessage decode(byte[] data);
+}
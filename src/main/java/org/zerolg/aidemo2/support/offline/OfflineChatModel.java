@@ -0,0 +1,375 @@
+package org.zerolg.aidemo2.support.offline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolExecutionEligibilityPredicate;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionEligibilityPredicate;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.zerolg.aidemo2.properties.OfflineProperties;
+import org.zerolg.aidemo2.utils.HashUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 离线替身 ChatModel
+ *
+ * 用途：在没有模型服务的环境下跑通整条链路，用于可复现的压测与性能回归。
+ *
+ * 确定性脚本（按 Prompt 内容识别调用方）：
+ * - 重排序 (rerank-prompt)：返回前 3 个候选文档编号的 JSON 数组
+ * - 幻觉验证 (verifier-prompt)：返回 passed=true 的验证结果 JSON
+ * - 库存查询：挂载了 queryStock 且问题涉及库存时，返回带 queryStock 工具调用的 AssistantMessage；
+ *   收到工具结果 (ToolResponseMessage) 的下一轮复述工具结果
+ * - 其他：基于问题和背景知识生成固定长度的回复
+ *
+ * 工具调用循环与真实模型实现（如 DashScopeChatModel）一致：模型只返回工具调用，
+ * 由 ToolExecutionEligibilityPredicate 判断是否需要内部执行，ToolCallingManager 执行工具（会经过参数矫正切面），
+ * 再把工具结果追加到对话中请求下一轮。工具调用轮次同样计入延迟、Usage 与前缀缓存，压测数据与真实模型的两轮往返一致。
+ *
+ * 延迟模型：首 token 延迟 (ttft) + 按 tokensPerSecond 逐块输出，每段延迟按 jitter 抖动；
+ * 按 errorRate 模拟限流错误。随机数由 seed + Prompt 内容决定，同样的输入得到同样的延迟序列。
+ *
+ * 同时模拟模型端的前缀缓存 (Prompt Caching)：以"系统提示词 + 工具"、每条消息为块，
+ * 记录见过的累积前缀哈希；新请求中最长的已缓存前缀按 cached tokens 计入 Usage。
+ */
+public class OfflineChatModel implements ChatModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfflineChatModel.class);
+
+    public static final String CACHED_TOKENS = "cached-tokens";
+    private static final int MAX_CACHED_PREFIXES = 100_000;
+    // 每个流式块的字符数（约 1 个 token）
+    private static final int CHUNK_CHARS = 2;
+
+    private static final Pattern RERANK_CANDIDATE = Pattern.compile("(?m)^\\[(\\d+)] ");
+    private static final Pattern STOCK_QUESTION = Pattern.compile("库存|还有多少|有货|剩多少|stock");
+    private static final Pattern STOCK_FILLER = Pattern.compile("帮我|请|查一下|查询|查查|看看|一下|库存|还有多少|有货吗|有货|剩多少|的|吗|[？?。！!，,\\s]");
+    private static final String FILLER = "以上内容由离线模型根据问题与背景知识生成，仅用于链路验证与压测。";
+
+    private final OfflineProperties properties;
+    private final ToolCallingManager toolCallingManager;
+    private final MeterRegistry meterRegistry;
+    private final ToolExecutionEligibilityPredicate toolExecutionEligibilityPredicate =
+            new DefaultToolExecutionEligibilityPredicate();
+
+    // 累积前缀哈希 -> 该前缀的 token 数（淘汰最久未命中的前缀，模拟模型端缓存容量）
+    private final Map<String, Integer> prefixCache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_CACHED_PREFIXES;
+        }
+    };
+
+    public OfflineChatModel(OfflineProperties properties, ToolCallingManager toolCallingManager,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.toolCallingManager = toolCallingManager;
+        this.meterRegistry = meterRegistry;
+        logger.info("OfflineChatModel 已启用，配置: {}", properties);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        SplittableRandom random = random(prompt);
+        AssistantMessage reply = script(prompt);
+        int completionTokens = completionTokens(reply);
+        long nanos = jittered(properties.getTtft().toNanos(), random)
+                + jittered(perTokenNanos() * completionTokens, random);
+        LockSupport.parkNanos(nanos);
+        if (shouldFail(random)) {
+            throw simulatedError();
+        }
+        Usage usage = account(prompt, completionTokens);
+        ChatResponse response = new ChatResponse(List.of(new Generation(reply)), usage.metadata());
+        if (!isToolExecutionRequired(prompt, response)) {
+            return response;
+        }
+
+        ToolExecutionResult result = toolCallingManager.executeToolCalls(prompt, response);
+        if (result.returnDirect()) {
+            return ChatResponse.builder().from(response)
+                    .generations(ToolExecutionResult.buildGenerations(result))
+                    .build();
+        }
+        return call(new Prompt(result.conversationHistory(), prompt.getOptions()));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Mono.fromCallable(() -> script(prompt))
+                .flatMapMany(reply -> {
+                    SplittableRandom random = random(prompt);
+                    Duration ttft = Duration.ofNanos(jittered(properties.getTtft().toNanos(), random));
+                    if (shouldFail(random)) {
+                        return Mono.delay(ttft).then(Mono.error(simulatedError()));
+                    }
+
+                    Usage usage = account(prompt, completionTokens(reply));
+                    if (reply.hasToolCalls()) {
+                        return streamToolCall(prompt, new ChatResponse(List.of(new Generation(reply)), usage.metadata()), ttft);
+                    }
+
+                    String text = reply.getText();
+                    List<String> chunks = new ArrayList<>();
+                    List<Duration> delays = new ArrayList<>();
+                    for (int i = 0; i < text.length(); i += CHUNK_CHARS) {
+                        chunks.add(text.substring(i, Math.min(text.length(), i + CHUNK_CHARS)));
+                        delays.add(i == 0 ? ttft : Duration.ofNanos(jittered(perTokenNanos(), random)));
+                    }
+                    return Flux.range(0, chunks.size())
+                            .concatMap(i -> Mono.delay(delays.get(i)).thenReturn(i))
+                            .map(i -> new ChatResponse(
+                                    List.of(new Generation(new AssistantMessage(chunks.get(i)))),
+                                    i == chunks.size() - 1 ? usage.metadata() : ChatResponseMetadata.builder().build()));
+                });
+    }
+
+    /**
+     * 流式工具调用轮次：首 token 延迟后得到完整的工具调用，
+     * 需要内部执行时在弹性线程上执行工具（工具可能阻塞），再以追加了工具结果的对话流式请求下一轮
+     */
+    private Flux<ChatResponse> streamToolCall(Prompt prompt, ChatResponse response, Duration ttft) {
+        if (!isToolExecutionRequired(prompt, response)) {
+            return Mono.delay(ttft).thenReturn(response).flux();
+        }
+        return Mono.delay(ttft)
+                .then(Mono.fromCallable(() -> toolCallingManager.executeToolCalls(prompt, response))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .flatMapMany(result -> result.returnDirect()
+                        ? Flux.just(ChatResponse.builder().from(response)
+                                .generations(ToolExecutionResult.buildGenerations(result))
+                                .build())
+                        : stream(new Prompt(result.conversationHistory(), prompt.getOptions())));
+    }
+
+    private boolean isToolExecutionRequired(Prompt prompt, ChatResponse response) {
+        return toolCallingManager != null
+                && toolExecutionEligibilityPredicate.isToolExecutionRequired(prompt.getOptions(), response);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        // 返回 ToolCallingChatOptions，ChatClient 才会把 toolNames 透传进来
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    // ==================== 确定性脚本 ====================
+
+    private AssistantMessage script(Prompt prompt) {
+        List<Message> instructions = prompt.getInstructions();
+        if (!instructions.isEmpty()
+                && instructions.get(instructions.size() - 1) instanceof ToolResponseMessage response
+                && !response.getResponses().isEmpty()) {
+            // 工具调用之后的一轮：复述工具结果
+            return new AssistantMessage("【离线模型】库存查询结果：" + response.getResponses().get(0).responseData());
+        }
+
+        String lastUser = lastUserText(prompt);
+        if (lastUser.contains("文档相关性评审专家")) {
+            Matcher matcher = RERANK_CANDIDATE.matcher(lastUser);
+            List<String> indices = new ArrayList<>();
+            while (matcher.find() && indices.size() < 3) {
+                indices.add(matcher.group(1));
+            }
+            return new AssistantMessage("[" + String.join(", ", indices) + "]");
+        }
+        if (lastUser.contains("事实核查员")) {
+            return new AssistantMessage("{\"passed\": true, \"confidence\": 0.9, \"reason\": \"离线模型：回复基于背景知识\", \"correction\": \"\"}");
+        }
+
+        AssistantMessage toolCall = stockToolCall(prompt, lastUser);
+        return toolCall != null ? toolCall : new AssistantMessage(generic(lastUser));
+    }
+
+    /**
+     * 库存问题：返回一次 queryStock 工具调用，由调用方（本类的工具调用循环或 ChatClient 的调用者）执行
+     */
+    private AssistantMessage stockToolCall(Prompt prompt, String lastUser) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || !options.getToolNames().contains("queryStock")
+                || !STOCK_QUESTION.matcher(lastUser).find()) {
+            return null;
+        }
+        String product = STOCK_FILLER.matcher(lastUser).replaceAll("");
+        if (product.isEmpty()) {
+            return null;
+        }
+        return new AssistantMessage("", Map.of(), List.of(
+                new AssistantMessage.ToolCall("offline-" + Math.abs(lastUser.hashCode()), "function", "queryStock",
+                        "{\"product\": \"" + product.replace("\"", "") + "\"}")));
+    }
+
+    /**
+     * 本轮输出的 token 数：工具调用轮次按工具参数计算
+     */
+    private int completionTokens(AssistantMessage reply) {
+        if (!reply.hasToolCalls()) {
+            return estimateTokens(reply.getText());
+        }
+        int tokens = 0;
+        for (AssistantMessage.ToolCall toolCall : reply.getToolCalls()) {
+            tokens += estimateTokens(toolCall.name()) + estimateTokens(toolCall.arguments());
+        }
+        return tokens;
+    }
+
+    /**
+     * 普通回复：问题 + 背景知识片段 + 填充文本，截断到 replyTokens
+     */
+    private String generic(String lastUser) {
+        int targetChars = (int) (properties.getReplyTokens() * 1.5);
+        StringBuilder reply = new StringBuilder(targetChars + 16).append("【离线模型】");
+        int questionAt = lastUser.lastIndexOf("【用户问题】：");
+        String question = questionAt >= 0 ? lastUser.substring(questionAt + 7).trim() : lastUser;
+        reply.append("关于“").append(question.length() > 50 ? question.substring(0, 50) : question).append("”：");
+        if (questionAt >= 0) {
+            // 复述部分背景知识，使离线环境下的词汇预检 (cheap-first) 也能通过
+            String context = lastUser.substring(0, questionAt).replace("【背景知识】：", "").trim();
+            reply.append(context, 0, Math.min(context.length(), targetChars / 2));
+        }
+        while (reply.length() < targetChars) {
+            reply.append(FILLER);
+        }
+        reply.setLength(targetChars);
+        return reply.toString();
+    }
+
+    private String lastUserText(Prompt prompt) {
+        List<Message> instructions = prompt.getInstructions();
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            Message message = instructions.get(i);
+            if (message.getMessageType() == MessageType.USER) {
+                return message.getText() == null ? "" : message.getText();
+            }
+        }
+        return "";
+    }
+
+    // ==================== 延迟与错误模拟 ====================
+
+    private SplittableRandom random(Prompt prompt) {
+        return new SplittableRandom(properties.getSeed() ^ prompt.getInstructions().hashCode());
+    }
+
+    private long perTokenNanos() {
+        return properties.getTokensPerSecond() <= 0 ? 0 : (long) (1_000_000_000L / properties.getTokensPerSecond());
+    }
+
+    private long jittered(long nanos, SplittableRandom random) {
+        double factor = 1 + properties.getJitter() * (random.nextDouble() * 2 - 1);
+        return (long) (nanos * Math.max(0, factor));
+    }
+
+    private boolean shouldFail(SplittableRandom random) {
+        return properties.getErrorRate() > 0 && random.nextDouble() < properties.getErrorRate();
+    }
+
+    private RuntimeException simulatedError() {
+        meterRegistry.counter("aidemo.llm.offline.errors").increment();
+        // 消息中包含 429 / Throttling，与 DashScope 限流错误一致，准入控制会据此收缩并发
+        return new IllegalStateException("离线模型模拟限流: HTTP 429 Throttling");
+    }
+
+    // ==================== 前缀缓存模拟 ====================
+
+    private Usage account(Prompt prompt, int completionTokens) {
+        List<String> blocks = blocks(prompt);
+        int promptTokens = 0;
+        int cachedTokens = 0;
+        boolean prefixAlive = true;
+        String cumulative = "";
+
+        synchronized (prefixCache) {
+            for (String block : blocks) {
+                promptTokens += estimateTokens(block);
+                cumulative = HashUtils.getSha256(cumulative + HashUtils.getSha256(block));
+
+                if (prefixAlive && prefixCache.containsKey(cumulative)) {
+                    cachedTokens = promptTokens;
+                } else {
+                    prefixAlive = false;
+                    prefixCache.put(cumulative, promptTokens);
+                }
+            }
+        }
+
+        meterRegistry.counter("aidemo.llm.prompt.tokens", "cached", "true").increment(cachedTokens);
+        meterRegistry.counter("aidemo.llm.prompt.tokens", "cached", "false").increment(promptTokens - cachedTokens);
+        logger.debug("离线模型: promptTokens={}, cachedTokens={}", promptTokens, cachedTokens);
+        return new Usage(promptTokens, completionTokens, cachedTokens);
+    }
+
+    /**
+     * 前缀块：[系统提示词 + 工具, 消息 1, 消息 2, ...]
+     */
+    private List<String> blocks(Prompt prompt) {
+        List<String> blocks = new ArrayList<>();
+        StringBuilder head = new StringBuilder();
+        List<Message> rest = new ArrayList<>();
+        for (Message message : prompt.getInstructions()) {
+            if (message.getMessageType() == MessageType.SYSTEM && rest.isEmpty()) {
+                head.append(message.getText());
+            } else {
+                rest.add(message);
+            }
+        }
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            Set<String> tools = new TreeSet<>(options.getToolNames());
+            head.append('\u0000').append(String.join(",", tools));
+        }
+        blocks.add(head.toString());
+        for (Message message : rest) {
+            blocks.add(message.getMessageType().getValue() + "\u0000" + message.getText());
+        }
+        return blocks;
+    }
+
+    /**
+     * 粗略估算 token 数：中文约 1.5 字符 / token，其他约 4 字符 / token
+     */
+    static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        long chinese = text.chars().filter(c -> c >= 0x4E00 && c <= 0x9FA5).count();
+        return Math.max(1, (int) (chinese / 1.5 + (text.length() - chinese) / 4.0));
+    }
+
+    private record Usage(int promptTokens, int completionTokens, int cachedTokens) {
+        ChatResponseMetadata metadata() {
+            return ChatResponseMetadata.builder()
+                    .model("offline")
+                    .usage(new DefaultUsage(promptTokens, completionTokens, promptTokens + completionTokens,
+                            Map.of(CACHED_TOKENS, cachedTokens)))
+                    .keyValue(CACHED_TOKENS, cachedTokens)
+                    .build();
+        }
+    }
+}
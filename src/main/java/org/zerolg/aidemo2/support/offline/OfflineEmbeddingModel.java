@@ -0,0 +1,128 @@
+package org.zerolg.aidemo2.support.offline;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.zerolg.aidemo2.properties.OfflineProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 离线替身 EmbeddingModel
+ *
+ * 基于特征哈希 (Feature Hashing) 的确定性向量：
+ * - 文本切分为词项（中文相邻汉字二元组 + 英文/数字串），每个词项哈希到一个维度并按哈希符号累加 ±1
+ * - 结果做 L2 归一化，维度与配置的向量库维度一致
+ *
+ * 词项重合越多的文本余弦相似度越高，足以让向量检索、意图质心分类、工具选择在离线环境下给出有意义的结果。
+ */
+public class OfflineEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final OfflineProperties properties;
+
+    public OfflineEmbeddingModel(int dimensions, OfflineProperties properties) {
+        this.dimensions = dimensions;
+        this.properties = properties;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        simulateLatency(request.getInstructions());
+        List<Embedding> embeddings = new ArrayList<>(request.getInstructions().size());
+        for (int i = 0; i < request.getInstructions().size(); i++) {
+            embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        simulateLatency(List.of(document.getText() == null ? "" : document.getText()));
+        return vector(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    private float[] vector(String text) {
+        float[] vector = new float[dimensions];
+        if (text == null || text.isEmpty()) {
+            return vector;
+        }
+        StringBuilder word = new StringBuilder();
+        char prevCjk = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x4E00 && c <= 0x9FA5) {
+                addWord(vector, word);
+                if (prevCjk != 0) {
+                    addTerm(vector, String.valueOf(new char[]{prevCjk, c}));
+                } else {
+                    addTerm(vector, String.valueOf(c));
+                }
+                prevCjk = c;
+            } else if (Character.isLetterOrDigit(c)) {
+                prevCjk = 0;
+                word.append(Character.toLowerCase(c));
+            } else {
+                prevCjk = 0;
+                addWord(vector, word);
+            }
+        }
+        addWord(vector, word);
+
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void addWord(float[] vector, StringBuilder word) {
+        if (word.length() > 0) {
+            addTerm(vector, word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private void addTerm(float[] vector, String term) {
+        int hash = fnv1a(term);
+        int index = Math.floorMod(hash, dimensions);
+        // 符号位取自哈希的另一段比特，与维度下标相互独立
+        vector[index] += ((hash >>> 7) & 1) == 0 ? 1f : -1f;
+    }
+
+    private static int fnv1a(String text) {
+        int hash = 0x811c9dc5;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private void simulateLatency(List<String> texts) {
+        long baseNanos = properties.getEmbeddingLatency().toNanos();
+        if (baseNanos <= 0) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(properties.getSeed() ^ texts.hashCode());
+        double factor = 1 + properties.getJitter() * (random.nextDouble() * 2 - 1);
+        LockSupport.parkNanos((long) (baseNanos * Math.max(0, factor)));
+    }
+}
@@ -0,0 +1,121 @@
+package org.zerolg.aidemo2.support.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的 Prompt 模板
+ * 核心逻辑：加载时把模板切分为"字面量 / 变量"交替的片段，渲染时按片段顺序直接追加到 StringBuilder，
+ * 不再为每次请求重新解析模板，也不产生模板引擎的中间对象。
+ *
+ * 占位符语法与现有 .st 模板一致：{name}，name 只能是标识符。
+ * 其他花括号（例如 verifier-prompt.st 中的 JSON 示例）按字面量原样输出。
+ */
+public final class CompiledPromptTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z_][A-Za-z0-9_]*)}");
+
+    private final String name;
+    // literals.length == variables.length + 1，渲染顺序为 literal[0] var[0] literal[1] ... literal[n]
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private CompiledPromptTemplate(String name, String[] literals, String[] variables) {
+        this.name = name;
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param name 模板名称（用于错误提示和指标）
+     * @param text 模板文本
+     */
+    public static CompiledPromptTemplate compile(String name, String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(last, matcher.start()));
+            variables.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(text.substring(last));
+        return new CompiledPromptTemplate(name, literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 渲染后的预估长度，用于预先分配 StringBuilder 容量
+     */
+    public int sizeHint(Map<String, ?> values) {
+        int length = literalLength;
+        for (String variable : variables) {
+            Object value = values.get(variable);
+            if (value instanceof PromptFragment fragment) {
+                length += fragment.sizeHint();
+            } else if (value instanceof CharSequence cs) {
+                length += cs.length();
+            } else if (value != null) {
+                length += 16;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 渲染到给定的 StringBuilder
+     *
+     * @param target 目标缓冲区
+     * @param values 变量值：CharSequence / PromptFragment（直接写入目标缓冲区）/ 其他对象 (toString)
+     * @throws IllegalStateException 缺少变量时抛出，与 Spring AI PromptTemplate 的校验行为一致
+     */
+    public void renderTo(StringBuilder target, Map<String, ?> values) {
+        for (int i = 0; i < variables.length; i++) {
+            target.append(literals[i]);
+            Object value = values.get(variables[i]);
+            if (value == null) {
+                throw new IllegalStateException("Prompt 模板 [" + name + "] 缺少变量: " + variables[i]);
+            }
+            if (value instanceof PromptFragment fragment) {
+                fragment.appendTo(target);
+            } else if (value instanceof CharSequence cs) {
+                target.append(cs);
+            } else {
+                target.append(value);
+            }
+        }
+        target.append(literals[literals.length - 1]);
+    }
+
+    /**
+     * 直接写入目标缓冲区的 Prompt 片段
+     * 用于 RAG 上下文这类较大的变量，避免先拼成中间字符串再复制一次
+     */
+    public interface PromptFragment {
+
+        /**
+         * 预估长度
+         */
+        int sizeHint();
+
+        /**
+         * 写入目标缓冲区
+         */
+        void appendTo(StringBuilder target);
+    }
+}
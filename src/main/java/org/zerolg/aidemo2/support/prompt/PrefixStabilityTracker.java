@@ -0,0 +1,95 @@
+package org.zerolg.aidemo2.support.prompt;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.utils.HashUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prompt 前缀稳定性统计
+ *
+ * 核心逻辑：
+ * 把每轮 Prompt 的稳定部分切成块 [系统提示词 + 工具列表, 历史消息 1, 历史消息 2, ...]，
+ * 与同一会话上一轮的块序列比较，计算本轮可被模型端前缀缓存复用的比例。
+ *
+ * 指标：
+ * - aidemo.prompt.prefix{result=hit}: 上一轮的稳定部分完整地是本轮的前缀（理想情况）
+ * - aidemo.prompt.prefix{result=miss}: 前缀在中途发生变化（例如历史窗口滑动、工具集变化）
+ * - aidemo.prompt.prefix.reusable.ratio: 本轮稳定部分中可复用的字符比例
+ */
+@Component
+public class PrefixStabilityTracker {
+
+    // 最多跟踪的会话数，超过后淘汰最久未访问的会话
+    private static final int MAX_TRACKED_SESSIONS = 10_000;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary reusableRatio;
+
+    private final Map<String, List<Block>> lastBlocks = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Block>> eldest) {
+            return size() > MAX_TRACKED_SESSIONS;
+        }
+    };
+
+    public PrefixStabilityTracker(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.reusableRatio = DistributionSummary.builder("aidemo.prompt.prefix.reusable.ratio")
+                .description("Prompt 稳定部分中与上一轮相同的前缀比例")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录本轮 Prompt 的稳定部分
+     *
+     * @param chatId     会话 ID
+     * @param systemText 系统提示词
+     * @param tools      挂载的工具名称（应已排序）
+     * @param history    历史消息（不含本轮带背景知识的用户消息）
+     */
+    public void record(String chatId, String systemText, String[] tools, List<Message> history) {
+        List<Block> current = new ArrayList<>(history.size() + 1);
+        current.add(Block.of(systemText + "\u0000" + String.join(",", tools)));
+        for (Message message : history) {
+            current.add(Block.of(message.getMessageType().getValue() + "\u0000" + message.getText()));
+        }
+
+        List<Block> previous;
+        synchronized (lastBlocks) {
+            previous = lastBlocks.put(chatId, current);
+        }
+        if (previous == null) {
+            meterRegistry.counter("aidemo.prompt.prefix", "result", "first").increment();
+            return;
+        }
+
+        int matched = 0;
+        long matchedChars = 0;
+        long totalChars = 0;
+        for (Block block : current) {
+            totalChars += block.length;
+        }
+        while (matched < previous.size() && matched < current.size()
+                && previous.get(matched).hash.equals(current.get(matched).hash)) {
+            matchedChars += current.get(matched).length;
+            matched++;
+        }
+
+        boolean hit = matched == previous.size();
+        meterRegistry.counter("aidemo.prompt.prefix", "result", hit ? "hit" : "miss").increment();
+        reusableRatio.record(totalChars == 0 ? 0 : (double) matchedChars / totalChars);
+    }
+
+    private record Block(String hash, int length) {
+        static Block of(String content) {
+            return new Block(HashUtils.getSha256(content), content.length());
+        }
+    }
+}
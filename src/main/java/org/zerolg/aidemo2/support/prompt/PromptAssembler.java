@@ -0,0 +1,239 @@
+package org.zerolg.aidemo2.support.prompt;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.support.prompt.CompiledPromptTemplate.PromptFragment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt 组装器
+ * 核心逻辑：模板只加载、编译一次；渲染时复用线程本地的 StringBuilder（按预估长度扩容），
+ * RAG 上下文等大变量以 PromptFragment 形式直接写入最终缓冲区，整个 Prompt 只在最后 toString 时复制一次。
+ *
+ * 为什么需要：
+ * - new PromptTemplate(resource) 每次都会重新读取资源并解析模板，每个请求要做 3~4 次
+ * - String.format 逐文档格式化会产生大量中间字符串，在高请求率下明显出现在分配热点中
+ *
+ * 开发模式下 (ai.prompt.hot-reload=true) 会按资源修改时间重新编译模板，修改 .st 文件无需重启。
+ */
+@Component
+public class PromptAssembler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptAssembler.class);
+
+    // 稳定的系统提示词（不含任何按请求变化的内容，保证 Prompt 前缀可被模型端缓存）
+    public static final String SYSTEM = "system-prompt";
+    // 最后一条用户消息：背景知识 + 用户问题（易变部分，放在 Prompt 末尾）
+    public static final String RAG_CONTEXT = "rag-context";
+    public static final String RERANK = "rerank-prompt";
+    public static final String VERIFIER = "verifier-prompt";
+
+    // 线程本地缓冲区的最大保留容量，超过后丢弃，避免个别超长 Prompt 长期占用内存
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    // 热加载时检查资源修改时间的最小间隔
+    private static final long RELOAD_CHECK_INTERVAL_MS = 1000;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    private final ResourceLoader resourceLoader;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Entry> templates = new ConcurrentHashMap<>();
+
+    @Value("${ai.prompt.location:classpath:/static/}")
+    private String location;
+
+    @Value("${ai.prompt.hot-reload:false}")
+    private boolean hotReload;
+
+    public PromptAssembler(ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        this.resourceLoader = resourceLoader;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param name   模板名称（不含 .st 后缀）
+     * @param values 模板变量
+     */
+    public String render(String name, Map<String, ?> values) {
+        CompiledPromptTemplate template = getTemplate(name);
+        long start = System.nanoTime();
+
+        StringBuilder buffer = BUFFER.get();
+        // 重入保护：缓冲区正在被使用时（例如 PromptFragment 内部再次渲染）临时分配新的
+        boolean pooled = buffer.length() == 0;
+        if (!pooled) {
+            buffer = new StringBuilder();
+        }
+        try {
+            buffer.ensureCapacity(template.sizeHint(values));
+            template.renderTo(buffer, values);
+            return buffer.toString();
+        } finally {
+            if (pooled) {
+                if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                    BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+                } else {
+                    buffer.setLength(0);
+                }
+            }
+            renderTimer(name).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 渲染无变量模板
+     */
+    public String render(String name) {
+        return render(name, Map.of());
+    }
+
+    /**
+     * RAG 背景知识片段
+     * 格式：【文档 1】(来源: policy.pdf)\n内容\n\n ...，末尾空白会被去除
+     */
+    public PromptFragment documentContext(List<Document> documents) {
+        return new PromptFragment() {
+            @Override
+            public int sizeHint() {
+                int length = 0;
+                for (Document doc : documents) {
+                    // 只做估算，不调用 getFormattedContent（每次调用都会重新拼接元数据）
+                    length += (doc.getText() != null ? doc.getText().length() : 0) + 64;
+                }
+                return length;
+            }
+
+            @Override
+            public void appendTo(StringBuilder target) {
+                int start = target.length();
+                for (int i = 0; i < documents.size(); i++) {
+                    Document doc = documents.get(i);
+                    // 获取元数据中的文件名，如果不存在则显示"未知来源"
+                    Object sourceName = doc.getMetadata().getOrDefault("file_name", "未知来源");
+                    target.append("【文档 ").append(i + 1).append("】(来源: ").append(sourceName).append(")\n");
+                    appendTrimmed(target, doc.getFormattedContent());
+                    target.append("\n\n");
+                }
+                trimTrailing(target, start);
+            }
+        };
+    }
+
+    /**
+     * 重排序候选文档片段
+     * 格式：[0] 内容\n[1] 内容\n ...
+     */
+    public PromptFragment rerankCandidates(List<Document> candidates) {
+        return new PromptFragment() {
+            @Override
+            public int sizeHint() {
+                int length = 0;
+                for (Document doc : candidates) {
+                    length += (doc.getText() != null ? doc.getText().length() : 0) + 64;
+                }
+                return length;
+            }
+
+            @Override
+            public void appendTo(StringBuilder target) {
+                for (int i = 0; i < candidates.size(); i++) {
+                    // 使用 formattedContent 包含元数据信息，有助于 LLM 判断
+                    target.append('[').append(i).append("] ").append(candidates.get(i).getFormattedContent()).append('\n');
+                }
+            }
+        };
+    }
+
+    // ==================== 模板加载 ====================
+
+    private CompiledPromptTemplate getTemplate(String name) {
+        Entry entry = templates.get(name);
+        if (entry == null) {
+            return templates.computeIfAbsent(name, this::load).template;
+        }
+        if (hotReload && System.currentTimeMillis() - entry.checkedAt > RELOAD_CHECK_INTERVAL_MS) {
+            entry.checkedAt = System.currentTimeMillis();
+            if (lastModified(entry.resource) != entry.lastModified) {
+                Entry reloaded = load(name);
+                templates.put(name, reloaded);
+                logger.info("Prompt 模板已热加载: {}", name);
+                return reloaded.template;
+            }
+        }
+        return entry.template;
+    }
+
+    private Entry load(String name) {
+        Resource resource = resourceLoader.getResource(location + name + ".st");
+        try {
+            String text = resource.getContentAsString(StandardCharsets.UTF_8);
+            logger.debug("Prompt 模板已编译: {}", name);
+            return new Entry(resource, CompiledPromptTemplate.compile(name, text), lastModified(resource));
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载 Prompt 模板失败: " + name, e);
+        }
+    }
+
+    private long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            // jar 内资源可能不支持，视为未修改
+            return -1;
+        }
+    }
+
+    private Timer renderTimer(String name) {
+        return meterRegistry.timer("aidemo.prompt.render", "template", name);
+    }
+
+    private static void appendTrimmed(StringBuilder target, String text) {
+        int begin = 0;
+        int end = text.length();
+        while (begin < end && Character.isWhitespace(text.charAt(begin))) {
+            begin++;
+        }
+        while (end > begin && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        target.append(text, begin, end);
+    }
+
+    private static void trimTrailing(StringBuilder target, int floor) {
+        int end = target.length();
+        while (end > floor && Character.isWhitespace(target.charAt(end - 1))) {
+            end--;
+        }
+        target.setLength(end);
+    }
+
+    private static final class Entry {
+        private final Resource resource;
+        private final CompiledPromptTemplate template;
+        private final long lastModified;
+        private volatile long checkedAt = System.currentTimeMillis();
+
+        private Entry(Resource resource, CompiledPromptTemplate template, long lastModified) {
+            this.resource = resource;
+            this.template = template;
+            this.lastModified = lastModified;
+        }
+    }
+}
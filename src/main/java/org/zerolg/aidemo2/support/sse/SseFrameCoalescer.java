@@ -0,0 +1,136 @@
+package org.zerolg.aidemo2.support.sse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 帧合并器
+ * 核心逻辑：将模型逐 token 输出的 message 事件合并为更大的 SSE 帧。
+ * 每 maxDelay 毫秒或累计 maxChars 个字符（先到者为准）发送一帧；完成、出错或遇到非 message 事件时立即刷出。
+ *
+ * 为什么需要：
+ * - 模型流式输出的每个 chunk 通常只有 1~2 个字符，逐个包装为 SSE 帧意味着每个 token 一次 flush + 系统调用
+ * - 高并发下帧开销远大于内容本身，合并后帧数可下降一个数量级，而 50ms 级别的延迟对阅读体验无感知
+ */
+@Component
+public class SseFrameCoalescer {
+
+    private static final String MESSAGE_EVENT = "message";
+
+    // 默认合并窗口，客户端可通过请求参数覆盖
+    @Value("${ai.stream.coalesce.max-delay:50ms}")
+    private Duration defaultMaxDelay;
+
+    @Value("${ai.stream.coalesce.max-chars:64}")
+    private int defaultMaxChars;
+
+    private final Scheduler timer = Schedulers.parallel();
+    private final Counter chunksIn;
+    private final Counter framesOut;
+
+    public SseFrameCoalescer(MeterRegistry meterRegistry) {
+        // 两者之比即为合并率，结合时间窗口可得 frames/s
+        this.chunksIn = meterRegistry.counter("aidemo.sse.chunks.in");
+        this.framesOut = meterRegistry.counter("aidemo.sse.frames.out");
+    }
+
+    /**
+     * 使用默认窗口合并
+     */
+    public Flux<ServerSentEvent<String>> coalesce(Flux<ServerSentEvent<String>> source) {
+        return coalesce(source, null, null);
+    }
+
+    /**
+     * 合并 SSE 帧
+     *
+     * @param source     原始事件流
+     * @param maxDelayMs 最大合并等待（毫秒），null 使用默认值；0 表示不按时间合并
+     * @param maxChars   单帧最大字符数，null 使用默认值；小于等于 1 且 maxDelayMs 为 0 时关闭合并
+     * @return 合并后的事件流
+     */
+    public Flux<ServerSentEvent<String>> coalesce(Flux<ServerSentEvent<String>> source,
+                                                  Integer maxDelayMs, Integer maxChars) {
+        long delayMs = maxDelayMs != null ? Math.max(0, maxDelayMs) : defaultMaxDelay.toMillis();
+        int chars = maxChars != null ? maxChars : defaultMaxChars;
+        if (delayMs == 0 && chars <= 1) {
+            return source.doOnNext(e -> {
+                chunksIn.increment();
+                framesOut.increment();
+            });
+        }
+
+        return Flux.<ServerSentEvent<String>>create(sink -> {
+            Object lock = new Object();
+            StringBuilder pending = new StringBuilder();
+            Disposable[] scheduledFlush = new Disposable[1];
+
+            Runnable flush = () -> {
+                synchronized (lock) {
+                    if (scheduledFlush[0] != null) {
+                        scheduledFlush[0].dispose();
+                        scheduledFlush[0] = null;
+                    }
+                    if (pending.length() > 0) {
+                        sink.next(ServerSentEvent.builder(pending.toString()).event(MESSAGE_EVENT).build());
+                        framesOut.increment();
+                        pending.setLength(0);
+                    }
+                }
+            };
+
+            Disposable upstream = source.subscribe(
+                    event -> {
+                        chunksIn.increment();
+                        synchronized (lock) {
+                            if (!isMessage(event)) {
+                                // 其他事件（如 verification）保持顺序：先刷出已累积的文本
+                                flush.run();
+                                sink.next(event);
+                                framesOut.increment();
+                                return;
+                            }
+                            if (event.data() != null) {
+                                pending.append(event.data());
+                            }
+                            if (pending.length() >= chars) {
+                                flush.run();
+                            } else if (scheduledFlush[0] == null && delayMs > 0) {
+                                scheduledFlush[0] = timer.schedule(flush, delayMs, TimeUnit.MILLISECONDS);
+                            }
+                        }
+                    },
+                    error -> {
+                        flush.run();
+                        sink.error(error);
+                    },
+                    () -> {
+                        flush.run();
+                        sink.complete();
+                    });
+
+            sink.onDispose(() -> {
+                upstream.dispose();
+                synchronized (lock) {
+                    if (scheduledFlush[0] != null) {
+                        scheduledFlush[0].dispose();
+                    }
+                }
+            });
+        });
+    }
+
+    private boolean isMessage(ServerSentEvent<String> event) {
+        return event.event() == null || MESSAGE_EVENT.equals(event.event());
+    }
+}
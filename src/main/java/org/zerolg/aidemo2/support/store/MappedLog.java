@@ -0,0 +1,339 @@
+package org.zerolg.aidemo2.support.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 内存映射追加日志
+ *
+ * 一个日志由同一代 (generation) 的若干段文件组成：{name}-g{代}-{段号}.log，每个段创建时按固定大小映射，
+ * 数据位于堆外的页缓存中，读取直接按偏移量从映射区复制，不经过 read 系统调用。
+ *
+ * 记录格式：[长度 4B][CRC32 4B][类型 1B][负载]，CRC 覆盖类型与负载。
+ * 写入顺序为 负载 -> 类型 -> CRC -> 长度，长度为 0 的位置即日志末尾。
+ *
+ * 崩溃恢复：
+ * - 打开时顺序扫描各段，遇到长度为 0、越界或 CRC 不匹配的记录即认为该段到此结束，
+ *   活跃段末尾的残缺数据会被清零，之后的追加从该位置继续
+ * - 压缩写入新一代，全部落盘后才创建 {name}-g{代}.commit 标记；打开时只认最高的已提交代，
+ *   未提交的新代（压缩中途崩溃）和已被取代的旧代（提交后删除前崩溃）都会被清理
+ *
+ * 线程安全：本类不加锁，追加、换代必须由调用方串行化；读取只使用绝对位置访问，可与追加并发。
+ */
+public final class MappedLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedLog.class);
+
+    // 记录头：长度(4) + CRC32(4) + 类型(1)
+    public static final int HEADER_SIZE = 9;
+    // 恢复时按页检查残缺尾部，遇到整页为 0 即停止清零
+    private static final int PAGE_SIZE = 4096;
+
+    private final Path dir;
+    private final String name;
+    private final int generation;
+    private final int segmentSize;
+    private final boolean syncWrites;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private MappedLog(Path dir, String name, int generation, int segmentSize, boolean syncWrites) {
+        this.dir = dir;
+        this.name = name;
+        this.generation = generation;
+        this.segmentSize = segmentSize;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * 打开日志并按写入顺序回放所有完整记录
+     *
+     * @param visitor 每条记录回调一次，负载位置在日志关闭或换代前有效
+     */
+    public static MappedLog open(Path dir, String name, int segmentSize, boolean syncWrites,
+                                 RecordVisitor visitor) throws IOException {
+        Files.createDirectories(dir);
+        int committed = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, name + "-g*.commit")) {
+            for (Path file : files) {
+                committed = Math.max(committed, generationOf(file, name));
+            }
+        }
+        boolean fresh = committed < 0;
+        int generation = fresh ? 0 : committed;
+        deleteOtherGenerations(dir, name, generation);
+
+        MappedLog log = new MappedLog(dir, name, generation, segmentSize, syncWrites);
+        TreeMap<Integer, Path> segmentFiles = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, log.prefix() + "-*.log")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                segmentFiles.put(Integer.parseInt(fileName.substring(log.prefix().length() + 1,
+                        fileName.length() - ".log".length())), file);
+            }
+        }
+
+        for (var entry : segmentFiles.entrySet()) {
+            Segment segment = log.map(entry.getKey(), entry.getValue());
+            segment.writePosition = log.replay(segment, visitor);
+            log.segments.add(segment);
+        }
+        if (log.segments.isEmpty()) {
+            log.segments.add(log.map(0, log.segmentPath(0)));
+        } else {
+            log.truncateTail(log.active());
+        }
+        if (fresh) {
+            log.commit();
+        }
+        return log;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 负载在日志中的位置
+     */
+    public Location append(byte type, byte[] payload) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        if (payload.length == 0 || size > segmentSize) {
+            throw new IllegalArgumentException("记录大小 " + size + " 超出日志段范围 (segmentSize=" + segmentSize + ")");
+        }
+        Segment segment = active();
+        if (segment.writePosition + size > segmentSize) {
+            segment = roll();
+        }
+        int position = segment.writePosition;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.put(position + 8, type);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+        if (syncWrites) {
+            buffer.force(position, size);
+        }
+        segment.writePosition = position + size;
+        return new Location(segment, position + HEADER_SIZE, payload.length);
+    }
+
+    /**
+     * 创建下一代空日志（用于压缩），提交前重启会被丢弃
+     */
+    public MappedLog nextGeneration() throws IOException {
+        MappedLog next = new MappedLog(dir, name, generation + 1, segmentSize, syncWrites);
+        next.segments.add(next.map(0, next.segmentPath(0)));
+        return next;
+    }
+
+    /**
+     * 刷盘并写入提交标记，此后重启以本代为准
+     */
+    public void commit() throws IOException {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        Path marker = dir.resolve(prefix() + ".commit");
+        Files.write(marker, new byte[0], StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try (FileChannel channel = FileChannel.open(marker, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * 删除本代的全部文件
+     * 映射区在 GC 回收前仍然可读，已取出的 Location 不会失效
+     */
+    public void delete() throws IOException {
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.path);
+        }
+        Files.deleteIfExists(dir.resolve(prefix() + ".commit"));
+    }
+
+    /**
+     * 已写入的字节数（含记录头）
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.writePosition;
+        }
+        return size;
+    }
+
+    public int generation() {
+        return generation;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    // ==================== 内部实现 ====================
+
+    private int replay(Segment segment, RecordVisitor visitor) {
+        MappedByteBuffer buffer = segment.buffer;
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > segmentSize - position - HEADER_SIZE) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + 8, length + 1));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("日志记录校验失败，视为残缺写入: file={}, offset={}", segment.path.getFileName(), position);
+                break;
+            }
+            visitor.accept(buffer.get(position + 8), new Location(segment, position + HEADER_SIZE, length));
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * 清零活跃段中最后一条完整记录之后的残缺数据，避免新记录写入后与旧残留拼出“完整”记录
+     */
+    private void truncateTail(Segment segment) {
+        int position = segment.writePosition;
+        int pageEnd = Math.min(segmentSize, (position / PAGE_SIZE + 1) * PAGE_SIZE);
+        boolean dirty = true;
+        while (dirty && position < segmentSize) {
+            dirty = false;
+            for (int i = position; i < pageEnd; i++) {
+                if (segment.buffer.get(i) != 0) {
+                    segment.buffer.put(i, (byte) 0);
+                    dirty = true;
+                }
+            }
+            position = pageEnd;
+            pageEnd = Math.min(segmentSize, pageEnd + PAGE_SIZE);
+        }
+    }
+
+    private Segment roll() throws IOException {
+        Segment current = active();
+        current.buffer.force();
+        Segment next = map(current.index + 1, segmentPath(current.index + 1));
+        segments.add(next);
+        logger.debug("日志段已滚动: {}", next.path.getFileName());
+        return next;
+    }
+
+    private Segment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment map(int index, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射在通道关闭后依然有效
+            return new Segment(index, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    private String prefix() {
+        return name + "-g" + generation;
+    }
+
+    private Path segmentPath(int index) {
+        return dir.resolve(String.format("%s-%05d.log", prefix(), index));
+    }
+
+    private static int generationOf(Path file, String name) {
+        String fileName = file.getFileName().toString();
+        int start = name.length() + 2;
+        int end = start;
+        while (end < fileName.length() && Character.isDigit(fileName.charAt(end))) {
+            end++;
+        }
+        return end == start ? -1 : Integer.parseInt(fileName.substring(start, end));
+    }
+
+    private static void deleteOtherGenerations(Path dir, String name, int keep) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, name + "-g*")) {
+            for (Path file : files) {
+                int generation = generationOf(file, name);
+                if (generation >= 0 && generation != keep) {
+                    logger.info("清理未提交或已被取代的日志文件: {}", file.getFileName());
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // ==================== 内部类型 ====================
+
+    /**
+     * 日志段：一个固定大小的映射文件
+     */
+    public static final class Segment {
+        private final int index;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(int index, Path path, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 负载位置
+     */
+    public record Location(Segment segment, int offset, int length) {
+
+        /**
+         * 复制到堆内
+         */
+        public byte[] read() {
+            byte[] bytes = new byte[length];
+            segment.buffer.get(offset, bytes);
+            return bytes;
+        }
+
+        /**
+         * 只读视图（position 从 0 开始，不复制数据）
+         */
+        public ByteBuffer view() {
+            return segment.buffer.slice(offset, length).asReadOnlyBuffer();
+        }
+
+        /**
+         * 跳过负载开头的若干字节
+         */
+        public Location skip(int bytes) {
+            return new Location(segment, offset + bytes, length - bytes);
+        }
+    }
+
+    /**
+     * 回放记录回调
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void accept(byte type, Location payload);
+    }
+}
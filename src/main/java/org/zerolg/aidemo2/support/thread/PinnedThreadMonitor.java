@@ -0,0 +1,87 @@
+package org.zerolg.aidemo2.support.thread;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.properties.VirtualThreadProperties;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 虚拟线程钉住 (pinning) 监控
+ *
+ * 虚拟线程在 synchronized 块或本地方法中阻塞时无法从载体线程卸载，会退化为平台线程的行为，
+ * 常见于 JDBC 驱动、连接池、MyBatis 插件等第三方代码。
+ * 通过 JFR 事件流在进程内订阅 jdk.VirtualThreadPinned，按首个业务相关栈帧统计：
+ * - 指标 aidemo.vthread.pinned{frame}
+ * - WARN 日志输出钉住时长与栈顶几帧，便于定位热点
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(prefix = "ai.virtual-threads", name = "pinning-monitor", havingValue = "true", matchIfMissing = true)
+public class PinnedThreadMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final VirtualThreadProperties properties;
+    private final MeterRegistry meterRegistry;
+    private RecordingStream recording;
+
+    public PinnedThreadMonitor(VirtualThreadProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT)
+                .withThreshold(properties.getPinningThreshold())
+                .withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::onPinned);
+        recording.startAsync();
+        logger.info("虚拟线程钉住监控已启动，阈值 {}", properties.getPinningThreshold());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        String hotspot = frames.stream()
+                .filter(frame -> frame.isJavaFrame() && !isJdkFrame(frame))
+                .findFirst()
+                .map(PinnedThreadMonitor::describe)
+                .orElse("unknown");
+
+        meterRegistry.counter("aidemo.vthread.pinned", "frame", hotspot).increment();
+        logger.warn("虚拟线程被钉住 {} ms, 热点: {}\n{}", event.getDuration().toMillis(), hotspot,
+                frames.stream().limit(LOGGED_FRAMES).map(f -> "    at " + describe(f)).collect(Collectors.joining("\n")));
+    }
+
+    private static boolean isJdkFrame(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.");
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+}
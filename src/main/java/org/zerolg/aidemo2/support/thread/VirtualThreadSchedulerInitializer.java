@@ -0,0 +1,46 @@
+package org.zerolg.aidemo2.support.thread;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.zerolg.aidemo2.properties.VirtualThreadProperties;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程模式下替换 Reactor boundedElastic 调度器
+ *
+ * 在环境准备完成、任何 Bean 创建之前执行（由启动类注册），此时默认调度器尚未创建，
+ * 之后所有 Schedulers.boundedElastic() 调用都会得到基于虚拟线程、上限为 ai.virtual-threads.scheduler-cap 的调度器，
+ * 业务代码无需改动。
+ */
+public class VirtualThreadSchedulerInitializer implements ApplicationListener<ApplicationEnvironmentPreparedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadSchedulerInitializer.class);
+
+    @Override
+    public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+        ConfigurableEnvironment environment = event.getEnvironment();
+        if (!environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            return;
+        }
+        VirtualThreadProperties properties = Binder.get(environment)
+                .bind("ai.virtual-threads", VirtualThreadProperties.class)
+                .orElseGet(VirtualThreadProperties::new);
+        int cap = properties.getSchedulerCap();
+
+        Schedulers.setFactory(new Schedulers.Factory() {
+            @Override
+            public Scheduler newBoundedElastic(int threadCap, int queuedTaskCap, ThreadFactory threadFactory, int ttlSeconds) {
+                return Schedulers.Factory.super.newBoundedElastic(Math.max(threadCap, cap), queuedTaskCap,
+                        Thread.ofVirtual().name("boundedElastic-vt-", 0).factory(), ttlSeconds);
+            }
+        });
+        logger.info("虚拟线程模式: Reactor boundedElastic 已切换为虚拟线程，并发上限 {}", cap);
+    }
+}
@@ -115,8 +115,8 @@ public class ConsistencyCheckTask {
         if (recentIds == null) return;
 
         for (String id : recentIds) {
-            String listKey = RedisKeys.SESSION_MSG_PREFIX + id;
-            String metaKey = RedisKeys.SESSION_META_PREFIX + id;
+            String listKey = RedisKeys.sessionMessagesKey(id);
+            String metaKey = RedisKeys.sessionMetaKey(id);
 
             boolean hasList = Boolean.TRUE.equals(redisTemplate.hasKey(listKey));
             boolean hasMeta = Boolean.TRUE.equals(redisTemplate.hasKey(metaKey));
@@ -6,18 +6,19 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.constant.RedisKeys;
 
 /**
  * 死信队列(DLQ) 监控任务
  * 定期检查 Redis 中的死信队列，如果有积压消息，触发告警日志。
+ * {stream}:dlq 死信流的积压告警由 PendingEntryReclaimer 在自己的调度线程上检查。
  */
 @Component
 @RequiredArgsConstructor
 public class DlqMonitorTask {
 
     private static final Logger logger = LoggerFactory.getLogger(DlqMonitorTask.class);
-    // 假设 DLQ 的 Key 命名规范
-    private static final String DLQ_KEY = "aidemo:session:dlq";
+    private static final String DLQ_KEY = RedisKeys.SESSION_DLQ;
     private final StringRedisTemplate redisTemplate;
 
     /**
@@ -4,12 +4,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.model.SessionMessage;
 import org.zerolg.aidemo2.service.memory.SessionArchiveService;
+import org.zerolg.aidemo2.service.memory.SessionNearCache;
+import org.zerolg.aidemo2.support.codec.SessionMessageCodec;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +34,8 @@ public class SessionArchiverTask {
     private final StringRedisTemplate redisTemplate;
     private final SessionArchiveService archiveService;
     private final ObjectMapper objectMapper;
+    private final SessionMessageCodec messageCodec;
+    private final SessionNearCache nearCache;
 
     /**
      * 定时扫描过期会话
@@ -79,19 +86,22 @@ public class SessionArchiverTask {
      * 归档单个会话的具体逻辑
      */
     private void archiveSingleSession(String conversationId) throws Exception {
-        String sessionKey = RedisKeys.SESSION_MSG_PREFIX + conversationId;
-        String metaKey = RedisKeys.SESSION_META_PREFIX + conversationId;
+        String sessionKey = RedisKeys.sessionMessagesKey(conversationId);
+        String metaKey = RedisKeys.sessionMetaKey(conversationId);
 
-        // 1. 获取 Redis 中的完整消息列表
-        List<String> messages = redisTemplate.opsForList().range(sessionKey, 0, -1);
+        // 1. 获取 Redis 中的完整消息列表（原始字节，由 SessionMessageCodec 编码）
+        byte[] rawKey = sessionKey.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().lRange(rawKey, 0, -1));
 
-        if (messages == null || messages.isEmpty()) {
+        if (values == null || values.isEmpty()) {
             logger.warn("会话 [{}] 在 Redis 中无消息数据，仅清理心跳记录。", conversationId);
             return;
         }
 
-        // 2. 组装成 JSON 数组字符串 (假设 Redis List 里存的已经是 JSON String)
-        String contentJson = "[" + String.join(",", messages) + "]";
+        // 2. 解码后组装成 JSON 数组字符串（兼容 JSON 与二进制存储格式）
+        List<SessionMessage> messages = values.stream().map(messageCodec::decode).toList();
+        String contentJson = objectMapper.writeValueAsString(messages);
 
         // 3. 调用 Service 执行入库 (包含事务)
         // 从 Redis Meta Hash 中获取 userId
@@ -102,8 +112,8 @@ public class SessionArchiverTask {
 
         // 4. 入库成功后，删除 Redis 中的热数据
         // 再次检查 key 是否存在再删除是更安全的操作，但这里直接删也没问题，因为前面做了 Double Check
-        redisTemplate.delete(sessionKey);
-        // 同时删除元数据
-        redisTemplate.delete(metaKey);
+        // 消息列表、元数据与 Token 索引位于同一哈希槽，可以一次 DEL
+        redisTemplate.delete(List.of(sessionKey, metaKey, RedisKeys.sessionTokenIndexKey(conversationId)));
+        nearCache.invalidate(conversationId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,277 @@
+package org.zerolg.aidemo2.task;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.zerolg.aidemo2.constant.RedisKeys;
+import org.zerolg.aidemo2.properties.SessionProperties;
+import org.zerolg.aidemo2.service.memory.SessionNearCache;
+import org.zerolg.aidemo2.service.stream.StreamConsumerIdentity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话 Key 在线迁移任务
+ * 职责：将历史上不一致的会话 Key 前缀迁移到统一的 aidemo:session:{conversationId}:* 键空间
+ *
+ * 旧键空间：
+ * - session:messages:{id} / session:meta:{id}：对话路径写入，值经 Jackson 序列化（字符串带引号）
+ * - aidemo:session:msg:{id} / aidemo:session:meta:{id}：归档回捞路径写入，纯字符串
+ *
+ * 迁移方式：
+ * - 启动后在后台线程按 SCAN 分批遍历旧 Key，不使用 KEYS，不阻塞 Redis
+ * - 认领：先 RENAME 旧 Key -> aidemo:session:migrating:{旧 Key}:{nodeId}，RENAME 是原子的，
+ *   多个节点同时迁移时只有一个节点认领成功；认领之后旧实例再写入的消息会落到新建的旧 Key 上，下次迁移，不会被 DEL 误删
+ * - 消息列表：旧消息插入到新列表头部（新列表中已有的消息更新），再按 maxMessages 裁剪
+ * - 元数据：逐字段 HSETNX，新键空间已有的字段优先
+ * - 保留剩余 TTL，迁移后删除认领 Key；任务幂等，滚动发布期间旧实例写入的数据在下次启动时继续迁移
+ * - 认领节点迁移途中崩溃时认领 Key 会残留，空闲超过 ORPHAN_IDLE 后由下一次迁移重新认领（同样通过 RENAME）
+ *
+ * 认领 Key 以旧 Key 作为哈希标签，与旧 Key 落在同一个 Cluster 槽位，RENAME 在集群模式下同样可用。
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionKeyMigrationTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionKeyMigrationTask.class);
+
+    private static final String LEGACY_MESSAGES_PREFIX = "session:messages:";
+    private static final String LEGACY_META_PREFIX = "session:meta:";
+    private static final String LEGACY_ARCHIVE_MSG_PREFIX = "aidemo:session:msg:";
+    private static final String LEGACY_ARCHIVE_META_PREFIX = "aidemo:session:meta:";
+    private static final String MIGRATING_PREFIX = "aidemo:session:migrating:";
+    // 认领 Key 空闲超过该时长视为认领节点已崩溃
+    private static final Duration ORPHAN_IDLE = Duration.ofMinutes(10);
+
+    private final StringRedisTemplate redisTemplate;
+    private final SessionProperties sessionProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final SessionNearCache nearCache;
+    private final StreamConsumerIdentity identity;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!sessionProperties.isMigrateLegacyKeys()) {
+            return;
+        }
+        Thread worker = new Thread(this::migrate, "session-key-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 执行一次完整迁移
+     * 顺序：对话路径的数据优先（最新上下文），回捞路径的旧消息作为更早的历史插入到列表头部
+     */
+    public void migrate() {
+        logger.info(">>> 开始迁移旧会话 Key...");
+        long migrated = 0;
+        try {
+            migrated += recoverOrphans();
+            migrated += migratePrefix(LEGACY_MESSAGES_PREFIX, true, true);
+            migrated += migratePrefix(LEGACY_META_PREFIX, false, true);
+            migrated += migratePrefix(LEGACY_ARCHIVE_MSG_PREFIX, true, false);
+            migrated += migratePrefix(LEGACY_ARCHIVE_META_PREFIX, false, false);
+            logger.info("<<< 旧会话 Key 迁移完成，共迁移 {} 个 Key。", migrated);
+        } catch (Exception e) {
+            logger.error("旧会话 Key 迁移失败，已迁移 {} 个 Key，下次启动时继续。", migrated, e);
+        }
+    }
+
+    private long migratePrefix(String prefix, boolean list, boolean jacksonEncoded) {
+        int batchSize = sessionProperties.getMigrationBatchSize();
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(batchSize).build();
+        long count = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize) {
+                    count += migrateBatch(batch, prefix, list, jacksonEncoded);
+                    batch.clear();
+                }
+            }
+        }
+        count += migrateBatch(batch, prefix, list, jacksonEncoded);
+        if (count > 0) {
+            logger.info("前缀 [{}] 迁移 {} 个 Key", prefix, count);
+        }
+        return count;
+    }
+
+    private int migrateBatch(List<String> keys, String prefix, boolean list, boolean jacksonEncoded) {
+        int migrated = 0;
+        for (String legacyKey : keys) {
+            try {
+                String claimedKey = claim(legacyKey);
+                if (claimedKey == null) {
+                    // 已被其他节点认领
+                    continue;
+                }
+                migrateClaimed(claimedKey, legacyKey.substring(prefix.length()), list, jacksonEncoded);
+                migrated++;
+            } catch (Exception e) {
+                // 单个 Key 失败不影响其他 Key，认领 Key 保留，空闲超时后重新认领重试
+                logger.error("迁移会话 Key [{}] 失败", legacyKey, e);
+            }
+        }
+        meterRegistry.counter("aidemo.session.migration.keys", "prefix", prefix).increment(migrated);
+        return migrated;
+    }
+
+    private void migrateClaimed(String claimedKey, String conversationId, boolean list, boolean jacksonEncoded)
+            throws Exception {
+        if (list) {
+            migrateList(claimedKey, RedisKeys.sessionMessagesKey(conversationId), jacksonEncoded);
+        } else {
+            migrateHash(claimedKey, RedisKeys.sessionMetaKey(conversationId), jacksonEncoded);
+        }
+        nearCache.invalidate(conversationId);
+    }
+
+    /**
+     * 原子认领旧 Key
+     *
+     * @return 认领 Key；旧 Key 已不存在（被其他节点认领）时返回 null
+     */
+    private String claim(String legacyKey) {
+        String claimedKey = claimedKey(legacyKey);
+        try {
+            redisTemplate.rename(legacyKey, claimedKey);
+            return claimedKey;
+        } catch (DataAccessException e) {
+            // RENAME 源 Key 不存在时报错：其他节点先一步认领
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(legacyKey))) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private String claimedKey(String legacyKey) {
+        return MIGRATING_PREFIX + "{" + legacyKey + "}:" + identity.nodeId();
+    }
+
+    /**
+     * 重新认领崩溃节点残留的认领 Key
+     */
+    private long recoverOrphans() {
+        List<String> orphans = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(MIGRATING_PREFIX + "*")
+                .count(sessionProperties.getMigrationBatchSize()).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            cursor.forEachRemaining(orphans::add);
+        }
+
+        long recovered = 0;
+        for (String orphan : orphans) {
+            int open = orphan.indexOf('{');
+            int close = orphan.lastIndexOf("}:");
+            if (open < 0 || close < open) {
+                continue;
+            }
+            String legacyKey = orphan.substring(open + 1, close);
+            try {
+                Duration idle = redisTemplate.execute((RedisCallback<Duration>) connection ->
+                        connection.keyCommands().idletime(orphan.getBytes(StandardCharsets.UTF_8)));
+                if (idle == null || idle.compareTo(ORPHAN_IDLE) < 0) {
+                    // 认领节点可能仍在迁移
+                    continue;
+                }
+                String claimedKey = claimedKey(legacyKey);
+                if (!orphan.equals(claimedKey)
+                        && !Boolean.TRUE.equals(redisTemplate.renameIfAbsent(orphan, claimedKey))) {
+                    continue;
+                }
+                if (migrateLegacy(claimedKey, legacyKey)) {
+                    recovered++;
+                    logger.info("已重新认领并迁移残留的会话 Key [{}]", legacyKey);
+                }
+            } catch (Exception e) {
+                // 可能被其他节点同时重新认领，下次迁移再试
+                logger.warn("重新认领会话 Key [{}] 失败: {}", legacyKey, e.getMessage());
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * 按旧 Key 的前缀迁移已认领的数据
+     */
+    private boolean migrateLegacy(String claimedKey, String legacyKey) throws Exception {
+        // 注意匹配顺序：aidemo:session:msg: 不是 session:messages: 的前缀，两组前缀互不包含
+        if (legacyKey.startsWith(LEGACY_MESSAGES_PREFIX)) {
+            migrateClaimed(claimedKey, legacyKey.substring(LEGACY_MESSAGES_PREFIX.length()), true, true);
+        } else if (legacyKey.startsWith(LEGACY_META_PREFIX)) {
+            migrateClaimed(claimedKey, legacyKey.substring(LEGACY_META_PREFIX.length()), false, true);
+        } else if (legacyKey.startsWith(LEGACY_ARCHIVE_MSG_PREFIX)) {
+            migrateClaimed(claimedKey, legacyKey.substring(LEGACY_ARCHIVE_MSG_PREFIX.length()), true, false);
+        } else if (legacyKey.startsWith(LEGACY_ARCHIVE_META_PREFIX)) {
+            migrateClaimed(claimedKey, legacyKey.substring(LEGACY_ARCHIVE_META_PREFIX.length()), false, false);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void migrateList(String claimedKey, String targetKey, boolean jacksonEncoded) throws Exception {
+        List<String> values = redisTemplate.opsForList().range(claimedKey, 0, -1);
+        if (values != null && !values.isEmpty()) {
+            List<String> decoded = new ArrayList<>(values.size());
+            for (String value : values) {
+                decoded.add(jacksonEncoded ? decode(value) : value);
+            }
+            // LPUSH 逐个插入头部，倒序插入以保持原有顺序
+            redisTemplate.opsForList().leftPushAll(targetKey, decoded.reversed());
+            redisTemplate.opsForList().trim(targetKey, -sessionProperties.getMaxMessages(), -1);
+            copyTtl(claimedKey, targetKey);
+        }
+        redisTemplate.delete(claimedKey);
+    }
+
+    private void migrateHash(String claimedKey, String targetKey, boolean jacksonEncoded) throws Exception {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(claimedKey);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String value = entry.getValue().toString();
+            redisTemplate.opsForHash().putIfAbsent(targetKey, entry.getKey().toString(),
+                    jacksonEncoded ? decode(value) : value);
+        }
+        if (!entries.isEmpty()) {
+            copyTtl(claimedKey, targetKey);
+        }
+        redisTemplate.delete(claimedKey);
+    }
+
+    private void copyTtl(String sourceKey, String targetKey) {
+        Long ttl = redisTemplate.getExpire(sourceKey, TimeUnit.SECONDS);
+        if (ttl != null && ttl > 0) {
+            redisTemplate.expire(targetKey, ttl, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 还原 Jackson 序列化的字符串（"..." -> ...），数字等非字符串值原样返回
+     */
+    private String decode(String value) throws Exception {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return objectMapper.readValue(value, String.class);
+        }
+        return value;
+    }
+}
@@ -8,6 +8,9 @@ CREATE TABLE IF NOT EXISTS session_archives (
     -- 会话 ID (关联 Redis 中的 conversationId)
     conversation_id VARCHAR(255) NOT NULL,
     
+    -- 用户 ID (事件载荷中没有时为 unknown)
+    user_id VARCHAR(64),
+    
     -- 事件类型 (例如: MESSAGE_CREATED, SESSION_CLOSED)
     type VARCHAR(50) NOT NULL,
     
@@ -22,6 +25,9 @@ CREATE TABLE IF NOT EXISTS session_archives (
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 已有部署补齐 user_id 列
+ALTER TABLE session_archives ADD COLUMN IF NOT EXISTS user_id VARCHAR(64);
+
 -- 为 conversation_id 创建索引，加速按会话查询
 CREATE INDEX IF NOT EXISTS idx_session_archives_conversation_id ON session_archives(conversation_id);
 
@@ -29,7 +35,8 @@ CREATE INDEX IF NOT EXISTS idx_session_archives_conversation_id ON session_archi
 CREATE INDEX IF NOT EXISTS idx_session_archives_timestamp ON session_archives(timestamp);
 
 COMMENT ON TABLE session_archives IS '会话归档表：存储历史会话事件';
-COMMENT ON COLUMN session_archives.id IS '主键 ID';
+COMMENT ON COLUMN session_archives.id IS '主键 ID (事件 ID，批量归档时按此去重)';
+COMMENT ON COLUMN session_archives.user_id IS '用户 ID';
 COMMENT ON COLUMN session_archives.conversation_id IS '会话 ID';
 COMMENT ON COLUMN session_archives.type IS '事件类型';
 COMMENT ON COLUMN session_archives.payload IS '事件负载数据 (JSON)';
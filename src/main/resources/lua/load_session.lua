@@ -0,0 +1,4 @@
+-- 原子读取会话窗口（近端缓存加载）
+-- KEYS[1] 消息列表  KEYS[2] 元数据 Hash
+-- 返回：{元数据 HGETALL 扁平数组, 全部消息}
+return {redis.call('HGETALL', KEYS[2]), redis.call('LRANGE', KEYS[1], 0, -1)}
@@ -0,0 +1,15 @@
+-- 重建 Token 前缀和列表（比较并设置：消息列表在此期间被修改则放弃）
+-- KEYS[1] 消息列表  KEYS[2] Token 前缀和列表
+-- ARGV[1] 计算时的消息数量  ARGV[2..] 前缀和（共 n + 1 个）
+-- 返回：1=已重建，0=消息列表已变化
+
+if redis.call('LLEN', KEYS[1]) ~= tonumber(ARGV[1]) then
+    return 0
+end
+redis.call('DEL', KEYS[2])
+redis.call('RPUSH', KEYS[2], unpack(ARGV, 2))
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl > 0 then
+    redis.call('PEXPIRE', KEYS[2], ttl)
+end
+return 1
@@ -0,0 +1,53 @@
+-- 会话消息原子写入
+-- KEYS[1] 消息列表  KEYS[2] 元数据 Hash  KEYS[3] Token 前缀和列表
+-- （三者使用相同的 {conversationId} 哈希标签，位于同一槽位）
+-- ARGV[1] 消息 JSON  ARGV[2] Token 数  ARGV[3] 当前时间戳 (ms)
+-- ARGV[4] 最大消息数  ARGV[5] TTL (秒)  ARGV[6] 用户 ID  ARGV[7] 初始状态
+-- ARGV[8] 近端缓存失效频道  ARGV[9] 失效消息（为空表示近端缓存未启用，不广播）
+-- 返回：{裁剪后的消息列表长度, 写入后的 messageCount}（messageCount 作为近端缓存的版本号）
+
+local length = redis.call('RPUSH', KEYS[1], ARGV[1])
+
+-- 会话不存在时初始化元数据（与 createSession 的字段一致）
+-- 使用 HSETNX：接口层可能已提前写入 userId，不覆盖
+if redis.call('HEXISTS', KEYS[2], 'createdAt') == 0 then
+    redis.call('HSETNX', KEYS[2], 'userId', ARGV[6])
+    redis.call('HSETNX', KEYS[2], 'createdAt', ARGV[3])
+    redis.call('HSETNX', KEYS[2], 'messageCount', 0)
+    redis.call('HSETNX', KEYS[2], 'totalTokens', 0)
+    redis.call('HSETNX', KEYS[2], 'status', ARGV[7])
+end
+local messageCount = redis.call('HINCRBY', KEYS[2], 'messageCount', 1)
+redis.call('HINCRBY', KEYS[2], 'totalTokens', ARGV[2])
+redis.call('HSET', KEYS[2], 'lastActiveAt', ARGV[3])
+
+-- Token 前缀和：比消息列表多一个起点元素，tok[i] 为第 i 条消息之前的累计 Token 数
+-- 与消息列表错位时（例如回捞写入的消息没有索引）直接删除，读取时重建
+local indexLength = redis.call('LLEN', KEYS[3])
+if indexLength == 0 and length == 1 then
+    redis.call('RPUSH', KEYS[3], 0, ARGV[2])
+elseif indexLength == length then
+    local previous = tonumber(redis.call('LINDEX', KEYS[3], -1))
+    redis.call('RPUSH', KEYS[3], previous + tonumber(ARGV[2]))
+elseif indexLength > 0 then
+    redis.call('DEL', KEYS[3])
+end
+
+-- 滑动窗口：只保留最近 N 条
+local maxMessages = tonumber(ARGV[4])
+if length > maxMessages then
+    redis.call('LTRIM', KEYS[1], -maxMessages, -1)
+    redis.call('LTRIM', KEYS[3], -(maxMessages + 1), -1)
+    length = maxMessages
+end
+
+redis.call('EXPIRE', KEYS[1], ARGV[5])
+redis.call('EXPIRE', KEYS[2], ARGV[5])
+redis.call('EXPIRE', KEYS[3], ARGV[5])
+
+-- 在同一次往返内通知其他节点失效近端缓存（PUBLISH 不访问 Key，集群模式下同样可在脚本内调用）
+if ARGV[9] ~= '' then
+    redis.call('PUBLISH', ARGV[8], ARGV[9])
+end
+
+return {length, messageCount}
@@ -0,0 +1,31 @@
+-- 按 Token 预算选取最近的消息
+-- KEYS[1] 消息列表  KEYS[2] Token 前缀和列表
+-- ARGV[1] Token 预算
+-- 返回：能放进预算的最近消息（时间正序）；索引缺失或与消息列表错位时返回 false，由调用方重建
+
+local n = redis.call('LLEN', KEYS[1])
+if n == 0 then
+    return {}
+end
+if redis.call('LLEN', KEYS[2]) ~= n + 1 then
+    return false
+end
+
+-- 第 i 条消息（0 起）到最新消息的 Token 总和 = total - tok[i]，随 i 单调不增
+-- 二分查找满足 tok[i] >= total - budget 的最小 i
+local total = tonumber(redis.call('LINDEX', KEYS[2], -1))
+local floor = total - tonumber(ARGV[1])
+local low, high = 0, n
+while low < high do
+    local mid = math.floor((low + high) / 2)
+    if tonumber(redis.call('LINDEX', KEYS[2], mid)) >= floor then
+        high = mid
+    else
+        low = mid + 1
+    end
+end
+
+if low >= n then
+    return {}
+end
+return redis.call('LRANGE', KEYS[1], low, -1)
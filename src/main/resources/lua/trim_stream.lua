@@ -0,0 +1,24 @@
+-- 按消费进度与硬上限裁剪 Stream，并返回裁剪后的统计
+-- KEYS[1] Stream
+-- ARGV[1] MINID 阈值（空字符串表示跳过）  ARGV[2] 硬上限（条目数）  ARGV[3] 1=近似裁剪 (~)
+-- 返回：{按 MINID 裁剪数, 按 MAXLEN 裁剪数, 裁剪后长度, MEMORY USAGE 字节数}
+
+local function trim(strategy, threshold)
+    if ARGV[3] == '1' then
+        return redis.call('XTRIM', KEYS[1], strategy, '~', threshold)
+    end
+    return redis.call('XTRIM', KEYS[1], strategy, threshold)
+end
+
+local byMinId = 0
+if ARGV[1] ~= '' then
+    byMinId = trim('MINID', ARGV[1])
+end
+
+local byMaxLen = 0
+if redis.call('XLEN', KEYS[1]) > tonumber(ARGV[2]) then
+    byMaxLen = trim('MAXLEN', ARGV[2])
+end
+
+local bytes = redis.call('MEMORY', 'USAGE', KEYS[1])
+return {byMinId, byMaxLen, redis.call('XLEN', KEYS[1]), bytes or 0}
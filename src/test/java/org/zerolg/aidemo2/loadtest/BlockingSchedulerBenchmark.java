@@ -0,0 +1,83 @@
+package org.zerolg.aidemo2.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 阻塞调用卸载对比：平台线程 boundedElastic vs 虚拟线程 boundedElastic
+ *
+ * 模拟大量对话同时等待慢 JDBC / LLM 调用：一次性提交 tasks 个阻塞 latency 的任务（与 RagService / VerifierService
+ * 相同的 Mono.fromCallable(...).subscribeOn(boundedElastic) 模式），统计总耗时、吞吐与单任务完成延迟分布。
+ * 平台线程模式受限于 10 × CPU 核数，任务在调度器队列中排队；虚拟线程模式上限为 --vt-cap。
+ *
+ * 端到端对比可使用 ChatLoadTest，分别以 spring.threads.virtual.enabled=false / true 启动服务（offline profile，
+ * 适当调大 ai.offline.embedding-latency 模拟慢阻塞调用）。
+ *
+ * 参数 (--key=value)：
+ * - tasks: 并发任务数，默认 2000
+ * - latency-ms: 单个任务的阻塞时长，默认 200
+ * - vt-cap: 虚拟线程调度器上限，默认 10000
+ */
+public class BlockingSchedulerBenchmark {
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        int tasks = Integer.parseInt(options.getOrDefault("tasks", "2000"));
+        long latencyMs = Long.parseLong(options.getOrDefault("latency-ms", "200"));
+        int vtCap = Integer.parseInt(options.getOrDefault("vt-cap", "10000"));
+        int platformCap = Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE;
+
+        Scheduler platform = Schedulers.newBoundedElastic(platformCap, Integer.MAX_VALUE, "bench-platform");
+        Scheduler virtual = Schedulers.newBoundedElastic(vtCap, Integer.MAX_VALUE,
+                Thread.ofVirtual().name("bench-vt-", 0).factory(), 60);
+
+        System.out.printf("任务数 %d, 单任务阻塞 %d ms%n", tasks, latencyMs);
+        run("平台线程 (上限 " + platformCap + ")", platform, tasks, latencyMs);
+        run("虚拟线程 (上限 " + vtCap + ")", virtual, tasks, latencyMs);
+
+        platform.dispose();
+        virtual.dispose();
+    }
+
+    private static void run(String name, Scheduler scheduler, int tasks, long latencyMs) {
+        Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(30), 3);
+        long start = System.nanoTime();
+
+        Flux.range(0, tasks)
+                .flatMap(i -> {
+                    long submittedAt = System.nanoTime();
+                    return Mono.fromCallable(() -> {
+                                // 模拟阻塞 I/O
+                                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+                                return i;
+                            })
+                            .subscribeOn(scheduler)
+                            .doOnNext(v -> latency.recordValue(Math.min(latency.getHighestTrackableValue(),
+                                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submittedAt))));
+                }, tasks)
+                .blockLast();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-24s 总耗时 %.2f s, 吞吐 %.0f 任务/s, 完成延迟(ms) p50 %.0f / p99 %.0f / max %.0f%n",
+                name, seconds, tasks / seconds,
+                latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0,
+                latency.getMaxValue() / 1000.0);
+    }
+}
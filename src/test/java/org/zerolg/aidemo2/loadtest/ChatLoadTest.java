@@ -0,0 +1,95 @@
+package org.zerolg.aidemo2.loadtest;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话接口端到端压测工具
+ *
+ * 纯 Java 实现（不启动 Spring 容器），以闭环方式驱动 /api/three-stage/stream：
+ * 每个虚拟用户串行发起请求，按 continue-ratio 决定继续已有会话（多轮对话，历史逐渐增长）还是开启新会话，
+ * 问题从语料中随机抽取。预热期结束后开始统计 TTFB / TTFT / 总耗时 / SSE 帧率的百分位与错误数。
+ *
+ * 推荐与离线替身模型配合使用，排除模型服务的波动，专注于 AiService / RagService 自身的吞吐回归：
+ * 1. docker compose up -d                       （本地 Redis + PGVector）
+ * 2. mvn spring-boot:run -Dspring-boot.run.profiles=offline
+ * 3. mvn -Ploadtest test-compile exec:java -Dexec.mainClass=org.zerolg.aidemo2.loadtest.ChatLoadTest \
+ *        -Dexec.args="--concurrency=50 --duration=2m --continue-ratio=0.7"
+ *
+ * 参数说明见 {@link LoadTestOptions}。
+ */
+public class ChatLoadTest {
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        System.out.printf("压测开始: %s, 并发 %d, 预热 %s, 时长 %s, 语料 %d 条%n",
+                options.baseUrl(), options.concurrency(), options.warmup(), options.duration(),
+                options.questions().size());
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        SseProbe probe = new SseProbe(client, options);
+        LatencyReport report = new LatencyReport();
+
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long deadline = measureFrom + options.duration().toNanos();
+
+        ExecutorService users = Executors.newFixedThreadPool(options.concurrency());
+        for (int i = 0; i < options.concurrency(); i++) {
+            users.submit(() -> runUser(probe, report, options, measureFrom, deadline));
+        }
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> System.out.printf("[%ds] 已统计 %d 个请求, 错误 %d%n",
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), report.count(), report.errors()),
+                PROGRESS_INTERVAL.toMillis(), PROGRESS_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        users.shutdown();
+        // 截止时间后仍在进行的请求最多再等待一个请求超时
+        users.awaitTermination(deadline - System.nanoTime() + options.timeout().toNanos(), TimeUnit.NANOSECONDS);
+        users.shutdownNow();
+        progress.shutdownNow();
+
+        report.print(System.out, Math.max(1, Math.min(System.nanoTime(), deadline) - measureFrom));
+        System.exit(report.count() > 0 && report.errors() < report.count() ? 0 : 1);
+    }
+
+    /**
+     * 单个虚拟用户：串行发起请求直到截止时间
+     */
+    private static void runUser(SseProbe probe, LatencyReport report, LoadTestOptions options,
+                                long measureFrom, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> questions = options.questions();
+        String chatId = null;
+        int turns = 0;
+
+        while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+            if (chatId == null || turns >= options.maxTurns() || random.nextDouble() >= options.continueRatio()) {
+                chatId = "loadtest-" + UUID.randomUUID();
+                turns = 0;
+            }
+            String userId = "loadtest-user-" + random.nextInt(options.users());
+            String question = questions.get(random.nextInt(questions.size()));
+
+            boolean measured = System.nanoTime() >= measureFrom;
+            SseProbe.Result result = probe.run(chatId, userId, question);
+            turns++;
+            if (measured) {
+                report.record(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.zerolg.aidemo2.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测统计
+ *
+ * 延迟使用 HdrHistogram 记录（微秒精度，3 位有效数字），不受采样和均值平滑影响，
+ * 可以准确反映 p99 / p99.9 尾延迟。
+ * 帧率按请求记录：流式阶段（TTFT 之后）每秒推送的 message 帧数。
+ */
+public class LatencyReport {
+
+    // 最大可记录 10 分钟
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Histogram ttfb = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram ttft = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram total = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram frameRate = new ConcurrentHistogram(100_000, 3);
+    private final Map<SseProbe.Outcome, LongAdder> outcomes = new EnumMap<>(SseProbe.Outcome.class);
+
+    public LatencyReport() {
+        for (SseProbe.Outcome outcome : SseProbe.Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    public void record(SseProbe.Result result) {
+        outcomes.get(result.outcome()).increment();
+        if (result.outcome() != SseProbe.Outcome.OK) {
+            return;
+        }
+        recordMicros(ttfb, result.ttfbNanos());
+        recordMicros(ttft, result.ttftNanos());
+        recordMicros(total, result.totalNanos());
+
+        long streamingNanos = result.totalNanos() - result.ttftNanos();
+        if (result.messageFrames() > 1 && streamingNanos > 0) {
+            frameRate.recordValue(Math.min(frameRate.getHighestTrackableValue(),
+                    Math.round((result.messageFrames() - 1) * 1e9 / streamingNanos)));
+        }
+    }
+
+    public long count() {
+        return outcomes.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long errors() {
+        return count() - outcomes.get(SseProbe.Outcome.OK).sum();
+    }
+
+    public void print(PrintStream out, long elapsedNanos) {
+        long count = count();
+        double seconds = elapsedNanos / 1e9;
+        out.println();
+        out.println("==================== 压测结果 ====================");
+        out.printf("请求数: %d, 错误数: %d (%.2f%%), 吞吐: %.2f req/s%n",
+                count, errors(), count == 0 ? 0 : errors() * 100.0 / count, count / seconds);
+        outcomes.forEach((outcome, adder) -> {
+            if (outcome != SseProbe.Outcome.OK && adder.sum() > 0) {
+                out.printf("  %-10s %d%n", outcome, adder.sum());
+            }
+        });
+        out.println();
+        out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "指标(ms)", "p50", "p90", "p99", "p99.9", "max", "mean");
+        printLatency(out, "TTFB", ttfb);
+        printLatency(out, "TTFT", ttft);
+        printLatency(out, "总耗时", total);
+        out.println();
+        out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "帧率(帧/s)", "p50", "p90", "p99", "p99.9", "max", "mean");
+        StringBuilder row = new StringBuilder(String.format("%-12s", "SSE"));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %10d", frameRate.getValueAtPercentile(percentile)));
+        }
+        row.append(String.format(" %10d %10.1f", frameRate.getMaxValue(), frameRate.getMean()));
+        out.println(row);
+    }
+
+    private void printLatency(PrintStream out, String name, Histogram histogram) {
+        StringBuilder row = new StringBuilder(String.format("%-12s", name));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %10.1f", histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        row.append(String.format(" %10.1f %10.1f", histogram.getMaxValue() / 1000.0, histogram.getMean() / 1000.0));
+        out.println(row);
+    }
+
+    private static void recordMicros(Histogram histogram, long nanos) {
+        if (nanos >= 0) {
+            histogram.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        }
+    }
+}
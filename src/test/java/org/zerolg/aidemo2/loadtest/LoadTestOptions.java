@@ -0,0 +1,107 @@
+package org.zerolg.aidemo2.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测参数
+ *
+ * 命令行格式：--key=value，未指定的参数使用默认值
+ * - base-url: 被测服务地址，默认 http://localhost:8888
+ * - concurrency: 并发虚拟用户数，默认 20
+ * - duration: 压测时长，默认 60s（支持 30s / 5m 等写法）
+ * - warmup: 预热时长，预热期间的请求不计入统计，默认 10s
+ * - continue-ratio: 继续已有会话（多轮对话）的概率，其余请求开启新会话，默认 0.7
+ * - max-turns: 单个会话的最大轮数，达到后强制开启新会话，默认 10
+ * - users: 模拟的用户 ID 数量（准入控制按用户公平排队），默认 50
+ * - corpus: 问题语料文件路径，默认使用内置的 loadtest/questions.txt
+ * - coalesce-ms / coalesce-chars: 透传给接口的 SSE 帧合并参数，不指定时使用服务端默认值
+ * - timeout: 单个请求的超时时间，默认 120s
+ */
+public record LoadTestOptions(
+        String baseUrl,
+        int concurrency,
+        Duration duration,
+        Duration warmup,
+        double continueRatio,
+        int maxTurns,
+        int users,
+        List<String> questions,
+        Integer coalesceMs,
+        Integer coalesceChars,
+        Duration timeout) {
+
+    private static final String DEFAULT_CORPUS = "/loadtest/questions.txt";
+
+    public static LoadTestOptions parse(String[] args) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        String corpus = values.get("corpus");
+        List<String> questions = corpus != null
+                ? parseCorpus(Files.readString(Path.of(corpus), StandardCharsets.UTF_8))
+                : parseCorpus(readDefaultCorpus());
+        if (questions.isEmpty()) {
+            throw new IllegalArgumentException("问题语料为空");
+        }
+
+        return new LoadTestOptions(
+                values.getOrDefault("base-url", "http://localhost:8888"),
+                Integer.parseInt(values.getOrDefault("concurrency", "20")),
+                parseDuration(values.getOrDefault("duration", "60s")),
+                parseDuration(values.getOrDefault("warmup", "10s")),
+                Double.parseDouble(values.getOrDefault("continue-ratio", "0.7")),
+                Integer.parseInt(values.getOrDefault("max-turns", "10")),
+                Integer.parseInt(values.getOrDefault("users", "50")),
+                questions,
+                values.containsKey("coalesce-ms") ? Integer.valueOf(values.get("coalesce-ms")) : null,
+                values.containsKey("coalesce-chars") ? Integer.valueOf(values.get("coalesce-chars")) : null,
+                parseDuration(values.getOrDefault("timeout", "120s")));
+    }
+
+    private static String readDefaultCorpus() throws IOException {
+        try (InputStream in = LoadTestOptions.class.getResourceAsStream(DEFAULT_CORPUS)) {
+            if (in == null) {
+                throw new IOException("未找到内置问题语料: " + DEFAULT_CORPUS);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String> parseCorpus(String text) {
+        return text.lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .toList();
+    }
+
+    /**
+     * 解析 500ms / 30s / 5m 形式的时长
+     */
+    static Duration parseDuration(String text) {
+        String value = text.trim().toLowerCase();
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+}
@@ -0,0 +1,191 @@
+package org.zerolg.aidemo2.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单节点并发空闲 SSE 连接压测
+ *
+ * 按固定速率逐步打开 N 条对话流并保持 hold 时长，统计成功建立 / 失败 / 保持期间被断开的连接数、
+ * 建连延迟分布，以及（可用时）服务端线程数与堆内存，用于对比 Servlet 与 WebFlux 两种部署模式的单节点承载上限。
+ *
+ * 客户端完全异步（不为每条连接分配线程），瓶颈只会出现在服务端。
+ * 服务端需要让对话流长时间保持打开且不占用模型资源，例如：
+ *   mvn spring-boot:run -Dspring-boot.run.profiles=offline,reactive \
+ *       -Dspring-boot.run.arguments="--ai.admission.enabled=false --ai.offline.ttft=10m \
+ *       --management.endpoints.web.exposure.include=metrics"
+ * 对比 Servlet 模式时去掉 reactive profile 即可。
+ *
+ * 参数 (--key=value)：
+ * - base-url: 默认 http://localhost:8888
+ * - streams: 目标连接数，默认 10000
+ * - rate: 每秒新建连接数，默认 500
+ * - hold: 全部建立后的保持时长，默认 60s
+ */
+public class OpenStreamBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8888");
+        int streams = Integer.parseInt(options.getOrDefault("streams", "10000"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "500"));
+        Duration hold = Duration.ofSeconds(Long.parseLong(options.getOrDefault("hold", "60").replace("s", "")));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+        Map<String, Double> before = serverMetrics(client, baseUrl);
+        System.out.printf("开始建立连接: 目标 %d 条, 速率 %d 条/秒, 保持 %s%n", streams, rate, hold);
+
+        Histogram connectLatency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(5), 3);
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger peakOpen = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger dropped = new AtomicInteger();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate);
+        long start = System.nanoTime();
+        for (int i = 0; i < streams; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            long sentAt = System.nanoTime();
+            client.sendAsync(request(baseUrl), HttpResponse.BodyHandlers.ofPublisher())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                            return;
+                        }
+                        connectLatency.recordValue(Math.min(connectLatency.getHighestTrackableValue(),
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt)));
+                        peakOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+                        response.body().subscribe(new HoldingSubscriber(() -> {
+                            open.decrementAndGet();
+                            dropped.incrementAndGet();
+                        }));
+                    });
+            if ((i + 1) % rate == 0) {
+                System.out.printf("已发起 %d 条, 打开 %d 条, 失败 %d 条%n", i + 1, open.get(), failed.get());
+            }
+        }
+
+        System.out.printf("发起完成，保持 %s ...%n", hold);
+        TimeUnit.MILLISECONDS.sleep(hold.toMillis());
+        Map<String, Double> during = serverMetrics(client, baseUrl);
+
+        System.out.println();
+        System.out.println("==================== 并发连接压测结果 ====================");
+        System.out.printf("目标连接: %d, 峰值打开: %d, 当前打开: %d, 建连失败: %d, 保持期间断开: %d%n",
+                streams, peakOpen.get(), open.get(), failed.get(), dropped.get());
+        System.out.printf("建连延迟(ms): p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                connectLatency.getValueAtPercentile(50) / 1000.0,
+                connectLatency.getValueAtPercentile(99) / 1000.0,
+                connectLatency.getValueAtPercentile(99.9) / 1000.0,
+                connectLatency.getMaxValue() / 1000.0);
+        if (!before.isEmpty() && !during.isEmpty()) {
+            System.out.printf("服务端线程数: %.0f -> %.0f%n", before.get("jvm.threads.live"), during.get("jvm.threads.live"));
+            System.out.printf("服务端堆内存(MB): %.1f -> %.1f, 每连接约 %.1f KB%n",
+                    before.get("jvm.memory.used") / 1048576, during.get("jvm.memory.used") / 1048576,
+                    open.get() == 0 ? 0 : (during.get("jvm.memory.used") - before.get("jvm.memory.used")) / 1024 / open.get());
+        } else {
+            System.out.println("服务端指标不可用（需开启 management.endpoints.web.exposure.include=metrics）");
+        }
+        System.exit(0);
+    }
+
+    private static HttpRequest request(String baseUrl) {
+        String chatId = "bench-" + UUID.randomUUID();
+        String url = baseUrl + "/api/three-stage/stream?chatId=" + chatId
+                + "&userId=" + chatId
+                + "&msg=" + URLEncoder.encode("你好", StandardCharsets.UTF_8);
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+    }
+
+    /**
+     * 读取服务端 JVM 指标（actuator metrics 端点未开放时返回空）
+     */
+    private static Map<String, Double> serverMetrics(HttpClient client, String baseUrl) {
+        Map<String, Double> metrics = new HashMap<>();
+        for (String name : List.of("jvm.threads.live", "jvm.memory.used")) {
+            try {
+                HttpResponse<String> response = client.send(
+                        HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name)).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    return Map.of();
+                }
+                JsonNode measurement = MAPPER.readTree(response.body()).path("measurements").path(0);
+                metrics.put(name, measurement.path("value").asDouble());
+            } catch (Exception e) {
+                return Map.of();
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 持有连接：持续读取并丢弃数据，连接结束时回调
+     */
+    private static final class HoldingSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+
+        private final Runnable onClosed;
+
+        private HoldingSubscriber(Runnable onClosed) {
+            this.onClosed = onClosed;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            // 丢弃
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            onClosed.run();
+        }
+
+        @Override
+        public void onComplete() {
+            onClosed.run();
+        }
+    }
+}
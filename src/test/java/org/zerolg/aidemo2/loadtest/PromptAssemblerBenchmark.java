@@ -0,0 +1,116 @@
+package org.zerolg.aidemo2.loadtest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.zerolg.aidemo2.support.prompt.CompiledPromptTemplate;
+import org.zerolg.aidemo2.support.prompt.PromptAssembler;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt 组装微基准：每请求 new PromptTemplate + String.format vs 预编译模板 + 线程本地缓冲区
+ *
+ * 三种实现渲染同一个 rag-context.st（背景知识 + 用户问题）：
+ * - promptTemplatePerRequest: 改造前的写法，每次读取资源、解析 ST 模板，逐文档 String.format 后 trim
+ * - compiledTemplate: CompiledPromptTemplate 直接渲染到新的 StringBuilder，背景知识以 PromptFragment 写入
+ * - assemblerRender: PromptAssembler.render（线程本地缓冲区 + 渲染耗时指标），即线上实际路径
+ *
+ * 运行（-prof gc 同时输出每次调用的分配字节数 gc.alloc.rate.norm）：
+ * mvn -Ploadtest test-compile exec:exec@jmh -Djmh.args="PromptAssemblerBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptAssemblerBenchmark {
+
+    private static final String LOCATION = "classpath:/static/";
+    private static final String QUESTION = "公司的退货政策是什么？超过七天还能退吗？";
+
+    /**
+     * 背景知识文档数
+     */
+    @Param({"3", "10"})
+    public int documents;
+
+    /**
+     * 单个文档字符数
+     */
+    @Param({"800"})
+    public int documentChars;
+
+    private Resource resource;
+    private CompiledPromptTemplate compiled;
+    private PromptAssembler assembler;
+    private List<Document> docs;
+
+    @Setup
+    public void setup() throws Exception {
+        resource = new DefaultResourceLoader().getResource(LOCATION + PromptAssembler.RAG_CONTEXT + ".st");
+        compiled = CompiledPromptTemplate.compile(PromptAssembler.RAG_CONTEXT,
+                resource.getContentAsString(StandardCharsets.UTF_8));
+
+        assembler = new PromptAssembler(new DefaultResourceLoader(), new SimpleMeterRegistry());
+        // 模板路径由 @Value 注入，脱离 Spring 容器时手动设置
+        Field location = PromptAssembler.class.getDeclaredField("location");
+        location.setAccessible(true);
+        location.set(assembler, LOCATION);
+
+        docs = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            StringBuilder text = new StringBuilder(documentChars);
+            while (text.length() < documentChars) {
+                text.append("第").append(i + 1).append("号文档：商品签收后七天内可无理由退货，需保持包装完好。");
+            }
+            docs.add(new Document(text.substring(0, documentChars), Map.of("file_name", "policy-" + i + ".pdf")));
+        }
+    }
+
+    @Benchmark
+    public String promptTemplatePerRequest() {
+        StringBuilder contextBuilder = new StringBuilder();
+        for (int i = 0; i < docs.size(); i++) {
+            Document doc = docs.get(i);
+            String sourceName = (String) doc.getMetadata().getOrDefault("file_name", "未知来源");
+            contextBuilder.append(String.format("【文档 %d】(来源: %s)\n%s\n\n",
+                    i + 1, sourceName, doc.getFormattedContent().trim()));
+        }
+        String context = contextBuilder.toString().trim();
+        return new PromptTemplate(resource).render(Map.<String, Object>of("context", context, "question", QUESTION));
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        Map<String, Object> values = Map.of("context", assembler.documentContext(docs), "question", QUESTION);
+        StringBuilder buffer = new StringBuilder(compiled.sizeHint(values));
+        compiled.renderTo(buffer, values);
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public String assemblerRender() {
+        return assembler.render(PromptAssembler.RAG_CONTEXT,
+                Map.of("context", assembler.documentContext(docs), "question", QUESTION));
+    }
+}
@@ -0,0 +1,145 @@
+package org.zerolg.aidemo2.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.SessionProperties;
+import org.zerolg.aidemo2.support.codec.CompactSessionMessageCodec;
+import org.zerolg.aidemo2.support.codec.SessionMessageCodec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话消息编解码微基准：旧版双重编码 JSON / JSON / 紧凑二进制 / 紧凑二进制 + 压缩
+ *
+ * 对每种样本消息（短问句、中文长回复、英文长回复）分别测量编码、解码的平均耗时，
+ * 编码后字节数通过 @AuxCounters 作为 encodedBytes 列一并输出。
+ *
+ * 运行（-prof gc 同时输出每次调用的分配字节数 gc.alloc.rate.norm）：
+ * mvn -Ploadtest test-compile exec:exec@jmh -Djmh.args="SessionCodecBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionCodecBenchmark {
+
+    /**
+     * 编码格式
+     */
+    @Param({"legacy-json", "json", "binary", "binary+deflate"})
+    public String codec;
+
+    /**
+     * 样本消息
+     */
+    @Param({"short-question", "zh-long-reply", "en-long-reply"})
+    public String sample;
+
+    private SessionMessageCodec messageCodec;
+    private SessionMessage message;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        messageCodec = switch (codec) {
+            case "legacy-json" -> legacyCodec(objectMapper);
+            case "json" -> codec(objectMapper, SessionProperties.Codec.JSON, Integer.MAX_VALUE);
+            case "binary" -> codec(objectMapper, SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+            case "binary+deflate" -> codec(objectMapper, SessionProperties.Codec.BINARY, 1024);
+            default -> throw new IllegalArgumentException("未知的编码格式: " + codec);
+        };
+        message = switch (sample) {
+            case "short-question" -> SessionMessage.createUserMessage("华为 Mate 60 还有多少库存？", 12);
+            case "zh-long-reply" -> SessionMessage.createAssistantMessage(
+                    "根据公司差旅政策，员工出差住宿标准按城市等级执行：一线城市每晚不超过 600 元，二线城市每晚不超过 450 元。".repeat(20), 900);
+            case "en-long-reply" -> SessionMessage.createAssistantMessage(
+                    "According to the travel policy, accommodation in tier-one cities is capped at 600 CNY per night. ".repeat(20), 450);
+            default -> throw new IllegalArgumentException("未知的样本: " + sample);
+        };
+        encoded = messageCodec.encode(message);
+        if (!messageCodec.decode(encoded).equals(message)) {
+            throw new IllegalStateException("编解码结果不一致: " + codec);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return messageCodec.encode(message);
+    }
+
+    @Benchmark
+    public SessionMessage decode() {
+        return messageCodec.decode(encoded);
+    }
+
+    /**
+     * 编码后字节数（每次迭代记录一次，结果列中的数值即样本大小）
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        public long encodedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            encodedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public byte[] encodedSize(EncodedSize size) {
+        byte[] bytes = messageCodec.encode(message);
+        size.encodedBytes = bytes.length;
+        return bytes;
+    }
+
+    private static SessionMessageCodec codec(ObjectMapper objectMapper, SessionProperties.Codec format, int threshold) {
+        SessionProperties properties = new SessionProperties();
+        properties.setCodec(format);
+        properties.setCompressionThreshold(threshold);
+        return new CompactSessionMessageCodec(objectMapper, properties);
+    }
+
+    /**
+     * 旧版格式：JSON 字符串再经 Jackson2JsonRedisSerializer 编码一次（带引号与转义）
+     */
+    private static SessionMessageCodec legacyCodec(ObjectMapper objectMapper) {
+        SessionMessageCodec reader = codec(objectMapper, SessionProperties.Codec.JSON, Integer.MAX_VALUE);
+        return new SessionMessageCodec() {
+            @Override
+            public byte[] encode(SessionMessage message) {
+                try {
+                    return objectMapper.writeValueAsBytes(objectMapper.writeValueAsString(message));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public SessionMessage decode(byte[] data) {
+                return reader.decode(data);
+            }
+        };
+    }
+}
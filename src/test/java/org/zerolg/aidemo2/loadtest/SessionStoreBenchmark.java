@@ -0,0 +1,164 @@
+package org.zerolg.aidemo2.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.EmbeddedStoreProperties;
+import org.zerolg.aidemo2.properties.SessionEventProperties;
+import org.zerolg.aidemo2.properties.SessionProperties;
+import org.zerolg.aidemo2.service.SessionMemoryService;
+import org.zerolg.aidemo2.service.impl.EmbeddedSessionMemoryServiceImpl;
+import org.zerolg.aidemo2.service.impl.RedisSessionMemoryServiceImpl;
+import org.zerolg.aidemo2.service.memory.SessionNearCache;
+import org.zerolg.aidemo2.service.stream.SessionEventPublisher;
+import org.zerolg.aidemo2.support.codec.CompactSessionMessageCodec;
+import org.zerolg.aidemo2.support.codec.SessionMessageCodec;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 会话存储读写延迟对比：嵌入式内存映射日志 vs Redis
+ *
+ * 两种实现使用相同的编解码器与会话配置，Redis 实现关闭近端缓存以测量真实的往返延迟。
+ * 每种存储依次测量：
+ * - write: saveMessage（用户问句与助手回复交替写入）
+ * - read-tokens: getMessagesByTokenLimit(maxPromptTokens)，即对话链路每轮的上下文读取
+ * - read-recent: getRecentMessages(10)
+ * 单线程执行，延迟用 HdrHistogram 记录（微秒），输出 p50 / p99 / p99.9 / max。
+ *
+ * 参数 (--key=value)：
+ * - sessions: 会话数，默认 200
+ * - messages: 每个会话写入的消息数，默认 50
+ * - reads: 每种读取的次数，默认 20000
+ * - redis-host / redis-port: Redis 地址，默认 localhost:6379；redis-host=none 时只测嵌入式存储
+ * - dir: 嵌入式存储目录，默认临时目录
+ */
+public class SessionStoreBenchmark {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = 60_000_000L;
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "200"));
+        int messages = Integer.parseInt(options.getOrDefault("messages", "50"));
+        int reads = Integer.parseInt(options.getOrDefault("reads", "20000"));
+        String redisHost = options.getOrDefault("redis-host", "localhost");
+        int redisPort = Integer.parseInt(options.getOrDefault("redis-port", "6379"));
+        Path dir = options.containsKey("dir")
+                ? Path.of(options.get("dir"))
+                : Files.createTempDirectory("session-store-benchmark");
+
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        SessionProperties sessionProperties = new SessionProperties();
+        sessionProperties.setNearCacheEnabled(false);
+        SessionMessageCodec codec = new CompactSessionMessageCodec(objectMapper, sessionProperties);
+
+        System.out.printf("%-10s %-12s %8s %10s %10s %10s %10s%n",
+                "存储", "操作", "次数", "p50 us", "p99 us", "p99.9 us", "max us");
+
+        EmbeddedStoreProperties storeProperties = new EmbeddedStoreProperties();
+        storeProperties.setDataDir(dir.toString());
+        EmbeddedSessionMemoryServiceImpl embedded =
+                new EmbeddedSessionMemoryServiceImpl(sessionProperties, storeProperties, codec);
+        try {
+            run("embedded", embedded, sessionProperties, sessions, messages, reads);
+        } finally {
+            embedded.shutdown();
+        }
+
+        if (!"none".equals(redisHost)) {
+            LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(redisHost, redisPort);
+            connectionFactory.afterPropertiesSet();
+            try {
+                StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+                SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+                SessionNearCache nearCache = new SessionNearCache(sessionProperties, redisTemplate,
+                        connectionFactory, meterRegistry);
+                SessionEventProperties eventProperties = new SessionEventProperties();
+                eventProperties.setJournalDir("");
+                SessionEventPublisher eventPublisher = new SessionEventPublisher(redisTemplate, objectMapper,
+                        eventProperties, meterRegistry);
+                RedisSessionMemoryServiceImpl redis = new RedisSessionMemoryServiceImpl(redisTemplate,
+                        sessionProperties, codec, nearCache, eventPublisher);
+                run("redis", redis, sessionProperties, sessions, messages, reads);
+                eventPublisher.shutdown();
+                nearCache.shutdown();
+            } finally {
+                connectionFactory.destroy();
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void run(String store, SessionMemoryService service, SessionProperties properties,
+                            int sessions, int messages, int reads) {
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        List<String> ids = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            ids.add("bench-" + runId + "-" + i);
+        }
+
+        Histogram write = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        for (int m = 0; m < messages; m++) {
+            SessionMessage message = m % 2 == 0
+                    ? SessionMessage.createUserMessage("华为 Mate 60 还有多少库存？第 " + m + " 轮", 20)
+                    : SessionMessage.createAssistantMessage(
+                    "根据库存系统，华为 Mate 60 目前在华东仓有 120 台，华南仓有 80 台。".repeat(4), 180);
+            for (String id : ids) {
+                measure(write, () -> sink += service.saveMessage(id, message));
+            }
+        }
+        print(store, "write", write);
+
+        // 预热一轮读取，让 JIT 完成编译后再记录
+        for (int i = 0; i < reads; i++) {
+            sink += service.getMessagesByTokenLimit(ids.get(i % ids.size()), properties.getMaxPromptTokens()).size();
+            sink += service.getRecentMessages(ids.get(i % ids.size()), 10).size();
+        }
+
+        Histogram readTokens = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        Histogram readRecent = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        for (int i = 0; i < reads; i++) {
+            String id = ids.get(i % ids.size());
+            measure(readTokens, () -> sink += service.getMessagesByTokenLimit(id, properties.getMaxPromptTokens()).size());
+            measure(readRecent, () -> sink += service.getRecentMessages(id, 10).size());
+        }
+        print(store, "read-tokens", readTokens);
+        print(store, "read-recent", readRecent);
+
+        ids.forEach(service::deleteSession);
+    }
+
+    private static void measure(Histogram histogram, Runnable operation) {
+        long start = System.nanoTime();
+        operation.run();
+        histogram.recordValue(Math.min(HIGHEST_TRACKABLE_MICROS, (System.nanoTime() - start) / 1000));
+    }
+
+    private static void print(String store, String operation, Histogram histogram) {
+        System.out.printf("%-10s %-12s %8d %10d %10d %10d %10d%n", store, operation, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+    }
+}
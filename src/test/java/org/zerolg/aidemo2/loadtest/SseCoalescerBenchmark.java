@@ -0,0 +1,127 @@
+package org.zerolg.aidemo2.loadtest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.codec.ServerSentEvent;
+import org.zerolg.aidemo2.support.sse.SseFrameCoalescer;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SSE 帧合并对比：逐 token 推送 vs 按时间 / 字符数合并
+ *
+ * 模拟 streams 条并发对话流，每条流以 tokens-per-second 的速率输出 1~2 个字符的 message 事件，持续 duration。
+ * 每条流经过 SseFrameCoalescer 后，每一帧按 SSE 文本格式编码并写入临时文件（每帧一次 write 系统调用，近似 SSE flush），
+ * 统计每种合并窗口下的帧率（总计与单流）以及进程 CPU 时间折算的单流 CPU 开销。
+ *
+ * 参数 (--key=value)：
+ * - streams: 并发流数，默认 2000
+ * - tokens-per-second: 单流 token 速率，默认 40
+ * - duration: 每种模式的运行时长，默认 20s
+ * - modes: 合并窗口列表，格式 maxDelayMs/maxChars，逗号分隔，默认 0/0,50/64,100/128（0/0 表示不合并）
+ */
+public class SseCoalescerBenchmark {
+
+    private static final String TOKENS = "模型流式输出的每个片段通常只有一两个字符ab，c。";
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        int streams = Integer.parseInt(options.getOrDefault("streams", "2000"));
+        int tokensPerSecond = Integer.parseInt(options.getOrDefault("tokens-per-second", "40"));
+        Duration duration = LoadTestOptions.parseDuration(options.getOrDefault("duration", "20s"));
+        String[] modes = options.getOrDefault("modes", "0/0,50/64,100/128").split(",");
+
+        SseFrameCoalescer coalescer = new SseFrameCoalescer(new SimpleMeterRegistry());
+        Path file = Files.createTempFile("sse-bench", ".out");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            System.out.printf("并发流 %d, 单流 %d token/s, 每种模式 %s%n", streams, tokensPerSecond, duration);
+            for (String mode : modes) {
+                String[] parts = mode.split("/");
+                run(coalescer, channel, streams, tokensPerSecond, duration,
+                        Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void run(SseFrameCoalescer coalescer, FileChannel channel, int streams, int tokensPerSecond,
+                            Duration duration, int maxDelayMs, int maxChars) {
+        LongAdder chunks = new LongAdder();
+        LongAdder frames = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        long tokenCount = duration.toMillis() * tokensPerSecond / 1000;
+        Duration period = Duration.ofNanos(1_000_000_000L / tokensPerSecond);
+
+        List<Flux<ServerSentEvent<String>>> flows = new ArrayList<>(streams);
+        for (int i = 0; i < streams; i++) {
+            int offset = i;
+            Flux<ServerSentEvent<String>> tokens = Flux.interval(period)
+                    .take(tokenCount)
+                    .map(n -> {
+                        chunks.increment();
+                        int start = (int) ((n + offset) % (TOKENS.length() - 1));
+                        return ServerSentEvent.builder(TOKENS.substring(start, start + 1 + (int) (n & 1)))
+                                .event("message")
+                                .build();
+                    });
+            flows.add(coalescer.coalesce(tokens, maxDelayMs, maxChars)
+                    .doOnNext(frame -> {
+                        frames.increment();
+                        bytes.add(write(channel, frame));
+                    }));
+        }
+
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        Flux.merge(Flux.fromIterable(flows), streams).blockLast();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double cpuMs = (processCpuNanos() - cpuStart) / 1e6;
+
+        System.out.printf("合并窗口 %3d ms / %3d 字符: chunk %d, 帧 %d (合并率 %.1f), 帧率 %.0f 帧/s (单流 %.1f), "
+                        + "写出 %.1f MB, CPU %.0f ms (单流每秒 %.3f ms)%n",
+                maxDelayMs, maxChars, chunks.sum(), frames.sum(), (double) chunks.sum() / Math.max(1, frames.sum()),
+                frames.sum() / seconds, frames.sum() / seconds / streams,
+                bytes.sum() / 1024.0 / 1024.0, cpuMs, cpuMs / streams / seconds);
+    }
+
+    /**
+     * 按 SSE 文本格式编码并写出一帧
+     */
+    private static int write(FileChannel channel, ServerSentEvent<String> frame) {
+        byte[] encoded = ("event:" + frame.event() + "\ndata:" + frame.data() + "\n\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            channel.write(ByteBuffer.wrap(encoded), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return encoded.length;
+    }
+
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return 0;
+    }
+}
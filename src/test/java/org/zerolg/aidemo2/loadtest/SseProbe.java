@@ -0,0 +1,125 @@
+package org.zerolg.aidemo2.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 单次对话请求探针
+ *
+ * 请求 /api/three-stage/stream 并逐行解析 SSE，记录：
+ * - TTFB: 发出请求到收到响应头
+ * - TTFT: 发出请求到收到第一个 message 帧（第一段模型输出）
+ * - 总耗时: 发出请求到流结束
+ * - 帧数: message 帧数量（用于计算 SSE 帧率，观察帧合并效果）
+ */
+public class SseProbe {
+
+    /**
+     * 请求结果分类
+     */
+    public enum Outcome {
+        OK,
+        HTTP_ERROR,     // 非 200 响应
+        REJECTED,       // 准入控制拒绝 (rejected 事件)
+        NO_TOKENS,      // 流正常结束但没有任何模型输出
+        TIMEOUT,
+        IO_ERROR        // 连接失败 / 流被服务端中断
+    }
+
+    public record Result(Outcome outcome, long ttfbNanos, long ttftNanos, long totalNanos, int messageFrames) {
+    }
+
+    private final HttpClient client;
+    private final LoadTestOptions options;
+
+    public SseProbe(HttpClient client, LoadTestOptions options) {
+        this.client = client;
+        this.options = options;
+    }
+
+    public Result run(String chatId, String userId, String question) {
+        HttpRequest request = HttpRequest.newBuilder(uri(chatId, userId, question))
+                .header("Accept", "text/event-stream")
+                .timeout(options.timeout())
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        long ttfb = -1;
+        long ttft = -1;
+        int messageFrames = 0;
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            ttfb = System.nanoTime() - start;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                if (response.statusCode() != 200) {
+                    return new Result(Outcome.HTTP_ERROR, ttfb, -1, System.nanoTime() - start, 0);
+                }
+
+                String event = null;
+                boolean hasData = false;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        // 空行：一帧结束（未指定 event 的帧按 message 处理）
+                        if (hasData) {
+                            if ("rejected".equals(event)) {
+                                return new Result(Outcome.REJECTED, ttfb, -1, System.nanoTime() - start, 0);
+                            }
+                            if (event == null || "message".equals(event)) {
+                                if (ttft < 0) {
+                                    ttft = System.nanoTime() - start;
+                                }
+                                messageFrames++;
+                            }
+                        }
+                        event = null;
+                        hasData = false;
+                    } else if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                    } else if (line.startsWith("data:")) {
+                        hasData = true;
+                    }
+                }
+            }
+            long total = System.nanoTime() - start;
+            return new Result(ttft < 0 ? Outcome.NO_TOKENS : Outcome.OK, ttfb, ttft, total, messageFrames);
+        } catch (HttpTimeoutException e) {
+            return new Result(Outcome.TIMEOUT, ttfb, ttft, System.nanoTime() - start, messageFrames);
+        } catch (IOException e) {
+            return new Result(Outcome.IO_ERROR, ttfb, ttft, System.nanoTime() - start, messageFrames);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(Outcome.IO_ERROR, ttfb, ttft, System.nanoTime() - start, messageFrames);
+        }
+    }
+
+    private URI uri(String chatId, String userId, String question) {
+        StringBuilder url = new StringBuilder(options.baseUrl())
+                .append("/api/three-stage/stream")
+                .append("?chatId=").append(encode(chatId))
+                .append("&userId=").append(encode(userId))
+                .append("&msg=").append(encode(question));
+        if (options.coalesceMs() != null) {
+            url.append("&coalesceMs=").append(options.coalesceMs());
+        }
+        if (options.coalesceChars() != null) {
+            url.append("&coalesceChars=").append(options.coalesceChars());
+        }
+        return URI.create(url.toString());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,173 @@
+package org.zerolg.aidemo2.support.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.zerolg.aidemo2.model.SessionMessage;
+import org.zerolg.aidemo2.properties.SessionProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CompactSessionMessageCodec 往返测试
+ *
+ * 标志位按二进制格式约定直接读取第 2 个字节：bit0=DEFLATE，bit1=UTF-16BE 正文，bit2=UUID id
+ */
+class CompactSessionMessageCodecTest {
+
+    private static final int FLAG_DEFLATE = 1;
+    private static final int FLAG_UTF16_CONTENT = 1 << 1;
+    private static final int FLAG_UUID_ID = 1 << 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void chineseContentUsesUtf16() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        SessionMessage message = SessionMessage.createAssistantMessage("一线城市每晚不超过六百元，二线城市每晚不超过四百五十元。", 30);
+
+        byte[] encoded = codec.encode(message);
+
+        assertThat(encoded[0]).isEqualTo(CompactSessionMessageCodec.VERSION_1);
+        assertThat(encoded[1] & FLAG_UTF16_CONTENT).isNotZero();
+        assertThat(encoded[1] & FLAG_DEFLATE).isZero();
+        assertThat(codec.decode(encoded)).isEqualTo(message);
+    }
+
+    @Test
+    void asciiContentUsesUtf8() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        SessionMessage message = SessionMessage.createUserMessage("How many Mate 60 phones are in stock? 库存", 12);
+
+        byte[] encoded = codec.encode(message);
+
+        assertThat(encoded[1] & FLAG_UTF16_CONTENT).isZero();
+        assertThat(codec.decode(encoded)).isEqualTo(message);
+    }
+
+    @Test
+    void contentAboveThresholdIsDeflated() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, 256);
+        SessionMessage message = SessionMessage.createAssistantMessage(
+                "According to the travel policy, hotels are capped at 600 CNY per night. ".repeat(20), 300);
+
+        byte[] encoded = codec.encode(message);
+
+        assertThat(encoded[1] & FLAG_DEFLATE).isNotZero();
+        assertThat(encoded.length).isLessThan(message.content().length());
+        assertThat(codec.decode(encoded)).isEqualTo(message);
+    }
+
+    @Test
+    void contentBelowThresholdIsNotDeflated() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, 256);
+        SessionMessage message = SessionMessage.createUserMessage("short question ".repeat(5), 10);
+
+        byte[] encoded = codec.encode(message);
+
+        assertThat(encoded[1] & FLAG_DEFLATE).isZero();
+        assertThat(codec.decode(encoded)).isEqualTo(message);
+    }
+
+    @Test
+    void incompressiblePayloadAboveThresholdStaysRaw() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, 0);
+        SessionMessage message = message("msg-1", "x");
+
+        byte[] encoded = codec.encode(message);
+
+        // 没有可复用的重复片段，压缩后不会更小，保持原样
+        assertThat(encoded[1] & FLAG_DEFLATE).isZero();
+        assertThat(codec.decode(encoded)).isEqualTo(message);
+    }
+
+    @Test
+    void uuidIdIsPacked() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        SessionMessage message = SessionMessage.createUserMessage("hi", 1);
+
+        byte[] encoded = codec.encode(message);
+
+        assertThat(encoded[1] & FLAG_UUID_ID).isNotZero();
+        assertThat(codec.decode(encoded).id()).isEqualTo(message.id());
+    }
+
+    @Test
+    void nonUuidIdsRoundTrip() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        for (String id : new String[]{"msg-42", "6F9619FF-8B86-D011-B42D-00C04FC964FF", "会话-1", "x".repeat(36)}) {
+            SessionMessage message = message(id, "hello");
+
+            byte[] encoded = codec.encode(message);
+
+            assertThat(encoded[1] & FLAG_UUID_ID).as(id).isZero();
+            assertThat(codec.decode(encoded)).as(id).isEqualTo(message);
+        }
+    }
+
+    @Test
+    void metadataAndNegativeNumbersRoundTrip() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("userId", "u-1");
+        metadata.put("interrupted", true);
+        SessionMessage message = new SessionMessage("msg-1", "assistant", "", -1, -5L, metadata);
+
+        assertThat(codec.decode(codec.encode(message))).isEqualTo(message);
+    }
+
+    @Test
+    void jsonFormatRoundTrips() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.JSON, Integer.MAX_VALUE);
+        SessionMessage message = SessionMessage.createUserMessage("华为 Mate 60 还有多少库存？", 12);
+
+        byte[] encoded = codec.encode(message);
+
+        assertThat(encoded[0]).isEqualTo((byte) '{');
+        assertThat(codec.decode(encoded)).isEqualTo(message);
+    }
+
+    @Test
+    void readsJsonWrittenByOtherFormat() throws Exception {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        SessionMessage message = message("legacy-1", "旧版 JSON 消息");
+
+        assertThat(codec.decode(objectMapper.writeValueAsBytes(message))).isEqualTo(message);
+    }
+
+    @Test
+    void readsLegacyDoubleEncodedJson() throws Exception {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+        SessionMessage message = message("legacy-2", "带 \"引号\" 与\n换行的旧版消息");
+
+        byte[] legacy = objectMapper.writeValueAsBytes(objectMapper.writeValueAsString(message));
+
+        assertThat(legacy[0]).isEqualTo((byte) '"');
+        assertThat(codec.decode(legacy)).isEqualTo(message);
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        CompactSessionMessageCodec codec = codec(SessionProperties.Codec.BINARY, Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> codec.decode(new byte[0])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.decode("x".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CompactSessionMessageCodec codec(SessionProperties.Codec format, int threshold) {
+        SessionProperties properties = new SessionProperties();
+        properties.setCodec(format);
+        properties.setCompressionThreshold(threshold);
+        return new CompactSessionMessageCodec(objectMapper, properties);
+    }
+
+    private static SessionMessage message(String id, String content) {
+        return new SessionMessage(id, "user", content, 3, 1_700_000_000_000L, new HashMap<>());
+    }
+}
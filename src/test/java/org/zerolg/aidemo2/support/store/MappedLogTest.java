@@ -0,0 +1,183 @@
+package org.zerolg.aidemo2.support.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MappedLog 崩溃恢复测试：残缺尾部、CRC 不匹配、未提交的新一代
+ *
+ * 通过 FileChannel 直接改写段文件模拟崩溃现场，再重新打开日志检查回放结果。
+ */
+class MappedLogTest {
+
+    private static final String NAME = "shard-0";
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final byte TYPE = 1;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysRecordsInWriteOrder() throws IOException {
+        try (MappedLog log = open(new ArrayList<>())) {
+            append(log, "first");
+            append(log, "second");
+        }
+
+        List<String> records = new ArrayList<>();
+        try (MappedLog log = open(records)) {
+            assertThat(records).containsExactly("first", "second");
+            assertThat(log.size()).isEqualTo(recordSize("first") + recordSize("second"));
+        }
+    }
+
+    @Test
+    void tornTailIsDiscardedAndOverwritten() throws IOException {
+        try (MappedLog log = open(new ArrayList<>())) {
+            append(log, "first");
+            append(log, "second");
+        }
+        // 长度已落盘、负载只写了一部分：声明 50 字节，CRC 与负载都是残留数据
+        int tail = recordSize("first") + recordSize("second");
+        ByteBuffer torn = ByteBuffer.allocate(MappedLog.HEADER_SIZE + 10);
+        torn.putInt(50).putInt(0x12345678).put(TYPE);
+        torn.put("xxxxxxxxxx".getBytes(StandardCharsets.US_ASCII)).flip();
+        write(segment(0, 0), tail, torn);
+
+        List<String> records = new ArrayList<>();
+        try (MappedLog log = open(records)) {
+            assertThat(records).containsExactly("first", "second");
+            assertThat(log.size()).isEqualTo(tail);
+            append(log, "third");
+        }
+
+        // 追加从残缺位置继续，残留数据已清零，不会与新记录拼出多余的记录
+        records.clear();
+        try (MappedLog ignored = open(records)) {
+            assertThat(records).containsExactly("first", "second", "third");
+        }
+    }
+
+    @Test
+    void crcMismatchEndsReplay() throws IOException {
+        try (MappedLog log = open(new ArrayList<>())) {
+            append(log, "first");
+            append(log, "second");
+            append(log, "third");
+        }
+        // 翻转第二条记录负载的首字节
+        int offset = recordSize("first") + MappedLog.HEADER_SIZE;
+        write(segment(0, 0), offset, ByteBuffer.wrap(new byte[]{'S'}));
+
+        List<String> records = new ArrayList<>();
+        try (MappedLog log = open(records)) {
+            assertThat(records).containsExactly("first");
+            assertThat(log.size()).isEqualTo(recordSize("first"));
+            append(log, "fourth");
+        }
+
+        records.clear();
+        try (MappedLog ignored = open(records)) {
+            assertThat(records).containsExactly("first", "fourth");
+        }
+    }
+
+    @Test
+    void uncommittedGenerationIsDiscarded() throws IOException {
+        try (MappedLog log = open(new ArrayList<>())) {
+            append(log, "first");
+            // 压缩写入新一代后、提交前崩溃
+            try (MappedLog next = log.nextGeneration()) {
+                append(next, "compacted");
+            }
+        }
+        assertThat(Files.exists(segment(1, 0))).isTrue();
+
+        List<String> records = new ArrayList<>();
+        try (MappedLog log = open(records)) {
+            assertThat(log.generation()).isZero();
+            assertThat(records).containsExactly("first");
+        }
+        assertThat(files("-g1")).isEmpty();
+    }
+
+    @Test
+    void committedGenerationReplacesOlderOne() throws IOException {
+        try (MappedLog log = open(new ArrayList<>())) {
+            append(log, "first");
+            // 新一代提交后、删除旧代前崩溃
+            try (MappedLog next = log.nextGeneration()) {
+                append(next, "compacted");
+                next.commit();
+            }
+        }
+
+        List<String> records = new ArrayList<>();
+        try (MappedLog log = open(records)) {
+            assertThat(log.generation()).isEqualTo(1);
+            assertThat(records).containsExactly("compacted");
+        }
+        assertThat(files("-g0")).isEmpty();
+    }
+
+    @Test
+    void rollsToNextSegmentWhenFull() throws IOException {
+        String payload = "x".repeat(SEGMENT_SIZE / 3);
+        try (MappedLog log = open(new ArrayList<>())) {
+            for (int i = 0; i < 4; i++) {
+                append(log, payload);
+            }
+        }
+        assertThat(Files.exists(segment(0, 1))).isTrue();
+
+        List<String> records = new ArrayList<>();
+        try (MappedLog ignored = open(records)) {
+            assertThat(records).hasSize(4).allMatch(payload::equals);
+        }
+    }
+
+    // ==================== 辅助方法 ====================
+
+    private MappedLog open(List<String> records) throws IOException {
+        return MappedLog.open(dir, NAME, SEGMENT_SIZE, false,
+                (type, payload) -> records.add(new String(payload.read(), StandardCharsets.UTF_8)));
+    }
+
+    private static void append(MappedLog log, String payload) throws IOException {
+        log.append(TYPE, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int recordSize(String payload) {
+        return MappedLog.HEADER_SIZE + payload.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private Path segment(int generation, int index) {
+        return dir.resolve(String.format("%s-g%d-%05d.log", NAME, generation, index));
+    }
+
+    private List<Path> files(String generationTag) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(NAME + generationTag)).toList();
+        }
+    }
+
+    private static void write(Path file, int position, ByteBuffer data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(data, position);
+            channel.force(true);
+        }
+    }
+}